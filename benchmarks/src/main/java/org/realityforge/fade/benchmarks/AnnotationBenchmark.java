@@ -0,0 +1,51 @@
+package org.realityforge.fade.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.realityforge.fade.ClassFile;
+import org.realityforge.fade.ClassFileFormat;
+
+/**
+ * Measure the cost of extracting the runtime visible annotations of a class.
+ * Other attributes are skipped without decoding their names. The filtered
+ * variant only handles two of the six annotation types in the corpus.
+ */
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.NANOSECONDS )
+@Warmup( iterations = 5, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+public class AnnotationBenchmark
+{
+  private static final String[] ATTRIBUTE_NAMES = new String[]{ClassFileFormat.ATTR_RuntimeVisibleAnnotations};
+  private static final String[] ANNOTATION_TYPES =
+    new String[]{"Lcorpus/annotations/Component;", "Lcorpus/annotations/Route;"};
+
+  @Benchmark
+  public void parseAnnotations( final CorpusState corpus, final Blackhole blackhole )
+  {
+    final ClassFile classFile = ClassFile.parseClassFile( corpus.next() );
+    classFile.processClass( new BlackholeParser( blackhole, ATTRIBUTE_NAMES ), true, true, true );
+  }
+
+  @Benchmark
+  public void parseAnnotationsUnboxed( final CorpusState corpus, final Blackhole blackhole )
+  {
+    final ClassFile classFile = ClassFile.parseClassFile( corpus.next() );
+    classFile.processClass( new UnboxedBlackholeParser( blackhole, ATTRIBUTE_NAMES ), true, true, true );
+  }
+
+  @Benchmark
+  public void parseAnnotationsFiltered( final CorpusState corpus, final Blackhole blackhole )
+  {
+    final ClassFile classFile = ClassFile.parseClassFile( corpus.next() );
+    classFile.processClass( new BlackholeParser( blackhole, ATTRIBUTE_NAMES, ANNOTATION_TYPES ), true, true, true );
+  }
+}
@@ -0,0 +1,66 @@
+package org.realityforge.fade.benchmarks;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.realityforge.fade.AnnotationIndex;
+import org.realityforge.fade.AnnotationIndexBuilder;
+import org.realityforge.fade.ClassFileParser;
+import org.realityforge.fade.ClassFileReader;
+
+/**
+ * Compare building an annotation index by scanning the whole corpus with
+ * reading a previously serialized index, as an application would at startup.
+ */
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+@Warmup( iterations = 5, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+@State( Scope.Thread )
+public class AnnotationIndexBenchmark
+{
+  private byte[][] classes;
+  private byte[] serialized;
+
+  @Setup
+  public void setup()
+    throws IOException
+  {
+    classes = Corpus.getClasses();
+    final ByteArrayOutputStream output = new ByteArrayOutputStream();
+    buildIndex().write( output );
+    serialized = output.toByteArray();
+  }
+
+  @Benchmark
+  public AnnotationIndex buildIndex()
+  {
+    final AnnotationIndexBuilder builder = new AnnotationIndexBuilder();
+    final ClassFileParser parser = builder.newParser();
+    final ClassFileReader reader = new ClassFileReader();
+    for( final byte[] data : classes )
+    {
+      reader.read( data ).processClass( parser, true, true, true );
+    }
+    return builder.build();
+  }
+
+  @Benchmark
+  public AnnotationIndex readIndex()
+    throws IOException
+  {
+    return AnnotationIndex.read( new ByteArrayInputStream( serialized ) );
+  }
+}
@@ -0,0 +1,26 @@
+package org.realityforge.fade.benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Entry point of the benchmark jar. Accepts the standard JMH command line
+ * and always enables the gc profiler so allocation per operation is reported.
+ */
+public final class BenchmarkRunner
+{
+  private BenchmarkRunner()
+  {
+  }
+
+  public static void main( final String[] args )
+    throws Exception
+  {
+    new Runner( new OptionsBuilder().
+      parent( new CommandLineOptions( args ) ).
+      addProfiler( GCProfiler.class ).
+      build() ).run();
+  }
+}
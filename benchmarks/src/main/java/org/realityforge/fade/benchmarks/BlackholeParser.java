@@ -0,0 +1,290 @@
+package org.realityforge.fade.benchmarks;
+
+import org.openjdk.jmh.infra.Blackhole;
+import org.realityforge.fade.ClassFileFormat;
+import org.realityforge.fade.ClassFileParser;
+import org.realityforge.fade.ConstantPool;
+
+/**
+ * Parser that decodes the common attributes and passes every value to a
+ * Blackhole so the JIT can not eliminate any of the parsing work.
+ */
+public class BlackholeParser
+  extends ClassFileParser
+{
+  private final Blackhole blackhole;
+
+  /**
+   * Create a parser that handles every attribute.
+   *
+   * @param blackhole the blackhole that consumes parsed values.
+   */
+  public BlackholeParser( final Blackhole blackhole )
+  {
+    this.blackhole = blackhole;
+  }
+
+  /**
+   * Create a parser that only handles attributes with specified names.
+   *
+   * @param blackhole      the blackhole that consumes parsed values.
+   * @param attributeNames the names of the attributes to handle.
+   */
+  public BlackholeParser( final Blackhole blackhole, final String[] attributeNames )
+  {
+    super( attributeNames );
+    this.blackhole = blackhole;
+  }
+
+  /**
+   * Create a parser that only handles attributes with specified names and
+   * annotations of specified types.
+   *
+   * @param blackhole       the blackhole that consumes parsed values.
+   * @param attributeNames  the names of the attributes to handle.
+   * @param annotationTypes the descriptors of the annotations to handle.
+   */
+  public BlackholeParser( final Blackhole blackhole,
+                          final String[] attributeNames,
+                          final String[] annotationTypes )
+  {
+    super( attributeNames, annotationTypes );
+    this.blackhole = blackhole;
+  }
+
+  @Override
+  protected void handleClassAttribute( final String name,
+                                       final byte[] data,
+                                       final int offset,
+                                       final long length,
+                                       final ConstantPool constantPool )
+  {
+    if( ClassFileFormat.ATTR_SourceFile.equals( name ) )
+    {
+      parseSourceFile( data, offset, constantPool );
+    }
+    else if( ClassFileFormat.ATTR_InnerClasses.equals( name ) )
+    {
+      parseInnerClasses( data, offset, constantPool );
+    }
+    else if( !handleCommonAttribute( name, data, offset, constantPool ) )
+    {
+      blackhole.consume( name );
+    }
+  }
+
+  @Override
+  protected void handleMethodAttribute( final String name,
+                                        final byte[] data,
+                                        final int offset,
+                                        final long length,
+                                        final ConstantPool constantPool )
+  {
+    if( ClassFileFormat.ATTR_Code.equals( name ) )
+    {
+      parseCode( data, offset, constantPool );
+    }
+    else if( ClassFileFormat.ATTR_Exceptions.equals( name ) )
+    {
+      parseExceptions( data, offset, constantPool );
+    }
+    else if( !handleCommonAttribute( name, data, offset, constantPool ) )
+    {
+      blackhole.consume( name );
+    }
+  }
+
+  @Override
+  protected void handleFieldAttribute( final String name,
+                                       final byte[] data,
+                                       final int offset,
+                                       final long length,
+                                       final ConstantPool constantPool )
+  {
+    if( ClassFileFormat.ATTR_ConstantValue.equals( name ) )
+    {
+      parseConstantValue( data, offset, constantPool );
+    }
+    else if( !handleCommonAttribute( name, data, offset, constantPool ) )
+    {
+      blackhole.consume( name );
+    }
+  }
+
+  private boolean handleCommonAttribute( final String name,
+                                         final byte[] data,
+                                         final int offset,
+                                         final ConstantPool constantPool )
+  {
+    if( ClassFileFormat.ATTR_RuntimeVisibleAnnotations.equals( name ) ||
+        ClassFileFormat.ATTR_RuntimeInvisibleAnnotations.equals( name ) )
+    {
+      parseAnnotations( name, data, offset, constantPool );
+      return true;
+    }
+    else if( ClassFileFormat.ATTR_Signature.equals( name ) )
+    {
+      parseSignature( data, offset, constantPool );
+      return true;
+    }
+    else
+    {
+      return false;
+    }
+  }
+
+  @Override
+  protected void handleCodeAttribute( final String name,
+                                      final byte[] data,
+                                      final int offset,
+                                      final long length,
+                                      final ConstantPool constantPool )
+  {
+    blackhole.consume( name );
+  }
+
+  @Override
+  protected void handleField( final String name, final String descriptor, final int accessFlags )
+  {
+    blackhole.consume( name );
+    blackhole.consume( descriptor );
+    blackhole.consume( accessFlags );
+  }
+
+  @Override
+  protected void handleMethod( final String name, final String descriptor, final int accessFlags )
+  {
+    blackhole.consume( name );
+    blackhole.consume( descriptor );
+    blackhole.consume( accessFlags );
+  }
+
+  @Override
+  protected void handleSourceFile( final String filename )
+  {
+    blackhole.consume( filename );
+  }
+
+  @Override
+  protected void handleSignature( final String signature )
+  {
+    blackhole.consume( signature );
+  }
+
+  @Override
+  protected void handleInnerClass( final String innerClass,
+                                   final String outerClass,
+                                   final String innerName,
+                                   final int innerClassAccessFlags )
+  {
+    blackhole.consume( innerClass );
+    blackhole.consume( outerClass );
+    blackhole.consume( innerName );
+    blackhole.consume( innerClassAccessFlags );
+  }
+
+  @Override
+  protected void handleConstantValue( final Object value )
+  {
+    blackhole.consume( value );
+  }
+
+  @Override
+  protected void handleExceptions( final String[] exceptions )
+  {
+    blackhole.consume( exceptions );
+  }
+
+  @Override
+  protected void startCode( final int maxStack,
+                            final int maxLocals,
+                            final byte[] data,
+                            final int offset,
+                            final long codeLength,
+                            final ConstantPool constantPool )
+  {
+    blackhole.consume( maxStack );
+    blackhole.consume( maxLocals );
+    blackhole.consume( codeLength );
+  }
+
+  @Override
+  protected void handleExceptionHandler( final int startPC,
+                                         final int endPC,
+                                         final int handlerPC,
+                                         final String catchType )
+  {
+    blackhole.consume( handlerPC );
+    blackhole.consume( catchType );
+  }
+
+  @Override
+  protected void endCode()
+  {
+  }
+
+  @Override
+  protected void handleAnnotationGroup( final String type )
+  {
+    blackhole.consume( type );
+  }
+
+  @Override
+  protected void startAnnotation( final String type )
+  {
+    blackhole.consume( type );
+  }
+
+  @Override
+  protected void endAnnotation()
+  {
+  }
+
+  @Override
+  protected void handleAnnotationValue( final String name, final Object value )
+  {
+    blackhole.consume( name );
+    blackhole.consume( value );
+  }
+
+  @Override
+  protected void handleAnnotationEnumValue( final String name, final String key, final String value )
+  {
+    blackhole.consume( name );
+    blackhole.consume( key );
+    blackhole.consume( value );
+  }
+
+  @Override
+  protected void startAnnotationValueArray( final String name, final int length )
+  {
+    blackhole.consume( name );
+    blackhole.consume( length );
+  }
+
+  @Override
+  protected void endAnnotationValueArray()
+  {
+  }
+
+  @Override
+  protected void startAnnotationValueAnnotation( final String name )
+  {
+    blackhole.consume( name );
+  }
+
+  @Override
+  protected void endAnnotationValueAnnotation()
+  {
+  }
+
+  @Override
+  protected void handleSynthetic()
+  {
+  }
+
+  @Override
+  protected void handleDeprecated()
+  {
+  }
+}
@@ -0,0 +1,121 @@
+package org.realityforge.fade.benchmarks;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.realityforge.fade.CallGraph;
+import org.realityforge.fade.CallGraphBuilder;
+import org.realityforge.fade.ClassFile;
+import org.realityforge.fade.ClassFileFormat;
+import org.realityforge.fade.ClassFileParser;
+import org.realityforge.fade.ClassFileReader;
+import org.realityforge.fade.CodeCursor;
+import org.realityforge.fade.ConstantPool;
+import org.realityforge.fade.Instruction;
+
+/**
+ * Compare building a call graph of the corpus with a CallGraphBuilder against
+ * a decoder built on startCode that keys methods by concatenated strings and
+ * stores callees in hash sets.
+ */
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+@Warmup( iterations = 20, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+@State( Scope.Thread )
+public class CallGraphBenchmark
+{
+  private final ClassFileReader reader = new ClassFileReader();
+  private byte[][] classes;
+
+  @Setup
+  public void setup()
+  {
+    classes = Corpus.getClasses();
+  }
+
+  @Benchmark
+  public CallGraph callGraphBuilder()
+  {
+    final CallGraphBuilder builder = new CallGraphBuilder();
+    final ClassFileParser parser = builder.newParser();
+    for( final byte[] data : classes )
+    {
+      reader.read( data ).processClass( parser, false, true, false );
+    }
+    return builder.build();
+  }
+
+  @Benchmark
+  public HashMap<String, HashSet<String>> startCodeDecoder( final Blackhole blackhole )
+  {
+    final StringKeyParser parser = new StringKeyParser( blackhole );
+    for( final byte[] data : classes )
+    {
+      reader.read( data ).processClass( parser, false, true, false );
+    }
+    return parser.calls;
+  }
+
+  /** Parser that records calls against methods keyed by owner, name and descriptor strings. */
+  private static final class StringKeyParser
+    extends BlackholeParser
+  {
+    final HashMap<String, HashSet<String>> calls = new HashMap<String, HashSet<String>>();
+    private final CodeCursor cursor = new CodeCursor();
+    private String className;
+    private HashSet<String> callees;
+
+    StringKeyParser( final Blackhole blackhole )
+    {
+      super( blackhole, new String[]{ClassFileFormat.ATTR_Code} );
+    }
+
+    @Override
+    protected void startClass( final ClassFile classFile )
+    {
+      className = classFile.getClassName();
+    }
+
+    @Override
+    protected void handleMethod( final String name, final String descriptor, final int accessFlags )
+    {
+      callees = new HashSet<String>();
+      calls.put( className + "." + name + descriptor, callees );
+    }
+
+    @Override
+    protected void startCode( final int maxStack,
+                              final int maxLocals,
+                              final byte[] data,
+                              final int offset,
+                              final long codeLength,
+                              final ConstantPool constantPool )
+    {
+      cursor.reset( data, offset, codeLength );
+      while( cursor.next() )
+      {
+        final int opcode = cursor.getOpcode();
+        if( opcode >= Instruction.INVOKEVIRTUAL.code && opcode <= Instruction.INVOKEINTERFACE.code )
+        {
+          final int index = cursor.getConstantIndex();
+          callees.add( constantPool.getClassFromRef( index ) + "." +
+                       constantPool.getNameFromRef( index ) +
+                       constantPool.getTypeFromRef( index ) );
+        }
+      }
+    }
+  }
+}
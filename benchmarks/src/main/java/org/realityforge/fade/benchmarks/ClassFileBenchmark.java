@@ -0,0 +1,86 @@
+package org.realityforge.fade.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.realityforge.fade.ClassFile;
+import org.realityforge.fade.ClassFileReader;
+
+/**
+ * Measure the cost of parsing a class and of walking each of its sections.
+ * The class is parsed in each invocation of processClass so constant pool
+ * strings are decoded afresh rather than served from the cache.
+ */
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.NANOSECONDS )
+@Warmup( iterations = 5, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+@State( Scope.Thread )
+public class ClassFileBenchmark
+{
+  private final ClassFileReader reader = new ClassFileReader();
+
+  /** The sections passed to processClass. */
+  @State( Scope.Benchmark )
+  public static class Sections
+  {
+    @Param( { "FIELDS", "METHODS", "CLASS", "ALL" } )
+    public String section;
+  }
+
+  @Benchmark
+  public ClassFile parseClassFile( final CorpusState corpus )
+  {
+    return ClassFile.parseClassFile( corpus.next() );
+  }
+
+  @Benchmark
+  public ClassFile readClassFile( final CorpusState corpus )
+  {
+    return reader.read( corpus.next() );
+  }
+
+  @Benchmark
+  public void readAndProcessClass( final CorpusState corpus, final Blackhole blackhole )
+  {
+    reader.read( corpus.next() ).processClass( new BlackholeParser( blackhole ), true, true, true );
+  }
+
+  @Benchmark
+  public void readHeader( final CorpusState corpus, final Blackhole blackhole )
+  {
+    final ClassFile classFile = ClassFile.parseClassFile( corpus.next() );
+    blackhole.consume( classFile.getClassName() );
+    blackhole.consume( classFile.getSuperClassName() );
+  }
+
+  @Benchmark
+  public void readHeaderLazily( final CorpusState corpus, final Blackhole blackhole )
+  {
+    final ClassFile classFile = ClassFile.parseClassFileLazily( corpus.next() );
+    blackhole.consume( classFile.getClassName() );
+    blackhole.consume( classFile.getSuperClassName() );
+  }
+
+  @Benchmark
+  public void processClass( final CorpusState corpus, final Sections sections, final Blackhole blackhole )
+  {
+    final ClassFile classFile = ClassFile.parseClassFile( corpus.next() );
+    final String section = sections.section;
+    final boolean all = "ALL".equals( section );
+    classFile.processClass( new BlackholeParser( blackhole ),
+                            all || "FIELDS".equals( section ),
+                            all || "METHODS".equals( section ),
+                            all || "CLASS".equals( section ) );
+  }
+}
@@ -0,0 +1,87 @@
+package org.realityforge.fade.benchmarks;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.realityforge.fade.ClassHierarchy;
+import org.realityforge.fade.ClassHierarchyBuilder;
+
+/**
+ * Measure subtype queries against a synthetic hierarchy where each class
+ * extends a random earlier class and implements up to two random interfaces.
+ */
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.NANOSECONDS )
+@Warmup( iterations = 5, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( value = 1, jvmArgs = { "-Xmx1g" } )
+@State( Scope.Thread )
+public class ClassHierarchyBenchmark
+{
+  @Param( { "500000" } )
+  public int classCount;
+
+  private ClassHierarchy hierarchy;
+  private int[] queries;
+  private int next;
+
+  @Setup( Level.Trial )
+  public void setup()
+  {
+    hierarchy = build( classCount );
+    final Random random = new Random( 42 );
+    queries = new int[4096];
+    for( int i = 0; i < queries.length; i++ )
+    {
+      queries[i] = random.nextInt( hierarchy.getClassCount() );
+    }
+  }
+
+  @Benchmark
+  public boolean isAssignable()
+  {
+    final int subtype = queries[next++ & ( queries.length - 1 )];
+    final int supertype = queries[next++ & ( queries.length - 1 )];
+    return hierarchy.isAssignable( subtype, supertype );
+  }
+
+  @Benchmark
+  public int[] allSupertypes()
+  {
+    return hierarchy.allSupertypes( queries[next++ & ( queries.length - 1 )] );
+  }
+
+  static ClassHierarchy build( final int classCount )
+  {
+    final Random random = new Random( 42 );
+    final int interfaceCount = classCount / 10;
+    final ClassHierarchyBuilder builder = new ClassHierarchyBuilder();
+    for( int i = 0; i < interfaceCount; i++ )
+    {
+      final String[] interfaces = 0 == i ? null : new String[]{ "p/I" + random.nextInt( i ) };
+      builder.add( "p/I" + i, "java/lang/Object", interfaces );
+    }
+    for( int i = 0; i < classCount - interfaceCount; i++ )
+    {
+      final String superName = 0 == i ? "java/lang/Object" : "p/C" + random.nextInt( i );
+      final String[] interfaces = new String[random.nextInt( 3 )];
+      for( int j = 0; j < interfaces.length; j++ )
+      {
+        interfaces[j] = "p/I" + random.nextInt( interfaceCount );
+      }
+      builder.add( "p/C" + i, superName, interfaces );
+    }
+    return builder.build();
+  }
+}
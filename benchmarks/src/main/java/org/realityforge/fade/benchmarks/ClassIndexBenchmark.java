@@ -0,0 +1,78 @@
+package org.realityforge.fade.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.realityforge.fade.ClassFileParser;
+import org.realityforge.fade.ClassFileReader;
+import org.realityforge.fade.ClassIndex;
+import org.realityforge.fade.ClassIndexBuilder;
+
+/**
+ * Compare finding the annotated classes of the corpus by mapping a class
+ * index file with parsing every class to build the same information.
+ */
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+@Warmup( iterations = 5, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+@State( Scope.Thread )
+public class ClassIndexBenchmark
+{
+  private static final String ANNOTATION = "Lcorpus/annotations/Component;";
+
+  private byte[][] classes;
+  private File file;
+
+  @Setup
+  public void setup()
+    throws IOException
+  {
+    classes = Corpus.getClasses();
+    file = File.createTempFile( "fade", ".idx" );
+    buildIndex().write( file );
+  }
+
+  @TearDown
+  public void tearDown()
+  {
+    file.delete();
+  }
+
+  @Benchmark
+  public ClassIndexBuilder buildIndex()
+  {
+    final ClassIndexBuilder builder = new ClassIndexBuilder();
+    final ClassFileParser parser = builder.newParser();
+    final ClassFileReader reader = new ClassFileReader();
+    for( final byte[] data : classes )
+    {
+      reader.read( data ).processClass( parser, true, true, true );
+    }
+    return builder;
+  }
+
+  @Benchmark
+  public void mapIndex( final Blackhole blackhole )
+    throws IOException
+  {
+    final ClassIndex index = ClassIndex.map( file );
+    for( final int classIndex : index.getAnnotatedClasses( ANNOTATION ) )
+    {
+      blackhole.consume( index.getClassName( classIndex ) );
+    }
+  }
+}
@@ -0,0 +1,85 @@
+package org.realityforge.fade.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.realityforge.fade.ClassFileFormat;
+import org.realityforge.fade.ClassFileReader;
+import org.realityforge.fade.CodeCursor;
+import org.realityforge.fade.ConstantPool;
+import org.realityforge.fade.Instruction;
+
+/**
+ * Measure the cost of walking every instruction of every method of a class
+ * and extracting the constant pool index of each member reference.
+ */
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.NANOSECONDS )
+@Warmup( iterations = 5, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+@State( Scope.Thread )
+public class CodeBenchmark
+{
+  private final ClassFileReader reader = new ClassFileReader();
+  private CodeParser parser;
+
+  @Setup
+  public void setup( final Blackhole blackhole )
+  {
+    parser = new CodeParser( blackhole );
+  }
+
+  @Benchmark
+  public void walkInstructions( final CorpusState corpus )
+  {
+    reader.read( corpus.next() ).processClass( parser, false, true, false );
+  }
+
+  /** Parser that only handles Code attributes and walks their instructions. */
+  private static final class CodeParser
+    extends BlackholeParser
+  {
+    private final CodeCursor cursor = new CodeCursor();
+    private final Blackhole blackhole;
+
+    CodeParser( final Blackhole blackhole )
+    {
+      super( blackhole, new String[]{ClassFileFormat.ATTR_Code} );
+      this.blackhole = blackhole;
+    }
+
+    @Override
+    protected void handleMethod( final String name, final String descriptor, final int accessFlags )
+    {
+    }
+
+    @Override
+    protected void startCode( final int maxStack,
+                              final int maxLocals,
+                              final byte[] data,
+                              final int offset,
+                              final long codeLength,
+                              final ConstantPool constantPool )
+    {
+      cursor.reset( data, offset, codeLength );
+      while( cursor.next() )
+      {
+        final int opcode = cursor.getOpcode();
+        if( opcode >= Instruction.GETSTATIC.code && opcode <= Instruction.INVOKEINTERFACE.code )
+        {
+          blackhole.consume( cursor.getConstantIndex() );
+        }
+      }
+    }
+  }
+}
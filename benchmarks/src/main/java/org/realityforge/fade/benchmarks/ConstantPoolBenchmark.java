@@ -0,0 +1,136 @@
+package org.realityforge.fade.benchmarks;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.realityforge.fade.ClassFileFormat;
+import org.realityforge.fade.ConstantPool;
+
+/** Measure the cost of scanning the constant pool of a class. */
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.NANOSECONDS )
+@Warmup( iterations = 5, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+public class ConstantPoolBenchmark
+{
+  /** Classes in the corpus with a constant pool of at least this many entries. */
+  private static final int LARGE_POOL_SIZE = 400;
+
+  /**
+   * State that cycles through the classes of the corpus with large constant pools
+   * and the pools of those classes, parsed with entry indexes.
+   */
+  @State( Scope.Thread )
+  public static class LargePoolState
+  {
+    byte[][] classes;
+    ConstantPool[] pools;
+    private int index;
+
+    @Setup
+    public void setup()
+    {
+      final ArrayList<byte[]> large = new ArrayList<>();
+      for( final byte[] data : Corpus.getClasses() )
+      {
+        if( ConstantPool.parseConstantPool( data ).getConstantCount() >= LARGE_POOL_SIZE )
+        {
+          large.add( data );
+        }
+      }
+      classes = large.toArray( new byte[large.size()][] );
+      pools = new ConstantPool[classes.length];
+      for( int i = 0; i < classes.length; i++ )
+      {
+        pools[i] = ConstantPool.parseConstantPool( classes[i], 0, classes[i].length, null, true );
+      }
+    }
+
+    byte[] next()
+    {
+      final byte[] data = classes[index];
+      index = index + 1 == classes.length ? 0 : index + 1;
+      return data;
+    }
+
+    ConstantPool nextPool()
+    {
+      final ConstantPool constantPool = pools[index];
+      index = index + 1 == pools.length ? 0 : index + 1;
+      return constantPool;
+    }
+  }
+
+  @Benchmark
+  public ConstantPool parseConstantPool( final CorpusState corpus )
+  {
+    return ConstantPool.parseConstantPool( corpus.next() );
+  }
+
+  @Benchmark
+  public ConstantPool parseLargeConstantPool( final LargePoolState corpus )
+  {
+    return ConstantPool.parseConstantPool( corpus.next() );
+  }
+
+  @Benchmark
+  public ConstantPool parseIndexedLargeConstantPool( final LargePoolState corpus )
+  {
+    final byte[] data = corpus.next();
+    return ConstantPool.parseConstantPool( data, 0, data.length, null, true );
+  }
+
+  /** List the classes and string literals of a pool by visiting every entry. */
+  @Benchmark
+  public void listClassesAndStringsByType( final LargePoolState corpus, final Blackhole blackhole )
+  {
+    final ConstantPool constantPool = corpus.nextPool();
+    final int count = constantPool.getConstantCount();
+    for( int i = 1; i <= count; i++ )
+    {
+      final byte tag = constantPool.getEntryType( i );
+      if( ClassFileFormat.CONSTANT_Class == tag )
+      {
+        blackhole.consume( constantPool.getClassEntry( i ) );
+      }
+      else if( ClassFileFormat.CONSTANT_String == tag )
+      {
+        blackhole.consume( constantPool.getStringEntry( i ) );
+      }
+      else if( ClassFileFormat.CONSTANT_Long == tag || ClassFileFormat.CONSTANT_Double == tag )
+      {
+        i++;
+      }
+    }
+  }
+
+  /** List the classes and string literals of a pool using its entry indexes. */
+  @Benchmark
+  public void listClassesAndStringsByIndex( final LargePoolState corpus, final Blackhole blackhole )
+  {
+    final ConstantPool constantPool = corpus.nextPool();
+    for( int i = constantPool.getFirstEntryIndex( ClassFileFormat.CONSTANT_Class );
+         0 != i;
+         i = constantPool.getNextEntryIndex( i ) )
+    {
+      blackhole.consume( constantPool.getClassEntry( i ) );
+    }
+    for( int i = constantPool.getFirstEntryIndex( ClassFileFormat.CONSTANT_String );
+         0 != i;
+         i = constantPool.getNextEntryIndex( i ) )
+    {
+      blackhole.consume( constantPool.getStringEntry( i ) );
+    }
+  }
+}
@@ -0,0 +1,578 @@
+package org.realityforge.fade.benchmarks;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Random;
+import org.realityforge.fade.ClassFileFormat;
+
+/**
+ * Deterministic corpus of class files used by the benchmarks.
+ * The corpus contains the class files bundled with the module followed by
+ * synthetic classes generated from a fixed seed. The synthetic classes mimic
+ * the shape of typical application code (fields with constant values, methods
+ * with bytecode, line numbers and exception handlers, annotations with every
+ * kind of element value) so results are comparable across machines without
+ * depending on the classes shipped with the JDK.
+ */
+public final class Corpus
+{
+  /** Number of generated classes. */
+  static final int GENERATED_CLASS_COUNT = 500;
+
+  /** Seed used to generate classes. Changing it invalidates previous results. */
+  private static final long SEED = 0xFADEL;
+
+  /** Class files bundled as resources. */
+  private static final String[] BUNDLED =
+    new String[]{"EmptyClass.class.dat", "NonEmptyClass.class.dat", "MyInterface.class.dat"};
+
+  private static final String[] PACKAGES =
+    new String[]{"corpus/model/", "corpus/service/", "corpus/web/", "corpus/util/", "corpus/données/"};
+  private static final String[] TYPES =
+    new String[]{"java/lang/Object", "java/lang/String", "java/util/List", "java/util/Map",
+                 "java/lang/Integer", "java/io/Serializable", "java/lang/Runnable",
+                 "java/util/concurrent/Callable", "java/lang/Comparable", "java/lang/Exception",
+                 "java/lang/IllegalStateException", "java/io/IOException"};
+  private static final String[] FIELD_DESCRIPTORS =
+    new String[]{"I", "J", "Z", "Ljava/lang/String;", "Ljava/util/List;", "Ljava/util/Map;", "[B", "D"};
+  private static final String[] METHOD_DESCRIPTORS =
+    new String[]{"()V", "()I", "(I)V", "(Ljava/lang/String;)V", "()Ljava/lang/String;",
+                 "(Ljava/lang/Object;)Z", "(IJ)Ljava/util/List;", "(Ljava/util/Map;I)Ljava/lang/Object;"};
+  private static final String[] NAMES =
+    new String[]{"value", "name", "id", "count", "items", "handler", "config", "state", "delegate",
+                 "get", "set", "run", "call", "process", "toString", "hashCode", "equals", "état"};
+  private static final String[] ANNOTATIONS =
+    new String[]{"Ljavax/inject/Inject;", "Ljavax/inject/Named;", "Lcorpus/annotations/Component;",
+                 "Lcorpus/annotations/Config;", "Ljava/lang/Deprecated;", "Lcorpus/annotations/Route;"};
+
+  private static byte[][] c_classes;
+
+  private Corpus()
+  {
+  }
+
+  /**
+   * Return the class files in corpus.
+   *
+   * @return the class files in corpus.
+   */
+  public static synchronized byte[][] getClasses()
+  {
+    if( null == c_classes )
+    {
+      try
+      {
+        c_classes = load();
+      }
+      catch( final IOException ioe )
+      {
+        throw new IllegalStateException( "Unable to load corpus: " + ioe );
+      }
+    }
+    return c_classes;
+  }
+
+  private static byte[][] load()
+    throws IOException
+  {
+    final byte[][] classes = new byte[BUNDLED.length + GENERATED_CLASS_COUNT][];
+    for( int i = 0; i < BUNDLED.length; i++ )
+    {
+      classes[i] = loadResource( BUNDLED[i] );
+    }
+    final Random random = new Random( SEED );
+    for( int i = 0; i < GENERATED_CLASS_COUNT; i++ )
+    {
+      classes[BUNDLED.length + i] = generateClass( random, i );
+    }
+    return classes;
+  }
+
+  private static byte[] loadResource( final String resource )
+    throws IOException
+  {
+    final InputStream input = Corpus.class.getResourceAsStream( resource );
+    if( null == input )
+    {
+      throw new IOException( "Missing corpus resource " + resource );
+    }
+    final ByteArrayOutputStream output = new ByteArrayOutputStream();
+    final byte[] buffer = new byte[4096];
+    int count;
+    while( -1 != ( count = input.read( buffer ) ) )
+    {
+      output.write( buffer, 0, count );
+    }
+    input.close();
+    return output.toByteArray();
+  }
+
+  private static byte[] generateClass( final Random random, final int index )
+    throws IOException
+  {
+    final ConstantPoolWriter cp = new ConstantPoolWriter();
+    final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    final DataOutputStream body = new DataOutputStream( bytes );
+
+    final String className = pick( random, PACKAGES ) + "Generated" + index;
+    body.writeShort( ClassFileFormat.ACC_PUBLIC | ClassFileFormat.ACC_SUPER );
+    body.writeShort( cp.classRef( className ) );
+    body.writeShort( cp.classRef( pick( random, TYPES ) ) );
+    final int interfaceCount = random.nextInt( 4 );
+    body.writeShort( interfaceCount );
+    for( int i = 0; i < interfaceCount; i++ )
+    {
+      body.writeShort( cp.classRef( TYPES[5 + i] ) );
+    }
+
+    final int fieldCount = random.nextInt( 10 );
+    body.writeShort( fieldCount );
+    for( int i = 0; i < fieldCount; i++ )
+    {
+      writeField( random, cp, body, i );
+    }
+
+    final int methodCount = 1 + random.nextInt( 15 );
+    body.writeShort( methodCount );
+    for( int i = 0; i < methodCount; i++ )
+    {
+      writeMethod( random, cp, body, className, i );
+    }
+
+    final ByteArrayOutputStream attributes = new ByteArrayOutputStream();
+    final DataOutputStream out = new DataOutputStream( attributes );
+    int attributeCount = 1;
+    final ByteArrayOutputStream sourceFile = new ByteArrayOutputStream();
+    new DataOutputStream( sourceFile ).writeShort( cp.utf( "Generated" + index + ".java" ) );
+    writeAttribute( cp, out, ClassFileFormat.ATTR_SourceFile, sourceFile );
+    if( random.nextInt( 3 ) == 0 )
+    {
+      attributeCount++;
+      final ByteArrayOutputStream innerClasses = new ByteArrayOutputStream();
+      final DataOutputStream inner = new DataOutputStream( innerClasses );
+      inner.writeShort( 1 );
+      inner.writeShort( cp.classRef( className + "$Inner" ) );
+      inner.writeShort( cp.classRef( className ) );
+      inner.writeShort( cp.utf( "Inner" ) );
+      inner.writeShort( ClassFileFormat.ACC_PUBLIC | ClassFileFormat.ACC_STATIC );
+      writeAttribute( cp, out, ClassFileFormat.ATTR_InnerClasses, innerClasses );
+    }
+    if( random.nextInt( 2 ) == 0 )
+    {
+      attributeCount++;
+      writeAnnotationsAttribute( random, cp, out );
+    }
+    body.writeShort( attributeCount );
+    attributes.writeTo( body );
+
+    final ByteArrayOutputStream classFile = new ByteArrayOutputStream();
+    final DataOutputStream header = new DataOutputStream( classFile );
+    header.writeInt( ClassFileFormat.MAGIC );
+    header.writeShort( 0 );
+    header.writeShort( ClassFileFormat.MAJOR_VERSION_5 );
+    header.writeShort( cp.count );
+    cp.bytes.writeTo( header );
+    bytes.writeTo( header );
+    return classFile.toByteArray();
+  }
+
+  private static void writeField( final Random random,
+                                  final ConstantPoolWriter cp,
+                                  final DataOutputStream body,
+                                  final int index )
+    throws IOException
+  {
+    final boolean constant = random.nextInt( 3 ) == 0;
+    final String descriptor = constant ? ( random.nextBoolean() ? "I" : "Ljava/lang/String;" ) : pick( random, FIELD_DESCRIPTORS );
+    body.writeShort( constant ?
+                     ClassFileFormat.ACC_PUBLIC | ClassFileFormat.ACC_STATIC | ClassFileFormat.ACC_FINAL :
+                     ClassFileFormat.ACC_PRIVATE );
+    body.writeShort( cp.utf( pick( random, NAMES ) + index ) );
+    body.writeShort( cp.utf( descriptor ) );
+
+    final ByteArrayOutputStream attributes = new ByteArrayOutputStream();
+    final DataOutputStream out = new DataOutputStream( attributes );
+    int attributeCount = 0;
+    if( constant )
+    {
+      attributeCount++;
+      final ByteArrayOutputStream value = new ByteArrayOutputStream();
+      final int valueIndex =
+        "I".equals( descriptor ) ? cp.integer( random.nextInt() ) : cp.string( pick( random, NAMES ) );
+      new DataOutputStream( value ).writeShort( valueIndex );
+      writeAttribute( cp, out, ClassFileFormat.ATTR_ConstantValue, value );
+    }
+    if( random.nextInt( 4 ) == 0 )
+    {
+      attributeCount++;
+      writeAnnotationsAttribute( random, cp, out );
+    }
+    body.writeShort( attributeCount );
+    attributes.writeTo( body );
+  }
+
+  private static void writeMethod( final Random random,
+                                   final ConstantPoolWriter cp,
+                                   final DataOutputStream body,
+                                   final String className,
+                                   final int index )
+    throws IOException
+  {
+    body.writeShort( ClassFileFormat.ACC_PUBLIC );
+    body.writeShort( cp.utf( 0 == index ? "<init>" : pick( random, NAMES ) ) );
+    body.writeShort( cp.utf( pick( random, METHOD_DESCRIPTORS ) ) );
+
+    final ByteArrayOutputStream attributes = new ByteArrayOutputStream();
+    final DataOutputStream out = new DataOutputStream( attributes );
+    int attributeCount = 1;
+    writeCodeAttribute( random, cp, out, className );
+    if( random.nextInt( 4 ) == 0 )
+    {
+      attributeCount++;
+      final ByteArrayOutputStream exceptions = new ByteArrayOutputStream();
+      final DataOutputStream exceptionsOut = new DataOutputStream( exceptions );
+      exceptionsOut.writeShort( 1 );
+      exceptionsOut.writeShort( cp.classRef( "java/io/IOException" ) );
+      writeAttribute( cp, out, ClassFileFormat.ATTR_Exceptions, exceptions );
+    }
+    if( random.nextInt( 5 ) == 0 )
+    {
+      attributeCount++;
+      final ByteArrayOutputStream signature = new ByteArrayOutputStream();
+      new DataOutputStream( signature ).writeShort( cp.utf( "<T:Ljava/lang/Object;>()TT;" ) );
+      writeAttribute( cp, out, ClassFileFormat.ATTR_Signature, signature );
+    }
+    if( random.nextInt( 3 ) == 0 )
+    {
+      attributeCount++;
+      writeAnnotationsAttribute( random, cp, out );
+    }
+    body.writeShort( attributeCount );
+    attributes.writeTo( body );
+  }
+
+  private static void writeCodeAttribute( final Random random,
+                                          final ConstantPoolWriter cp,
+                                          final DataOutputStream out,
+                                          final String className )
+    throws IOException
+  {
+    final ByteArrayOutputStream code = new ByteArrayOutputStream();
+    final DataOutputStream codeOut = new DataOutputStream( code );
+    final int instructionCount = 1 + random.nextInt( 40 );
+    for( int i = 0; i < instructionCount; i++ )
+    {
+      switch( random.nextInt( 6 ) )
+      {
+        case 0:
+          codeOut.writeByte( 0x2a ); //aload_0
+          codeOut.writeByte( 0xb4 ); //getfield
+          codeOut.writeShort( cp.fieldRef( className, pick( random, NAMES ), pick( random, FIELD_DESCRIPTORS ) ) );
+          codeOut.writeByte( 0x57 ); //pop
+          break;
+        case 1:
+          codeOut.writeByte( 0x2a ); //aload_0
+          codeOut.writeByte( 0xb6 ); //invokevirtual
+          codeOut.writeShort( cp.methodRef( pick( random, TYPES ), pick( random, NAMES ), "()V" ) );
+          break;
+        case 2:
+          codeOut.writeByte( 0xb8 ); //invokestatic
+          codeOut.writeShort( cp.methodRef( className, pick( random, NAMES ), "()V" ) );
+          break;
+        case 3:
+          codeOut.writeByte( 0x13 ); //ldc_w
+          codeOut.writeShort( cp.string( pick( random, NAMES ) + random.nextInt( 100 ) ) );
+          codeOut.writeByte( 0x57 ); //pop
+          break;
+        case 4:
+          codeOut.writeByte( 0x14 ); //ldc2_w
+          codeOut.writeShort( random.nextBoolean() ? cp.longConst( random.nextLong() ) : cp.doubleConst( random.nextDouble() ) );
+          codeOut.writeByte( 0x58 ); //pop2
+          break;
+        default:
+          codeOut.writeByte( 0x03 ); //iconst_0
+          codeOut.writeByte( 0x3b ); //istore_0
+          break;
+      }
+    }
+    codeOut.writeByte( 0xb1 ); //return
+
+    final ByteArrayOutputStream attribute = new ByteArrayOutputStream();
+    final DataOutputStream attributeOut = new DataOutputStream( attribute );
+    attributeOut.writeShort( 4 );
+    attributeOut.writeShort( 2 );
+    attributeOut.writeInt( code.size() );
+    code.writeTo( attributeOut );
+    final boolean handler = random.nextInt( 4 ) == 0;
+    attributeOut.writeShort( handler ? 1 : 0 );
+    if( handler )
+    {
+      attributeOut.writeShort( 0 );
+      attributeOut.writeShort( code.size() - 1 );
+      attributeOut.writeShort( code.size() - 1 );
+      attributeOut.writeShort( cp.classRef( "java/lang/Exception" ) );
+    }
+    attributeOut.writeShort( 1 );
+    final ByteArrayOutputStream lines = new ByteArrayOutputStream();
+    final DataOutputStream linesOut = new DataOutputStream( lines );
+    final int lineCount = 1 + random.nextInt( 8 );
+    linesOut.writeShort( lineCount );
+    for( int i = 0; i < lineCount; i++ )
+    {
+      linesOut.writeShort( i * code.size() / lineCount );
+      linesOut.writeShort( 10 + i );
+    }
+    writeAttribute( cp, attributeOut, ClassFileFormat.ATTR_LineNumberTable, lines );
+    writeAttribute( cp, out, ClassFileFormat.ATTR_Code, attribute );
+  }
+
+  private static void writeAnnotationsAttribute( final Random random,
+                                                 final ConstantPoolWriter cp,
+                                                 final DataOutputStream out )
+    throws IOException
+  {
+    final ByteArrayOutputStream annotations = new ByteArrayOutputStream();
+    final DataOutputStream annotationsOut = new DataOutputStream( annotations );
+    final int count = 1 + random.nextInt( 3 );
+    annotationsOut.writeShort( count );
+    for( int i = 0; i < count; i++ )
+    {
+      writeAnnotation( random, cp, annotationsOut, 0 );
+    }
+    writeAttribute( cp, out, ClassFileFormat.ATTR_RuntimeVisibleAnnotations, annotations );
+  }
+
+  private static void writeAnnotation( final Random random,
+                                       final ConstantPoolWriter cp,
+                                       final DataOutputStream out,
+                                       final int depth )
+    throws IOException
+  {
+    out.writeShort( cp.utf( pick( random, ANNOTATIONS ) ) );
+    final int count = random.nextInt( 4 );
+    out.writeShort( count );
+    for( int i = 0; i < count; i++ )
+    {
+      out.writeShort( cp.utf( pick( random, NAMES ) ) );
+      writeElementValue( random, cp, out, depth );
+    }
+  }
+
+  private static void writeElementValue( final Random random,
+                                         final ConstantPoolWriter cp,
+                                         final DataOutputStream out,
+                                         final int depth )
+    throws IOException
+  {
+    switch( random.nextInt( depth > 0 ? 7 : 9 ) )
+    {
+      case 0:
+        out.writeByte( ClassFileFormat.ANN_TAG_INTEGER );
+        out.writeShort( cp.integer( random.nextInt( 1000 ) ) );
+        break;
+      case 1:
+        out.writeByte( ClassFileFormat.ANN_TAG_BOOLEAN );
+        out.writeShort( cp.integer( random.nextInt( 2 ) ) );
+        break;
+      case 2:
+        out.writeByte( ClassFileFormat.ANN_TAG_LONG );
+        out.writeShort( cp.longConst( random.nextInt( 1000 ) ) );
+        break;
+      case 3:
+        out.writeByte( ClassFileFormat.ANN_TAG_ENUM );
+        out.writeShort( cp.utf( "Lcorpus/model/Scope;" ) );
+        out.writeShort( cp.utf( random.nextBoolean() ? "SINGLETON" : "REQUEST" ) );
+        break;
+      case 4:
+        out.writeByte( ClassFileFormat.ANN_TAG_CLASS );
+        out.writeShort( cp.utf( "L" + pick( random, TYPES ) + ";" ) );
+        break;
+      case 5:
+      case 6:
+        out.writeByte( ClassFileFormat.ANN_TAG_UTF8 );
+        out.writeShort( cp.utf( pick( random, NAMES ) ) );
+        break;
+      case 7:
+      {
+        out.writeByte( ClassFileFormat.ANN_TAG_ARRAY );
+        final int size = random.nextInt( 5 );
+        out.writeShort( size );
+        final boolean strings = random.nextBoolean();
+        for( int i = 0; i < size; i++ )
+        {
+          out.writeByte( strings ? ClassFileFormat.ANN_TAG_UTF8 : ClassFileFormat.ANN_TAG_INTEGER );
+          out.writeShort( strings ? cp.utf( pick( random, NAMES ) ) : cp.integer( i ) );
+        }
+        break;
+      }
+      default:
+        out.writeByte( ClassFileFormat.ANN_TAG_ANNOTATION );
+        writeAnnotation( random, cp, out, depth + 1 );
+        break;
+    }
+  }
+
+  private static void writeAttribute( final ConstantPoolWriter cp,
+                                      final DataOutputStream out,
+                                      final String name,
+                                      final ByteArrayOutputStream body )
+    throws IOException
+  {
+    out.writeShort( cp.utf( name ) );
+    out.writeInt( body.size() );
+    body.writeTo( out );
+  }
+
+  private static String pick( final Random random, final String[] values )
+  {
+    return values[random.nextInt( values.length )];
+  }
+
+  /** Builder for the constant pool of a generated class. */
+  private static final class ConstantPoolWriter
+  {
+    final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    private final DataOutputStream out = new DataOutputStream( bytes );
+    private final HashMap<String, Integer> entries = new HashMap<String, Integer>();
+    int count = 1;
+
+    int utf( final String value )
+      throws IOException
+    {
+      final Integer index = entries.get( "1:" + value );
+      if( null != index )
+      {
+        return index;
+      }
+      //writeUTF emits the modified-UTF8 format used by CONSTANT_Utf8
+      out.writeByte( ClassFileFormat.CONSTANT_Utf8 );
+      out.writeUTF( value );
+      return register( "1:" + value, 1 );
+    }
+
+    int classRef( final String name )
+      throws IOException
+    {
+      return ref( ClassFileFormat.CONSTANT_Class, name, utf( name ) );
+    }
+
+    int string( final String value )
+      throws IOException
+    {
+      return ref( ClassFileFormat.CONSTANT_String, value, utf( value ) );
+    }
+
+    int integer( final int value )
+      throws IOException
+    {
+      final String key = ClassFileFormat.CONSTANT_Integer + ":" + value;
+      final Integer index = entries.get( key );
+      if( null != index )
+      {
+        return index;
+      }
+      out.writeByte( ClassFileFormat.CONSTANT_Integer );
+      out.writeInt( value );
+      return register( key, 1 );
+    }
+
+    int longConst( final long value )
+      throws IOException
+    {
+      final String key = ClassFileFormat.CONSTANT_Long + ":" + value;
+      final Integer index = entries.get( key );
+      if( null != index )
+      {
+        return index;
+      }
+      out.writeByte( ClassFileFormat.CONSTANT_Long );
+      out.writeLong( value );
+      return register( key, 2 );
+    }
+
+    int doubleConst( final double value )
+      throws IOException
+    {
+      final String key = ClassFileFormat.CONSTANT_Double + ":" + value;
+      final Integer index = entries.get( key );
+      if( null != index )
+      {
+        return index;
+      }
+      out.writeByte( ClassFileFormat.CONSTANT_Double );
+      out.writeDouble( value );
+      return register( key, 2 );
+    }
+
+    int fieldRef( final String owner, final String name, final String descriptor )
+      throws IOException
+    {
+      return memberRef( ClassFileFormat.CONSTANT_Fieldref, owner, name, descriptor );
+    }
+
+    int methodRef( final String owner, final String name, final String descriptor )
+      throws IOException
+    {
+      return memberRef( ClassFileFormat.CONSTANT_Methodref, owner, name, descriptor );
+    }
+
+    private int memberRef( final int tag, final String owner, final String name, final String descriptor )
+      throws IOException
+    {
+      final String key = tag + ":" + owner + "." + name + descriptor;
+      final Integer index = entries.get( key );
+      if( null != index )
+      {
+        return index;
+      }
+      final int classIndex = classRef( owner );
+      final int nameAndTypeIndex = nameAndType( name, descriptor );
+      out.writeByte( tag );
+      out.writeShort( classIndex );
+      out.writeShort( nameAndTypeIndex );
+      return register( key, 1 );
+    }
+
+    private int nameAndType( final String name, final String descriptor )
+      throws IOException
+    {
+      final String key = ClassFileFormat.CONSTANT_NameAndType + ":" + name + ":" + descriptor;
+      final Integer index = entries.get( key );
+      if( null != index )
+      {
+        return index;
+      }
+      final int nameIndex = utf( name );
+      final int descriptorIndex = utf( descriptor );
+      out.writeByte( ClassFileFormat.CONSTANT_NameAndType );
+      out.writeShort( nameIndex );
+      out.writeShort( descriptorIndex );
+      return register( key, 1 );
+    }
+
+    private int ref( final int tag, final String value, final int utfIndex )
+      throws IOException
+    {
+      final String key = tag + ":" + value;
+      final Integer index = entries.get( key );
+      if( null != index )
+      {
+        return index;
+      }
+      out.writeByte( tag );
+      out.writeShort( utfIndex );
+      return register( key, 1 );
+    }
+
+    private int register( final String key, final int size )
+    {
+      final int index = count;
+      entries.put( key, index );
+      count += size;
+      return index;
+    }
+  }
+}
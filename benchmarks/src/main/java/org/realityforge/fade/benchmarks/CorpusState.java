@@ -0,0 +1,34 @@
+package org.realityforge.fade.benchmarks;
+
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Benchmark state that cycles through the classes in the corpus so each
+ * invocation processes one class and results are reported per class.
+ */
+@State( Scope.Thread )
+public class CorpusState
+{
+  byte[][] classes;
+  private int index;
+
+  @Setup
+  public void setup()
+  {
+    classes = Corpus.getClasses();
+  }
+
+  /**
+   * Return the next class in corpus.
+   *
+   * @return the data of the next class.
+   */
+  byte[] next()
+  {
+    final byte[] data = classes[index];
+    index = index + 1 == classes.length ? 0 : index + 1;
+    return data;
+  }
+}
@@ -0,0 +1,124 @@
+package org.realityforge.fade.benchmarks;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.realityforge.fade.ClassFile;
+import org.realityforge.fade.ClassFileParser;
+import org.realityforge.fade.ClassFileParserFactory;
+import org.realityforge.fade.DirectoryScanner;
+
+/**
+ * Compare parsing the corpus written to a tree of package directories with
+ * a DirectoryScanner against walking the tree with Files.walk and reading
+ * each file with Files.readAllBytes.
+ */
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MILLISECONDS )
+@Warmup( iterations = 5, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+@State( Scope.Benchmark )
+public class DirectoryScannerBenchmark
+{
+  /** The number of package directories the corpus is spread across. */
+  private static final int PACKAGE_COUNT = 64;
+
+  @Param( { "1", "4" } )
+  public int threadCount;
+
+  private byte[][] classes;
+  private File directory;
+
+  @Setup( Level.Trial )
+  public void setup()
+    throws IOException
+  {
+    classes = Corpus.getClasses();
+    directory = File.createTempFile( "fade", "dir" );
+    directory.delete();
+    for( int i = 0; i < classes.length; i++ )
+    {
+      final File parent = new File( directory, "p" + ( i % 8 ) + File.separator + "q" + ( i % PACKAGE_COUNT ) );
+      parent.mkdirs();
+      final FileOutputStream output = new FileOutputStream( new File( parent, "C" + i + ".class" ) );
+      try
+      {
+        output.write( classes[i] );
+      }
+      finally
+      {
+        output.close();
+      }
+    }
+  }
+
+  @TearDown( Level.Trial )
+  public void tearDown()
+    throws IOException
+  {
+    try( Stream<Path> paths = Files.walk( directory.toPath() ) )
+    {
+      final Iterator<Path> iterator = paths.sorted( ( a, b ) -> b.compareTo( a ) ).iterator();
+      while( iterator.hasNext() )
+      {
+        Files.delete( iterator.next() );
+      }
+    }
+  }
+
+  @Benchmark
+  public int walkAndReadAllBytes( final Blackhole blackhole )
+    throws IOException
+  {
+    final ClassFileParser parser = new BlackholeParser( blackhole, null );
+    int count = 0;
+    try( Stream<Path> paths = Files.walk( directory.toPath() ) )
+    {
+      final Iterator<Path> iterator = paths.iterator();
+      while( iterator.hasNext() )
+      {
+        final Path path = iterator.next();
+        if( path.toString().endsWith( ".class" ) && Files.isRegularFile( path ) )
+        {
+          ClassFile.parseClassFile( Files.readAllBytes( path ) ).processClass( parser, true, true, true );
+          count++;
+        }
+      }
+    }
+    return count;
+  }
+
+  @Benchmark
+  public int directoryScanner( final Blackhole blackhole )
+    throws IOException
+  {
+    final ClassFileParserFactory factory = new ClassFileParserFactory()
+    {
+      public ClassFileParser newParser()
+      {
+        return new BlackholeParser( blackhole, null );
+      }
+    };
+    return new DirectoryScanner( threadCount, true, true, true ).scan( directory, factory );
+  }
+}
@@ -0,0 +1,107 @@
+package org.realityforge.fade.benchmarks;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.realityforge.fade.AnnotationIndexBuilder;
+import org.realityforge.fade.IncrementalScanner;
+
+/**
+ * Compare indexing a directory containing the corpus from scratch with
+ * rescanning it after one class changed.
+ */
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+@Warmup( iterations = 5, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+@State( Scope.Thread )
+public class IncrementalScannerBenchmark
+{
+  private byte[][] classes;
+  private File directory;
+  private IncrementalScanner scanner;
+  private int next;
+
+  @Setup( Level.Trial )
+  public void setup()
+    throws IOException
+  {
+    classes = Corpus.getClasses();
+    directory = File.createTempFile( "fade", "dir" );
+    directory.delete();
+    directory.mkdir();
+    for( int i = 0; i < classes.length; i++ )
+    {
+      write( i, i );
+    }
+    scanner = new IncrementalScanner( new AnnotationIndexBuilder(), true, true, true );
+    scanner.scan( directory );
+  }
+
+  /** Replace the contents of one file with the class it held, or the class after it. */
+  @Setup( Level.Invocation )
+  public void change()
+    throws IOException
+  {
+    final int index = next++ % classes.length;
+    write( index, ( next / classes.length ) % 2 == 0 ? index : ( index + 1 ) % classes.length );
+  }
+
+  @TearDown( Level.Trial )
+  public void tearDown()
+  {
+    for( int i = 0; i < classes.length; i++ )
+    {
+      new File( directory, i + ".class" ).delete();
+    }
+    directory.delete();
+  }
+
+  @Benchmark
+  public int fullScan()
+    throws IOException
+  {
+    return new IncrementalScanner( new AnnotationIndexBuilder(), true, true, true ).scan( directory );
+  }
+
+  @Benchmark
+  public int rescan()
+    throws IOException
+  {
+    return scanner.scan( directory );
+  }
+
+  /**
+   * Write the class to file with a distinct modification time in the past so
+   * the scanner can rely on the modification time of unchanged files.
+   */
+  private void write( final int file, final int classIndex )
+    throws IOException
+  {
+    final File target = new File( directory, file + ".class" );
+    final FileOutputStream output = new FileOutputStream( target );
+    try
+    {
+      output.write( classes[classIndex] );
+    }
+    finally
+    {
+      output.close();
+    }
+    target.setLastModified( System.currentTimeMillis() - 60000 - next * 1000L );
+  }
+}
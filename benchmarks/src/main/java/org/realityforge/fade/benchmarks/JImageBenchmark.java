@@ -0,0 +1,128 @@
+package org.realityforge.fade.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.realityforge.fade.JImage;
+
+/**
+ * Compare reading the classes of the java.base module of the running JDK
+ * from the memory mapped lib/modules image with inflating them from the
+ * java.base jmod. Each returns the number of bytes read.
+ */
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MILLISECONDS )
+@Warmup( iterations = 5, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+@State( Scope.Thread )
+public class JImageBenchmark
+{
+  private static final String MODULE = "java.base";
+
+  private JImage image;
+  private int[] locations;
+  private JarFile jmod;
+  private JarEntry[] entries;
+  private byte[] buffer = new byte[64 * 1024];
+
+  @Setup
+  public void setup()
+    throws IOException
+  {
+    final File home = new File( System.getProperty( "java.home" ) );
+    image = JImage.map( new File( home, "lib" + File.separator + "modules" ) );
+    final String prefix = "/" + MODULE + "/";
+    final List<Integer> classLocations = new ArrayList<Integer>();
+    for( int i = 0; i < image.getLocationCount(); i++ )
+    {
+      if( image.isClass( i ) && image.getName( i ).startsWith( prefix ) )
+      {
+        classLocations.add( i );
+      }
+    }
+    locations = new int[classLocations.size()];
+    for( int i = 0; i < locations.length; i++ )
+    {
+      locations[i] = classLocations.get( i );
+    }
+
+    jmod = new JarFile( new File( home, "jmods" + File.separator + MODULE + ".jmod" ) );
+    final List<JarEntry> classEntries = new ArrayList<JarEntry>();
+    final Enumeration<JarEntry> enumeration = jmod.entries();
+    while( enumeration.hasMoreElements() )
+    {
+      final JarEntry entry = enumeration.nextElement();
+      if( entry.getName().startsWith( "classes/" ) && entry.getName().endsWith( ".class" ) )
+      {
+        classEntries.add( entry );
+      }
+    }
+    entries = classEntries.toArray( new JarEntry[classEntries.size()] );
+  }
+
+  @TearDown
+  public void tearDown()
+    throws IOException
+  {
+    jmod.close();
+  }
+
+  @Benchmark
+  public long readImage()
+    throws IOException
+  {
+    long total = 0;
+    for( final int location : locations )
+    {
+      final int size = image.getSize( location );
+      if( buffer.length < size )
+      {
+        buffer = new byte[size];
+      }
+      total += image.read( location, buffer );
+    }
+    return total;
+  }
+
+  @Benchmark
+  public long readJmod()
+    throws IOException
+  {
+    long total = 0;
+    for( final JarEntry entry : entries )
+    {
+      final InputStream input = jmod.getInputStream( entry );
+      try
+      {
+        int count;
+        while( -1 != ( count = input.read( buffer ) ) )
+        {
+          total += count;
+        }
+      }
+      finally
+      {
+        input.close();
+      }
+    }
+    return total;
+  }
+}
@@ -0,0 +1,142 @@
+package org.realityforge.fade.benchmarks;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Enumeration;
+import java.util.concurrent.TimeUnit;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.jar.JarOutputStream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.realityforge.fade.ClassFile;
+import org.realityforge.fade.ClassFileParser;
+import org.realityforge.fade.ClassFileParserFactory;
+import org.realityforge.fade.JarScanner;
+
+/**
+ * Compare parsing the corpus written to a jar with a JarScanner against
+ * reading each entry from a JarFile into a new array and parsing it with
+ * ClassFile.parseClassFile on the calling thread.
+ */
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MILLISECONDS )
+@Warmup( iterations = 5, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+@State( Scope.Benchmark )
+public class JarScannerBenchmark
+{
+  @Param( { "1", "4" } )
+  public int threadCount;
+
+  private File jar;
+
+  @Setup( Level.Trial )
+  public void setup()
+    throws IOException
+  {
+    final byte[][] classes = Corpus.getClasses();
+    jar = File.createTempFile( "fade", ".jar" );
+    final JarOutputStream output = new JarOutputStream( new FileOutputStream( jar ) );
+    try
+    {
+      for( int i = 0; i < classes.length; i++ )
+      {
+        output.putNextEntry( new JarEntry( "p" + ( i % 8 ) + "/C" + i + ".class" ) );
+        output.write( classes[i] );
+        output.closeEntry();
+      }
+    }
+    finally
+    {
+      output.close();
+    }
+  }
+
+  @TearDown( Level.Trial )
+  public void tearDown()
+  {
+    jar.delete();
+  }
+
+  @Benchmark
+  public int readEachEntry( final Blackhole blackhole )
+    throws IOException
+  {
+    final ClassFileParser parser = new BlackholeParser( blackhole );
+    int count = 0;
+    final JarFile jarFile = new JarFile( jar );
+    try
+    {
+      final Enumeration<JarEntry> enumeration = jarFile.entries();
+      while( enumeration.hasMoreElements() )
+      {
+        final JarEntry entry = enumeration.nextElement();
+        if( entry.getName().endsWith( ".class" ) )
+        {
+          ClassFile.parseClassFile( readEntry( jarFile, entry ) ).processClass( parser, true, true, true );
+          count++;
+        }
+      }
+    }
+    finally
+    {
+      jarFile.close();
+    }
+    return count;
+  }
+
+  @Benchmark
+  public int jarScanner( final Blackhole blackhole )
+    throws IOException
+  {
+    final ClassFileParserFactory factory = new ClassFileParserFactory()
+    {
+      public ClassFileParser newParser()
+      {
+        return new BlackholeParser( blackhole );
+      }
+    };
+    return new JarScanner( threadCount, false, true, true, true ).scan( jar, factory );
+  }
+
+  private static byte[] readEntry( final JarFile jarFile, final JarEntry entry )
+    throws IOException
+  {
+    final byte[] bytes = new byte[(int)entry.getSize()];
+    final InputStream input = jarFile.getInputStream( entry );
+    try
+    {
+      int count = 0;
+      while( count < bytes.length )
+      {
+        final int read = input.read( bytes, count, bytes.length - count );
+        if( -1 == read )
+        {
+          throw new IOException( "Unexpected end of entry " + entry.getName() );
+        }
+        count += read;
+      }
+    }
+    finally
+    {
+      input.close();
+    }
+    return bytes;
+  }
+}
@@ -0,0 +1,110 @@
+package org.realityforge.fade.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.realityforge.fade.ClassFileFormat;
+import org.realityforge.fade.ClassFileParser;
+import org.realityforge.fade.ClassFileReader;
+import org.realityforge.fade.ConstantPool;
+import org.realityforge.fade.ReferenceIndex;
+import org.realityforge.fade.ReferenceIndexBuilder;
+
+/**
+ * Compare finding the classes of the corpus that reference a class by
+ * decoding every CONSTANT_Class entry against hashing the raw constant pool
+ * entries and against querying a ReferenceIndex built beforehand.
+ */
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+@Warmup( iterations = 5, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+@State( Scope.Thread )
+public class ReferenceIndexBenchmark
+{
+  private static final String TARGET = "java/util/List";
+
+  private final ClassFileReader reader = new ClassFileReader();
+  private final long[] hashes = new long[65536];
+  private byte[][] classes;
+  private ReferenceIndex index;
+
+  @Setup
+  public void setup()
+  {
+    classes = Corpus.getClasses();
+    index = buildIndex();
+  }
+
+  @Benchmark
+  public int decodeClassEntries()
+  {
+    int count = 0;
+    for( final byte[] data : classes )
+    {
+      final ConstantPool constantPool = ConstantPool.parseConstantPool( data );
+      final int constantCount = constantPool.getConstantCount();
+      for( int i = 1; i <= constantCount; i++ )
+      {
+        final byte type = constantPool.getEntryType( i );
+        if( ClassFileFormat.CONSTANT_Class == type && TARGET.equals( constantPool.getClassEntry( i ) ) )
+        {
+          count++;
+          break;
+        }
+        else if( ClassFileFormat.CONSTANT_Long == type || ClassFileFormat.CONSTANT_Double == type )
+        {
+          i++;
+        }
+      }
+    }
+    return count;
+  }
+
+  @Benchmark
+  public int referenceHashes()
+  {
+    final long target = ConstantPool.hashClassReference( TARGET );
+    int count = 0;
+    for( final byte[] data : classes )
+    {
+      final int size = ConstantPool.parseConstantPool( data ).getReferenceHashes( hashes );
+      for( int i = 0; i < size && hashes[i] <= target; i++ )
+      {
+        if( hashes[i] == target )
+        {
+          count++;
+          break;
+        }
+      }
+    }
+    return count;
+  }
+
+  @Benchmark
+  public ReferenceIndex buildIndex()
+  {
+    final ReferenceIndexBuilder builder = new ReferenceIndexBuilder();
+    final ClassFileParser parser = builder.newParser();
+    for( final byte[] data : classes )
+    {
+      reader.read( data ).processClass( parser, false, false, false );
+    }
+    return builder.build();
+  }
+
+  @Benchmark
+  public String[] queryIndex()
+  {
+    return index.getClassesReferencing( TARGET );
+  }
+}
@@ -0,0 +1,83 @@
+package org.realityforge.fade.benchmarks;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.realityforge.fade.ClassFile;
+import org.realityforge.fade.ClassFileStreamReader;
+
+/**
+ * Compare parsing the corpus from a stream holding the classes back to back
+ * by copying each class into an array first with streaming it through a
+ * {@link ClassFileStreamReader}. The streamed parser skips Code attributes.
+ */
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+@Warmup( iterations = 5, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+@State( Scope.Thread )
+public class StreamBenchmark
+{
+  private static final String[] ATTRIBUTE_NAMES = new String[]{"RuntimeVisibleAnnotations", "SourceFile"};
+
+  private final ClassFileStreamReader reader = new ClassFileStreamReader();
+  private byte[] stream;
+  private int[] lengths;
+
+  @Setup
+  public void setup()
+    throws IOException
+  {
+    final byte[][] classes = Corpus.getClasses();
+    final ByteArrayOutputStream output = new ByteArrayOutputStream();
+    lengths = new int[classes.length];
+    for( int i = 0; i < classes.length; i++ )
+    {
+      output.write( classes[i] );
+      lengths[i] = classes[i].length;
+    }
+    stream = output.toByteArray();
+  }
+
+  @Benchmark
+  public void bufferThenParse( final Blackhole blackhole )
+    throws IOException
+  {
+    final DataInputStream input = new DataInputStream( new BufferedInputStream( new ByteArrayInputStream( stream ) ) );
+    final BlackholeParser parser = new BlackholeParser( blackhole, ATTRIBUTE_NAMES );
+    for( final int length : lengths )
+    {
+      final byte[] data = new byte[length];
+      input.readFully( data );
+      ClassFile.parseClassFile( data ).processClass( parser, true, true, true );
+    }
+  }
+
+  @Benchmark
+  public void streamParse( final Blackhole blackhole )
+    throws IOException
+  {
+    final InputStream input = new BufferedInputStream( new ByteArrayInputStream( stream ) );
+    final BlackholeParser parser = new BlackholeParser( blackhole, ATTRIBUTE_NAMES );
+    for( int i = 0; i < lengths.length; i++ )
+    {
+      reader.read( input, parser, true, true, true );
+    }
+  }
+}
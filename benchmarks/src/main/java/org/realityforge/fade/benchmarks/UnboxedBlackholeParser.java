@@ -0,0 +1,102 @@
+package org.realityforge.fade.benchmarks;
+
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * BlackholeParser that receives annotation values through the primitive
+ * callbacks and streams array elements, so no annotation values are boxed
+ * and no arrays are allocated.
+ */
+public class UnboxedBlackholeParser
+  extends BlackholeParser
+{
+  private final Blackhole blackhole;
+
+  /**
+   * Create a parser that only handles attributes with specified names.
+   *
+   * @param blackhole      the blackhole that consumes parsed values.
+   * @param attributeNames the names of the attributes to handle.
+   */
+  public UnboxedBlackholeParser( final Blackhole blackhole, final String[] attributeNames )
+  {
+    super( blackhole, attributeNames );
+    this.blackhole = blackhole;
+  }
+
+  @Override
+  protected boolean streamAnnotationArrays()
+  {
+    return true;
+  }
+
+  @Override
+  protected void handleIntValue( final String name, final int value )
+  {
+    blackhole.consume( name );
+    blackhole.consume( value );
+  }
+
+  @Override
+  protected void handleLongValue( final String name, final long value )
+  {
+    blackhole.consume( name );
+    blackhole.consume( value );
+  }
+
+  @Override
+  protected void handleFloatValue( final String name, final float value )
+  {
+    blackhole.consume( name );
+    blackhole.consume( value );
+  }
+
+  @Override
+  protected void handleDoubleValue( final String name, final double value )
+  {
+    blackhole.consume( name );
+    blackhole.consume( value );
+  }
+
+  @Override
+  protected void handleByteValue( final String name, final byte value )
+  {
+    blackhole.consume( name );
+    blackhole.consume( value );
+  }
+
+  @Override
+  protected void handleShortValue( final String name, final short value )
+  {
+    blackhole.consume( name );
+    blackhole.consume( value );
+  }
+
+  @Override
+  protected void handleCharValue( final String name, final char value )
+  {
+    blackhole.consume( name );
+    blackhole.consume( value );
+  }
+
+  @Override
+  protected void handleBooleanValue( final String name, final boolean value )
+  {
+    blackhole.consume( name );
+    blackhole.consume( value );
+  }
+
+  @Override
+  protected void handleStringValue( final String name, final String value )
+  {
+    blackhole.consume( name );
+    blackhole.consume( value );
+  }
+
+  @Override
+  protected void handleClassValue( final String name, final String descriptor )
+  {
+    blackhole.consume( name );
+    blackhole.consume( descriptor );
+  }
+}
@@ -0,0 +1,64 @@
+package org.realityforge.fade.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.realityforge.fade.ClassFileFormat;
+import org.realityforge.fade.ConstantPool;
+import org.realityforge.fade.SymbolTable;
+
+/**
+ * Measure the cost of decoding every CONSTANT_Utf8 entry of a class.
+ * Each invocation parses a fresh constant pool so no entry is cached.
+ */
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.NANOSECONDS )
+@Warmup( iterations = 5, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+@State( Scope.Thread )
+public class Utf8Benchmark
+{
+  private SymbolTable symbolTable;
+
+  @Setup
+  public void setup()
+  {
+    symbolTable = new SymbolTable( 64 * 1024 );
+  }
+
+  @Benchmark
+  public void decode( final CorpusState corpus, final Blackhole blackhole )
+  {
+    final byte[] data = corpus.next();
+    decodeAll( ConstantPool.parseConstantPool( data ), blackhole );
+  }
+
+  @Benchmark
+  public void decodeWithSymbolTable( final CorpusState corpus, final Blackhole blackhole )
+  {
+    final byte[] data = corpus.next();
+    decodeAll( ConstantPool.parseConstantPool( data, 0, data.length, symbolTable ), blackhole );
+  }
+
+  private static void decodeAll( final ConstantPool constantPool, final Blackhole blackhole )
+  {
+    final int count = constantPool.getConstantCount();
+    for( int i = 1; i <= count; i++ )
+    {
+      if( ClassFileFormat.CONSTANT_Utf8 == constantPool.getEntryType( i ) )
+      {
+        blackhole.consume( constantPool.getUtfEntry( i ) );
+      }
+    }
+  }
+}
@@ -0,0 +1,447 @@
+package org.realityforge.fade;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Immutable index of the runtime visible annotations declared on classes,
+ * fields and methods, keyed by annotation type. Indexes are created by an
+ * {@link AnnotationIndexBuilder} or read from a file previously written by
+ * {@link #write(OutputStream)}, so that applications can look up annotated
+ * classes at startup without scanning the classpath.
+ *
+ * <p>Annotations of each type are ordered by target. Queries do not copy.</p>
+ */
+public final class AnnotationIndex
+{
+  /** Magic number at start of a serialized index. */
+  private static final int MAGIC = 0xFADE1D00;
+
+  /** Version of the serialized format. */
+  private static final int VERSION = 1;
+
+  private final Map<String, List<AnnotationInstance>> annotations;
+  private final Map<String, List<String>> annotatedClasses;
+  private final Set<String> types;
+  private final int annotationCount;
+
+  /**
+   * Create an index of the specified annotations.
+   *
+   * @param instances the annotations.
+   */
+  AnnotationIndex( final List<AnnotationInstance> instances )
+  {
+    final HashMap<String, ArrayList<AnnotationInstance>> byType = new HashMap<String, ArrayList<AnnotationInstance>>();
+    for( final AnnotationInstance instance : instances )
+    {
+      ArrayList<AnnotationInstance> list = byType.get( instance.getType() );
+      if( null == list )
+      {
+        list = new ArrayList<AnnotationInstance>();
+        byType.put( instance.getType(), list );
+      }
+      list.add( instance );
+    }
+    final String[] typeNames = byType.keySet().toArray( new String[byType.size()] );
+    Arrays.sort( typeNames );
+    annotations = new HashMap<String, List<AnnotationInstance>>( typeNames.length * 2 );
+    annotatedClasses = new HashMap<String, List<String>>( typeNames.length * 2 );
+    for( final String type : typeNames )
+    {
+      final AnnotationInstance[] sorted = byType.get( type ).toArray( new AnnotationInstance[0] );
+      Arrays.sort( sorted, TargetComparator.INSTANCE );
+      annotations.put( type, Collections.unmodifiableList( Arrays.asList( sorted ) ) );
+      final ArrayList<String> classNames = new ArrayList<String>();
+      for( final AnnotationInstance instance : sorted )
+      {
+        final AnnotationTarget target = instance.getTarget();
+        if( AnnotationTarget.CLASS == target.getKind() )
+        {
+          classNames.add( target.getClassName() );
+        }
+      }
+      annotatedClasses.put( type, Collections.unmodifiableList( classNames ) );
+    }
+    types = Collections.unmodifiableSet( new LinkedHashSet<String>( Arrays.asList( typeNames ) ) );
+    annotationCount = instances.size();
+  }
+
+  /**
+   * Return the descriptors of the annotation types in index.
+   *
+   * @return the annotation types in sorted order.
+   */
+  public Set<String> getAnnotationTypes()
+  {
+    return types;
+  }
+
+  /**
+   * Return the total number of annotations in index.
+   *
+   * @return the number of annotations.
+   */
+  public int getAnnotationCount()
+  {
+    return annotationCount;
+  }
+
+  /**
+   * Return the annotations of specified type.
+   *
+   * @param type the descriptor of the annotation type. i.e. "Ljava/lang/Deprecated;"
+   * @return the annotations ordered by target.
+   */
+  public List<AnnotationInstance> getAnnotations( final String type )
+  {
+    final List<AnnotationInstance> list = annotations.get( type );
+    return null == list ? Collections.<AnnotationInstance>emptyList() : list;
+  }
+
+  /**
+   * Return the names of the classes annotated with specified type.
+   *
+   * @param type the descriptor of the annotation type. i.e. "Ljava/lang/Deprecated;"
+   * @return the class names in internal format in sorted order.
+   */
+  public List<String> getAnnotatedClasses( final String type )
+  {
+    final List<String> list = annotatedClasses.get( type );
+    return null == list ? Collections.<String>emptyList() : list;
+  }
+
+  /**
+   * Write the index in a compact binary format.
+   * Strings are written once and referenced by index.
+   *
+   * @param output the stream to write to. The stream is not closed.
+   * @throws IOException if an error occurs writing to stream.
+   */
+  public void write( final OutputStream output )
+    throws IOException
+  {
+    final StringTable strings = new StringTable();
+    final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    final DataOutputStream body = new DataOutputStream( bytes );
+    writeVarInt( body, annotationCount );
+    for( final String type : types )
+    {
+      for( final AnnotationInstance instance : annotations.get( type ) )
+      {
+        final AnnotationTarget target = instance.getTarget();
+        body.writeByte( target.getKind() );
+        writeVarInt( body, strings.indexOf( target.getClassName() ) );
+        if( AnnotationTarget.CLASS != target.getKind() )
+        {
+          writeVarInt( body, strings.indexOf( target.getName() ) );
+          writeVarInt( body, strings.indexOf( target.getDescriptor() ) );
+        }
+        writeAnnotation( body, strings, instance );
+      }
+    }
+    body.flush();
+
+    final DataOutputStream out = new DataOutputStream( new BufferedOutputStream( output ) );
+    out.writeInt( MAGIC );
+    out.writeShort( VERSION );
+    writeVarInt( out, strings.list.size() );
+    for( final String string : strings.list )
+    {
+      out.writeUTF( string );
+    }
+    bytes.writeTo( out );
+    out.flush();
+  }
+
+  /**
+   * Read an index written by {@link #write(OutputStream)}.
+   *
+   * @param input the stream to read from. The stream is not buffered or closed.
+   * @return the index.
+   * @throws IOException if an error occurs reading from stream or the stream does not contain an index.
+   */
+  public static AnnotationIndex read( final InputStream input )
+    throws IOException
+  {
+    final DataInputStream in = new DataInputStream( input );
+    final int magic = in.readInt();
+    if( MAGIC != magic )
+    {
+      throw new IOException( "Bad annotation index magic number " + Integer.toHexString( magic ) );
+    }
+    final int version = in.readUnsignedShort();
+    if( VERSION != version )
+    {
+      throw new IOException( "Unsupported annotation index version " + version );
+    }
+    final String[] strings = new String[readVarInt( in )];
+    for( int i = 0; i < strings.length; i++ )
+    {
+      strings[i] = in.readUTF();
+    }
+    final int count = readVarInt( in );
+    final ArrayList<AnnotationInstance> instances = new ArrayList<AnnotationInstance>( count );
+    for( int i = 0; i < count; i++ )
+    {
+      final int kind = in.readUnsignedByte();
+      final String className = readString( in, strings );
+      final AnnotationTarget target;
+      if( AnnotationTarget.CLASS == kind )
+      {
+        target = new AnnotationTarget( kind, className, null, null );
+      }
+      else if( AnnotationTarget.FIELD == kind || AnnotationTarget.METHOD == kind )
+      {
+        target = new AnnotationTarget( kind, className, readString( in, strings ), readString( in, strings ) );
+      }
+      else
+      {
+        throw new IOException( "Bad annotation target kind " + kind );
+      }
+      instances.add( readAnnotation( in, strings, target ) );
+    }
+    return new AnnotationIndex( instances );
+  }
+
+  private static void writeAnnotation( final DataOutputStream out,
+                                       final StringTable strings,
+                                       final AnnotationInstance instance )
+    throws IOException
+  {
+    writeVarInt( out, strings.indexOf( instance.getType() ) );
+    final int count = instance.getValueCount();
+    writeVarInt( out, count );
+    for( int i = 0; i < count; i++ )
+    {
+      final AnnotationValue value = instance.getValue( i );
+      writeVarInt( out, strings.indexOf( value.getName() ) );
+      writeValue( out, strings, value );
+    }
+  }
+
+  private static void writeValue( final DataOutputStream out,
+                                  final StringTable strings,
+                                  final AnnotationValue value )
+    throws IOException
+  {
+    final byte tag = value.getTag();
+    out.writeByte( tag );
+    switch( tag )
+    {
+      case ClassFileFormat.ANN_TAG_INTEGER:
+        out.writeInt( (Integer)value.getValue() );
+        break;
+      case ClassFileFormat.ANN_TAG_LONG:
+        out.writeLong( (Long)value.getValue() );
+        break;
+      case ClassFileFormat.ANN_TAG_FLOAT:
+        out.writeFloat( (Float)value.getValue() );
+        break;
+      case ClassFileFormat.ANN_TAG_DOUBLE:
+        out.writeDouble( (Double)value.getValue() );
+        break;
+      case ClassFileFormat.ANN_TAG_BYTE:
+        out.writeByte( (Byte)value.getValue() );
+        break;
+      case ClassFileFormat.ANN_TAG_BOOLEAN:
+        out.writeBoolean( (Boolean)value.getValue() );
+        break;
+      case ClassFileFormat.ANN_TAG_SHORT:
+        out.writeShort( (Short)value.getValue() );
+        break;
+      case ClassFileFormat.ANN_TAG_CHAR:
+        out.writeChar( (Character)value.getValue() );
+        break;
+      case ClassFileFormat.ANN_TAG_UTF8:
+      case ClassFileFormat.ANN_TAG_CLASS:
+        writeVarInt( out, strings.indexOf( (String)value.getValue() ) );
+        break;
+      case ClassFileFormat.ANN_TAG_ENUM:
+        writeVarInt( out, strings.indexOf( value.getEnumType() ) );
+        writeVarInt( out, strings.indexOf( (String)value.getValue() ) );
+        break;
+      case ClassFileFormat.ANN_TAG_ANNOTATION:
+        writeAnnotation( out, strings, (AnnotationInstance)value.getValue() );
+        break;
+      default:
+        final int count = value.getElementCount();
+        writeVarInt( out, count );
+        for( int i = 0; i < count; i++ )
+        {
+          writeValue( out, strings, value.getElement( i ) );
+        }
+        break;
+    }
+  }
+
+  private static AnnotationInstance readAnnotation( final DataInputStream in,
+                                                    final String[] strings,
+                                                    final AnnotationTarget target )
+    throws IOException
+  {
+    final String type = readString( in, strings );
+    final AnnotationValue[] values = new AnnotationValue[readVarInt( in )];
+    for( int i = 0; i < values.length; i++ )
+    {
+      values[i] = readValue( in, strings, readString( in, strings ) );
+    }
+    return new AnnotationInstance( type, target, values );
+  }
+
+  private static AnnotationValue readValue( final DataInputStream in, final String[] strings, final String name )
+    throws IOException
+  {
+    final byte tag = in.readByte();
+    final Object value;
+    String enumType = null;
+    switch( tag )
+    {
+      case ClassFileFormat.ANN_TAG_INTEGER:
+        value = in.readInt();
+        break;
+      case ClassFileFormat.ANN_TAG_LONG:
+        value = in.readLong();
+        break;
+      case ClassFileFormat.ANN_TAG_FLOAT:
+        value = in.readFloat();
+        break;
+      case ClassFileFormat.ANN_TAG_DOUBLE:
+        value = in.readDouble();
+        break;
+      case ClassFileFormat.ANN_TAG_BYTE:
+        value = in.readByte();
+        break;
+      case ClassFileFormat.ANN_TAG_BOOLEAN:
+        value = in.readBoolean();
+        break;
+      case ClassFileFormat.ANN_TAG_SHORT:
+        value = in.readShort();
+        break;
+      case ClassFileFormat.ANN_TAG_CHAR:
+        value = in.readChar();
+        break;
+      case ClassFileFormat.ANN_TAG_UTF8:
+      case ClassFileFormat.ANN_TAG_CLASS:
+        value = readString( in, strings );
+        break;
+      case ClassFileFormat.ANN_TAG_ENUM:
+        enumType = readString( in, strings );
+        value = readString( in, strings );
+        break;
+      case ClassFileFormat.ANN_TAG_ANNOTATION:
+        value = readAnnotation( in, strings, null );
+        break;
+      case ClassFileFormat.ANN_TAG_ARRAY:
+      {
+        final AnnotationValue[] elements = new AnnotationValue[readVarInt( in )];
+        for( int i = 0; i < elements.length; i++ )
+        {
+          elements[i] = readValue( in, strings, null );
+        }
+        value = elements;
+        break;
+      }
+      default:
+        throw new IOException( "Bad annotation value tag " + tag );
+    }
+    return new AnnotationValue( name, tag, value, enumType );
+  }
+
+  /**
+   * Read a reference to a string in the string table.
+   * Index 0 represents null and index N the (N-1)th string.
+   */
+  private static String readString( final DataInputStream in, final String[] strings )
+    throws IOException
+  {
+    final int index = readVarInt( in );
+    if( 0 == index )
+    {
+      return null;
+    }
+    else if( index > strings.length )
+    {
+      throw new IOException( "Bad string index " + index );
+    }
+    return strings[index - 1];
+  }
+
+  /** Write a non-negative int using 7 bits per byte. */
+  private static void writeVarInt( final DataOutputStream out, final int value )
+    throws IOException
+  {
+    int remaining = value;
+    while( remaining > 0x7F )
+    {
+      out.writeByte( ( remaining & 0x7F ) | 0x80 );
+      remaining >>>= 7;
+    }
+    out.writeByte( remaining );
+  }
+
+  private static int readVarInt( final DataInputStream in )
+    throws IOException
+  {
+    int value = 0;
+    for( int shift = 0; shift < 32; shift += 7 )
+    {
+      final int b = in.readUnsignedByte();
+      value |= ( b & 0x7F ) << shift;
+      if( 0 == ( b & 0x80 ) )
+      {
+        return value;
+      }
+    }
+    throw new IOException( "Malformed variable length int" );
+  }
+
+  /** Strings referenced by a serialized index in order of first use. */
+  private static final class StringTable
+  {
+    final ArrayList<String> list = new ArrayList<String>();
+    private final HashMap<String, Integer> indexes = new HashMap<String, Integer>();
+
+    int indexOf( final String string )
+    {
+      if( null == string )
+      {
+        return 0;
+      }
+      final Integer index = indexes.get( string );
+      if( null != index )
+      {
+        return index;
+      }
+      list.add( string );
+      indexes.put( string, list.size() );
+      return list.size();
+    }
+  }
+
+  /** Orders annotations by target. */
+  private static final class TargetComparator
+    implements Comparator<AnnotationInstance>
+  {
+    static final TargetComparator INSTANCE = new TargetComparator();
+
+    public int compare( final AnnotationInstance a, final AnnotationInstance b )
+    {
+      return a.getTarget().compareTo( b.getTarget() );
+    }
+  }
+}
@@ -0,0 +1,275 @@
+package org.realityforge.fade;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Builder that collects the runtime visible annotations of the classes
+ * processed by its parsers into an {@link AnnotationIndex}. The builder is a
+ * {@link ClassFileParserFactory} so it can be passed to a {@link JarScanner}
+ * and each worker collects annotations into its own parser without
+ * contention. The scanner must parse the field, method and class sections.
+ *
+ * <pre>
+ * final AnnotationIndexBuilder builder = new AnnotationIndexBuilder();
+ * builder.scan( jar1, 4 );
+ * builder.scan( jar2, 4 );
+ * final AnnotationIndex index = builder.build();
+ * </pre>
+ */
+public final class AnnotationIndexBuilder
+  extends IndexBuilder<AnnotationInstance>
+{
+  private static final String[] ATTRIBUTE_NAMES = new String[]{ClassFileFormat.ATTR_RuntimeVisibleAnnotations};
+
+  private final String[] annotationTypes;
+
+  /** Create a builder that indexes annotations of every type. */
+  public AnnotationIndexBuilder()
+  {
+    this( null );
+  }
+
+  /**
+   * Create a builder that only indexes annotations of specified types.
+   * Annotations of other types are skipped without being decoded.
+   *
+   * @param annotationTypes the descriptors of the annotation types to index. i.e. "Ljava/lang/Deprecated;"
+   */
+  public AnnotationIndexBuilder( final String[] annotationTypes )
+  {
+    this.annotationTypes = null == annotationTypes ? null : annotationTypes.clone();
+  }
+
+  /**
+   * Scan the classes in specified jar on several threads.
+   *
+   * @param jar         the jar file.
+   * @param threadCount the number of worker threads.
+   * @throws IOException if an error occurs reading the jar.
+   */
+  public void scan( final File jar, final int threadCount )
+    throws IOException
+  {
+    new JarScanner( threadCount, false, true, true, true ).scan( jar, this );
+  }
+
+  EntryCollector<AnnotationInstance> newCollector()
+  {
+    return new Collector( annotationTypes );
+  }
+
+  /**
+   * Create an index of the annotations collected so far.
+   * Must not be invoked while parsers created by builder are in use.
+   *
+   * @return the index.
+   */
+  public AnnotationIndex build()
+  {
+    return new AnnotationIndex( getEntries() );
+  }
+
+  /** Parser that records the annotations of each class it processes. */
+  private static final class Collector
+    extends EntryCollector<AnnotationInstance>
+  {
+    /** The annotations and arrays being built, innermost last. */
+    private final ArrayList<Frame> frames = new ArrayList<Frame>();
+
+    private String className;
+    private String memberName;
+    private String memberDescriptor;
+    private AnnotationTarget target;
+
+    /** The name of the element value whose nested annotation is about to start. */
+    private String nestedName;
+
+    Collector( final String[] annotationTypes )
+    {
+      super( ATTRIBUTE_NAMES, annotationTypes );
+    }
+
+    String getClassName( final AnnotationInstance instance )
+    {
+      return instance.getTarget().getClassName();
+    }
+
+    protected void startClass( final ClassFile classFile )
+    {
+      className = classFile.getClassName();
+    }
+
+    protected void handleField( final String name, final String descriptor, final int accessFlags )
+    {
+      memberName = name;
+      memberDescriptor = descriptor;
+    }
+
+    protected void handleMethod( final String name, final String descriptor, final int accessFlags )
+    {
+      memberName = name;
+      memberDescriptor = descriptor;
+    }
+
+    protected void handleFieldAttribute( final String name,
+                                         final byte[] data,
+                                         final int offset,
+                                         final long length,
+                                         final ConstantPool constantPool )
+    {
+      target = new AnnotationTarget( AnnotationTarget.FIELD, className, memberName, memberDescriptor );
+      parseAnnotations( name, data, offset, constantPool );
+    }
+
+    protected void handleMethodAttribute( final String name,
+                                          final byte[] data,
+                                          final int offset,
+                                          final long length,
+                                          final ConstantPool constantPool )
+    {
+      target = new AnnotationTarget( AnnotationTarget.METHOD, className, memberName, memberDescriptor );
+      parseAnnotations( name, data, offset, constantPool );
+    }
+
+    protected void handleClassAttribute( final String name,
+                                         final byte[] data,
+                                         final int offset,
+                                         final long length,
+                                         final ConstantPool constantPool )
+    {
+      target = new AnnotationTarget( AnnotationTarget.CLASS, className, null, null );
+      parseAnnotations( name, data, offset, constantPool );
+    }
+
+    protected void handleAnnotationGroup( final String type )
+    {
+    }
+
+    protected void startAnnotation( final String type )
+    {
+      final String name = frames.isEmpty() ? null : nestedName;
+      frames.add( new Frame( name, type ) );
+    }
+
+    protected void endAnnotation()
+    {
+      final Frame frame = frames.remove( frames.size() - 1 );
+      if( frames.isEmpty() )
+      {
+        entries.add( new AnnotationInstance( frame.type, target, frame.toArray() ) );
+      }
+      else
+      {
+        final AnnotationInstance nested = new AnnotationInstance( frame.type, null, frame.toArray() );
+        add( frame.name, ClassFileFormat.ANN_TAG_ANNOTATION, nested );
+      }
+    }
+
+    protected void startAnnotationValueAnnotation( final String name )
+    {
+      nestedName = name;
+    }
+
+    protected void endAnnotationValueAnnotation()
+    {
+    }
+
+    protected boolean streamAnnotationArrays()
+    {
+      return true;
+    }
+
+    protected void startAnnotationValueArray( final String name, final int length )
+    {
+      frames.add( new Frame( name, null ) );
+    }
+
+    protected void endAnnotationValueArray()
+    {
+      final Frame frame = frames.remove( frames.size() - 1 );
+      add( frame.name, ClassFileFormat.ANN_TAG_ARRAY, frame.toArray() );
+    }
+
+    protected void handleIntValue( final String name, final int value )
+    {
+      add( name, ClassFileFormat.ANN_TAG_INTEGER, value );
+    }
+
+    protected void handleLongValue( final String name, final long value )
+    {
+      add( name, ClassFileFormat.ANN_TAG_LONG, value );
+    }
+
+    protected void handleFloatValue( final String name, final float value )
+    {
+      add( name, ClassFileFormat.ANN_TAG_FLOAT, value );
+    }
+
+    protected void handleDoubleValue( final String name, final double value )
+    {
+      add( name, ClassFileFormat.ANN_TAG_DOUBLE, value );
+    }
+
+    protected void handleByteValue( final String name, final byte value )
+    {
+      add( name, ClassFileFormat.ANN_TAG_BYTE, value );
+    }
+
+    protected void handleShortValue( final String name, final short value )
+    {
+      add( name, ClassFileFormat.ANN_TAG_SHORT, value );
+    }
+
+    protected void handleCharValue( final String name, final char value )
+    {
+      add( name, ClassFileFormat.ANN_TAG_CHAR, value );
+    }
+
+    protected void handleBooleanValue( final String name, final boolean value )
+    {
+      add( name, ClassFileFormat.ANN_TAG_BOOLEAN, value ? Boolean.TRUE : Boolean.FALSE );
+    }
+
+    protected void handleStringValue( final String name, final String value )
+    {
+      add( name, ClassFileFormat.ANN_TAG_UTF8, value );
+    }
+
+    protected void handleClassValue( final String name, final String descriptor )
+    {
+      add( name, ClassFileFormat.ANN_TAG_CLASS, descriptor );
+    }
+
+    protected void handleAnnotationEnumValue( final String name, final String key, final String value )
+    {
+      frames.get( frames.size() - 1 ).values.add( new AnnotationValue( name, ClassFileFormat.ANN_TAG_ENUM, value, key ) );
+    }
+
+    private void add( final String name, final byte tag, final Object value )
+    {
+      frames.get( frames.size() - 1 ).values.add( new AnnotationValue( name, tag, value, null ) );
+    }
+  }
+
+  /** An annotation or array whose values are being collected. */
+  private static final class Frame
+  {
+    final String name;
+    final String type;
+    final List<AnnotationValue> values = new ArrayList<AnnotationValue>();
+
+    Frame( final String name, final String type )
+    {
+      this.name = name;
+      this.type = type;
+    }
+
+    AnnotationValue[] toArray()
+    {
+      return values.toArray( new AnnotationValue[values.size()] );
+    }
+  }
+}
@@ -0,0 +1,99 @@
+package org.realityforge.fade;
+
+/**
+ * An annotation recorded by an {@link AnnotationIndex}, with its element
+ * values in the order they appear in the class file. Default values
+ * declared by the annotation type are not included.
+ */
+public final class AnnotationInstance
+{
+  private final String type;
+  private final AnnotationTarget target;
+  private final AnnotationValue[] values;
+
+  AnnotationInstance( final String type, final AnnotationTarget target, final AnnotationValue[] values )
+  {
+    this.type = type;
+    this.target = target;
+    this.values = values;
+  }
+
+  /**
+   * Return the descriptor of the annotation type. i.e. "Ljava/lang/Deprecated;"
+   *
+   * @return the descriptor of the annotation type.
+   */
+  public String getType()
+  {
+    return type;
+  }
+
+  /**
+   * Return the target the annotation is declared on.
+   *
+   * @return the target or null if the annotation is nested in an element value.
+   */
+  public AnnotationTarget getTarget()
+  {
+    return target;
+  }
+
+  /**
+   * Return the number of element values.
+   *
+   * @return the number of element values.
+   */
+  public int getValueCount()
+  {
+    return values.length;
+  }
+
+  /**
+   * Return the element value at specified index.
+   *
+   * @param index the index of the value.
+   * @return the value.
+   */
+  public AnnotationValue getValue( final int index )
+  {
+    return values[index];
+  }
+
+  /**
+   * Return the element value with specified name.
+   *
+   * @param name the name of the element.
+   * @return the value or null if the element is not present.
+   */
+  public AnnotationValue getValue( final String name )
+  {
+    for( int i = 0; i < values.length; i++ )
+    {
+      if( name.equals( values[i].getName() ) )
+      {
+        return values[i];
+      }
+    }
+    return null;
+  }
+
+  public String toString()
+  {
+    final StringBuilder sb = new StringBuilder();
+    sb.append( '@' ).append( type ).append( '(' );
+    for( int i = 0; i < values.length; i++ )
+    {
+      if( 0 != i )
+      {
+        sb.append( ',' );
+      }
+      sb.append( values[i] );
+    }
+    sb.append( ')' );
+    if( null != target )
+    {
+      sb.append( " on " ).append( target );
+    }
+    return sb.toString();
+  }
+}
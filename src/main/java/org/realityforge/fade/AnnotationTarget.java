@@ -0,0 +1,141 @@
+package org.realityforge.fade;
+
+/**
+ * The class, field or method that an indexed annotation is declared on.
+ * Names and descriptors are in internal format.
+ */
+public final class AnnotationTarget
+  implements Comparable<AnnotationTarget>
+{
+  /** Kind of target for an annotation declared on a class. */
+  public static final int CLASS = 0;
+  /** Kind of target for an annotation declared on a field. */
+  public static final int FIELD = 1;
+  /** Kind of target for an annotation declared on a method. */
+  public static final int METHOD = 2;
+
+  private final int kind;
+  private final String className;
+  private final String name;
+  private final String descriptor;
+
+  AnnotationTarget( final int kind,
+                    final String className,
+                    final String name,
+                    final String descriptor )
+  {
+    if( kind < CLASS || kind > METHOD )
+    {
+      throw new IllegalArgumentException( "Unknown target kind " + kind );
+    }
+    this.kind = kind;
+    this.className = className;
+    this.name = name;
+    this.descriptor = descriptor;
+  }
+
+  /**
+   * Return the kind of target.
+   *
+   * @return one of CLASS, FIELD or METHOD.
+   */
+  public int getKind()
+  {
+    return kind;
+  }
+
+  /**
+   * Return the name of the class that declares the target.
+   *
+   * @return the name of the class.
+   */
+  public String getClassName()
+  {
+    return className;
+  }
+
+  /**
+   * Return the name of the field or method.
+   *
+   * @return the name of the member or null if the target is a class.
+   */
+  public String getName()
+  {
+    return name;
+  }
+
+  /**
+   * Return the descriptor of the field or method.
+   *
+   * @return the descriptor of the member or null if the target is a class.
+   */
+  public String getDescriptor()
+  {
+    return descriptor;
+  }
+
+  public int compareTo( final AnnotationTarget other )
+  {
+    int result = className.compareTo( other.className );
+    if( 0 == result )
+    {
+      result = kind - other.kind;
+    }
+    if( 0 == result && CLASS != kind )
+    {
+      result = name.compareTo( other.name );
+      if( 0 == result )
+      {
+        result = descriptor.compareTo( other.descriptor );
+      }
+    }
+    return result;
+  }
+
+  public boolean equals( final Object object )
+  {
+    if( this == object )
+    {
+      return true;
+    }
+    else if( !( object instanceof AnnotationTarget ) )
+    {
+      return false;
+    }
+    final AnnotationTarget other = (AnnotationTarget)object;
+    return kind == other.kind &&
+           className.equals( other.className ) &&
+           ( null == name ? null == other.name : name.equals( other.name ) ) &&
+           ( null == descriptor ? null == other.descriptor : descriptor.equals( other.descriptor ) );
+  }
+
+  public int hashCode()
+  {
+    int hash = className.hashCode() * 31 + kind;
+    if( null != name )
+    {
+      hash = hash * 31 + name.hashCode();
+    }
+    if( null != descriptor )
+    {
+      hash = hash * 31 + descriptor.hashCode();
+    }
+    return hash;
+  }
+
+  public String toString()
+  {
+    if( CLASS == kind )
+    {
+      return className;
+    }
+    else if( FIELD == kind )
+    {
+      return className + "." + name + ":" + descriptor;
+    }
+    else
+    {
+      return className + "." + name + descriptor;
+    }
+  }
+}
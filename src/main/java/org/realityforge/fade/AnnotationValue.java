@@ -0,0 +1,136 @@
+package org.realityforge.fade;
+
+/**
+ * An element value of an indexed annotation. The tag is one of the
+ * ClassFileFormat.ANN_TAG_* constants and determines the type of value.
+ *
+ * <ul>
+ * <li>Primitive tags have the boxed value, i.e. an Integer for ANN_TAG_INTEGER.</li>
+ * <li>ANN_TAG_UTF8 has the String value.</li>
+ * <li>ANN_TAG_CLASS has the return descriptor of the class. i.e. "Ljava/lang/String;"</li>
+ * <li>ANN_TAG_ENUM has the name of the enum constant and {@link #getEnumType()} returns the enum descriptor.</li>
+ * <li>ANN_TAG_ANNOTATION has an {@link AnnotationInstance} without a target.</li>
+ * <li>ANN_TAG_ARRAY has an AnnotationValue[] of unnamed elements.</li>
+ * </ul>
+ */
+public final class AnnotationValue
+{
+  private final String name;
+  private final byte tag;
+  private final Object value;
+  private final String enumType;
+
+  AnnotationValue( final String name, final byte tag, final Object value, final String enumType )
+  {
+    this.name = name;
+    this.tag = tag;
+    this.value = value;
+    this.enumType = enumType;
+  }
+
+  /**
+   * Return the name of the element.
+   *
+   * @return the name of the element or null if the value is an element of an array.
+   */
+  public String getName()
+  {
+    return name;
+  }
+
+  /**
+   * Return the tag identifying the type of value.
+   *
+   * @return one of the ClassFileFormat.ANN_TAG_* constants.
+   */
+  public byte getTag()
+  {
+    return tag;
+  }
+
+  /**
+   * Return the value. Arrays are copied.
+   *
+   * @return the value.
+   */
+  public Object getValue()
+  {
+    if( ClassFileFormat.ANN_TAG_ARRAY == tag )
+    {
+      return ( (AnnotationValue[])value ).clone();
+    }
+    return value;
+  }
+
+  /**
+   * Return the descriptor of the enum type of an enum value.
+   *
+   * @return the descriptor of the enum type or null if not an enum value.
+   */
+  public String getEnumType()
+  {
+    return enumType;
+  }
+
+  /**
+   * Return the number of elements of an array value.
+   *
+   * @return the number of elements.
+   */
+  public int getElementCount()
+  {
+    return getElements().length;
+  }
+
+  /**
+   * Return the specified element of an array value.
+   *
+   * @param index the index of the element.
+   * @return the element.
+   */
+  public AnnotationValue getElement( final int index )
+  {
+    return getElements()[index];
+  }
+
+  private AnnotationValue[] getElements()
+  {
+    if( ClassFileFormat.ANN_TAG_ARRAY != tag )
+    {
+      throw new IllegalStateException( "Value of element " + name + " is not an array" );
+    }
+    return (AnnotationValue[])value;
+  }
+
+  public String toString()
+  {
+    final StringBuilder sb = new StringBuilder();
+    if( null != name )
+    {
+      sb.append( name ).append( '=' );
+    }
+    if( ClassFileFormat.ANN_TAG_ARRAY == tag )
+    {
+      final AnnotationValue[] elements = (AnnotationValue[])value;
+      sb.append( '{' );
+      for( int i = 0; i < elements.length; i++ )
+      {
+        if( 0 != i )
+        {
+          sb.append( ',' );
+        }
+        sb.append( elements[i] );
+      }
+      sb.append( '}' );
+    }
+    else if( ClassFileFormat.ANN_TAG_ENUM == tag )
+    {
+      sb.append( enumType ).append( '.' ).append( value );
+    }
+    else
+    {
+      sb.append( value );
+    }
+    return sb.toString();
+  }
+}
@@ -0,0 +1,355 @@
+package org.realityforge.fade;
+
+/**
+ * Immutable graph of the calls made by methods, created by a
+ * {@link CallGraphBuilder}. Classes and methods are identified by int ids and
+ * calls are stored in primitive adjacency arrays.
+ *
+ * <p>Classes are sorted by name and the methods of each class are sorted by
+ * name and descriptor, so the methods of a class have consecutive ids and
+ * lookups are binary searches. Methods that are referenced but were not
+ * declared by a scanned class, such as methods of the JDK, are included so
+ * every call has a target. Calls are recorded against the method named by
+ * the invoke instruction; virtual dispatch is not resolved. invokedynamic
+ * call sites are not recorded as their targets are only chosen when their
+ * bootstrap methods run.</p>
+ */
+public final class CallGraph
+{
+  private final String[] classNames;
+
+  /** Methods of class id are the ids in [methodStart[id], methodStart[id + 1]). */
+  private final int[] methodStart;
+  private final String[] methodNames;
+  private final String[] methodDescriptors;
+  private final boolean[] declared;
+
+  /** Callees of method id are callees[calleeStart[id], calleeStart[id + 1]), with the opcode of each call. */
+  private final int[] calleeStart;
+  private final int[] callees;
+  private final byte[] opcodes;
+
+  /** Callers of method id are callers[callerStart[id], callerStart[id + 1]). */
+  private final int[] callerStart;
+  private final int[] callers;
+
+  /**
+   * Create a graph.
+   *
+   * @param classNames        the names of the classes in sorted order.
+   * @param methodStart       the id of the first method of each class, with a final entry for the method count.
+   * @param methodNames       the name of each method.
+   * @param methodDescriptors the descriptor of each method.
+   * @param declared          true for each method declared by a scanned class.
+   * @param calleeStart       the start of the callees of each method, with a final entry for the end.
+   * @param callees           the ids of the callees.
+   * @param opcodes           the opcode of the instruction making each call.
+   */
+  CallGraph( final String[] classNames,
+             final int[] methodStart,
+             final String[] methodNames,
+             final String[] methodDescriptors,
+             final boolean[] declared,
+             final int[] calleeStart,
+             final int[] callees,
+             final byte[] opcodes )
+  {
+    this.classNames = classNames;
+    this.methodStart = methodStart;
+    this.methodNames = methodNames;
+    this.methodDescriptors = methodDescriptors;
+    this.declared = declared;
+    this.calleeStart = calleeStart;
+    this.callees = callees;
+    this.opcodes = opcodes;
+
+    final int count = methodNames.length;
+    callerStart = new int[count + 1];
+    for( final int callee : callees )
+    {
+      callerStart[callee + 1]++;
+    }
+    for( int i = 0; i < count; i++ )
+    {
+      callerStart[i + 1] += callerStart[i];
+    }
+    callers = new int[callees.length];
+    final int[] fill = callerStart.clone();
+    for( int i = 0; i < count; i++ )
+    {
+      for( int j = calleeStart[i]; j < calleeStart[i + 1]; j++ )
+      {
+        callers[fill[callees[j]]++] = i;
+      }
+    }
+  }
+
+  /**
+   * Return the number of classes that declare or own a referenced method.
+   *
+   * @return the number of classes.
+   */
+  public int getClassCount()
+  {
+    return classNames.length;
+  }
+
+  /**
+   * Return the id of class with specified name.
+   *
+   * @param name the name of the class in internal format.
+   * @return the id or -1 if the class is not in the graph.
+   */
+  public int getClassId( final String name )
+  {
+    int low = 0;
+    int high = classNames.length - 1;
+    while( low <= high )
+    {
+      final int middle = ( low + high ) >>> 1;
+      final int comparison = classNames[middle].compareTo( name );
+      if( comparison < 0 )
+      {
+        low = middle + 1;
+      }
+      else if( comparison > 0 )
+      {
+        high = middle - 1;
+      }
+      else
+      {
+        return middle;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Return the name of class with specified id.
+   *
+   * @param classId the id of the class.
+   * @return the name of the class in internal format.
+   */
+  public String getClassName( final int classId )
+  {
+    return classNames[classId];
+  }
+
+  /**
+   * Return the methods of class with specified id.
+   *
+   * @param classId the id of the class.
+   * @return the ids of the methods, sorted by name and descriptor.
+   */
+  public int[] getMethods( final int classId )
+  {
+    final int start = methodStart[classId];
+    final int[] methods = new int[methodStart[classId + 1] - start];
+    for( int i = 0; i < methods.length; i++ )
+    {
+      methods[i] = start + i;
+    }
+    return methods;
+  }
+
+  /**
+   * Return the number of methods including referenced methods that were not declared.
+   *
+   * @return the number of methods.
+   */
+  public int getMethodCount()
+  {
+    return methodNames.length;
+  }
+
+  /**
+   * Return the id of specified method.
+   *
+   * @param className  the name of the class in internal format.
+   * @param name       the name of the method.
+   * @param descriptor the descriptor of the method.
+   * @return the id or -1 if the method is not in the graph.
+   */
+  public int findMethod( final String className, final String name, final String descriptor )
+  {
+    final int classId = getClassId( className );
+    if( -1 == classId )
+    {
+      return -1;
+    }
+    int low = methodStart[classId];
+    int high = methodStart[classId + 1] - 1;
+    while( low <= high )
+    {
+      final int middle = ( low + high ) >>> 1;
+      int comparison = methodNames[middle].compareTo( name );
+      if( 0 == comparison )
+      {
+        comparison = methodDescriptors[middle].compareTo( descriptor );
+      }
+      if( comparison < 0 )
+      {
+        low = middle + 1;
+      }
+      else if( comparison > 0 )
+      {
+        high = middle - 1;
+      }
+      else
+      {
+        return middle;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Return the class of method with specified id.
+   *
+   * @param method the id of the method.
+   * @return the id of the class that declares or owns the method.
+   */
+  public int getMethodClass( final int method )
+  {
+    //The last class whose first method is at or before the method
+    int low = 0;
+    int high = classNames.length - 1;
+    while( low < high )
+    {
+      final int middle = ( low + high + 1 ) >>> 1;
+      if( methodStart[middle] <= method )
+      {
+        low = middle;
+      }
+      else
+      {
+        high = middle - 1;
+      }
+    }
+    return low;
+  }
+
+  /**
+   * Return the name of method with specified id.
+   *
+   * @param method the id of the method.
+   * @return the name.
+   */
+  public String getMethodName( final int method )
+  {
+    return methodNames[method];
+  }
+
+  /**
+   * Return the descriptor of method with specified id.
+   *
+   * @param method the id of the method.
+   * @return the descriptor.
+   */
+  public String getMethodDescriptor( final int method )
+  {
+    return methodDescriptors[method];
+  }
+
+  /**
+   * Return true if the method was declared by a scanned class rather than only referenced.
+   *
+   * @param method the id of the method.
+   * @return true if the method was declared.
+   */
+  public boolean isDeclared( final int method )
+  {
+    return declared[method];
+  }
+
+  /**
+   * Return the number of distinct caller and callee pairs.
+   *
+   * @return the number of calls.
+   */
+  public int getCallCount()
+  {
+    return callees.length;
+  }
+
+  /**
+   * Return the methods called by method with specified id.
+   * Each callee is listed once however many times it is called.
+   *
+   * @param method the id of the method.
+   * @return the ids of the callees.
+   */
+  public int[] getCallees( final int method )
+  {
+    return copyOfRange( callees, calleeStart[method], calleeStart[method + 1] );
+  }
+
+  /**
+   * Return the opcode of the first instruction in method that calls a callee.
+   *
+   * @param method the id of the method.
+   * @param index  the index of the callee in the result of {@link #getCallees}.
+   * @return the opcode of the invoke instruction.
+   */
+  public int getCallOpcode( final int method, final int index )
+  {
+    if( index < 0 || index >= calleeStart[method + 1] - calleeStart[method] )
+    {
+      throw new IndexOutOfBoundsException( "Callee index " + index + " out of range for method " + method );
+    }
+    return opcodes[calleeStart[method] + index] & 0xFF;
+  }
+
+  /**
+   * Return the methods that call method with specified id.
+   *
+   * @param method the id of the method.
+   * @return the ids of the callers.
+   */
+  public int[] getCallers( final int method )
+  {
+    return copyOfRange( callers, callerStart[method], callerStart[method + 1] );
+  }
+
+  /**
+   * Return the methods reachable from the roots by following calls.
+   *
+   * @param roots the ids of the root methods.
+   * @return the ids of the roots and reachable methods in breadth first order.
+   */
+  public int[] reachableFrom( final int... roots )
+  {
+    final boolean[] visited = new boolean[methodNames.length];
+    final int[] queue = new int[methodNames.length];
+    int count = 0;
+    for( final int root : roots )
+    {
+      if( !visited[root] )
+      {
+        visited[root] = true;
+        queue[count++] = root;
+      }
+    }
+    for( int next = 0; next < count; next++ )
+    {
+      final int method = queue[next];
+      for( int i = calleeStart[method]; i < calleeStart[method + 1]; i++ )
+      {
+        final int callee = callees[i];
+        if( !visited[callee] )
+        {
+          visited[callee] = true;
+          queue[count++] = callee;
+        }
+      }
+    }
+    return copyOfRange( queue, 0, count );
+  }
+
+  private static int[] copyOfRange( final int[] values, final int start, final int end )
+  {
+    final int[] result = new int[end - start];
+    System.arraycopy( values, start, result, 0, result.length );
+    return result;
+  }
+}
@@ -0,0 +1,481 @@
+package org.realityforge.fade;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+
+/**
+ * Builder that decodes the invoke instructions in the Code attributes of
+ * methods and creates a {@link CallGraph}. Classes are collected in parallel
+ * by the parsers created by the builder. Each parser resolves a method
+ * reference once per class and records calls as pairs of int ids in its own
+ * primitive arrays, so the ids are only merged when the graph is built.
+ */
+public final class CallGraphBuilder
+  implements ClassFileParserFactory
+{
+  private static final String[] ATTRIBUTE_NAMES = new String[]{ClassFileFormat.ATTR_Code};
+
+  private static final int FIRST_INVOKE = Instruction.INVOKEVIRTUAL.code;
+  private static final int LAST_INVOKE = Instruction.INVOKEINTERFACE.code;
+
+  /** Orders methods by the id of their class, name and descriptor. */
+  private static final Comparator<Method> ORDER = new Comparator<Method>()
+  {
+    public int compare( final Method o1, final Method o2 )
+    {
+      if( o1.owner != o2.owner )
+      {
+        return o1.owner.id < o2.owner.id ? -1 : 1;
+      }
+      final int comparison = o1.name.compareTo( o2.name );
+      return 0 != comparison ? comparison : o1.descriptor.compareTo( o2.descriptor );
+    }
+  };
+
+  /** The parsers created by the builder. Guarded by itself. */
+  private final ArrayList<Collector> collectors = new ArrayList<Collector>();
+
+  /**
+   * Scan the classes in specified jar on several threads.
+   *
+   * @param jar         the jar file.
+   * @param threadCount the number of worker threads.
+   * @throws IOException if an error occurs reading the jar.
+   */
+  public void scan( final File jar, final int threadCount )
+    throws IOException
+  {
+    new JarScanner( threadCount, false, false, true, false ).scan( jar, this );
+  }
+
+  /**
+   * Create a parser that collects calls into this builder.
+   * Each parser must only be used from a single thread and only needs methods to be parsed.
+   *
+   * @return the new parser.
+   */
+  public ClassFileParser newParser()
+  {
+    final Collector collector = new Collector();
+    synchronized( collectors )
+    {
+      collectors.add( collector );
+    }
+    return collector;
+  }
+
+  /**
+   * Create a graph from the calls collected so far.
+   * Must not be invoked while parsers created by builder are in use.
+   *
+   * @return the graph.
+   */
+  public CallGraph build()
+  {
+    final Collector[] sources;
+    synchronized( collectors )
+    {
+      sources = collectors.toArray( new Collector[collectors.size()] );
+    }
+
+    //Merge the classes of each collector then number them in name order
+    final HashMap<String, Owner> owners = new HashMap<String, Owner>();
+    for( final Collector collector : sources )
+    {
+      for( final Owner owner : collector.owners.values() )
+      {
+        Owner canonical = owners.get( owner.name );
+        if( null == canonical )
+        {
+          canonical = new Owner( owner.name );
+          owners.put( owner.name, canonical );
+        }
+        owner.canonical = canonical;
+      }
+    }
+    final String[] classNames = owners.keySet().toArray( new String[owners.size()] );
+    Arrays.sort( classNames );
+    for( int i = 0; i < classNames.length; i++ )
+    {
+      owners.get( classNames[i] ).id = i;
+    }
+
+    //Merge the methods of each collector, mapping local ids to the canonical method
+    final MethodTable table = new MethodTable();
+    final Method[][] mappings = new Method[sources.length][];
+    int callCount = 0;
+    for( int c = 0; c < sources.length; c++ )
+    {
+      final Collector collector = sources[c];
+      final Method[] mapping = new Method[collector.table.size];
+      for( int i = 0; i < mapping.length; i++ )
+      {
+        final Method method = collector.table.methods[i];
+        final Owner owner = method.owner.canonical;
+        Method canonical = table.find( owner, method.name, method.descriptor, method.hash );
+        if( null == canonical )
+        {
+          canonical = table.add( new Method( owner, method.name, method.descriptor, method.hash ) );
+        }
+        canonical.declared |= method.declared;
+        mapping[i] = canonical;
+      }
+      mappings[c] = mapping;
+      callCount += collector.callCount;
+    }
+
+    final int count = table.size;
+    final Method[] sorted = new Method[count];
+    System.arraycopy( table.methods, 0, sorted, 0, count );
+
+    //Number methods in sorted order so ids do not depend on scan order
+    Arrays.sort( sorted, ORDER );
+    final String[] methodNames = new String[count];
+    final String[] methodDescriptors = new String[count];
+    final boolean[] declared = new boolean[count];
+    final int[] methodStart = new int[classNames.length + 1];
+    for( int i = count - 1; i >= 0; i-- )
+    {
+      final Method method = sorted[i];
+      methodStart[method.owner.id] = i;
+      methodNames[i] = method.name;
+      methodDescriptors[i] = method.descriptor;
+      declared[i] = method.declared;
+      method.id = i;
+    }
+    methodStart[classNames.length] = count;
+
+    //Bucket calls by caller then drop repeated callees, which arise when a class is scanned twice
+    final int[] calleeStart = new int[count + 1];
+    for( int c = 0; c < sources.length; c++ )
+    {
+      final Collector collector = sources[c];
+      for( int i = 0; i < collector.callCount; i++ )
+      {
+        calleeStart[mappings[c][collector.callers[i]].id + 1]++;
+      }
+    }
+    for( int i = 0; i < count; i++ )
+    {
+      calleeStart[i + 1] += calleeStart[i];
+    }
+    final int[] callees = new int[callCount];
+    final byte[] opcodes = new byte[callCount];
+    final int[] fill = calleeStart.clone();
+    for( int c = 0; c < sources.length; c++ )
+    {
+      final Collector collector = sources[c];
+      final Method[] mapping = mappings[c];
+      for( int i = 0; i < collector.callCount; i++ )
+      {
+        final int index = fill[mapping[collector.callers[i]].id]++;
+        callees[index] = mapping[collector.callees[i]].id;
+        opcodes[index] = collector.opcodes[i];
+      }
+    }
+    final int[] seen = new int[count];
+    Arrays.fill( seen, -1 );
+    int size = 0;
+    for( int i = 0; i < count; i++ )
+    {
+      final int start = calleeStart[i];
+      calleeStart[i] = size;
+      for( int j = start; j < calleeStart[i + 1]; j++ )
+      {
+        if( i != seen[callees[j]] )
+        {
+          seen[callees[j]] = i;
+          callees[size] = callees[j];
+          opcodes[size] = opcodes[j];
+          size++;
+        }
+      }
+    }
+    calleeStart[count] = size;
+
+    final int[] compactCallees = new int[size];
+    System.arraycopy( callees, 0, compactCallees, 0, size );
+    final byte[] compactOpcodes = new byte[size];
+    System.arraycopy( opcodes, 0, compactOpcodes, 0, size );
+    return new CallGraph( classNames,
+                          methodStart,
+                          methodNames,
+                          methodDescriptors,
+                          declared,
+                          calleeStart,
+                          compactCallees,
+                          compactOpcodes );
+  }
+
+  /** A class that declares or owns a collected method. */
+  private static final class Owner
+  {
+    final String name;
+
+    /** The id of the class in the graph being built. */
+    int id;
+
+    /** The owner merged from each collector, set while the graph is built. */
+    Owner canonical;
+
+    Owner( final String name )
+    {
+      this.name = name;
+    }
+  }
+
+  /** A method declared or referenced by a collected class. */
+  private static final class Method
+  {
+    final Owner owner;
+    final String name;
+    final String descriptor;
+    final int hash;
+    boolean declared;
+
+    /** The local id of the method in a collector or the id in the graph being built. */
+    int id;
+
+    Method( final Owner owner, final String name, final String descriptor, final int hash )
+    {
+      this.owner = owner;
+      this.name = name;
+      this.descriptor = descriptor;
+      this.hash = hash;
+    }
+
+    static int hash( final Owner owner, final String name, final String descriptor )
+    {
+      return ( owner.name.hashCode() * 31 + name.hashCode() ) * 31 + descriptor.hashCode();
+    }
+  }
+
+  /** Open addressing table of methods that also lists methods in the order they were added. */
+  private static final class MethodTable
+  {
+    Method[] methods = new Method[64];
+    int size;
+    private Method[] slots = new Method[128];
+
+    Method find( final Owner owner, final String name, final String descriptor, final int hash )
+    {
+      int slot = hash & ( slots.length - 1 );
+      Method method;
+      while( null != ( method = slots[slot] ) )
+      {
+        if( hash == method.hash &&
+            owner == method.owner &&
+            name.equals( method.name ) &&
+            descriptor.equals( method.descriptor ) )
+        {
+          return method;
+        }
+        slot = ( slot + 1 ) & ( slots.length - 1 );
+      }
+      return null;
+    }
+
+    /**
+     * Add a method that is not in the table, assigning it the next id.
+     *
+     * @param method the method.
+     * @return the method.
+     */
+    Method add( final Method method )
+    {
+      if( size == methods.length )
+      {
+        final Method[] newMethods = new Method[size * 2];
+        System.arraycopy( methods, 0, newMethods, 0, size );
+        methods = newMethods;
+        slots = new Method[slots.length * 2];
+        for( int i = 0; i < size; i++ )
+        {
+          insert( methods[i] );
+        }
+      }
+      method.id = size;
+      methods[size++] = method;
+      insert( method );
+      return method;
+    }
+
+    private void insert( final Method method )
+    {
+      int slot = method.hash & ( slots.length - 1 );
+      while( null != slots[slot] )
+      {
+        slot = ( slot + 1 ) & ( slots.length - 1 );
+      }
+      slots[slot] = method;
+    }
+  }
+
+  /**
+   * Parser that records the methods of each class and the calls they make.
+   * Method references are resolved once per class, using arrays indexed by
+   * constant pool index that are stamped with the class and method being
+   * processed so they never need to be cleared.
+   */
+  private static final class Collector
+    extends ClassFileParser
+  {
+    final HashMap<String, Owner> owners = new HashMap<String, Owner>();
+    final MethodTable table = new MethodTable();
+
+    int[] callers = new int[1024];
+    int[] callees = new int[1024];
+    byte[] opcodes = new byte[1024];
+    int callCount;
+
+    private final CodeCursor cursor = new CodeCursor();
+    private Owner owner;
+    private int caller;
+
+    /** The number of classes processed, used to stamp resolved references. */
+    private int classSerial;
+
+    /** The number of methods processed, used to stamp references already called by the current method. */
+    private int methodSerial;
+
+    /** The local id of the method referenced by each constant, valid if the class stamp matches. */
+    private int[] refIds = new int[256];
+    private int[] refClassStamps = new int[256];
+    private int[] refMethodStamps = new int[256];
+
+    Collector()
+    {
+      super( ATTRIBUTE_NAMES );
+    }
+
+    protected void startClass( final ClassFile classFile )
+    {
+      owner = getOwner( classFile.getClassName() );
+      classSerial++;
+      //Constants are indexed from 1 to getConstantCount(), the constant pool count minus one, inclusive
+      final int size = classFile.getConstantPool().getConstantCount() + 1;
+      if( refIds.length < size )
+      {
+        refIds = new int[size];
+        refClassStamps = new int[size];
+        refMethodStamps = new int[size];
+      }
+    }
+
+    protected void handleMethod( final String name, final String descriptor, final int accessFlags )
+    {
+      final Method method = getMethod( owner, name, descriptor );
+      method.declared = true;
+      caller = method.id;
+      methodSerial++;
+    }
+
+    protected void handleMethodAttribute( final String name,
+                                          final byte[] data,
+                                          final int offset,
+                                          final long length,
+                                          final ConstantPool constantPool )
+    {
+      cursor.reset( data, offset + 8, IOUtil.readUnsignedInteger( data, offset + 4 ) );
+      while( cursor.next() )
+      {
+        final int opcode = cursor.getOpcode();
+        if( opcode >= FIRST_INVOKE && opcode <= LAST_INVOKE )
+        {
+          final int index = cursor.getConstantIndex();
+          checkConstantIndex( index, constantPool );
+          if( methodSerial != refMethodStamps[index] )
+          {
+            refMethodStamps[index] = methodSerial;
+            addCall( resolve( index, constantPool ), opcode );
+          }
+        }
+      }
+    }
+
+    /**
+     * Throw a ClassFormatError if index does not refer to a constant in the pool.
+     * The reference tables are only sized for the constants of the current class.
+     *
+     * @param index        the index of the constant.
+     * @param constantPool the constant pool.
+     */
+    private static void checkConstantIndex( final int index, final ConstantPool constantPool )
+    {
+      final int constantCount = constantPool.getConstantCount();
+      if( index < 1 || index > constantCount )
+      {
+        final String message =
+          "Can not access constant pool element " +
+          index + " as it is not in the range [1-" +
+          ( constantCount + 1 ) + ")";
+        throw new ClassFormatError( message );
+      }
+    }
+
+    /**
+     * Return the local id of the method referenced by specified constant.
+     *
+     * @param index        the index of the Methodref or InterfaceMethodref constant.
+     * @param constantPool the constant pool.
+     * @return the local id.
+     */
+    private int resolve( final int index, final ConstantPool constantPool )
+    {
+      if( classSerial != refClassStamps[index] )
+      {
+        refClassStamps[index] = classSerial;
+        refIds[index] = getMethod( getOwner( constantPool.getClassFromRef( index ) ),
+                                   constantPool.getNameFromRef( index ),
+                                   constantPool.getTypeFromRef( index ) ).id;
+      }
+      return refIds[index];
+    }
+
+    private Owner getOwner( final String name )
+    {
+      Owner owner = owners.get( name );
+      if( null == owner )
+      {
+        owner = new Owner( name );
+        owners.put( name, owner );
+      }
+      return owner;
+    }
+
+    private Method getMethod( final Owner owner, final String name, final String descriptor )
+    {
+      final int hash = Method.hash( owner, name, descriptor );
+      final Method method = table.find( owner, name, descriptor, hash );
+      return null != method ? method : table.add( new Method( owner, name, descriptor, hash ) );
+    }
+
+    private void addCall( final int callee, final int opcode )
+    {
+      if( callCount == callers.length )
+      {
+        final int capacity = callCount * 2;
+        callers = grow( callers, capacity );
+        callees = grow( callees, capacity );
+        final byte[] newOpcodes = new byte[capacity];
+        System.arraycopy( opcodes, 0, newOpcodes, 0, callCount );
+        opcodes = newOpcodes;
+      }
+      callers[callCount] = caller;
+      callees[callCount] = callee;
+      opcodes[callCount] = (byte)opcode;
+      callCount++;
+    }
+
+    private static int[] grow( final int[] values, final int capacity )
+    {
+      final int[] result = new int[capacity];
+      System.arraycopy( values, 0, result, 0, values.length );
+      return result;
+    }
+  }
+}
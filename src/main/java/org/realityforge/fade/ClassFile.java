@@ -1,34 +1,106 @@
 package org.realityforge.fade;
 
-/** Class for representing and parsing class files. */
+import java.nio.ByteBuffer;
+
+/**
+ * Class for representing and parsing class files.
+ * A parsed ClassFile is effectively immutable and may be processed by several
+ * threads concurrently, each using its own {@link ClassFileParser}. See
+ * {@link ConstantPool} for how the shared string cache behaves under races.
+ * The exception is the ClassFile returned by a {@link ClassFileReader}, which
+ * is confined to the thread using the reader and is reused for each class.
+ */
 public class ClassFile
 {
   /** The read-only data representing class. */
-  private final byte[] data;
+  private byte[] data;
 
-  /** The read-only method of accessing the constant pool. */
-  private final ConstantPool constantPool;
+  /** The offset in data at which the class starts. */
+  private int offset;
 
-  /** Offsets for all the method_infos. */
-  private final int[] methodOffsets;
+  /** The length of the class data. */
+  private int length;
 
-  /** Offsets for all the field_infos. */
-  private final int[] fieldOffsets;
+  /** The read-only method of accessing the constant pool. */
+  private final ConstantPool constantPool;
 
-  /** Offsets for top level attributes. */
-  private final int attributeOffset;
+  /**
+   * Offsets of the members and top level attributes, built on first use when
+   * the class is parsed lazily. Members is immutable so the field is read
+   * without synchronization and racing threads may each build an equal copy.
+   */
+  private Members members;
 
   private ClassFile( final byte[] data,
-                     final ConstantPool constantPool,
-                     final int[] methodOffsets,
-                     final int[] fieldOffsets,
-                     final int attributeOffset )
+                     final int offset,
+                     final int length,
+                     final ConstantPool constantPool )
   {
     this.data = data;
+    this.offset = offset;
+    this.length = length;
     this.constantPool = constantPool;
-    this.methodOffsets = methodOffsets;
-    this.fieldOffsets = fieldOffsets;
-    this.attributeOffset = attributeOffset;
+  }
+
+  /**
+   * Create an empty ClassFile to be filled by {@link #reset}.
+   *
+   * @param symbolTable the table used to share decoded strings, or null.
+   */
+  ClassFile( final SymbolTable symbolTable )
+  {
+    this( null, 0, 0, new ConstantPool( symbolTable ) );
+  }
+
+  /**
+   * Parse another class into this ClassFile, reusing the constant pool and
+   * member offset arrays. The ClassFile must be confined to a single thread.
+   * If the class data is invalid the ClassFile is left empty.
+   *
+   * @param data   the data array.
+   * @param start  the offset at which the class data starts.
+   * @param length the length of the class data.
+   */
+  void reset( final byte[] data, final int start, final int length )
+  {
+    final Members previous = members;
+    resetHeader( data, start, length );
+    members = indexMembers( previous );
+  }
+
+  /**
+   * Parse the header and constant pool of another class into this ClassFile,
+   * leaving the members to be indexed on first use. The region need only
+   * extend to the end of the interfaces if the members are never accessed.
+   *
+   * @param data   the data array.
+   * @param start  the offset at which the class data starts.
+   * @param length the length of the class data.
+   */
+  void resetHeader( final byte[] data, final int start, final int length )
+  {
+    members = null;
+    this.data = null;
+    checkClassData( data, start, length );
+    constantPool.reset( data, start, length );
+    resetHeaderFromPool( data, start, length );
+  }
+
+  /**
+   * Complete a reset of the header once the constant pool has been reset from the data.
+   *
+   * @param data   the data array.
+   * @param start  the offset at which the class data starts.
+   * @param length the length of the class data.
+   */
+  void resetHeaderFromPool( final byte[] data, final int start, final int length )
+  {
+    members = null;
+    this.data = null;
+    checkClassHeader( data, start, length, constantPool );
+    this.data = data;
+    this.offset = start;
+    this.length = length;
   }
 
   /**
@@ -103,8 +175,7 @@ public class ClassFile
    */
   public int getMethodAccessFlags( final int index )
   {
-    checkMethodIndex( index );
-    return IOUtil.readUnsignedShort( data, methodOffsets[index] );
+    return IOUtil.readUnsignedShort( data, getMethodOffset( index ) );
   }
 
   /**
@@ -115,8 +186,7 @@ public class ClassFile
    */
   public String getMethodName( final int index )
   {
-    checkMethodIndex( index );
-    final int utfIndex = IOUtil.readUnsignedShort( data, methodOffsets[index] + 2 );
+    final int utfIndex = IOUtil.readUnsignedShort( data, getMethodOffset( index ) + 2 );
     return constantPool.getUtfEntry( utfIndex );
   }
 
@@ -128,24 +198,26 @@ public class ClassFile
    */
   public String getMethodDescriptor( final int index )
   {
-    checkMethodIndex( index );
-    final int utfIndex = IOUtil.readUnsignedShort( data, methodOffsets[index] + 4 );
+    final int utfIndex = IOUtil.readUnsignedShort( data, getMethodOffset( index ) + 4 );
     return constantPool.getUtfEntry( utfIndex );
   }
 
   /**
-   * Check that access to specified method index is valid.
+   * Return the offset of specified method, checking the index is valid.
    *
    * @param index the index.
+   * @return the offset of the method_info.
    */
-  private void checkMethodIndex( final int index )
+  private int getMethodOffset( final int index )
   {
-    if( index < 0 || index > methodOffsets.length )
+    final Members members = getMembers();
+    if( index < 0 || index >= members.methodCount )
     {
       final String message =
-        "Requested invalid method index " + index + " when there is only " + methodOffsets.length + " methods";
+        "Requested invalid method index " + index + " when there is only " + members.methodCount + " methods";
       throw new ClassFormatError( message );
     }
+    return members.methodOffsets[index];
   }
 
   /**
@@ -156,8 +228,7 @@ public class ClassFile
    */
   public int getFieldAccessFlags( final int index )
   {
-    checkFieldIndex( index );
-    return IOUtil.readUnsignedShort( data, fieldOffsets[index] );
+    return IOUtil.readUnsignedShort( data, getFieldOffset( index ) );
   }
 
   /**
@@ -168,8 +239,7 @@ public class ClassFile
    */
   public String getFieldName( final int index )
   {
-    checkFieldIndex( index );
-    final int utfIndex = IOUtil.readUnsignedShort( data, fieldOffsets[index] + 2 );
+    final int utfIndex = IOUtil.readUnsignedShort( data, getFieldOffset( index ) + 2 );
     return constantPool.getUtfEntry( utfIndex );
   }
 
@@ -181,24 +251,26 @@ public class ClassFile
    */
   public String getFieldDescriptor( final int index )
   {
-    checkFieldIndex( index );
-    final int utfIndex = IOUtil.readUnsignedShort( data, fieldOffsets[index] + 4 );
+    final int utfIndex = IOUtil.readUnsignedShort( data, getFieldOffset( index ) + 4 );
     return constantPool.getUtfEntry( utfIndex );
   }
 
   /**
-   * Check that access to specified field index is valid.
+   * Return the offset of specified field, checking the index is valid.
    *
    * @param index the index.
+   * @return the offset of the field_info.
    */
-  private void checkFieldIndex( final int index )
+  private int getFieldOffset( final int index )
   {
-    if( index < 0 || index > fieldOffsets.length )
+    final Members members = getMembers();
+    if( index < 0 || index >= members.fieldCount )
     {
       final String message =
-        "Requested invalid field index " + index + " when there is only " + fieldOffsets.length + " fields";
+        "Requested invalid field index " + index + " when there is only " + members.fieldCount + " fields";
       throw new ClassFormatError( message );
     }
+    return members.fieldOffsets[index];
   }
 
   /**
@@ -208,7 +280,7 @@ public class ClassFile
    */
   public int getMinorVersion()
   {
-    return IOUtil.readUnsignedShort( data, 4 );
+    return IOUtil.readUnsignedShort( data, offset + 4 );
   }
 
   /**
@@ -218,13 +290,15 @@ public class ClassFile
    */
   public int getMajorVersion()
   {
-    return IOUtil.readUnsignedShort( data, 6 );
+    return IOUtil.readUnsignedShort( data, offset + 6 );
   }
 
   /**
    * Method that used to process Class.
    * Processing will use the supplied parser to parse the class file. The fields,
    * methods and class sections will only be parsed if specified flag is true.
+   * This method may be invoked concurrently on the same ClassFile provided
+   * each thread supplies a distinct parser.
    *
    * @param parser the user supplied parser.
    * @param parseFields true to parse field section, false otherwise.
@@ -236,24 +310,27 @@ public class ClassFile
                             final boolean parseMethods,
                             final boolean parseClassSection )
   {
+    final Members members = getMembers();
+    parser.startClass( this );
     if( parseFields )
     {
-      for( final int offset : fieldOffsets )
+      for( int i = 0; i < members.fieldCount; i++ )
       {
-        parser.parseField( data, offset, constantPool );
+        parser.parseField( data, members.fieldOffsets[i], constantPool );
       }
     }
     if( parseMethods )
     {
-      for( final int offset : methodOffsets )
+      for( int i = 0; i < members.methodCount; i++ )
       {
-        parser.parseMethod( data, offset, constantPool );
+        parser.parseMethod( data, members.methodOffsets[i], constantPool );
       }
     }
     if( parseClassSection )
     {
-      parser.parseClassAttributes( data, attributeOffset, constantPool );
+      parser.parseClassAttributes( data, members.attributeOffset, constantPool );
     }
+    parser.endClass();
   }
 
   /**
@@ -266,76 +343,269 @@ public class ClassFile
    */
   public static ClassFile parseClassFile( final byte[] data )
   {
-    IOUtil.checkLength( data, 0, 10 );
-    final int magic = IOUtil.readInteger( data, 0 );
+    return parseClassFile( data, 0, data.length );
+  }
+
+  /**
+   * Parse class file from the remaining bytes of a buffer.
+   * Buffers backed by an accessible array are parsed in place. Direct and
+   * mapped buffers are transferred in bulk into a heap array as the
+   * {@link ClassFileParser} handlers operate on byte arrays. The position
+   * of the buffer is not modified.
+   *
+   * @param buffer the buffer containing the class data.
+   * @return the newly created ClassFile.
+   */
+  public static ClassFile parseClassFile( final ByteBuffer buffer )
+  {
+    return parseClassFile( buffer, null );
+  }
+
+  /**
+   * Parse class file from the remaining bytes of a buffer.
+   *
+   * @param buffer      the buffer containing the class data.
+   * @param symbolTable the table used to share decoded strings, or null.
+   * @return the newly created ClassFile.
+   * @see #parseClassFile(ByteBuffer)
+   */
+  public static ClassFile parseClassFile( final ByteBuffer buffer, final SymbolTable symbolTable )
+  {
+    final int length = buffer.remaining();
+    if( buffer.hasArray() )
+    {
+      return parseClassFile( buffer.array(), buffer.arrayOffset() + buffer.position(), length, symbolTable );
+    }
+    final byte[] data = new byte[length];
+    buffer.duplicate().get( data );
+    return parseClassFile( data, 0, length, symbolTable );
+  }
+
+  /**
+   * Parse class file stored in a region of the data array.
+   * This allows classes to be parsed in place from a larger buffer such as
+   * the contents of an uncompressed archive. The array is now owned by the
+   * ClassFile object and should not be modified within the region.
+   *
+   * @param data   the data array.
+   * @param start  the offset at which the class data starts.
+   * @param length the length of the class data.
+   * @return the newly created ClassFile.
+   */
+  public static ClassFile parseClassFile( final byte[] data, final int start, final int length )
+  {
+    return parseClassFile( data, start, length, null );
+  }
+
+  /**
+   * Parse class file stored in a region of the data array, sharing decoded
+   * CONSTANT_Utf8 strings with other classes via specified table.
+   *
+   * @param data        the data array.
+   * @param start       the offset at which the class data starts.
+   * @param length      the length of the class data.
+   * @param symbolTable the table used to share decoded strings, or null.
+   * @return the newly created ClassFile.
+   */
+  public static ClassFile parseClassFile( final byte[] data,
+                                          final int start,
+                                          final int length,
+                                          final SymbolTable symbolTable )
+  {
+    final ClassFile classFile = parseClassFileLazily( data, start, length, symbolTable );
+    classFile.getMembers();
+    return classFile;
+  }
+
+  /**
+   * Parse the header and constant pool of a class file, deferring the
+   * indexing of fields, methods and attributes until they are first accessed.
+   * This makes queries that only need the class header, such as the class,
+   * super class and interface names, cheaper and is the way to scan only the
+   * headers of many classes. Errors in the member sections are
+   * reported when the members are first accessed rather than by this method.
+   *
+   * @param data the data array.
+   * @return the newly created ClassFile.
+   */
+  public static ClassFile parseClassFileLazily( final byte[] data )
+  {
+    return parseClassFileLazily( data, 0, data.length, null );
+  }
+
+  /**
+   * Lazily parse class file stored in a region of the data array.
+   *
+   * @param data   the data array.
+   * @param start  the offset at which the class data starts.
+   * @param length the length of the class data.
+   * @return the newly created ClassFile.
+   * @see #parseClassFileLazily(byte[])
+   */
+  public static ClassFile parseClassFileLazily( final byte[] data, final int start, final int length )
+  {
+    return parseClassFileLazily( data, start, length, null );
+  }
+
+  /**
+   * Lazily parse class file stored in a region of the data array, sharing
+   * decoded CONSTANT_Utf8 strings with other classes via specified table.
+   *
+   * @param data        the data array.
+   * @param start       the offset at which the class data starts.
+   * @param length      the length of the class data.
+   * @param symbolTable the table used to share decoded strings, or null.
+   * @return the newly created ClassFile.
+   * @see #parseClassFileLazily(byte[])
+   */
+  public static ClassFile parseClassFileLazily( final byte[] data,
+                                                final int start,
+                                                final int length,
+                                                final SymbolTable symbolTable )
+  {
+    checkClassData( data, start, length );
+    final ConstantPool constantPool = ConstantPool.parseConstantPool( data, start, length, symbolTable );
+    checkClassHeader( data, start, length, constantPool );
+    return new ClassFile( data, start, length, constantPool );
+  }
+
+  /**
+   * Check the region, magic number and version of class data.
+   *
+   * @param data   the data array.
+   * @param start  the offset at which the class data starts.
+   * @param length the length of the class data.
+   */
+  static void checkClassData( final byte[] data, final int start, final int length )
+  {
+    if( start < 0 || length < 0 || length > data.length - start )
+    {
+      final String message =
+        "Class data region " + start + "+" + length + " lies outside array of length " + data.length;
+      throw new IllegalArgumentException( message );
+    }
+    IOUtil.checkLength( start, start + length, start, 10 );
+    final int magic = IOUtil.readInteger( data, start );
     if( ClassFileFormat.MAGIC != magic )
     {
       throw new ClassFormatError( "Bad magic number " + magic );
     }
-    final int majorVersion = IOUtil.readUnsignedShort( data, 6 );
-    final int minorVersion = IOUtil.readUnsignedShort( data, 4 );
+    final int majorVersion = IOUtil.readUnsignedShort( data, start + 6 );
+    final int minorVersion = IOUtil.readUnsignedShort( data, start + 4 );
 
     if( majorVersion < ClassFileFormat.MAJOR_VERSION_1 ||
-        majorVersion > ClassFileFormat.MAJOR_VERSION_5 )
+        majorVersion > ClassFileFormat.MAJOR_VERSION_LATEST )
     {
       final String message = "Bad class file version " + majorVersion + "." + minorVersion;
       throw new ClassFormatError( message );
     }
-    final ConstantPool constantPool = ConstantPool.parseConstantPool( data );
+  }
+
+  /**
+   * Check the class header and interfaces following the constant pool are present.
+   *
+   * @param data         the data array.
+   * @param start        the offset at which the class data starts.
+   * @param length       the length of the class data.
+   * @param constantPool the constant pool of the class.
+   */
+  private static void checkClassHeader( final byte[] data,
+                                        final int start,
+                                        final int length,
+                                        final ConstantPool constantPool )
+  {
+    final int limit = start + length;
     int offset = constantPool.getClassHeaderOffset();
-    IOUtil.checkLength( data, offset, 8 );
+    IOUtil.checkLength( start, limit, offset, 8 );
     offset += 6;
     final int interfaceCount = IOUtil.readUnsignedShort( data, offset );
     offset += 2;
-    IOUtil.checkLength( data, offset, interfaceCount * 2 );
-    //Skip over interfaces.
-    offset += interfaceCount * 2;
-
-    IOUtil.checkLength( data, offset, 2 );
-    final int fieldCount = IOUtil.readUnsignedShort( data, offset );
-    offset += 2;
-    final int[] fieldOffsets = new int[fieldCount];
-    offset = parseFields( data, offset, fieldOffsets );
-
-    IOUtil.checkLength( data, offset, 2 );
-    final int methodCount = IOUtil.readUnsignedShort( data, offset );
-    final int[] methodOffsets = new int[methodCount];
-    offset = parseMethods( data, offset + 2, methodOffsets );
+    IOUtil.checkLength( start, limit, offset, interfaceCount * 2 );
+  }
 
-    final int attributeoffset = offset;
-    IOUtil.checkLength( data, offset, 2 );
-    final int attributeCount = IOUtil.readUnsignedShort( data, offset );
-    offset = parseAttributes( data, offset + 2, attributeCount );
+  /**
+   * Return the offsets of members, indexing them if not yet indexed.
+   *
+   * @return the offsets of members.
+   */
+  private Members getMembers()
+  {
+    Members result = members;
+    if( null == result )
+    {
+      result = indexMembers( null );
+      members = result;
+    }
+    return result;
+  }
 
-    if( offset != data.length )
+  /**
+   * Walk the field, method and attribute sections recording the offset of each member.
+   *
+   * @param previous the offsets of the previous class whose arrays may be reused, or null.
+   * @return the offsets of members.
+   */
+  private Members indexMembers( final Members previous )
+  {
+    final int limit = offset + length;
+    int position = constantPool.getClassHeaderOffset() + 6;
+    final int interfaceCount = IOUtil.readUnsignedShort( data, position );
+    //Skip over interfaces.
+    position += 2 + interfaceCount * 2;
+
+    IOUtil.checkLength( offset, limit, position, 2 );
+    final int fieldCount = IOUtil.readUnsignedShort( data, position );
+    position += 2;
+    final int[] fieldOffsets =
+      null != previous && previous.fieldOffsets.length >= fieldCount ? previous.fieldOffsets : new int[fieldCount];
+    position = parseFields( data, offset, limit, position, fieldOffsets, fieldCount );
+
+    IOUtil.checkLength( offset, limit, position, 2 );
+    final int methodCount = IOUtil.readUnsignedShort( data, position );
+    final int[] methodOffsets =
+      null != previous && previous.methodOffsets.length >= methodCount ? previous.methodOffsets : new int[methodCount];
+    position = parseMethods( data, offset, limit, position + 2, methodOffsets, methodCount );
+
+    final int attributeOffset = position;
+    IOUtil.checkLength( offset, limit, position, 2 );
+    final int attributeCount = IOUtil.readUnsignedShort( data, position );
+    position = parseAttributes( data, offset, limit, position + 2, attributeCount );
+
+    if( position != limit )
     {
       final String message =
-        "Class definition ends at position " + offset + " when the class data is " +
-        data.length + " bytes long.";
+        "Class definition ends at position " + ( position - offset ) + " when the class data is " +
+        length + " bytes long.";
       throw new ClassFormatError( message );
     }
-    return new ClassFile( data, constantPool, methodOffsets, fieldOffsets, attributeoffset );
+    return new Members( fieldOffsets, fieldCount, methodOffsets, methodCount, attributeOffset );
   }
 
   /**
    * Parse field_info section.
    *
    * @param data         the bytes.
+   * @param start        the position of the first byte of the class.
+   * @param limit        the position after the last byte of the class.
    * @param baseOffset   the offset to start parsing from.
    * @param fieldOffsets the array to store offsets of field_infos.
+   * @param fieldCount   the number of fields.
    * @return the position after last field is parsed.
    */
   private static int parseFields( final byte[] data,
+                                  final int start,
+                                  final int limit,
                                   final int baseOffset,
-                                  final int[] fieldOffsets )
+                                  final int[] fieldOffsets,
+                                  final int fieldCount )
   {
     int offset = baseOffset;
-    for( int i = 0; i < fieldOffsets.length; i++ )
+    for( int i = 0; i < fieldCount; i++ )
     {
       fieldOffsets[i] = offset;
-      IOUtil.checkLength( data, offset, 8 );
+      IOUtil.checkLength( start, limit, offset, 8 );
       final int count = IOUtil.readUnsignedShort( data, offset + 6 );
-      offset = parseAttributes( data, offset + 8, count );
+      offset = parseAttributes( data, start, limit, offset + 8, count );
     }
     return offset;
   }
@@ -344,21 +614,27 @@ public class ClassFile
    * Parse method_info section.
    *
    * @param data          the bytes.
+   * @param start         the position of the first byte of the class.
+   * @param limit         the position after the last byte of the class.
    * @param baseOffset    the offset to start parsing from.
    * @param methodOffsets the array to store offsets of method_infos.
+   * @param methodCount   the number of methods.
    * @return the position after last method is parsed.
    */
   private static int parseMethods( final byte[] data,
+                                   final int start,
+                                   final int limit,
                                    final int baseOffset,
-                                   final int[] methodOffsets )
+                                   final int[] methodOffsets,
+                                   final int methodCount )
   {
     int offset = baseOffset;
-    for( int i = 0; i < methodOffsets.length; i++ )
+    for( int i = 0; i < methodCount; i++ )
     {
       methodOffsets[i] = offset;
-      IOUtil.checkLength( data, offset, 8 );
+      IOUtil.checkLength( start, limit, offset, 8 );
       final int count = IOUtil.readUnsignedShort( data, offset + 6 );
-      offset = parseAttributes( data, offset + 8, count );
+      offset = parseAttributes( data, start, limit, offset + 8, count );
     }
     return offset;
   }
@@ -367,18 +643,20 @@ public class ClassFile
    * Parse attribute section.
    *
    * @param data   the bytes.
+   * @param start  the position of the first byte of the class.
+   * @param limit  the position after the last byte of the class.
    * @param offset the offset to start parsing from.
    * @param count  the number of attributes expected.
    * @return the position after last attribute is parsed.
    */
-  private static int parseAttributes( final byte[] data, int offset, int count )
+  private static int parseAttributes( final byte[] data, final int start, final int limit, int offset, int count )
   {
     for( int i = 0; i < count; i++ )
     {
-      IOUtil.checkLength( data, offset, 6 );
+      IOUtil.checkLength( start, limit, offset, 6 );
       final long size = IOUtil.readUnsignedInteger( data, offset + 2 );
       offset += 6;
-      IOUtil.checkLength( data, offset, size );
+      IOUtil.checkLength( start, limit, offset, size );
       offset += size;
     }
     return offset;
@@ -389,6 +667,11 @@ public class ClassFile
     return data;
   }
 
+  int getOffset()
+  {
+    return offset;
+  }
+
   ConstantPool getConstantPool()
   {
     return constantPool;
@@ -396,16 +679,55 @@ public class ClassFile
 
   int[] getMethodOffsets()
   {
-    return methodOffsets;
+    final Members members = getMembers();
+    return trim( members.methodOffsets, members.methodCount );
   }
 
   int[] getFieldOffsets()
   {
-    return fieldOffsets;
+    final Members members = getMembers();
+    return trim( members.fieldOffsets, members.fieldCount );
   }
 
   int getAttributeOffset()
   {
-    return attributeOffset;
+    return getMembers().attributeOffset;
+  }
+
+  private static int[] trim( final int[] offsets, final int count )
+  {
+    if( offsets.length == count )
+    {
+      return offsets;
+    }
+    final int[] result = new int[count];
+    System.arraycopy( offsets, 0, result, 0, count );
+    return result;
+  }
+
+  /**
+   * Offsets of the field_infos, method_infos and top level attributes.
+   * The offset arrays may be longer than the counts when reused.
+   */
+  private static final class Members
+  {
+    final int[] fieldOffsets;
+    final int fieldCount;
+    final int[] methodOffsets;
+    final int methodCount;
+    final int attributeOffset;
+
+    Members( final int[] fieldOffsets,
+             final int fieldCount,
+             final int[] methodOffsets,
+             final int methodCount,
+             final int attributeOffset )
+    {
+      this.fieldOffsets = fieldOffsets;
+      this.fieldCount = fieldCount;
+      this.methodOffsets = methodOffsets;
+      this.methodCount = methodCount;
+      this.attributeOffset = attributeOffset;
+    }
   }
 }
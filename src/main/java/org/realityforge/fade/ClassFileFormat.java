@@ -14,6 +14,30 @@ public interface ClassFileFormat {
   int MAJOR_VERSION_4 = 48;
   int MAJOR_VERSION_5 = 49;
   int MAJOR_VERSION_6 = 50;
+  int MAJOR_VERSION_7 = 51;
+  int MAJOR_VERSION_8 = 52;
+  int MAJOR_VERSION_9 = 53;
+  int MAJOR_VERSION_10 = 54;
+  int MAJOR_VERSION_11 = 55;
+  int MAJOR_VERSION_12 = 56;
+  int MAJOR_VERSION_13 = 57;
+  int MAJOR_VERSION_14 = 58;
+  int MAJOR_VERSION_15 = 59;
+  int MAJOR_VERSION_16 = 60;
+  int MAJOR_VERSION_17 = 61;
+  int MAJOR_VERSION_18 = 62;
+  int MAJOR_VERSION_19 = 63;
+  int MAJOR_VERSION_20 = 64;
+  int MAJOR_VERSION_21 = 65;
+  int MAJOR_VERSION_22 = 66;
+  int MAJOR_VERSION_23 = 67;
+  int MAJOR_VERSION_24 = 68;
+  int MAJOR_VERSION_25 = 69;
+  int MAJOR_VERSION_26 = 70;
+  int MAJOR_VERSION_27 = 71;
+
+  /** The latest major version that can be parsed. */
+  int MAJOR_VERSION_LATEST = MAJOR_VERSION_27;
 
   /*
     Access modifiers and what structures can apply to.
@@ -42,6 +66,7 @@ public interface ClassFileFormat {
   int ACC_SYNTHETIC = 0x1000; //Class or Field or Method
   int ACC_ANNOTATION = 0x2000; //Class
   int ACC_ENUM = 0x4000; //Class
+  int ACC_MODULE = 0x8000; //Class
 
   /* Types in the constant pool. */
   int CONSTANT_Utf8 = 1;
@@ -55,6 +80,23 @@ public interface ClassFileFormat {
   int CONSTANT_Methodref = 10;
   int CONSTANT_InterfaceMethodref = 11;
   int CONSTANT_NameAndType = 12;
+  int CONSTANT_MethodHandle = 15;
+  int CONSTANT_MethodType = 16;
+  int CONSTANT_Dynamic = 17;
+  int CONSTANT_InvokeDynamic = 18;
+  int CONSTANT_Module = 19;
+  int CONSTANT_Package = 20;
+
+  /* Kinds of method handle in CONSTANT_MethodHandle. */
+  int REF_getField = 1;
+  int REF_getStatic = 2;
+  int REF_putField = 3;
+  int REF_putStatic = 4;
+  int REF_invokeVirtual = 5;
+  int REF_invokeStatic = 6;
+  int REF_invokeSpecial = 7;
+  int REF_newInvokeSpecial = 8;
+  int REF_invokeInterface = 9;
 
   /* Constants for attributes */
 
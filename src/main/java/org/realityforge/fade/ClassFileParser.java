@@ -9,6 +9,134 @@ public abstract class ClassFileParser
     CLASS, METHOD, FIELD, CODE
   }
 
+  /** The names of attributes passed to handlers or null if all attributes are passed. */
+  private final String[] attributeNames;
+
+  /** The modified-UTF8 encoding of attributeNames. */
+  private final byte[][] encodedAttributeNames;
+
+  /** The types of annotations passed to handlers or null if all annotations are passed. */
+  private final String[] annotationTypes;
+
+  /** The modified-UTF8 encoding of annotationTypes. */
+  private final byte[][] encodedAnnotationTypes;
+
+  /** Create a parser that passes every attribute to the handlers. */
+  protected ClassFileParser()
+  {
+    this( null, null );
+  }
+
+  /**
+   * Create a parser that only passes attributes with specified names to the handlers.
+   * Attribute names are matched against the encoded constant pool entries and
+   * other attributes are skipped without decoding their names. The name passed
+   * to the handler is the matching instance from the supplied array.
+   *
+   * @param attributeNames the names of the attributes to handle.
+   */
+  protected ClassFileParser( final String[] attributeNames )
+  {
+    this( attributeNames, null );
+  }
+
+  /**
+   * Create a parser that only passes attributes with specified names and
+   * top-level annotations of specified types to the handlers. Annotation
+   * types are matched against the encoded constant pool entries and other
+   * annotations are skipped without decoding any strings. The type passed
+   * to the handler is the matching instance from the supplied array.
+   *
+   * @param attributeNames  the names of the attributes to handle or null to handle all attributes.
+   * @param annotationTypes the descriptors of the annotations to handle, i.e. "Ljava/lang/Deprecated;",
+   *                        or null to handle all annotations.
+   */
+  protected ClassFileParser( final String[] attributeNames, final String[] annotationTypes )
+  {
+    this.attributeNames = null == attributeNames ? null : attributeNames.clone();
+    encodedAttributeNames = encodeUtf( attributeNames );
+    this.annotationTypes = null == annotationTypes ? null : annotationTypes.clone();
+    encodedAnnotationTypes = encodeUtf( annotationTypes );
+  }
+
+  /**
+   * Return the modified-UTF8 encoding of each of the strings.
+   *
+   * @param strings the strings or null.
+   * @return the encoded strings or null if strings is null.
+   */
+  private static byte[][] encodeUtf( final String[] strings )
+  {
+    if( null == strings )
+    {
+      return null;
+    }
+    final byte[][] encoded = new byte[strings.length][];
+    for( int i = 0; i < strings.length; i++ )
+    {
+      encoded[i] = ConstantPool.encodeUtf( strings[i] );
+    }
+    return encoded;
+  }
+
+  /**
+   * Return the name of attribute to pass to handler.
+   *
+   * @param nameIndex    the index of the attribute name in constant pool.
+   * @param constantPool the associated constant pool.
+   * @return the name or null if the attribute should be skipped.
+   */
+  private String getAttributeName( final int nameIndex, final ConstantPool constantPool )
+  {
+    if( null == attributeNames )
+    {
+      return constantPool.getUtfEntry( nameIndex );
+    }
+    for( int i = 0; i < encodedAttributeNames.length; i++ )
+    {
+      if( constantPool.isUtfEntryEqual( nameIndex, encodedAttributeNames[i] ) )
+      {
+        return attributeNames[i];
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Return true if attributes with specified name are passed to handlers.
+   *
+   * @param nameIndex    the index of the attribute name in constant pool.
+   * @param constantPool the associated constant pool.
+   * @return true if the attribute is parsed.
+   */
+  final boolean isAttributeParsed( final int nameIndex, final ConstantPool constantPool )
+  {
+    return null == attributeNames || null != getAttributeName( nameIndex, constantPool );
+  }
+
+  /**
+   * Return the type of annotation to pass to handler.
+   *
+   * @param typeIndex    the index of the annotation type in constant pool.
+   * @param constantPool the associated constant pool.
+   * @return the type or null if the annotation should be skipped.
+   */
+  private String getAnnotationType( final int typeIndex, final ConstantPool constantPool )
+  {
+    if( null == annotationTypes )
+    {
+      return constantPool.getUtfEntry( typeIndex );
+    }
+    for( int i = 0; i < encodedAnnotationTypes.length; i++ )
+    {
+      if( constantPool.isUtfEntryEqual( typeIndex, encodedAnnotationTypes[i] ) )
+      {
+        return annotationTypes[i];
+      }
+    }
+    return null;
+  }
+
   /**
    * Method to parse class attributes.
    *
@@ -81,9 +209,14 @@ public abstract class ClassFileParser
     for( int i = 0; i < count; i++ )
     {
       final int nameIndex = IOUtil.readUnsignedShort( data, offset );
-      final String name = constantPool.getUtfEntry( nameIndex );
+      final String name = getAttributeName( nameIndex, constantPool );
       final long length = IOUtil.readUnsignedInteger( data, offset + 2 );
       offset += 6;
+      if( null == name )
+      {
+        offset += length;
+        continue;
+      }
       switch( type )
       {
         case CLASS:
@@ -145,10 +278,13 @@ public abstract class ClassFileParser
     for( int i = 0; i < attributeCount; i++ )
     {
       final int nameIndex = IOUtil.readUnsignedShort( data, location );
-      final String name = constantPool.getUtfEntry( nameIndex );
+      final String name = getAttributeName( nameIndex, constantPool );
       final long length = IOUtil.readUnsignedInteger( data, location + 2 );
       location += 6;
-      handleCodeAttribute( name, data, location, length, constantPool );
+      if( null != name )
+      {
+        handleCodeAttribute( name, data, location, length, constantPool );
+      }
       location += length;
     }
     endCode();
@@ -288,7 +424,8 @@ public abstract class ClassFileParser
   }
 
   /**
-   * Method that parses a group of annotations.
+   * Method that parses a group of annotations. If the parser was created
+   * with annotation types then annotations of other types are skipped.
    *
    * @param type   the name of attribute annotations parsed from. i.e. "RuntimeVisibleAnnotations"
    * @param data   the data.
@@ -305,24 +442,33 @@ public abstract class ClassFileParser
     int location = offset + 2;
     for( int i = 0; i < count; i++ )
     {
-      location = parseAnnotation( data, location, constantPool );
+      final int typeIndex = IOUtil.readUnsignedShort( data, location );
+      final String annotationType = getAnnotationType( typeIndex, constantPool );
+      if( null == annotationType )
+      {
+        location = skipAnnotation( data, location );
+      }
+      else
+      {
+        location = parseAnnotation( annotationType, data, location, constantPool );
+      }
     }
   }
 
   /**
    * Method that parses an annotation.
    *
+   * @param type   the type of the annotation.
    * @param data   the data.
    * @param offset the offset into data where element starts.
    * @param constantPool the associated constant pool.
    * @return the offset of next element
    */
-  private int parseAnnotation( final byte[] data,
+  private int parseAnnotation( final String type,
+                               final byte[] data,
                                final int offset,
                                final ConstantPool constantPool )
   {
-    final int typeIndex = IOUtil.readUnsignedShort( data, offset );
-    final String type = constantPool.getUtfEntry( typeIndex );
     startAnnotation( type );
 
     final int count = IOUtil.readUnsignedShort( data, offset + 2 );
@@ -335,7 +481,7 @@ public abstract class ClassFileParser
       location = parseElementValue( name, data, location, constantPool );
     }
     endAnnotation();
-    return offset;
+    return location;
   }
 
   /**
@@ -361,73 +507,63 @@ public abstract class ClassFileParser
       {
         final int index = IOUtil.readUnsignedShort( data, location );
         location += 2;
-        final Object value = constantPool.getIntegerEntry( index );
-        handleAnnotationValue( name, value );
+        handleIntValue( name, constantPool.getIntegerEntry( index ) );
       }
       break;
       case ClassFileFormat.ANN_TAG_LONG:
       {
         final int index = IOUtil.readUnsignedShort( data, location );
         location += 2;
-        final Object value = constantPool.getLongEntry( index );
-        handleAnnotationValue( name, value );
+        handleLongValue( name, constantPool.getLongEntry( index ) );
         break;
       }
       case ClassFileFormat.ANN_TAG_FLOAT:
       {
         final int index = IOUtil.readUnsignedShort( data, location );
         location += 2;
-        final Object value = constantPool.getFloatEntry( index );
-        handleAnnotationValue( name, value );
+        handleFloatValue( name, constantPool.getFloatEntry( index ) );
         break;
       }
       case ClassFileFormat.ANN_TAG_DOUBLE:
       {
         final int index = IOUtil.readUnsignedShort( data, location );
         location += 2;
-        final Object value = constantPool.getDoubleEntry( index );
-        handleAnnotationValue( name, value );
+        handleDoubleValue( name, constantPool.getDoubleEntry( index ) );
         break;
       }
       case ClassFileFormat.ANN_TAG_BYTE:
       {
         final int index = IOUtil.readUnsignedShort( data, location );
         location += 2;
-        final Object value = (byte)constantPool.getIntegerEntry( index );
-        handleAnnotationValue( name, value );
+        handleByteValue( name, (byte)constantPool.getIntegerEntry( index ) );
         break;
       }
       case ClassFileFormat.ANN_TAG_BOOLEAN:
       {
         final int index = IOUtil.readUnsignedShort( data, location );
         location += 2;
-        final Object value =
-          ( 0 != constantPool.getIntegerEntry( index ) ) ? Boolean.TRUE : Boolean.FALSE;
-        handleAnnotationValue( name, value );
+        handleBooleanValue( name, 0 != constantPool.getIntegerEntry( index ) );
         break;
       }
       case ClassFileFormat.ANN_TAG_SHORT:
       {
         final int index = IOUtil.readUnsignedShort( data, location );
         location += 2;
-        final Object value = (short)constantPool.getIntegerEntry( index );
-        handleAnnotationValue( name, value );
+        handleShortValue( name, (short)constantPool.getIntegerEntry( index ) );
         break;
       }
       case ClassFileFormat.ANN_TAG_CHAR:
       {
         final int index = IOUtil.readUnsignedShort( data, location );
         location += 2;
-        final Object value = (char)constantPool.getIntegerEntry( index );
-        handleAnnotationValue( name, value );
+        handleCharValue( name, (char)constantPool.getIntegerEntry( index ) );
         break;
       }
       case ClassFileFormat.ANN_TAG_UTF8:
       {
         final int index = IOUtil.readUnsignedShort( data, location );
         location += 2;
-        final Object value = constantPool.getUtfEntry( index );
-        handleAnnotationValue( name, value );
+        handleStringValue( name, constantPool.getUtfEntry( index ) );
         break;
       }
       case ClassFileFormat.ANN_TAG_ENUM: // enum_const_value
@@ -445,14 +581,14 @@ public abstract class ClassFileParser
       {
         final int keyIndex = IOUtil.readUnsignedShort( data, location );
         location += 2;
-        final Object value = constantPool.getUtfEntry( keyIndex );
-        handleAnnotationValue( name, value );
+        handleClassValue( name, constantPool.getUtfEntry( keyIndex ) );
         break;
       }
       case ClassFileFormat.ANN_TAG_ANNOTATION:
       {
         startAnnotationValueAnnotation( name );
-        parseAnnotation( data, location, constantPool );
+        final String type = constantPool.getUtfEntry( IOUtil.readUnsignedShort( data, location ) );
+        location = parseAnnotation( type, data, location, constantPool );
         endAnnotationValueAnnotation();
         break;
       }
@@ -467,6 +603,11 @@ public abstract class ClassFileParser
           break;
         }
         final byte arrayTag = data[location];
+        if( streamAnnotationArrays() )
+        {
+          location = parseArrayElements( name, size, arrayTag, data, location, constantPool );
+          break;
+        }
         switch( arrayTag )
         {
           //TODO: Sort by frequency
@@ -605,13 +746,7 @@ public abstract class ClassFileParser
           case ClassFileFormat.ANN_TAG_ANNOTATION:
           case ClassFileFormat.ANN_TAG_ENUM:
           {
-            startAnnotationValueArray( name, size );
-            for( int j = 0; j < size; j++ )
-            {
-              checkTag( arrayTag, data, location );
-              location = parseElementValue( null, data, location, constantPool );
-            }
-            endAnnotationValueArray();
+            location = parseArrayElements( name, size, arrayTag, data, location, constantPool );
             break;
           }
 
@@ -630,6 +765,98 @@ public abstract class ClassFileParser
     return location;
   }
 
+  /**
+   * Skip an annotation without decoding any of its strings.
+   *
+   * @param data   the data.
+   * @param offset the offset into data where annotation starts.
+   * @return the offset after the annotation.
+   */
+  static int skipAnnotation( final byte[] data, final int offset )
+  {
+    final int count = IOUtil.readUnsignedShort( data, offset + 2 );
+    int location = offset + 4;
+    for( int i = 0; i < count; i++ )
+    {
+      location = skipElementValue( data, location + 2 );
+    }
+    return location;
+  }
+
+  /**
+   * Skip an element value without decoding any of its strings.
+   *
+   * @param data   the data.
+   * @param offset the offset into data where element value starts.
+   * @return the offset after the element value.
+   */
+  static int skipElementValue( final byte[] data, final int offset )
+  {
+    final byte tag = data[offset];
+    final int location = 1 + offset;
+    switch( tag )
+    {
+      case ClassFileFormat.ANN_TAG_INTEGER:
+      case ClassFileFormat.ANN_TAG_LONG:
+      case ClassFileFormat.ANN_TAG_FLOAT:
+      case ClassFileFormat.ANN_TAG_DOUBLE:
+      case ClassFileFormat.ANN_TAG_BYTE:
+      case ClassFileFormat.ANN_TAG_BOOLEAN:
+      case ClassFileFormat.ANN_TAG_SHORT:
+      case ClassFileFormat.ANN_TAG_CHAR:
+      case ClassFileFormat.ANN_TAG_UTF8:
+      case ClassFileFormat.ANN_TAG_CLASS:
+        return location + 2;
+      case ClassFileFormat.ANN_TAG_ENUM:
+        return location + 4;
+      case ClassFileFormat.ANN_TAG_ANNOTATION:
+        return skipAnnotation( data, location );
+      case ClassFileFormat.ANN_TAG_ARRAY:
+      {
+        final int size = IOUtil.readUnsignedShort( data, location );
+        int position = location + 2;
+        for( int i = 0; i < size; i++ )
+        {
+          position = skipElementValue( data, position );
+        }
+        return position;
+      }
+      default:
+        final String message =
+          "Unknown attribute tag (" + (char)tag + ") at position " + location;
+        throw new ClassFormatError( message );
+    }
+  }
+
+  /**
+   * Parse the elements of an array element value one at a time.
+   *
+   * @param name     the name of the element or null if nested in array.
+   * @param size     the number of elements.
+   * @param arrayTag the tag of the first element.
+   * @param data     the data.
+   * @param offset   the offset into data where the first element starts.
+   * @param constantPool the associated constant pool.
+   * @return the offset after the last element.
+   */
+  private int parseArrayElements( final String name,
+                                  final int size,
+                                  final byte arrayTag,
+                                  final byte[] data,
+                                  final int offset,
+                                  final ConstantPool constantPool )
+  {
+    int location = offset;
+    startAnnotationValueArray( name, size );
+    for( int j = 0; j < size; j++ )
+    {
+      checkTag( arrayTag, data, location );
+      location = parseElementValue( null, data, location, constantPool );
+    }
+    endAnnotationValueArray();
+    return location;
+  }
+
   /**
    * Check type for array tag and if not the same then throw an exception.
    *
@@ -756,6 +983,24 @@ public abstract class ClassFileParser
     handleInnerClass( innerClass, outerClass, innerName, innerClassAccessFlags );
   }
 
+  /**
+   * Subclasses override method to receive notification when processing of a class starts.
+   * Unlike other handlers this is optional and does nothing by default.
+   *
+   * @param classFile the class being processed.
+   */
+  protected void startClass( final ClassFile classFile )
+  {
+  }
+
+  /**
+   * Subclasses override method to receive notification when processing of a class completes.
+   * Unlike other handlers this is optional and does nothing by default.
+   */
+  protected void endClass()
+  {
+  }
+
   /** Subclasses override method to handle synthetic attribute. */
   protected void handleSynthetic()
   {
@@ -879,6 +1124,140 @@ public abstract class ClassFileParser
     throw newUnimplementedException();
   }
 
+  /**
+   * Return true to receive the elements of every annotation array one at a
+   * time, via the value callbacks with a null name between
+   * startAnnotationValueArray and endAnnotationValueArray. Otherwise arrays
+   * of primitives, Strings and classes are collected into an array that is
+   * passed to handleAnnotationValue. Streaming avoids allocating the arrays.
+   *
+   * @return true to stream the elements of arrays.
+   */
+  protected boolean streamAnnotationArrays()
+  {
+    return false;
+  }
+
+  /**
+   * Handle an int annotation value. Boxes the value and passes it to
+   * handleAnnotationValue unless overridden.
+   *
+   * @param name  the name of the element or null if nested in array.
+   * @param value the value.
+   */
+  protected void handleIntValue( final String name, final int value )
+  {
+    handleAnnotationValue( name, value );
+  }
+
+  /**
+   * Handle a long annotation value. Boxes the value and passes it to
+   * handleAnnotationValue unless overridden.
+   *
+   * @param name  the name of the element or null if nested in array.
+   * @param value the value.
+   */
+  protected void handleLongValue( final String name, final long value )
+  {
+    handleAnnotationValue( name, value );
+  }
+
+  /**
+   * Handle a float annotation value. Boxes the value and passes it to
+   * handleAnnotationValue unless overridden.
+   *
+   * @param name  the name of the element or null if nested in array.
+   * @param value the value.
+   */
+  protected void handleFloatValue( final String name, final float value )
+  {
+    handleAnnotationValue( name, value );
+  }
+
+  /**
+   * Handle a double annotation value. Boxes the value and passes it to
+   * handleAnnotationValue unless overridden.
+   *
+   * @param name  the name of the element or null if nested in array.
+   * @param value the value.
+   */
+  protected void handleDoubleValue( final String name, final double value )
+  {
+    handleAnnotationValue( name, value );
+  }
+
+  /**
+   * Handle a byte annotation value. Boxes the value and passes it to
+   * handleAnnotationValue unless overridden.
+   *
+   * @param name  the name of the element or null if nested in array.
+   * @param value the value.
+   */
+  protected void handleByteValue( final String name, final byte value )
+  {
+    handleAnnotationValue( name, value );
+  }
+
+  /**
+   * Handle a short annotation value. Boxes the value and passes it to
+   * handleAnnotationValue unless overridden.
+   *
+   * @param name  the name of the element or null if nested in array.
+   * @param value the value.
+   */
+  protected void handleShortValue( final String name, final short value )
+  {
+    handleAnnotationValue( name, value );
+  }
+
+  /**
+   * Handle a char annotation value. Boxes the value and passes it to
+   * handleAnnotationValue unless overridden.
+   *
+   * @param name  the name of the element or null if nested in array.
+   * @param value the value.
+   */
+  protected void handleCharValue( final String name, final char value )
+  {
+    handleAnnotationValue( name, value );
+  }
+
+  /**
+   * Handle a boolean annotation value. Passes Boolean.TRUE or
+   * Boolean.FALSE to handleAnnotationValue unless overridden.
+   *
+   * @param name  the name of the element or null if nested in array.
+   * @param value the value.
+   */
+  protected void handleBooleanValue( final String name, final boolean value )
+  {
+    handleAnnotationValue( name, value ? Boolean.TRUE : Boolean.FALSE );
+  }
+
+  /**
+   * Handle a String annotation value. Passes the value to
+   * handleAnnotationValue unless overridden.
+   *
+   * @param name  the name of the element or null if nested in array.
+   * @param value the value.
+   */
+  protected void handleStringValue( final String name, final String value )
+  {
+    handleAnnotationValue( name, value );
+  }
+
+  /**
+   * Handle a class annotation value. Passes the return descriptor of the
+   * class to handleAnnotationValue unless overridden.
+   *
+   * @param name       the name of the element or null if nested in array.
+   * @param descriptor the return descriptor of the class. i.e. "Ljava/lang/String;"
+   */
+  protected void handleClassValue( final String name, final String descriptor )
+  {
+    handleAnnotationValue( name, descriptor );
+  }
+
   /** Subclasses override method to receive notification when end of annotation value array is parsed. */
   protected void endAnnotationValueArray()
   {
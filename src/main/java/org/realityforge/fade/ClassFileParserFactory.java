@@ -0,0 +1,15 @@
+package org.realityforge.fade;
+
+/**
+ * Factory used by scanners to create a parser for each worker thread.
+ * Each parser created is only ever invoked from a single thread.
+ */
+public interface ClassFileParserFactory
+{
+  /**
+   * Create a new parser.
+   *
+   * @return the new parser.
+   */
+  ClassFileParser newParser();
+}
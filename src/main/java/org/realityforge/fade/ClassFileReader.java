@@ -0,0 +1,59 @@
+package org.realityforge.fade;
+
+/**
+ * Reader that parses a sequence of classes into a single reused ClassFile.
+ * The constant pool, its string cache and the member offset arrays only grow,
+ * so once the reader has seen its largest class it allocates little more
+ * than the Strings requested by the caller.
+ *
+ * <p>A reader and the ClassFile it returns are confined to a single thread.
+ * The ClassFile returned by {@link #read} is only valid until the next call
+ * to read, so callers must not retain it or any constant pool it exposes.</p>
+ */
+public final class ClassFileReader
+{
+  private final ClassFile classFile;
+
+  /** Create a reader. */
+  public ClassFileReader()
+  {
+    this( null );
+  }
+
+  /**
+   * Create a reader that shares decoded strings between classes.
+   *
+   * @param symbolTable the table used to share decoded strings, or null.
+   */
+  public ClassFileReader( final SymbolTable symbolTable )
+  {
+    classFile = new ClassFile( symbolTable );
+  }
+
+  /**
+   * Parse a class file, replacing the class previously read.
+   *
+   * @param data the data array.
+   * @return the reused ClassFile.
+   */
+  public ClassFile read( final byte[] data )
+  {
+    return read( data, 0, data.length );
+  }
+
+  /**
+   * Parse class file stored in a region of the data array, replacing the
+   * class previously read. The array must not be modified while the class
+   * is in use.
+   *
+   * @param data   the data array.
+   * @param start  the offset at which the class data starts.
+   * @param length the length of the class data.
+   * @return the reused ClassFile.
+   */
+  public ClassFile read( final byte[] data, final int start, final int length )
+  {
+    classFile.reset( data, start, length );
+    return classFile;
+  }
+}
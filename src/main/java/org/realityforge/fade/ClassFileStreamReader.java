@@ -0,0 +1,467 @@
+package org.realityforge.fade;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+
+/**
+ * Reader that parses a class as it is read from a stream or channel, without
+ * first copying the whole class into an array. Only the constant pool and
+ * class header are retained for the duration of the class. Each field, method
+ * and the class attributes are then read into a reused buffer and passed to
+ * the parser before the next is read. The bodies of attributes that the parser
+ * does not handle, and of sections that are not parsed, are skipped rather
+ * than buffered, so large classes are parsed with little more memory than
+ * their constant pool and largest handled member.
+ *
+ * <p>The reader consumes exactly the bytes of one class, so several classes
+ * can be read in sequence from one stream. Streams that support mark, such as
+ * a BufferedInputStream, are read ahead into a small window and reset to the
+ * end of the class once it is parsed. Other streams and channels are read
+ * with a call per section so should be buffered by the caller. If an error
+ * occurs the position of the source is undefined.</p>
+ *
+ * <p>The ClassFile passed to {@link ClassFileParser#startClass} only holds the
+ * header and constant pool. Accessing its fields or methods fails as the member
+ * sections have not been read. Like {@link ClassFileReader}, a reader, the
+ * ClassFile and constant pool it passes to the parser are confined to a single
+ * thread and are only valid until the next class is read.</p>
+ */
+public final class ClassFileStreamReader
+{
+  private final ClassFile classFile;
+
+  /** The buffer holding the constant pool and class header. */
+  private byte[] header = new byte[1024];
+
+  /** The number of bytes in the header buffer, which may extend past the header when reading ahead. */
+  private int available;
+
+  /** The buffer holding the current field, method or class attributes. */
+  private byte[] member = new byte[1024];
+
+  /** The buffer bytes are read into when skipping a source that cannot skip. */
+  private final byte[] discard = new byte[1024];
+
+  /** The bytes read ahead from a stream that supports mark, consumed from windowStart to windowEnd. */
+  private final byte[] window = new byte[8192];
+  private int windowStart;
+  private int windowEnd;
+
+  /** True if reading ahead into the window. */
+  private boolean readAhead;
+
+  private InputStream input;
+  private ReadableByteChannel channel;
+
+  /** The number of bytes consumed from the current class. */
+  private long position;
+
+  /** Create a reader. */
+  public ClassFileStreamReader()
+  {
+    this( null );
+  }
+
+  /**
+   * Create a reader that shares decoded strings between classes.
+   *
+   * @param symbolTable the table used to share decoded strings, or null.
+   */
+  public ClassFileStreamReader( final SymbolTable symbolTable )
+  {
+    classFile = new ClassFile( symbolTable );
+  }
+
+  /**
+   * Read one class from the stream and pass it to the parser.
+   *
+   * @param input             the stream positioned at the start of the class. The stream is not closed.
+   * @param parser            the parser.
+   * @param parseFields       true to parse field section, false otherwise.
+   * @param parseMethods      true to parse method section, false otherwise.
+   * @param parseClassSection true to parse class section, false otherwise.
+   * @return the number of bytes in the class.
+   * @throws IOException if an error occurs reading the stream or it ends before the class.
+   */
+  public long read( final InputStream input,
+                    final ClassFileParser parser,
+                    final boolean parseFields,
+                    final boolean parseMethods,
+                    final boolean parseClassSection )
+    throws IOException
+  {
+    this.input = input;
+    readAhead = input.markSupported();
+    try
+    {
+      final long length = read( parser, parseFields, parseMethods, parseClassSection );
+      if( readAhead )
+      {
+        unreadWindow();
+      }
+      return length;
+    }
+    finally
+    {
+      this.input = null;
+      readAhead = false;
+      windowStart = 0;
+      windowEnd = 0;
+    }
+  }
+
+  /**
+   * Read one class from the channel and pass it to the parser.
+   *
+   * @param channel           the channel positioned at the start of the class. The channel is not closed.
+   * @param parser            the parser.
+   * @param parseFields       true to parse field section, false otherwise.
+   * @param parseMethods      true to parse method section, false otherwise.
+   * @param parseClassSection true to parse class section, false otherwise.
+   * @return the number of bytes in the class.
+   * @throws IOException if an error occurs reading the channel or it ends before the class.
+   */
+  public long read( final ReadableByteChannel channel,
+                    final ClassFileParser parser,
+                    final boolean parseFields,
+                    final boolean parseMethods,
+                    final boolean parseClassSection )
+    throws IOException
+  {
+    this.channel = channel;
+    try
+    {
+      return read( parser, parseFields, parseMethods, parseClassSection );
+    }
+    finally
+    {
+      this.channel = null;
+    }
+  }
+
+  private long read( final ClassFileParser parser,
+                     final boolean parseFields,
+                     final boolean parseMethods,
+                     final boolean parseClassSection )
+    throws IOException
+  {
+    position = 0;
+    final ConstantPool constantPool = classFile.getConstantPool();
+    final int size = readHeader( constantPool );
+    classFile.resetHeaderFromPool( header, 0, size );
+    parser.startClass( classFile );
+
+    fill( member, 0, 2 );
+    final int fieldCount = IOUtil.readUnsignedShort( member, 0 );
+    for( int i = 0; i < fieldCount; i++ )
+    {
+      readMember( parser, parseFields );
+      if( parseFields )
+      {
+        parser.parseField( member, 0, constantPool );
+      }
+    }
+    fill( member, 0, 2 );
+    final int methodCount = IOUtil.readUnsignedShort( member, 0 );
+    for( int i = 0; i < methodCount; i++ )
+    {
+      readMember( parser, parseMethods );
+      if( parseMethods )
+      {
+        parser.parseMethod( member, 0, constantPool );
+      }
+    }
+    fill( member, 0, 2 );
+    readAttributes( parser, parseClassSection, 0 );
+    if( parseClassSection )
+    {
+      parser.parseClassAttributes( member, 0, constantPool );
+    }
+    parser.endClass();
+    return position;
+  }
+
+  /**
+   * Read the magic number, version, constant pool, class header and interfaces into the
+   * header buffer, recording the offsets of the constant pool entries as they are read.
+   *
+   * @param constantPool the pool to reset with the offsets of the entries.
+   * @return the number of bytes read.
+   * @throws IOException if an error occurs reading.
+   */
+  private int readHeader( final ConstantPool constantPool )
+    throws IOException
+  {
+    available = 0;
+    require( 10 );
+    ClassFile.checkClassData( header, 0, 10 );
+    final int constantCount = IOUtil.readUnsignedShort( header, 8 );
+    final int[] offsets = constantPool.startReset( constantCount );
+    //Each entry is required with the first three bytes of the next entry, which every
+    //entry has, or the fixed part of the class header, so an entry takes one read
+    require( 10 + ( constantCount > 1 ? 3 : 8 ) );
+    int entry = 10;
+    for( int i = 1; i < constantCount; i++ )
+    {
+      offsets[i] = entry;
+      final byte tag = header[entry];
+      int entrySize = ConstantPool.getEntryHeaderSize( tag );
+      if( -1 == entrySize )
+      {
+        throw new ClassFormatError( "Bad constant pool tag " + tag + " at position " + entry );
+      }
+      constantPool.tagCounts[tag]++;
+      if( ClassFileFormat.CONSTANT_Utf8 == tag )
+      {
+        entrySize += IOUtil.readUnsignedShort( header, entry + 1 );
+      }
+      else if( ClassFileFormat.CONSTANT_Long == tag || ClassFileFormat.CONSTANT_Double == tag )
+      {
+        i++;
+        if( i < constantCount )
+        {
+          offsets[i] = 0;
+        }
+      }
+      entry += entrySize;
+      require( entry + ( i + 1 < constantCount ? 3 : 8 ) );
+    }
+    final int end = entry + 8 + IOUtil.readUnsignedShort( header, entry + 6 ) * 2;
+    require( end );
+    offsets[0] = entry;
+    constantPool.endReset( header, constantCount );
+
+    //Return the bytes copied beyond the interfaces, which all came from the current window
+    final int excess = available - end;
+    windowStart -= excess;
+    position -= excess;
+    return end;
+  }
+
+  /**
+   * Read a field_info or method_info into the member buffer.
+   *
+   * @param parser the parser.
+   * @param keep   true to keep the member in the buffer, false to skip it.
+   * @throws IOException if an error occurs reading.
+   */
+  private void readMember( final ClassFileParser parser, final boolean keep )
+    throws IOException
+  {
+    fill( member, 0, 8 );
+    readAttributes( parser, keep, 6 );
+  }
+
+  /**
+   * Read the attributes whose count is in the member buffer at specified offset.
+   * Attributes that the parser does not handle are kept with an empty body.
+   *
+   * @param parser      the parser.
+   * @param keep        true to keep the attributes in the buffer, false to skip them.
+   * @param countOffset the offset of the attribute count in the member buffer.
+   * @throws IOException if an error occurs reading.
+   */
+  private void readAttributes( final ClassFileParser parser, final boolean keep, final int countOffset )
+    throws IOException
+  {
+    final int count = IOUtil.readUnsignedShort( member, countOffset );
+    int size = countOffset + 2;
+    for( int i = 0; i < count; i++ )
+    {
+      ensureMemberCapacity( size, 6 );
+      fill( member, size, 6 );
+      final long length = IOUtil.readUnsignedInteger( member, size + 2 );
+      if( keep && parser.isAttributeParsed( IOUtil.readUnsignedShort( member, size ), classFile.getConstantPool() ) )
+      {
+        if( length > Integer.MAX_VALUE - size - 6 )
+        {
+          throw new ClassFormatError( "Attribute at position " + ( position - 6 ) + " is too large to buffer" );
+        }
+        ensureMemberCapacity( size + 6, (int)length );
+        fill( member, size + 6, (int)length );
+        size += 6 + (int)length;
+      }
+      else
+      {
+        skip( length );
+        if( keep )
+        {
+          member[size + 2] = 0;
+          member[size + 3] = 0;
+          member[size + 4] = 0;
+          member[size + 5] = 0;
+          size += 6;
+        }
+      }
+    }
+  }
+
+  /**
+   * Ensure the header buffer holds at least the first end bytes of the class,
+   * growing it as required. When reading ahead, the rest of the window is also
+   * copied so that later calls rarely need to read.
+   *
+   * @param end the number of bytes required.
+   * @throws IOException if an error occurs reading.
+   */
+  private void require( final int end )
+    throws IOException
+  {
+    if( end <= available )
+    {
+      return;
+    }
+    if( end > header.length )
+    {
+      final byte[] newHeader = new byte[Math.max( header.length * 2, end )];
+      System.arraycopy( header, 0, newHeader, 0, available );
+      header = newHeader;
+      //The constant pool is reset once the header is complete so need not be updated
+    }
+    fill( header, available, end - available );
+    available = end;
+    if( readAhead )
+    {
+      final int extra = Math.min( windowEnd - windowStart, header.length - available );
+      System.arraycopy( window, windowStart, header, available, extra );
+      windowStart += extra;
+      position += extra;
+      available += extra;
+    }
+  }
+
+  private void ensureMemberCapacity( final int size, final int count )
+  {
+    if( size + count > member.length )
+    {
+      final byte[] newMember = new byte[Math.max( member.length * 2, size + count )];
+      System.arraycopy( member, 0, newMember, 0, size );
+      member = newMember;
+    }
+  }
+
+  /**
+   * Read exactly count bytes into the buffer, from the window if reading ahead.
+   *
+   * @throws IOException if an error occurs reading or the source ends.
+   */
+  private void fill( final byte[] buffer, final int offset, final int count )
+    throws IOException
+  {
+    if( !readAhead )
+    {
+      read( buffer, offset, count );
+      return;
+    }
+    int done = 0;
+    while( done < count )
+    {
+      if( windowStart == windowEnd )
+      {
+        input.mark( window.length );
+        windowStart = 0;
+        windowEnd = Math.max( 0, input.read( window, 0, window.length ) );
+        if( 0 == windowEnd )
+        {
+          throw new EOFException( "Class file truncated at position " + ( position + done ) );
+        }
+      }
+      final int chunk = Math.min( count - done, windowEnd - windowStart );
+      System.arraycopy( window, windowStart, buffer, offset + done, chunk );
+      windowStart += chunk;
+      done += chunk;
+    }
+    position += count;
+  }
+
+  /**
+   * Read exactly count bytes from the source into the buffer.
+   *
+   * @throws IOException if an error occurs reading or the source ends.
+   */
+  private void read( final byte[] buffer, final int offset, final int count )
+    throws IOException
+  {
+    int done = 0;
+    final ByteBuffer wrapper = null != channel ? ByteBuffer.wrap( buffer, offset, count ) : null;
+    while( done < count )
+    {
+      final int read = null != wrapper ?
+                       channel.read( wrapper ) :
+                       input.read( buffer, offset + done, count - done );
+      if( -1 == read )
+      {
+        throw new EOFException( "Class file truncated at position " + ( position + done ) );
+      }
+      done += read;
+    }
+    position += count;
+  }
+
+  /**
+   * Skip count bytes.
+   *
+   * @throws IOException if an error occurs reading or the source ends.
+   */
+  private void skip( final long count )
+    throws IOException
+  {
+    long remaining = count;
+    if( readAhead )
+    {
+      final int chunk = (int)Math.min( remaining, windowEnd - windowStart );
+      windowStart += chunk;
+      position += chunk;
+      remaining -= chunk;
+    }
+    if( null != input )
+    {
+      //The window is empty so nothing read ahead is lost by skipping the stream
+      while( remaining > 0 )
+      {
+        final long skipped = input.skip( remaining );
+        if( skipped <= 0 )
+        {
+          break;
+        }
+        remaining -= skipped;
+        position += skipped;
+      }
+    }
+    while( remaining > 0 )
+    {
+      final int chunk = (int)Math.min( remaining, discard.length );
+      fill( discard, 0, chunk );
+      remaining -= chunk;
+    }
+  }
+
+  /**
+   * Return the bytes read ahead beyond the end of the class to the stream.
+   *
+   * @throws IOException if an error occurs repositioning the stream.
+   */
+  private void unreadWindow()
+    throws IOException
+  {
+    if( windowStart < windowEnd )
+    {
+      input.reset();
+      long remaining = windowStart;
+      while( remaining > 0 )
+      {
+        final long skipped = input.skip( remaining );
+        if( skipped <= 0 )
+        {
+          throw new IOException( "Unable to reposition stream after class" );
+        }
+        remaining -= skipped;
+      }
+    }
+    windowStart = 0;
+    windowEnd = 0;
+  }
+}
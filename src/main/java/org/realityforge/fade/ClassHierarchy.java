@@ -0,0 +1,545 @@
+package org.realityforge.fade;
+
+import java.util.Arrays;
+
+/**
+ * Immutable index of the super class and interface edges between classes,
+ * created by a {@link ClassHierarchyBuilder}. Classes are identified by int
+ * ids and edges are stored in primitive adjacency arrays. Types that are
+ * referenced but were not added to the builder, such as java/lang/Object when
+ * the JDK is not scanned, are given ids after the declared classes.
+ *
+ * <p>Subtype queries use interval labels. Classes are numbered in postorder
+ * over the tree formed by super class edges, so all subclasses of a class
+ * have consecutive numbers. Each type is then labelled with the merged
+ * intervals covering the numbers of all its subtypes, including those reached
+ * via interfaces. isAssignable is a binary search of these intervals and
+ * allSubtypes enumerates them.</p>
+ */
+public final class ClassHierarchy
+{
+  private final String[] names;
+  private final int declaredCount;
+
+  /** Open addressing table of id + 1 keyed by name hash. */
+  private final int[] table;
+
+  /** Direct supertypes of id are supertypes[supertypeStart[id], supertypeStart[id + 1]), super class first. */
+  private final int[] supertypeStart;
+  private final int[] supertypes;
+  private final int[] superClasses;
+
+  /** Direct subtypes of id are subtypes[subtypeStart[id], subtypeStart[id + 1]). */
+  private final int[] subtypeStart;
+  private final int[] subtypes;
+
+  /** The postorder number of each id in the super class tree. */
+  private final int[] post;
+
+  /** The id with each postorder number. */
+  private final int[] byPost;
+
+  /** Intervals of id are pairs in intervals[2 * intervalStart[id], 2 * intervalStart[id + 1]). */
+  private final int[] intervalStart;
+  private final int[] intervals;
+
+  /**
+   * Create a hierarchy.
+   *
+   * @param names          the names of the classes, declared classes first.
+   * @param declaredCount  the number of declared classes.
+   * @param superClasses   the id of the super class of each class or -1.
+   * @param supertypeStart the start of the direct supertypes of each class, with a final entry for the end.
+   * @param supertypes     the ids of the direct supertypes, super class first.
+   */
+  ClassHierarchy( final String[] names,
+                  final int declaredCount,
+                  final int[] superClasses,
+                  final int[] supertypeStart,
+                  final int[] supertypes )
+  {
+    this.names = names;
+    this.declaredCount = declaredCount;
+    this.superClasses = superClasses;
+    this.supertypeStart = supertypeStart;
+    this.supertypes = supertypes;
+    final int count = names.length;
+
+    table = new int[tableSize( count )];
+    for( int i = 0; i < count; i++ )
+    {
+      int slot = hash( names[i] ) & ( table.length - 1 );
+      while( 0 != table[slot] )
+      {
+        slot = ( slot + 1 ) & ( table.length - 1 );
+      }
+      table[slot] = i + 1;
+    }
+
+    subtypeStart = new int[count + 1];
+    for( final int supertype : supertypes )
+    {
+      subtypeStart[supertype + 1]++;
+    }
+    for( int i = 0; i < count; i++ )
+    {
+      subtypeStart[i + 1] += subtypeStart[i];
+    }
+    subtypes = new int[supertypes.length];
+    final int[] fill = subtypeStart.clone();
+    for( int i = 0; i < count; i++ )
+    {
+      for( int j = supertypeStart[i]; j < supertypeStart[i + 1]; j++ )
+      {
+        subtypes[fill[supertypes[j]]++] = i;
+      }
+    }
+
+    post = new int[count];
+    byPost = new int[count];
+    final int[] low = new int[count];
+    numberTree( low );
+
+    intervalStart = new int[count + 1];
+    intervals = labelIntervals( low );
+  }
+
+  /**
+   * Return the number of classes including referenced classes that were not declared.
+   *
+   * @return the number of classes.
+   */
+  public int getClassCount()
+  {
+    return names.length;
+  }
+
+  /**
+   * Return the number of declared classes. Declared classes have ids less than this value.
+   *
+   * @return the number of declared classes.
+   */
+  public int getDeclaredClassCount()
+  {
+    return declaredCount;
+  }
+
+  /**
+   * Return the id of class with specified name.
+   *
+   * @param name the name of the class in internal format.
+   * @return the id or -1 if the class is not in the hierarchy.
+   */
+  public int getId( final String name )
+  {
+    int slot = hash( name ) & ( table.length - 1 );
+    while( 0 != table[slot] )
+    {
+      final int id = table[slot] - 1;
+      if( names[id].equals( name ) )
+      {
+        return id;
+      }
+      slot = ( slot + 1 ) & ( table.length - 1 );
+    }
+    return -1;
+  }
+
+  /**
+   * Return the name of class with specified id.
+   *
+   * @param id the id of the class.
+   * @return the name of the class in internal format.
+   */
+  public String getName( final int id )
+  {
+    return names[id];
+  }
+
+  /**
+   * Return true if the class was declared rather than only referenced.
+   *
+   * @param id the id of the class.
+   * @return true if the class was declared.
+   */
+  public boolean isDeclared( final int id )
+  {
+    return id < declaredCount;
+  }
+
+  /**
+   * Return the super class of class with specified id.
+   *
+   * @param id the id of the class.
+   * @return the id of the super class or -1 if the class has none or was not declared.
+   */
+  public int getSuperClass( final int id )
+  {
+    return superClasses[id];
+  }
+
+  /**
+   * Return the direct supertypes of class with specified id.
+   *
+   * @param id the id of the class.
+   * @return the ids of the super class, if any, followed by the interfaces.
+   */
+  public int[] getDirectSupertypes( final int id )
+  {
+    return copyOfRange( supertypes, supertypeStart[id], supertypeStart[id + 1] );
+  }
+
+  /**
+   * Return the direct subtypes of class with specified id.
+   *
+   * @param id the id of the class.
+   * @return the ids of the classes that directly extend or implement the class.
+   */
+  public int[] getDirectSubtypes( final int id )
+  {
+    return copyOfRange( subtypes, subtypeStart[id], subtypeStart[id + 1] );
+  }
+
+  /**
+   * Return true if a value of the subtype can be assigned to the supertype.
+   * i.e. if the classes are the same or the supertype is a direct or indirect
+   * super class or interface of the subtype.
+   *
+   * @param subtype   the id of the subtype.
+   * @param supertype the id of the supertype.
+   * @return true if assignable.
+   */
+  public boolean isAssignable( final int subtype, final int supertype )
+  {
+    if( subtype == supertype )
+    {
+      return true;
+    }
+    final int number = post[subtype];
+    int low = intervalStart[supertype];
+    int high = intervalStart[supertype + 1] - 1;
+    while( low <= high )
+    {
+      final int middle = ( low + high ) >>> 1;
+      if( intervals[middle * 2] > number )
+      {
+        high = middle - 1;
+      }
+      else if( intervals[middle * 2 + 1] < number )
+      {
+        low = middle + 1;
+      }
+      else
+      {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Return true if a value of the subtype can be assigned to the supertype.
+   *
+   * @param subtype   the name of the subtype.
+   * @param supertype the name of the supertype.
+   * @return true if both classes are in the hierarchy and assignable.
+   */
+  public boolean isAssignable( final String subtype, final String supertype )
+  {
+    final int subtypeId = getId( subtype );
+    final int supertypeId = getId( supertype );
+    return -1 != subtypeId && -1 != supertypeId && isAssignable( subtypeId, supertypeId );
+  }
+
+  /**
+   * Return all direct and indirect subtypes of class with specified id.
+   *
+   * @param id the id of the class.
+   * @return the ids of the subtypes, excluding the class itself.
+   */
+  public int[] allSubtypes( final int id )
+  {
+    int count = 0;
+    for( int i = intervalStart[id]; i < intervalStart[id + 1]; i++ )
+    {
+      count += intervals[i * 2 + 1] - intervals[i * 2] + 1;
+    }
+    final int[] result = new int[count - 1];
+    int index = 0;
+    for( int i = intervalStart[id]; i < intervalStart[id + 1]; i++ )
+    {
+      for( int number = intervals[i * 2]; number <= intervals[i * 2 + 1]; number++ )
+      {
+        if( byPost[number] != id )
+        {
+          result[index++] = byPost[number];
+        }
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Return all direct and indirect supertypes of class with specified id.
+   *
+   * @param id the id of the class.
+   * @return the ids of the supertypes in breadth first order, excluding the class itself.
+   */
+  public int[] allSupertypes( final int id )
+  {
+    int[] result = new int[8];
+    int[] seen = new int[16];
+    int count = 0;
+    int next = -1;
+    int current = id;
+    while( true )
+    {
+      for( int i = supertypeStart[current]; i < supertypeStart[current + 1]; i++ )
+      {
+        final int supertype = supertypes[i];
+        if( supertype != id && insert( seen, supertype ) )
+        {
+          if( count == result.length )
+          {
+            result = copyOfRange( result, 0, count * 2 );
+          }
+          result[count++] = supertype;
+          if( count * 2 > seen.length )
+          {
+            seen = new int[seen.length * 2];
+            for( int j = 0; j < count; j++ )
+            {
+              insert( seen, result[j] );
+            }
+          }
+        }
+      }
+      next++;
+      if( next == count )
+      {
+        return copyOfRange( result, 0, count );
+      }
+      current = result[next];
+    }
+  }
+
+  /**
+   * Number the classes in postorder over the tree formed by super class edges.
+   * Classes whose super class chain is cyclic are numbered from an arbitrary member of the cycle.
+   *
+   * @param low receives the lowest number in the subtree of each class.
+   */
+  private void numberTree( final int[] low )
+  {
+    final int count = names.length;
+    final boolean[] visited = new boolean[count];
+    final int[] stack = new int[count];
+    final int[] cursor = new int[count];
+    int number = 0;
+    for( int pass = 0; pass < 2; pass++ )
+    {
+      for( int root = 0; root < count; root++ )
+      {
+        //The first pass starts from real roots, the second from unvisited members of cycles
+        if( visited[root] || ( 0 == pass && -1 != superClasses[root] ) )
+        {
+          continue;
+        }
+        int depth = 0;
+        stack[0] = root;
+        cursor[root] = subtypeStart[root];
+        visited[root] = true;
+        low[root] = number;
+        while( depth >= 0 )
+        {
+          final int node = stack[depth];
+          if( cursor[node] < subtypeStart[node + 1] )
+          {
+            final int child = subtypes[cursor[node]++];
+            if( !visited[child] && node == superClasses[child] )
+            {
+              visited[child] = true;
+              low[child] = number;
+              cursor[child] = subtypeStart[child];
+              stack[++depth] = child;
+            }
+          }
+          else
+          {
+            post[node] = number;
+            byPost[number] = node;
+            number++;
+            depth--;
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * Compute the intervals of each class, processing subtypes before supertypes.
+   *
+   * @param low the lowest number in the subtree of each class.
+   * @return the intervals.
+   */
+  private int[] labelIntervals( final int[] low )
+  {
+    final int count = names.length;
+    final int[] starts = new int[count];
+    final int[] lengths = new int[count];
+    int[] all = new int[count * 2 + 16];
+    int size = 0;
+    int[] scratch = new int[16];
+
+    final byte[] state = new byte[count];
+    final int[] stack = new int[count];
+    final int[] cursor = new int[count];
+    for( int root = 0; root < count; root++ )
+    {
+      if( 0 != state[root] )
+      {
+        continue;
+      }
+      int depth = 0;
+      stack[0] = root;
+      state[root] = 1;
+      cursor[root] = subtypeStart[root];
+      while( depth >= 0 )
+      {
+        final int node = stack[depth];
+        if( cursor[node] < subtypeStart[node + 1] )
+        {
+          final int child = subtypes[cursor[node]++];
+          if( 0 == state[child] )
+          {
+            state[child] = 1;
+            cursor[child] = subtypeStart[child];
+            stack[++depth] = child;
+          }
+          continue;
+        }
+        depth--;
+        state[node] = 2;
+
+        //All subtypes have been labelled unless they form a cycle with node
+        int pairs = 1;
+        for( int i = subtypeStart[node]; i < subtypeStart[node + 1]; i++ )
+        {
+          pairs += lengths[subtypes[i]];
+        }
+        if( scratch.length < pairs * 2 )
+        {
+          scratch = new int[pairs * 4];
+        }
+        scratch[0] = low[node];
+        scratch[1] = post[node];
+        int index = 2;
+        for( int i = subtypeStart[node]; i < subtypeStart[node + 1]; i++ )
+        {
+          final int child = subtypes[i];
+          System.arraycopy( all, starts[child] * 2, scratch, index, lengths[child] * 2 );
+          index += lengths[child] * 2;
+        }
+        final int merged = merge( scratch, pairs );
+        if( all.length < ( size + merged ) * 2 )
+        {
+          all = copyOfRange( all, 0, Math.max( all.length * 2, ( size + merged ) * 2 ) );
+        }
+        System.arraycopy( scratch, 0, all, size * 2, merged * 2 );
+        starts[node] = size;
+        lengths[node] = merged;
+        size += merged;
+      }
+    }
+
+    //Lay the intervals out in id order so each class has a contiguous range
+    final int[] result = new int[size * 2];
+    int position = 0;
+    for( int i = 0; i < count; i++ )
+    {
+      intervalStart[i] = position;
+      System.arraycopy( all, starts[i] * 2, result, position * 2, lengths[i] * 2 );
+      position += lengths[i];
+    }
+    intervalStart[count] = position;
+    return result;
+  }
+
+  /**
+   * Sort and merge overlapping or adjacent intervals in place.
+   *
+   * @param pairs the intervals as start, end pairs.
+   * @param count the number of intervals.
+   * @return the number of merged intervals.
+   */
+  private static int merge( final int[] pairs, final int count )
+  {
+    //Sort by start using the start as the high word of a long
+    final long[] keys = new long[count];
+    for( int i = 0; i < count; i++ )
+    {
+      keys[i] = ( (long)pairs[i * 2] << 32 ) | ( pairs[i * 2 + 1] & 0xFFFFFFFFL );
+    }
+    Arrays.sort( keys );
+    int merged = 0;
+    for( int i = 0; i < count; i++ )
+    {
+      final int start = (int)( keys[i] >>> 32 );
+      final int end = (int)keys[i];
+      if( 0 != merged && start <= pairs[merged * 2 - 1] + 1 )
+      {
+        pairs[merged * 2 - 1] = Math.max( pairs[merged * 2 - 1], end );
+      }
+      else
+      {
+        pairs[merged * 2] = start;
+        pairs[merged * 2 + 1] = end;
+        merged++;
+      }
+    }
+    return merged;
+  }
+
+  /**
+   * Add an id to an open addressing set of id + 1.
+   *
+   * @return true if the id was not already in the set.
+   */
+  private static boolean insert( final int[] set, final int id )
+  {
+    int slot = ( ( id * 0x9E3779B9 ) >>> 16 ) & ( set.length - 1 );
+    while( 0 != set[slot] )
+    {
+      if( id + 1 == set[slot] )
+      {
+        return false;
+      }
+      slot = ( slot + 1 ) & ( set.length - 1 );
+    }
+    set[slot] = id + 1;
+    return true;
+  }
+
+  private static int[] copyOfRange( final int[] values, final int start, final int end )
+  {
+    final int[] result = new int[end - start];
+    System.arraycopy( values, start, result, 0, Math.min( end, values.length ) - start );
+    return result;
+  }
+
+  private static int tableSize( final int count )
+  {
+    int size = 16;
+    while( size < count * 2 )
+    {
+      size <<= 1;
+    }
+    return size;
+  }
+
+  private static int hash( final String name )
+  {
+    final int hash = name.hashCode();
+    return hash ^ ( hash >>> 16 );
+  }
+}
@@ -0,0 +1,167 @@
+package org.realityforge.fade;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * Builder that records the super class and interfaces of classes and creates
+ * a {@link ClassHierarchy}. Classes are added directly or collected in parallel
+ * by the parsers created by the builder, which only need the class header so
+ * a {@link JarScanner} need not parse any sections. If several classes have
+ * the same name only one of them is used.
+ */
+public final class ClassHierarchyBuilder
+  extends IndexBuilder<String[]>
+{
+  private static final String[] EMPTY = new String[0];
+
+  /** The classes added directly to the builder. Registered first so they take precedence. */
+  private final Collector added = register( new Collector() );
+
+  /**
+   * Scan the classes in specified jar on several threads.
+   *
+   * @param jar         the jar file.
+   * @param threadCount the number of worker threads.
+   * @throws IOException if an error occurs reading the jar.
+   */
+  public void scan( final File jar, final int threadCount )
+    throws IOException
+  {
+    new JarScanner( threadCount, false, false, false, false ).scan( jar, this );
+  }
+
+  EntryCollector<String[]> newCollector()
+  {
+    return new Collector();
+  }
+
+  /**
+   * Add a class to the builder. Must not be invoked concurrently.
+   *
+   * @param name       the name of the class in internal format.
+   * @param superName  the name of the super class or null.
+   * @param interfaces the names of the interfaces or null.
+   */
+  public void add( final String name, final String superName, final String[] interfaces )
+  {
+    if( null == name )
+    {
+      throw new IllegalArgumentException( "Null class name" );
+    }
+    added.add( name, superName, null == interfaces ? EMPTY : interfaces.clone() );
+  }
+
+  /**
+   * Create a hierarchy from the classes collected so far.
+   * Must not be invoked while parsers created by builder are in use.
+   *
+   * @return the hierarchy.
+   */
+  public ClassHierarchy build()
+  {
+    final HashMap<String, Integer> declared = new HashMap<String, Integer>();
+    final ArrayList<String[]> entries = new ArrayList<String[]>();
+    for( final String[] entry : getEntries() )
+    {
+      if( !declared.containsKey( entry[0] ) )
+      {
+        declared.put( entry[0], entries.size() );
+        entries.add( entry );
+      }
+    }
+
+    //Declared classes are sorted by name so ids do not depend on scan order
+    final String[] declaredNames = declared.keySet().toArray( new String[declared.size()] );
+    Arrays.sort( declaredNames );
+    final HashMap<String, Integer> ids = new HashMap<String, Integer>( declaredNames.length * 2 );
+    final ArrayList<String> names = new ArrayList<String>( declaredNames.length );
+    for( final String name : declaredNames )
+    {
+      ids.put( name, names.size() );
+      names.add( name );
+    }
+
+    final int[] superClasses = new int[declaredNames.length];
+    final int[] supertypeStart = new int[declaredNames.length + 1];
+    int edgeCount = 0;
+    for( int i = 0; i < declaredNames.length; i++ )
+    {
+      final String[] entry = entries.get( declared.get( declaredNames[i] ) );
+      edgeCount += entry.length - ( null == entry[1] ? 2 : 1 );
+    }
+    final int[] supertypes = new int[edgeCount];
+    int edge = 0;
+    for( int i = 0; i < declaredNames.length; i++ )
+    {
+      final String[] entry = entries.get( declared.get( declaredNames[i] ) );
+      supertypeStart[i] = edge;
+      superClasses[i] = -1;
+      for( int j = 1; j < entry.length; j++ )
+      {
+        if( null == entry[j] )
+        {
+          continue;
+        }
+        Integer id = ids.get( entry[j] );
+        if( null == id )
+        {
+          id = names.size();
+          ids.put( entry[j], id );
+          names.add( entry[j] );
+        }
+        if( 1 == j )
+        {
+          superClasses[i] = id;
+        }
+        supertypes[edge++] = id;
+      }
+    }
+    supertypeStart[declaredNames.length] = edge;
+
+    //Referenced classes that were not declared have no supertypes
+    final int count = names.size();
+    final int[] allSuperClasses = new int[count];
+    Arrays.fill( allSuperClasses, -1 );
+    System.arraycopy( superClasses, 0, allSuperClasses, 0, superClasses.length );
+    final int[] allSupertypeStart = new int[count + 1];
+    Arrays.fill( allSupertypeStart, edge );
+    System.arraycopy( supertypeStart, 0, allSupertypeStart, 0, supertypeStart.length );
+
+    return new ClassHierarchy( names.toArray( new String[count] ),
+                               declaredNames.length,
+                               allSuperClasses,
+                               allSupertypeStart,
+                               supertypes );
+  }
+
+  /**
+   * Parser that records each class it processes as an array containing
+   * the name, the super class name or null and the interface names.
+   */
+  private static final class Collector
+    extends EntryCollector<String[]>
+  {
+    protected void startClass( final ClassFile classFile )
+    {
+      add( classFile.getClassName(), classFile.getSuperClassName(), classFile.getInterfaces() );
+    }
+
+    void add( final String name, final String superName, final String[] interfaces )
+    {
+      final String[] entry = new String[interfaces.length + 2];
+      entry[0] = name;
+      entry[1] = superName;
+      System.arraycopy( interfaces, 0, entry, 2, interfaces.length );
+      entries.add( entry );
+    }
+
+    String getClassName( final String[] entry )
+    {
+      return entry[0];
+    }
+  }
+}
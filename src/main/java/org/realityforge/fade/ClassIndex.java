@@ -0,0 +1,484 @@
+package org.realityforge.fade;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Read-only view of a class index file written by {@link ClassIndexBuilder}.
+ * The file is laid out as fixed size records and int arrays so it can be
+ * memory mapped and queried in place. Opening an index only validates the
+ * header, and queries only decode the strings they return. All reads use
+ * absolute positions so an index may be queried from several threads.
+ *
+ * <p>The file consists of a header followed by these sections. All values are
+ * big-endian ints unless noted and strings are referenced by id.</p>
+ * <ul>
+ * <li>String offsets: the position of each string, ordered so that string
+ * ids sort in the same order as the modified-UTF8 bytes of the strings.</li>
+ * <li>Classes: records of CLASS_RECORD_SIZE ints sorted by name.</li>
+ * <li>Members: records of MEMBER_RECORD_SIZE ints, grouped by class.</li>
+ * <li>Annotations: records of ANNOTATION_RECORD_SIZE ints sorted by
+ * annotation type, class and member.</li>
+ * <li>Int pool: interface and annotation type ids referenced by ranges in class
+ * and member records.</li>
+ * <li>String data: each string as a u2 length followed by modified-UTF8 bytes.</li>
+ * </ul>
+ */
+public final class ClassIndex
+{
+  /** Magic number at start of an index. */
+  static final int MAGIC = 0xFADEC1D0;
+
+  /** Version of the file format. */
+  static final int VERSION = 1;
+
+  static final int HEADER_SIZE = 11;
+  static final int CLASS_RECORD_SIZE = 9;
+  static final int MEMBER_RECORD_SIZE = 6;
+  static final int ANNOTATION_RECORD_SIZE = 3;
+
+  /** Member kind for fields. */
+  public static final int FIELD = 0;
+  /** Member kind for methods. */
+  public static final int METHOD = 1;
+
+  private final ByteBuffer buffer;
+  private final int stringCount;
+  private final int stringOffsetsPosition;
+  private final int classCount;
+  private final int classesPosition;
+  private final int memberCount;
+  private final int membersPosition;
+  private final int annotationCount;
+  private final int annotationsPosition;
+  private final int poolPosition;
+
+  /**
+   * Create an index backed by specified buffer.
+   * The buffer is used from position 0 and must not be modified.
+   *
+   * @param buffer the buffer containing the index.
+   * @throws IOException if the buffer does not contain a valid index.
+   */
+  public ClassIndex( final ByteBuffer buffer )
+    throws IOException
+  {
+    this.buffer = buffer;
+    if( buffer.limit() < HEADER_SIZE * 4 )
+    {
+      throw new IOException( "Class index is truncated" );
+    }
+    final int magic = buffer.getInt( 0 );
+    if( MAGIC != magic )
+    {
+      throw new IOException( "Bad class index magic number " + Integer.toHexString( magic ) );
+    }
+    final int version = buffer.getInt( 4 );
+    if( VERSION != version )
+    {
+      throw new IOException( "Unsupported class index version " + version );
+    }
+    stringCount = buffer.getInt( 8 );
+    classCount = buffer.getInt( 12 );
+    memberCount = buffer.getInt( 16 );
+    annotationCount = buffer.getInt( 20 );
+    stringOffsetsPosition = buffer.getInt( 24 );
+    classesPosition = buffer.getInt( 28 );
+    membersPosition = buffer.getInt( 32 );
+    annotationsPosition = buffer.getInt( 36 );
+    poolPosition = buffer.getInt( 40 );
+    checkSection( stringOffsetsPosition, stringCount, 1 );
+    checkSection( classesPosition, classCount, CLASS_RECORD_SIZE );
+    checkSection( membersPosition, memberCount, MEMBER_RECORD_SIZE );
+    checkSection( annotationsPosition, annotationCount, ANNOTATION_RECORD_SIZE );
+    checkSection( poolPosition, 0, 0 );
+  }
+
+  /**
+   * Map specified file into memory and create an index backed by it.
+   *
+   * @param file the index file.
+   * @return the index.
+   * @throws IOException if an error occurs mapping the file or it does not contain a valid index.
+   */
+  public static ClassIndex map( final File file )
+    throws IOException
+  {
+    final RandomAccessFile input = new RandomAccessFile( file, "r" );
+    try
+    {
+      final FileChannel channel = input.getChannel();
+      return new ClassIndex( channel.map( FileChannel.MapMode.READ_ONLY, 0, channel.size() ) );
+    }
+    finally
+    {
+      //The mapping remains valid after the channel is closed
+      input.close();
+    }
+  }
+
+  /**
+   * Return the number of classes in index.
+   *
+   * @return the number of classes.
+   */
+  public int getClassCount()
+  {
+    return classCount;
+  }
+
+  /**
+   * Return the index of the class with specified name.
+   *
+   * @param className the name of the class in internal format.
+   * @return the index of the class or -1 if not present.
+   */
+  public int findClass( final String className )
+  {
+    final int nameId = findString( className );
+    if( -1 == nameId )
+    {
+      return -1;
+    }
+    int low = 0;
+    int high = classCount - 1;
+    while( low <= high )
+    {
+      final int middle = ( low + high ) >>> 1;
+      final int id = classInt( middle, 0 );
+      if( id < nameId )
+      {
+        low = middle + 1;
+      }
+      else if( id > nameId )
+      {
+        high = middle - 1;
+      }
+      else
+      {
+        return middle;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Return the name of the class at specified index.
+   *
+   * @param classIndex the index of the class.
+   * @return the name of the class in internal format.
+   */
+  public String getClassName( final int classIndex )
+  {
+    return getString( classInt( classIndex, 0 ) );
+  }
+
+  /**
+   * Return the name of the super class of the class at specified index.
+   *
+   * @param classIndex the index of the class.
+   * @return the name of the super class or null for java/lang/Object.
+   */
+  public String getSuperClassName( final int classIndex )
+  {
+    final int id = classInt( classIndex, 1 );
+    return -1 == id ? null : getString( id );
+  }
+
+  /**
+   * Return the access flags of the class at specified index.
+   *
+   * @param classIndex the index of the class.
+   * @return the access flags.
+   */
+  public int getAccessFlags( final int classIndex )
+  {
+    return classInt( classIndex, 2 );
+  }
+
+  /**
+   * Return the number of interfaces of the class at specified index.
+   *
+   * @param classIndex the index of the class.
+   * @return the number of interfaces.
+   */
+  public int getInterfaceCount( final int classIndex )
+  {
+    return classInt( classIndex, 4 );
+  }
+
+  /**
+   * Return the name of an interface of the class at specified index.
+   *
+   * @param classIndex     the index of the class.
+   * @param interfaceIndex the index of the interface.
+   * @return the name of the interface in internal format.
+   */
+  public String getInterface( final int classIndex, final int interfaceIndex )
+  {
+    checkIndex( interfaceIndex, getInterfaceCount( classIndex ) );
+    return getString( poolInt( classInt( classIndex, 3 ) + interfaceIndex ) );
+  }
+
+  /**
+   * Return the number of fields and methods of the class at specified index.
+   *
+   * @param classIndex the index of the class.
+   * @return the number of members.
+   */
+  public int getMemberCount( final int classIndex )
+  {
+    return classInt( classIndex, 6 );
+  }
+
+  /**
+   * Return the kind of a member of the class at specified index.
+   *
+   * @param classIndex  the index of the class.
+   * @param memberIndex the index of the member.
+   * @return FIELD or METHOD.
+   */
+  public int getMemberKind( final int classIndex, final int memberIndex )
+  {
+    return memberInt( classIndex, memberIndex, 0 );
+  }
+
+  /**
+   * Return the access flags of a member of the class at specified index.
+   *
+   * @param classIndex  the index of the class.
+   * @param memberIndex the index of the member.
+   * @return the access flags.
+   */
+  public int getMemberAccessFlags( final int classIndex, final int memberIndex )
+  {
+    return memberInt( classIndex, memberIndex, 1 );
+  }
+
+  /**
+   * Return the name of a member of the class at specified index.
+   *
+   * @param classIndex  the index of the class.
+   * @param memberIndex the index of the member.
+   * @return the name of the member.
+   */
+  public String getMemberName( final int classIndex, final int memberIndex )
+  {
+    return getString( memberInt( classIndex, memberIndex, 2 ) );
+  }
+
+  /**
+   * Return the descriptor of a member of the class at specified index.
+   *
+   * @param classIndex  the index of the class.
+   * @param memberIndex the index of the member.
+   * @return the descriptor of the member.
+   */
+  public String getMemberDescriptor( final int classIndex, final int memberIndex )
+  {
+    return getString( memberInt( classIndex, memberIndex, 3 ) );
+  }
+
+  /**
+   * Return the number of annotations declared on the class at specified index.
+   *
+   * @param classIndex the index of the class.
+   * @return the number of annotations.
+   */
+  public int getClassAnnotationCount( final int classIndex )
+  {
+    return classInt( classIndex, 8 );
+  }
+
+  /**
+   * Return the type of an annotation declared on the class at specified index.
+   *
+   * @param classIndex      the index of the class.
+   * @param annotationIndex the index of the annotation.
+   * @return the descriptor of the annotation type.
+   */
+  public String getClassAnnotation( final int classIndex, final int annotationIndex )
+  {
+    checkIndex( annotationIndex, getClassAnnotationCount( classIndex ) );
+    return getString( poolInt( classInt( classIndex, 7 ) + annotationIndex ) );
+  }
+
+  /**
+   * Return the number of annotations declared on a member of the class at specified index.
+   *
+   * @param classIndex  the index of the class.
+   * @param memberIndex the index of the member.
+   * @return the number of annotations.
+   */
+  public int getMemberAnnotationCount( final int classIndex, final int memberIndex )
+  {
+    return memberInt( classIndex, memberIndex, 5 );
+  }
+
+  /**
+   * Return the type of an annotation declared on a member of the class at specified index.
+   *
+   * @param classIndex      the index of the class.
+   * @param memberIndex     the index of the member.
+   * @param annotationIndex the index of the annotation.
+   * @return the descriptor of the annotation type.
+   */
+  public String getMemberAnnotation( final int classIndex, final int memberIndex, final int annotationIndex )
+  {
+    checkIndex( annotationIndex, getMemberAnnotationCount( classIndex, memberIndex ) );
+    return getString( poolInt( memberInt( classIndex, memberIndex, 4 ) + annotationIndex ) );
+  }
+
+  /**
+   * Return the indexes of the classes that are annotated with specified type.
+   * Annotations on members are not included.
+   *
+   * @param annotationType the descriptor of the annotation type. i.e. "Ljava/lang/Deprecated;"
+   * @return the indexes of the classes in ascending order.
+   */
+  public int[] getAnnotatedClasses( final String annotationType )
+  {
+    final int typeId = findString( annotationType );
+    if( -1 == typeId )
+    {
+      return new int[0];
+    }
+    //Find the first record for type. Class annotations sort before member annotations of same class.
+    int low = 0;
+    int high = annotationCount;
+    while( low < high )
+    {
+      final int middle = ( low + high ) >>> 1;
+      if( annotationInt( middle, 0 ) < typeId )
+      {
+        low = middle + 1;
+      }
+      else
+      {
+        high = middle;
+      }
+    }
+    int count = 0;
+    for( int i = low; i < annotationCount && typeId == annotationInt( i, 0 ); i++ )
+    {
+      if( -1 == annotationInt( i, 2 ) )
+      {
+        count++;
+      }
+    }
+    final int[] classes = new int[count];
+    int j = 0;
+    for( int i = low; j < count; i++ )
+    {
+      if( -1 == annotationInt( i, 2 ) )
+      {
+        classes[j++] = annotationInt( i, 1 );
+      }
+    }
+    return classes;
+  }
+
+  /**
+   * Return the id of specified string.
+   *
+   * @param value the string.
+   * @return the id or -1 if the index does not contain the string.
+   */
+  private int findString( final String value )
+  {
+    final byte[] encoded = IOUtil.encodeUtf( value );
+    int low = 0;
+    int high = stringCount - 1;
+    while( low <= high )
+    {
+      final int middle = ( low + high ) >>> 1;
+      final int result = compareString( middle, encoded );
+      if( result < 0 )
+      {
+        low = middle + 1;
+      }
+      else if( result > 0 )
+      {
+        high = middle - 1;
+      }
+      else
+      {
+        return middle;
+      }
+    }
+    return -1;
+  }
+
+  /** Compare the bytes of the string with specified id to the encoded bytes as unsigned values. */
+  private int compareString( final int id, final byte[] encoded )
+  {
+    final int position = buffer.getInt( stringOffsetsPosition + id * 4 );
+    final int length = buffer.getShort( position ) & 0xFFFF;
+    final int count = Math.min( length, encoded.length );
+    for( int i = 0; i < count; i++ )
+    {
+      final int result = ( buffer.get( position + 2 + i ) & 0xFF ) - ( encoded[i] & 0xFF );
+      if( 0 != result )
+      {
+        return result;
+      }
+    }
+    return length - encoded.length;
+  }
+
+  private String getString( final int id )
+  {
+    checkIndex( id, stringCount );
+    final int position = buffer.getInt( stringOffsetsPosition + id * 4 );
+    final int length = buffer.getShort( position ) & 0xFFFF;
+    final byte[] bytes = new byte[length];
+    for( int i = 0; i < length; i++ )
+    {
+      bytes[i] = buffer.get( position + 2 + i );
+    }
+    return IOUtil.parseUtfString( bytes, 0, -1, length );
+  }
+
+  private int classInt( final int classIndex, final int field )
+  {
+    checkIndex( classIndex, classCount );
+    return buffer.getInt( classesPosition + ( classIndex * CLASS_RECORD_SIZE + field ) * 4 );
+  }
+
+  private int memberInt( final int classIndex, final int memberIndex, final int field )
+  {
+    checkIndex( memberIndex, getMemberCount( classIndex ) );
+    final int member = classInt( classIndex, 5 ) + memberIndex;
+    return buffer.getInt( membersPosition + ( member * MEMBER_RECORD_SIZE + field ) * 4 );
+  }
+
+  private int annotationInt( final int annotationIndex, final int field )
+  {
+    return buffer.getInt( annotationsPosition + ( annotationIndex * ANNOTATION_RECORD_SIZE + field ) * 4 );
+  }
+
+  private int poolInt( final int index )
+  {
+    return buffer.getInt( poolPosition + index * 4 );
+  }
+
+  private static void checkIndex( final int index, final int count )
+  {
+    if( index < 0 || index >= count )
+    {
+      throw new IndexOutOfBoundsException( "Index " + index + " is not in range [0," + count + ")" );
+    }
+  }
+
+  private void checkSection( final int position, final int count, final int recordSize )
+    throws IOException
+  {
+    if( position < HEADER_SIZE * 4 || count < 0 || (long)position + (long)count * recordSize * 4 > buffer.limit() )
+    {
+      throw new IOException( "Class index is truncated" );
+    }
+  }
+}
@@ -0,0 +1,463 @@
+package org.realityforge.fade;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Builder that records the names, hierarchy, members and annotation types of
+ * the classes processed by its parsers and writes them as a {@link ClassIndex}
+ * file. Like {@link AnnotationIndexBuilder} the builder is a
+ * {@link ClassFileParserFactory} so classes can be collected in parallel by a
+ * {@link JarScanner}, which must parse the field, method and class sections.
+ * If several classes have the same name only one of them is written.
+ */
+public final class ClassIndexBuilder
+  extends IndexBuilder<ClassIndexBuilder.ClassEntry>
+{
+  private static final String[] ATTRIBUTE_NAMES = new String[]{ClassFileFormat.ATTR_RuntimeVisibleAnnotations};
+
+  private static final String[] EMPTY = new String[0];
+
+  /**
+   * Scan the classes in specified jar on several threads.
+   *
+   * @param jar         the jar file.
+   * @param threadCount the number of worker threads.
+   * @throws IOException if an error occurs reading the jar.
+   */
+  public void scan( final File jar, final int threadCount )
+    throws IOException
+  {
+    new JarScanner( threadCount, false, true, true, true ).scan( jar, this );
+  }
+
+  EntryCollector<ClassEntry> newCollector()
+  {
+    return new Collector();
+  }
+
+  /**
+   * Write the index of the classes collected so far to specified file.
+   *
+   * @param file the file.
+   * @throws IOException if an error occurs writing the file.
+   */
+  public void write( final File file )
+    throws IOException
+  {
+    final OutputStream output = new FileOutputStream( file );
+    try
+    {
+      write( output );
+    }
+    finally
+    {
+      output.close();
+    }
+  }
+
+  /**
+   * Write the index of the classes collected so far.
+   * Must not be invoked while parsers created by builder are in use.
+   *
+   * @param output the stream to write to. The stream is not closed.
+   * @throws IOException if an error occurs writing to stream.
+   */
+  public void write( final OutputStream output )
+    throws IOException
+  {
+    final ClassEntry[] classes = collectClasses();
+
+    //Assign ids in the order of the encoded strings so the reader can binary search them
+    final HashMap<String, byte[]> encoded = new HashMap<String, byte[]>();
+    int memberCount = 0;
+    int annotationCount = 0;
+    int poolSize = 0;
+    for( final ClassEntry entry : classes )
+    {
+      addString( encoded, entry.name );
+      addString( encoded, entry.superName );
+      addStrings( encoded, entry.interfaces );
+      addStrings( encoded, entry.annotations );
+      poolSize += entry.interfaces.length + entry.annotations.length;
+      annotationCount += entry.annotations.length;
+      for( final MemberEntry member : entry.members )
+      {
+        addString( encoded, member.name );
+        addString( encoded, member.descriptor );
+        addStrings( encoded, member.annotations );
+        poolSize += member.annotations.length;
+        annotationCount += member.annotations.length;
+      }
+      memberCount += entry.members.size();
+    }
+    final String[] keys = encoded.keySet().toArray( new String[encoded.size()] );
+    Arrays.sort( keys, new Comparator<String>()
+    {
+      public int compare( final String a, final String b )
+      {
+        return compareUnsigned( encoded.get( a ), encoded.get( b ) );
+      }
+    } );
+    final byte[][] strings = new byte[keys.length][];
+    final HashMap<String, Integer> ids = new HashMap<String, Integer>( keys.length * 2 );
+    for( int i = 0; i < keys.length; i++ )
+    {
+      strings[i] = encoded.get( keys[i] );
+      ids.put( keys[i], i );
+    }
+    //Classes are sorted by name and so by name id
+    Arrays.sort( classes, new Comparator<ClassEntry>()
+    {
+      public int compare( final ClassEntry a, final ClassEntry b )
+      {
+        return ids.get( a.name ).compareTo( ids.get( b.name ) );
+      }
+    } );
+
+    final int stringOffsetsPosition = ClassIndex.HEADER_SIZE * 4;
+    final int classesPosition = stringOffsetsPosition + strings.length * 4;
+    final int membersPosition = classesPosition + classes.length * ClassIndex.CLASS_RECORD_SIZE * 4;
+    final int annotationsPosition = membersPosition + memberCount * ClassIndex.MEMBER_RECORD_SIZE * 4;
+    final int poolPosition = annotationsPosition + annotationCount * ClassIndex.ANNOTATION_RECORD_SIZE * 4;
+    final int stringsPosition = poolPosition + poolSize * 4;
+
+    final DataOutputStream out = new DataOutputStream( new BufferedOutputStream( output ) );
+    out.writeInt( ClassIndex.MAGIC );
+    out.writeInt( ClassIndex.VERSION );
+    out.writeInt( strings.length );
+    out.writeInt( classes.length );
+    out.writeInt( memberCount );
+    out.writeInt( annotationCount );
+    out.writeInt( stringOffsetsPosition );
+    out.writeInt( classesPosition );
+    out.writeInt( membersPosition );
+    out.writeInt( annotationsPosition );
+    out.writeInt( poolPosition );
+
+    long position = stringsPosition;
+    for( final byte[] string : strings )
+    {
+      if( position > Integer.MAX_VALUE )
+      {
+        throw new IOException( "Class index exceeds maximum size" );
+      }
+      out.writeInt( (int)position );
+      position += 2 + string.length;
+    }
+
+    final int[] annotations = new int[annotationCount * ClassIndex.ANNOTATION_RECORD_SIZE];
+    int annotation = 0;
+    int pool = 0;
+    int member = 0;
+    for( int i = 0; i < classes.length; i++ )
+    {
+      final ClassEntry entry = classes[i];
+      out.writeInt( ids.get( entry.name ) );
+      out.writeInt( null == entry.superName ? -1 : ids.get( entry.superName ) );
+      out.writeInt( entry.accessFlags );
+      out.writeInt( pool );
+      out.writeInt( entry.interfaces.length );
+      pool += entry.interfaces.length;
+      out.writeInt( member );
+      out.writeInt( entry.members.size() );
+      member += entry.members.size();
+      out.writeInt( pool );
+      out.writeInt( entry.annotations.length );
+      pool += entry.annotations.length;
+      for( final String type : entry.annotations )
+      {
+        annotation = addAnnotation( annotations, annotation, ids.get( type ), i, -1 );
+      }
+      for( int j = 0; j < entry.members.size(); j++ )
+      {
+        for( final String type : entry.members.get( j ).annotations )
+        {
+          annotation = addAnnotation( annotations, annotation, ids.get( type ), i, j );
+        }
+      }
+    }
+
+    for( final ClassEntry entry : classes )
+    {
+      for( final MemberEntry memberEntry : entry.members )
+      {
+        out.writeInt( memberEntry.kind );
+        out.writeInt( memberEntry.accessFlags );
+        out.writeInt( ids.get( memberEntry.name ) );
+        out.writeInt( ids.get( memberEntry.descriptor ) );
+        out.writeInt( pool );
+        out.writeInt( memberEntry.annotations.length );
+        pool += memberEntry.annotations.length;
+      }
+    }
+
+    sortAnnotations( annotations, annotationCount );
+    for( final int value : annotations )
+    {
+      out.writeInt( value );
+    }
+
+    for( final ClassEntry entry : classes )
+    {
+      writeIds( out, ids, entry.interfaces );
+      writeIds( out, ids, entry.annotations );
+    }
+    for( final ClassEntry entry : classes )
+    {
+      for( final MemberEntry memberEntry : entry.members )
+      {
+        writeIds( out, ids, memberEntry.annotations );
+      }
+    }
+
+    for( final byte[] string : strings )
+    {
+      out.writeShort( string.length );
+      out.write( string );
+    }
+    out.flush();
+  }
+
+  /**
+   * Return the classes collected by all parsers with duplicate names removed.
+   *
+   * @return the classes.
+   */
+  private ClassEntry[] collectClasses()
+  {
+    final HashMap<String, ClassEntry> classes = new HashMap<String, ClassEntry>();
+    for( final ClassEntry entry : getEntries() )
+    {
+      if( !classes.containsKey( entry.name ) )
+      {
+        classes.put( entry.name, entry );
+      }
+    }
+    return classes.values().toArray( new ClassEntry[classes.size()] );
+  }
+
+  private static int addAnnotation( final int[] annotations,
+                                    final int annotation,
+                                    final int typeId,
+                                    final int classIndex,
+                                    final int memberIndex )
+  {
+    final int offset = annotation * ClassIndex.ANNOTATION_RECORD_SIZE;
+    annotations[offset] = typeId;
+    annotations[offset + 1] = classIndex;
+    annotations[offset + 2] = memberIndex;
+    return annotation + 1;
+  }
+
+  /**
+   * Sort the annotation records by type, class and member.
+   * Records are sorted via an index array as they are stored inline.
+   */
+  private static void sortAnnotations( final int[] annotations, final int count )
+  {
+    final Integer[] order = new Integer[count];
+    for( int i = 0; i < count; i++ )
+    {
+      order[i] = i;
+    }
+    Arrays.sort( order, new Comparator<Integer>()
+    {
+      public int compare( final Integer a, final Integer b )
+      {
+        final int offsetA = a * ClassIndex.ANNOTATION_RECORD_SIZE;
+        final int offsetB = b * ClassIndex.ANNOTATION_RECORD_SIZE;
+        for( int i = 0; i < ClassIndex.ANNOTATION_RECORD_SIZE; i++ )
+        {
+          final int valueA = annotations[offsetA + i];
+          final int valueB = annotations[offsetB + i];
+          if( valueA != valueB )
+          {
+            return valueA < valueB ? -1 : 1;
+          }
+        }
+        return 0;
+      }
+    } );
+    final int[] sorted = new int[annotations.length];
+    for( int i = 0; i < count; i++ )
+    {
+      System.arraycopy( annotations,
+                        order[i] * ClassIndex.ANNOTATION_RECORD_SIZE,
+                        sorted,
+                        i * ClassIndex.ANNOTATION_RECORD_SIZE,
+                        ClassIndex.ANNOTATION_RECORD_SIZE );
+    }
+    System.arraycopy( sorted, 0, annotations, 0, sorted.length );
+  }
+
+  private static void writeIds( final DataOutputStream out, final Map<String, Integer> ids, final String[] strings )
+    throws IOException
+  {
+    for( final String string : strings )
+    {
+      out.writeInt( ids.get( string ) );
+    }
+  }
+
+  private static void addStrings( final Map<String, byte[]> encoded, final String[] strings )
+  {
+    for( final String string : strings )
+    {
+      addString( encoded, string );
+    }
+  }
+
+  private static void addString( final Map<String, byte[]> encoded, final String string )
+  {
+    if( null != string && !encoded.containsKey( string ) )
+    {
+      encoded.put( string, IOUtil.encodeUtf( string ) );
+    }
+  }
+
+  /** The details of a class recorded by a collector. */
+  static final class ClassEntry
+  {
+    final String name;
+    final String superName;
+    final int accessFlags;
+    final String[] interfaces;
+    final ArrayList<MemberEntry> members = new ArrayList<MemberEntry>();
+    String[] annotations = EMPTY;
+
+    ClassEntry( final String name, final String superName, final int accessFlags, final String[] interfaces )
+    {
+      this.name = name;
+      this.superName = superName;
+      this.accessFlags = accessFlags;
+      this.interfaces = interfaces;
+    }
+  }
+
+  /** The details of a field or method recorded by a collector. */
+  private static final class MemberEntry
+  {
+    final int kind;
+    final int accessFlags;
+    final String name;
+    final String descriptor;
+    String[] annotations = EMPTY;
+
+    MemberEntry( final int kind, final int accessFlags, final String name, final String descriptor )
+    {
+      this.kind = kind;
+      this.accessFlags = accessFlags;
+      this.name = name;
+      this.descriptor = descriptor;
+    }
+  }
+
+  /** Parser that records each class it processes. */
+  private static final class Collector
+    extends EntryCollector<ClassEntry>
+  {
+    private ClassEntry current;
+
+    Collector()
+    {
+      super( ATTRIBUTE_NAMES, null );
+    }
+
+    String getClassName( final ClassEntry entry )
+    {
+      return entry.name;
+    }
+
+    protected void startClass( final ClassFile classFile )
+    {
+      current = new ClassEntry( classFile.getClassName(),
+                                classFile.getSuperClassName(),
+                                classFile.getAccessFlags(),
+                                classFile.getInterfaces() );
+      entries.add( current );
+    }
+
+    protected void handleField( final String name, final String descriptor, final int accessFlags )
+    {
+      current.members.add( new MemberEntry( ClassIndex.FIELD, accessFlags, name, descriptor ) );
+    }
+
+    protected void handleMethod( final String name, final String descriptor, final int accessFlags )
+    {
+      current.members.add( new MemberEntry( ClassIndex.METHOD, accessFlags, name, descriptor ) );
+    }
+
+    protected void handleFieldAttribute( final String name,
+                                         final byte[] data,
+                                         final int offset,
+                                         final long length,
+                                         final ConstantPool constantPool )
+    {
+      lastMember().annotations = readAnnotationTypes( data, offset, constantPool );
+    }
+
+    protected void handleMethodAttribute( final String name,
+                                          final byte[] data,
+                                          final int offset,
+                                          final long length,
+                                          final ConstantPool constantPool )
+    {
+      lastMember().annotations = readAnnotationTypes( data, offset, constantPool );
+    }
+
+    protected void handleClassAttribute( final String name,
+                                         final byte[] data,
+                                         final int offset,
+                                         final long length,
+                                         final ConstantPool constantPool )
+    {
+      current.annotations = readAnnotationTypes( data, offset, constantPool );
+    }
+
+    private MemberEntry lastMember()
+    {
+      return current.members.get( current.members.size() - 1 );
+    }
+
+    /** Return the types of the annotations in attribute, skipping their element values. */
+    private static String[] readAnnotationTypes( final byte[] data, final int offset, final ConstantPool constantPool )
+    {
+      final String[] types = new String[IOUtil.readUnsignedShort( data, offset )];
+      int location = offset + 2;
+      for( int i = 0; i < types.length; i++ )
+      {
+        types[i] = constantPool.getUtfEntry( IOUtil.readUnsignedShort( data, location ) );
+        location = skipAnnotation( data, location );
+      }
+      return types;
+    }
+  }
+
+  /**
+   * Compare byte arrays by comparing bytes as unsigned values.
+   * This matches the order used by {@link ClassIndex} when searching strings.
+   */
+  private static int compareUnsigned( final byte[] a, final byte[] b )
+  {
+    final int count = Math.min( a.length, b.length );
+    for( int i = 0; i < count; i++ )
+    {
+      final int result = ( a[i] & 0xFF ) - ( b[i] & 0xFF );
+      if( 0 != result )
+      {
+        return result;
+      }
+    }
+    return a.length - b.length;
+  }
+}
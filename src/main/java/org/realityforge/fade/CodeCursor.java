@@ -0,0 +1,363 @@
+package org.realityforge.fade;
+
+/**
+ * Cursor that walks the instructions of a Code attribute in place.
+ * The cursor decodes the opcode and operands of the current instruction
+ * directly from the class data, handling WIDE prefixes and the padded
+ * TABLESWITCH and LOOKUPSWITCH tables, and allocates nothing per
+ * instruction. A cursor may be reset and reused for any number of methods
+ * but is confined to a single thread.
+ *
+ * <pre>
+ * protected void startCode( ..., final byte[] data, final int offset, final long codeLength, ... )
+ * {
+ *   cursor.reset( data, offset, codeLength );
+ *   while( cursor.next() )
+ *   {
+ *     if( Instruction.INVOKEVIRTUAL.code == cursor.getOpcode() )
+ *     {
+ *       ... constantPool.getNameFromRef( cursor.getConstantIndex() ) ...
+ *     }
+ *   }
+ * }
+ * </pre>
+ */
+public final class CodeCursor
+{
+  /** Length of each fixed size instruction, 0 for undefined opcodes and -1 for variable size. */
+  private static final int[] LENGTHS = new int[256];
+
+  static
+  {
+    for( int i = 0; i < LENGTHS.length; i++ )
+    {
+      final Instruction instruction = Instruction.fromByteCode( (byte)i );
+      LENGTHS[i] = null == instruction ? 0 : instruction.length;
+    }
+  }
+
+  private byte[] data;
+
+  /** The position of the first byte of code. */
+  private int start;
+
+  /** The position after the last byte of code. */
+  private int end;
+
+  /** The position of the current instruction. */
+  private int position;
+
+  /** The position of the next instruction. */
+  private int nextPosition;
+
+  /** The opcode of the current instruction, or of the modified instruction if wide. */
+  private int opcode;
+
+  /** True if the current instruction has a WIDE prefix. */
+  private boolean wide;
+
+  /** The position of the 4 byte aligned operands of a switch instruction. */
+  private int switchOperands;
+
+  /**
+   * Position the cursor before the first instruction of code.
+   *
+   * @param data       the data.
+   * @param offset     the offset of the first byte of code.
+   * @param codeLength the number of bytes of code.
+   */
+  public void reset( final byte[] data, final int offset, final long codeLength )
+  {
+    IOUtil.checkLength( data, offset, codeLength );
+    this.data = data;
+    start = offset;
+    end = offset + (int)codeLength;
+    position = offset;
+    nextPosition = offset;
+    opcode = -1;
+    wide = false;
+  }
+
+  /**
+   * Advance to the next instruction.
+   *
+   * @return true if positioned on an instruction, false if the end of code was reached.
+   */
+  public boolean next()
+  {
+    position = nextPosition;
+    if( position >= end )
+    {
+      opcode = -1;
+      return false;
+    }
+    opcode = data[position] & 0xFF;
+    wide = false;
+    final int length = LENGTHS[opcode];
+    if( length > 0 )
+    {
+      nextPosition = position + length;
+    }
+    else if( Instruction.WIDE.code == opcode )
+    {
+      checkAvailable( 2 );
+      wide = true;
+      opcode = data[position + 1] & 0xFF;
+      if( Instruction.IINC.code == opcode )
+      {
+        nextPosition = position + 6;
+      }
+      else if( ( opcode >= Instruction.ILOAD.code && opcode <= Instruction.ALOAD.code ) ||
+               ( opcode >= Instruction.ISTORE.code && opcode <= Instruction.ASTORE.code ) ||
+               Instruction.RET.code == opcode )
+      {
+        nextPosition = position + 4;
+      }
+      else
+      {
+        throw new ClassFormatError( "Invalid wide opcode " + opcode + " at pc " + getPC() );
+      }
+    }
+    else if( Instruction.TABLESWITCH.code == opcode )
+    {
+      switchOperands = alignedOperands();
+      checkAvailable( switchOperands - position + 12 );
+      final int low = IOUtil.readInteger( data, switchOperands + 4 );
+      final int high = IOUtil.readInteger( data, switchOperands + 8 );
+      if( high < low )
+      {
+        throw new ClassFormatError( "Invalid tableswitch range " + low + "-" + high + " at pc " + getPC() );
+      }
+      setSwitchEnd( 12, 4L * ( (long)high - low + 1 ) );
+    }
+    else if( Instruction.LOOKUPSWITCH.code == opcode )
+    {
+      switchOperands = alignedOperands();
+      checkAvailable( switchOperands - position + 8 );
+      final int count = IOUtil.readInteger( data, switchOperands + 4 );
+      if( count < 0 )
+      {
+        throw new ClassFormatError( "Invalid lookupswitch pair count " + count + " at pc " + getPC() );
+      }
+      setSwitchEnd( 8, 8L * count );
+    }
+    else
+    {
+      throw new ClassFormatError( "Invalid opcode " + opcode + " at pc " + getPC() );
+    }
+    if( nextPosition > end || nextPosition < position )
+    {
+      throw new ClassFormatError( "Instruction at pc " + getPC() + " extends beyond end of code" );
+    }
+    return true;
+  }
+
+  /**
+   * Set the position after the current switch instruction.
+   * The table length is a long as it may not fit in an int for malformed code.
+   *
+   * @param fixedLength the length of the operands preceding the table.
+   * @param tableLength the length of the jump table.
+   */
+  private void setSwitchEnd( final int fixedLength, final long tableLength )
+  {
+    if( tableLength > end - switchOperands - fixedLength )
+    {
+      throw new ClassFormatError( "Instruction at pc " + getPC() + " extends beyond end of code" );
+    }
+    nextPosition = switchOperands + fixedLength + (int)tableLength;
+  }
+
+  /**
+   * Return the opcode of the current instruction.
+   * For a WIDE instruction this is the opcode of the modified instruction.
+   *
+   * @return the opcode.
+   */
+  public int getOpcode()
+  {
+    return opcode;
+  }
+
+  /**
+   * Return true if the current instruction has a WIDE prefix.
+   *
+   * @return true if the current instruction has a WIDE prefix.
+   */
+  public boolean isWide()
+  {
+    return wide;
+  }
+
+  /**
+   * Return the offset of the current instruction from the start of code.
+   *
+   * @return the pc of the current instruction.
+   */
+  public int getPC()
+  {
+    return position - start;
+  }
+
+  /**
+   * Return the length of the current instruction including prefix, padding and tables.
+   *
+   * @return the length in bytes.
+   */
+  public int getLength()
+  {
+    return nextPosition - position;
+  }
+
+  /**
+   * Return the local variable index of a load, store, RET or IINC instruction.
+   * Only valid for the forms with an explicit index.
+   *
+   * @return the local variable index.
+   */
+  public int getLocalIndex()
+  {
+    return wide ? IOUtil.readUnsignedShort( data, position + 2 ) : data[position + 1] & 0xFF;
+  }
+
+  /**
+   * Return the signed increment of an IINC instruction.
+   *
+   * @return the increment.
+   */
+  public int getIncrement()
+  {
+    return wide ? (short)IOUtil.readUnsignedShort( data, position + 4 ) : data[position + 2];
+  }
+
+  /**
+   * Return the constant pool index referenced by the current instruction.
+   * Valid for LDC, LDC_W, LDC2_W, the field and invoke instructions, NEW,
+   * ANEWARRAY, CHECKCAST, INSTANCEOF and MULTIANEWARRAY.
+   *
+   * @return the constant pool index.
+   */
+  public int getConstantIndex()
+  {
+    if( Instruction.LDC.code == opcode )
+    {
+      return data[position + 1] & 0xFF;
+    }
+    return IOUtil.readUnsignedShort( data, position + 1 );
+  }
+
+  /**
+   * Return the signed immediate operand of BIPUSH or SIPUSH, the array type
+   * of NEWARRAY or the dimensions of MULTIANEWARRAY.
+   *
+   * @return the immediate value.
+   */
+  public int getImmediate()
+  {
+    if( Instruction.SIPUSH.code == opcode )
+    {
+      return (short)IOUtil.readUnsignedShort( data, position + 1 );
+    }
+    else if( Instruction.MULTIANEWARRAY.code == opcode )
+    {
+      return data[position + 3] & 0xFF;
+    }
+    else if( Instruction.NEWARRAY.code == opcode )
+    {
+      return data[position + 1] & 0xFF;
+    }
+    return data[position + 1];
+  }
+
+  /**
+   * Return the pc targeted by a branch, GOTO, JSR, GOTO_W or JSR_W instruction.
+   *
+   * @return the target pc.
+   */
+  public int getBranchTarget()
+  {
+    if( Instruction.GOTO_W.code == opcode || Instruction.JSR_W.code == opcode )
+    {
+      return getPC() + IOUtil.readInteger( data, position + 1 );
+    }
+    return getPC() + (short)IOUtil.readUnsignedShort( data, position + 1 );
+  }
+
+  /**
+   * Return the pc targeted by the default case of a switch instruction.
+   *
+   * @return the default target pc.
+   */
+  public int getDefaultTarget()
+  {
+    return getPC() + IOUtil.readInteger( data, switchOperands );
+  }
+
+  /**
+   * Return the number of non-default cases of a switch instruction.
+   *
+   * @return the number of cases.
+   */
+  public int getSwitchCaseCount()
+  {
+    if( Instruction.TABLESWITCH.code == opcode )
+    {
+      return IOUtil.readInteger( data, switchOperands + 8 ) - IOUtil.readInteger( data, switchOperands + 4 ) + 1;
+    }
+    return IOUtil.readInteger( data, switchOperands + 4 );
+  }
+
+  /**
+   * Return the key matched by specified case of a switch instruction.
+   *
+   * @param index the case index.
+   * @return the key.
+   */
+  public int getSwitchKey( final int index )
+  {
+    if( Instruction.TABLESWITCH.code == opcode )
+    {
+      return IOUtil.readInteger( data, switchOperands + 4 ) + index;
+    }
+    return IOUtil.readInteger( data, switchOperands + 8 + index * 8 );
+  }
+
+  /**
+   * Return the pc targeted by specified case of a switch instruction.
+   *
+   * @param index the case index.
+   * @return the target pc.
+   */
+  public int getSwitchTarget( final int index )
+  {
+    if( Instruction.TABLESWITCH.code == opcode )
+    {
+      return getPC() + IOUtil.readInteger( data, switchOperands + 12 + index * 4 );
+    }
+    return getPC() + IOUtil.readInteger( data, switchOperands + 12 + index * 8 );
+  }
+
+  /**
+   * Return the position of the switch operands which start at the next pc that is a multiple of 4.
+   *
+   * @return the position of the operands.
+   */
+  private int alignedOperands()
+  {
+    final int pc = getPC() + 1;
+    return start + ( ( pc + 3 ) & ~3 );
+  }
+
+  /**
+   * Check that the current instruction has the specified number of bytes available.
+   *
+   * @param length the number of bytes.
+   */
+  private void checkAvailable( final int length )
+  {
+    if( position + length > end )
+    {
+      throw new ClassFormatError( "Instruction at pc " + getPC() + " extends beyond end of code" );
+    }
+  }
+}
@@ -1,26 +1,184 @@
 package org.realityforge.fade;
 
-/** Class that parses the constant pool portion of class file. */
+import java.util.Arrays;
+
+/**
+ * Class that parses the constant pool portion of class file.
+ *
+ * <p>A ConstantPool may be shared between threads once it has been safely
+ * published. The string cache is filled using the racy single-check idiom:
+ * each slot is read once into a local and only ever changes from null to an
+ * immutable String, so a reader sees either null or a fully constructed
+ * String. Threads racing on an empty slot may each decode the entry and
+ * return distinct but equal Strings; no locking is performed.</p>
+ *
+ * <p>The pool owned by a {@link ClassFileReader} is instead confined to a
+ * single thread and is reset for each class read, reusing its arrays.</p>
+ */
 public final class ConstantPool
 {
+  /** One more than the largest valid tag. */
+  static final int TAG_LIMIT = ClassFileFormat.CONSTANT_Package + 1;
+
+  /**
+   * The size of an entry for each unsigned tag byte including the tag but
+   * excluding the bytes of a CONSTANT_Utf8 string, or -1 if the tag is invalid.
+   */
+  private static final byte[] ENTRY_SIZES = new byte[256];
+
+  /**
+   * Mask applied to the u2 that follows each unsigned tag byte to get the
+   * number of bytes of a CONSTANT_Utf8 string, or 0 for other entries.
+   */
+  private static final int[] UTF_LENGTH_MASKS = new int[256];
+
+  static
+  {
+    Arrays.fill( ENTRY_SIZES, (byte)-1 );
+    ENTRY_SIZES[ClassFileFormat.CONSTANT_Utf8] = 3;
+    ENTRY_SIZES[ClassFileFormat.CONSTANT_Class] = 3;
+    ENTRY_SIZES[ClassFileFormat.CONSTANT_String] = 3;
+    ENTRY_SIZES[ClassFileFormat.CONSTANT_MethodType] = 3;
+    ENTRY_SIZES[ClassFileFormat.CONSTANT_Module] = 3;
+    ENTRY_SIZES[ClassFileFormat.CONSTANT_Package] = 3;
+    ENTRY_SIZES[ClassFileFormat.CONSTANT_MethodHandle] = 4;
+    ENTRY_SIZES[ClassFileFormat.CONSTANT_Integer] = 5;
+    ENTRY_SIZES[ClassFileFormat.CONSTANT_Float] = 5;
+    ENTRY_SIZES[ClassFileFormat.CONSTANT_Fieldref] = 5;
+    ENTRY_SIZES[ClassFileFormat.CONSTANT_Methodref] = 5;
+    ENTRY_SIZES[ClassFileFormat.CONSTANT_InterfaceMethodref] = 5;
+    ENTRY_SIZES[ClassFileFormat.CONSTANT_NameAndType] = 5;
+    ENTRY_SIZES[ClassFileFormat.CONSTANT_Dynamic] = 5;
+    ENTRY_SIZES[ClassFileFormat.CONSTANT_InvokeDynamic] = 5;
+    ENTRY_SIZES[ClassFileFormat.CONSTANT_Long] = 9;
+    ENTRY_SIZES[ClassFileFormat.CONSTANT_Double] = 9;
+    UTF_LENGTH_MASKS[ClassFileFormat.CONSTANT_Utf8] = 0xFFFF;
+  }
+
   /** The read-only data representing class. */
-  final byte[] data;
+  byte[] data;
 
   /**
    * The offsets for item in constant pool.
    * The real offsets start at index 1 while offset 0 contains
-   * the offset for the class header data.
+   * the offset for the class header data. Only the first size
+   * elements are in use.
    */
-  final int[] offsets;
+  int[] offsets;
 
-  /** Cached copys of strings. Parsing CONSTANT_Utf8 is expensieve. */
-  final String[] strings;
+  /**
+   * Cached copys of strings. Parsing CONSTANT_Utf8 is expensieve.
+   * Slots are read at most once per access as they may be written concurrently.
+   */
+  String[] strings;
+
+  /** The number of elements of offsets in use. i.e. the constant count. */
+  int size;
+
+  /** The number of entries with each tag, recorded while the offsets are parsed. */
+  final int[] tagCounts;
+
+  /**
+   * The index of the next entry with the same tag as each entry, or 0 after
+   * the last entry with the tag. The index of the first entry with tag t is in
+   * the slot t after the last entry, nextEntries[offsets.length + t].
+   * Null if the pool was not parsed with entry indexes.
+   */
+  private final int[] nextEntries;
+
+  /** The table used to share decoded strings between pools, or null if not shared. */
+  final SymbolTable symbolTable;
 
   ConstantPool( final byte[] data, final int[] offsets )
+  {
+    this( data, offsets, countTags( data, offsets ), null );
+  }
+
+  ConstantPool( final byte[] data, final int[] offsets, final int[] tagCounts, final SymbolTable symbolTable )
+  {
+    this( data, offsets, tagCounts, null, symbolTable );
+  }
+
+  ConstantPool( final byte[] data,
+                final int[] offsets,
+                final int[] tagCounts,
+                final int[] nextEntries,
+                final SymbolTable symbolTable )
   {
     this.data = data;
     this.offsets = offsets;
     this.strings = new String[offsets.length];
+    this.size = offsets.length;
+    this.tagCounts = tagCounts;
+    this.nextEntries = nextEntries;
+    this.symbolTable = symbolTable;
+  }
+
+  /**
+   * Create an empty pool to be filled by {@link #reset}.
+   *
+   * @param symbolTable the table used to share decoded strings, or null.
+   */
+  ConstantPool( final SymbolTable symbolTable )
+  {
+    this( null, new int[0], new int[TAG_LIMIT], symbolTable );
+  }
+
+  /**
+   * Parse the constant pool of another class into this pool.
+   * The offset and string arrays are reused if large enough and are
+   * otherwise replaced by larger arrays, so a pool that is reset
+   * repeatedly stops allocating once it has seen its largest class.
+   *
+   * @param data   the data array.
+   * @param offset the offset at which the class data starts.
+   * @param length the length of the class data.
+   */
+  void reset( final byte[] data, final int offset, final int length )
+  {
+    final int constantCount = IOUtil.readUnsignedShort( data, offset + 8 );
+    final int[] offsets = startReset( constantCount );
+    parseOffsets( data, offset, length, offsets, tagCounts, null, constantCount );
+    endReset( data, constantCount );
+  }
+
+  /**
+   * Empty the pool so the offsets of another class can be recorded by the caller.
+   * The caller also counts the entries of each tag in {@link #tagCounts}.
+   * The pool is left empty until {@link #endReset} is invoked.
+   *
+   * @param constantCount the constant count from the class data.
+   * @return the array in which to record the offsets, with the class header offset at index 0.
+   */
+  int[] startReset( final int constantCount )
+  {
+    if( offsets.length < constantCount )
+    {
+      final int capacity = Math.max( constantCount, offsets.length * 2 );
+      offsets = new int[capacity];
+      strings = new String[capacity];
+    }
+    else
+    {
+      Arrays.fill( strings, 0, size, null );
+    }
+    Arrays.fill( tagCounts, 0 );
+    //Leave the pool empty if the data is invalid
+    this.data = null;
+    size = 0;
+    return offsets;
+  }
+
+  /**
+   * Complete a reset once the offsets have been recorded.
+   *
+   * @param data          the data array.
+   * @param constantCount the constant count from the class data.
+   */
+  void endReset( final byte[] data, final int constantCount )
+  {
+    this.data = data;
+    size = constantCount;
   }
 
   /**
@@ -30,7 +188,67 @@ public final class ConstantPool
    */
   public int getConstantCount()
   {
-    return offsets.length - 1;
+    return size - 1;
+  }
+
+  /**
+   * Return the number of entries in pool with specified tag.
+   * The counts are recorded as the pool is parsed so no entry is visited.
+   *
+   * @param tag the tag of the entries. e.g. {@link ClassFileFormat#CONSTANT_Class}.
+   * @return the number of entries, or 0 if the tag is invalid.
+   */
+  public int getEntryCount( final int tag )
+  {
+    return tag > 0 && tag < TAG_LIMIT ? tagCounts[tag] : 0;
+  }
+
+  /**
+   * Return true if the pool was parsed with entry indexes and supports
+   * {@link #getFirstEntryIndex(int)} and {@link #getNextEntryIndex(int)}.
+   *
+   * @return true if the pool was parsed with entry indexes.
+   */
+  public boolean hasEntryIndexes()
+  {
+    return null != nextEntries;
+  }
+
+  /**
+   * Return the index of the first entry with specified tag. Together with
+   * {@link #getNextEntryIndex(int)} this enumerates the entries of one tag,
+   * such as all CONSTANT_Class entries, without visiting the other entries.
+   *
+   * @param tag the tag of the entries. e.g. {@link ClassFileFormat#CONSTANT_String}.
+   * @return the index of the first entry with the tag, or 0 if there is none.
+   * @throws IllegalStateException if the pool was not parsed with entry indexes.
+   */
+  public int getFirstEntryIndex( final int tag )
+  {
+    checkEntryIndexes();
+    return tag > 0 && tag < TAG_LIMIT ? nextEntries[offsets.length + tag] : 0;
+  }
+
+  /**
+   * Return the index of the next entry with the same tag as the entry at index.
+   *
+   * @param index the index of the entry.
+   * @return the index of the next entry with the tag, or 0 if the entry is the last.
+   * @throws IllegalStateException if the pool was not parsed with entry indexes.
+   */
+  public int getNextEntryIndex( final int index )
+  {
+    checkEntryIndexes();
+    checkRange( index );
+    return nextEntries[index];
+  }
+
+  private void checkEntryIndexes()
+  {
+    if( null == nextEntries )
+    {
+      throw new IllegalStateException( "Constant pool was not parsed with entry indexes" );
+    }
   }
 
   /**
@@ -66,12 +284,7 @@ public final class ConstantPool
   public String getClassEntry( final int index )
   {
     checkType( index, ClassFileFormat.CONSTANT_Class );
-    if( null == strings[index] )
-    {
-      final int utfEntry = IOUtil.readUnsignedShort( data, offsets[index] + 1 );
-      strings[index] = getUtfEntry( utfEntry );
-    }
-    return strings[index];
+    return getReferencedUtfEntry( index );
   }
 
   /**
@@ -84,12 +297,26 @@ public final class ConstantPool
   public String getStringEntry( final int index )
   {
     checkType( index, ClassFileFormat.CONSTANT_String );
-    if( null == strings[index] )
+    return getReferencedUtfEntry( index );
+  }
+
+  /**
+   * Return the string referenced by the entry, caching it against the entry.
+   * The entry must have already been type checked.
+   *
+   * @param index the index of entry.
+   * @return the string.
+   */
+  private String getReferencedUtfEntry( final int index )
+  {
+    String value = strings[index];
+    if( null == value )
     {
       final int utfEntry = IOUtil.readUnsignedShort( data, offsets[index] + 1 );
-      strings[index] = getUtfEntry( utfEntry );
+      value = getUtfEntry( utfEntry );
+      strings[index] = value;
     }
-    return strings[index];
+    return value;
   }
 
   /**
@@ -205,9 +432,113 @@ public final class ConstantPool
     return getTypeFromNameAndType( entry );
   }
 
+  /**
+   * Return the kind of method handle entry.
+   * The kind is equal to one of the REF_* values in {@link ClassFileFormat}.
+   *
+   * @param index the index of entry.
+   * @return the kind.
+   */
+  public int getMethodHandleKind( final int index )
+  {
+    checkType( index, ClassFileFormat.CONSTANT_MethodHandle );
+    return data[offsets[index] + 1] & 0xFF;
+  }
+
+  /**
+   * Return the index of the Fieldref, Methodref or InterfaceMethodref entry referenced by a method handle entry.
+   *
+   * @param index the index of entry.
+   * @return the index of the ref entry.
+   */
+  public int getMethodHandleReference( final int index )
+  {
+    checkType( index, ClassFileFormat.CONSTANT_MethodHandle );
+    return IOUtil.readUnsignedShort( data, offsets[index] + 2 );
+  }
+
+  /**
+   * Return the method descriptor identified by a method type entry.
+   * Note: this caches the descriptor.
+   *
+   * @param index the index of entry.
+   * @return the descriptor.
+   */
+  public String getMethodTypeEntry( final int index )
+  {
+    checkType( index, ClassFileFormat.CONSTANT_MethodType );
+    return getReferencedUtfEntry( index );
+  }
+
+  /**
+   * Return the index into the BootstrapMethods attribute of a dynamic or invoke dynamic entry.
+   *
+   * @param index the index of entry.
+   * @return the index of the bootstrap method.
+   */
+  public int getBootstrapMethodIndex( final int index )
+  {
+    checkIsDynamicType( index );
+    return IOUtil.readUnsignedShort( data, offsets[index] + 1 );
+  }
+
+  /**
+   * Return the name part from a dynamic or invoke dynamic entry.
+   *
+   * @param index the index of entry.
+   * @return the name.
+   */
+  public String getNameFromDynamic( final int index )
+  {
+    checkIsDynamicType( index );
+    final int entry = IOUtil.readUnsignedShort( data, offsets[index] + 3 );
+    return getNameFromNameAndType( entry );
+  }
+
+  /**
+   * Return the type part from a dynamic or invoke dynamic entry.
+   * This is a field descriptor for a dynamic entry and a method descriptor for an invoke dynamic entry.
+   *
+   * @param index the index of entry.
+   * @return the type.
+   */
+  public String getTypeFromDynamic( final int index )
+  {
+    checkIsDynamicType( index );
+    final int entry = IOUtil.readUnsignedShort( data, offsets[index] + 3 );
+    return getTypeFromNameAndType( entry );
+  }
+
+  /**
+   * Return the name of module identified by specified entry.
+   * Note: this caches the name of the module.
+   *
+   * @param index the index of entry.
+   * @return the name of module.
+   */
+  public String getModuleEntry( final int index )
+  {
+    checkType( index, ClassFileFormat.CONSTANT_Module );
+    return getReferencedUtfEntry( index );
+  }
+
+  /**
+   * Return the name of package identified by specified entry.
+   * Note: this caches the name of the package.
+   *
+   * @param index the index of entry.
+   * @return the name of package in internal format.
+   */
+  public String getPackageEntry( final int index )
+  {
+    checkType( index, ClassFileFormat.CONSTANT_Package );
+    return getReferencedUtfEntry( index );
+  }
+
   /**
    * Return a parsed UTF8 string at specified entry.
-   * Note: this caches the parsed string.
+   * Note: this caches the parsed string. If the pool was created with a
+   * {@link SymbolTable} then the canonical string is retrieved from the table.
    *
    * @param index the index of entry.
    * @return the string.
@@ -215,11 +546,216 @@ public final class ConstantPool
   public String getUtfEntry( final int index )
   {
     checkType( index, ClassFileFormat.CONSTANT_Utf8 );
-    if( null == strings[index] )
+    String value = strings[index];
+    if( null == value )
     {
-      strings[index] = parseUtfString( data, offsets[index] + 1, index );
+      final int offset = offsets[index] + 1;
+      if( null == symbolTable )
+      {
+        value = parseUtfString( data, offset, index );
+      }
+      else
+      {
+        final int count = IOUtil.readUnsignedShort( data, offset );
+        value = symbolTable.intern( data, offset + 2, count, index );
+      }
+      strings[index] = value;
     }
-    return strings[index];
+    return value;
+  }
+
+  /**
+   * Return true if the UTF8 entry is equal to specified string.
+   * The comparison is performed on the encoded bytes and does not allocate.
+   *
+   * @param index the index of entry.
+   * @param value the string.
+   * @return true if the entry is equal to the string.
+   */
+  public boolean isUtfEntryEqual( final int index, final String value )
+  {
+    checkType( index, ClassFileFormat.CONSTANT_Utf8 );
+    final int offset = offsets[index] + 1;
+    final int length = IOUtil.readUnsignedShort( data, offset );
+    return IOUtil.matchesUtf( data, offset + 2, length, value, false );
+  }
+
+  /**
+   * Return true if the UTF8 entry is equal to specified modified-UTF8 bytes.
+   *
+   * @param index   the index of entry.
+   * @param encoded the encoded bytes as returned by {@link #encodeUtf(String)}.
+   * @return true if the entry is equal to the bytes.
+   */
+  public boolean isUtfEntryEqual( final int index, final byte[] encoded )
+  {
+    checkType( index, ClassFileFormat.CONSTANT_Utf8 );
+    final int offset = offsets[index] + 1;
+    final int length = IOUtil.readUnsignedShort( data, offset );
+    return length == encoded.length && IOUtil.regionMatches( data, offset + 2, encoded, length );
+  }
+
+  /**
+   * Return true if the UTF8 entry starts with specified string.
+   * The comparison is performed on the encoded bytes and does not allocate.
+   *
+   * @param index  the index of entry.
+   * @param prefix the prefix.
+   * @return true if the entry starts with the prefix.
+   */
+  public boolean utfEntryStartsWith( final int index, final String prefix )
+  {
+    checkType( index, ClassFileFormat.CONSTANT_Utf8 );
+    final int offset = offsets[index] + 1;
+    final int length = IOUtil.readUnsignedShort( data, offset );
+    return IOUtil.matchesUtf( data, offset + 2, length, prefix, true );
+  }
+
+  /**
+   * Return true if the UTF8 entry starts with specified modified-UTF8 bytes.
+   *
+   * @param index   the index of entry.
+   * @param encoded the encoded prefix as returned by {@link #encodeUtf(String)}.
+   * @return true if the entry starts with the prefix.
+   */
+  public boolean utfEntryStartsWith( final int index, final byte[] encoded )
+  {
+    checkType( index, ClassFileFormat.CONSTANT_Utf8 );
+    final int offset = offsets[index] + 1;
+    final int length = IOUtil.readUnsignedShort( data, offset );
+    return length >= encoded.length && IOUtil.regionMatches( data, offset + 2, encoded, encoded.length );
+  }
+
+  /**
+   * Return a hash of the encoded bytes of the UTF8 entry.
+   * The hash is equal to {@link #hashUtf(byte[])} of the same encoded bytes.
+   *
+   * @param index the index of entry.
+   * @return the hash.
+   */
+  public int getUtfEntryHash( final int index )
+  {
+    checkType( index, ClassFileFormat.CONSTANT_Utf8 );
+    final int offset = offsets[index] + 1;
+    final int length = IOUtil.readUnsignedShort( data, offset );
+    return IOUtil.hash( data, offset + 2, length );
+  }
+
+  /**
+   * Encode a string into the modified-UTF8 format used in the constant pool.
+   * Callers should encode strings once and reuse the result when comparing.
+   *
+   * @param value the string.
+   * @return the encoded bytes.
+   */
+  public static byte[] encodeUtf( final String value )
+  {
+    return IOUtil.encodeUtf( value );
+  }
+
+  /**
+   * Return the hash of encoded bytes as computed by {@link #getUtfEntryHash(int)}.
+   *
+   * @param encoded the encoded bytes.
+   * @return the hash.
+   */
+  public static int hashUtf( final byte[] encoded )
+  {
+    return IOUtil.hash( encoded, 0, encoded.length );
+  }
+
+  /**
+   * Collect the hashes of the classes and members referenced by the pool.
+   * Each CONSTANT_Class entry contributes {@link #hashClassReference(String)}
+   * of its name and each Fieldref, Methodref and InterfaceMethodref entry
+   * contributes {@link #hashMemberReference(String, String)} of its class and
+   * member name. The hashes are computed on the encoded bytes so no strings
+   * are decoded. The hashes are sorted and duplicates are removed.
+   *
+   * @param hashes the array that receives the hashes, with a length of at least the constant count.
+   * @return the number of hashes.
+   */
+  public int getReferenceHashes( final long[] hashes )
+  {
+    int count = 0;
+    for( int i = 1; i < size; i++ )
+    {
+      final int offset = offsets[i];
+      switch( data[offset] )
+      {
+        case ClassFileFormat.CONSTANT_Class:
+          hashes[count++] = hashClassEntry( i );
+          break;
+        case ClassFileFormat.CONSTANT_Fieldref:
+        case ClassFileFormat.CONSTANT_Methodref:
+        case ClassFileFormat.CONSTANT_InterfaceMethodref:
+          final int nameAndType = IOUtil.readUnsignedShort( data, offset + 3 );
+          checkType( nameAndType, ClassFileFormat.CONSTANT_NameAndType );
+          hashes[count++] =
+            combineHashes( hashClassEntry( IOUtil.readUnsignedShort( data, offset + 1 ) ),
+                           hashUtfEntry( IOUtil.readUnsignedShort( data, offsets[nameAndType] + 1 ) ) );
+          break;
+        case ClassFileFormat.CONSTANT_Long:
+        case ClassFileFormat.CONSTANT_Double:
+          i++;
+          break;
+        default:
+          break;
+      }
+    }
+    Arrays.sort( hashes, 0, count );
+    int unique = 0;
+    for( int i = 0; i < count; i++ )
+    {
+      if( 0 == unique || hashes[unique - 1] != hashes[i] )
+      {
+        hashes[unique++] = hashes[i];
+      }
+    }
+    return unique;
+  }
+
+  /**
+   * Return the hash that {@link #getReferenceHashes(long[])} collects for a reference to a class.
+   *
+   * @param className the name of the class in internal format.
+   * @return the hash.
+   */
+  public static long hashClassReference( final String className )
+  {
+    final byte[] encoded = IOUtil.encodeUtf( className );
+    return IOUtil.hash64( encoded, 0, encoded.length );
+  }
+
+  /**
+   * Return the hash that {@link #getReferenceHashes(long[])} collects for a reference to a field or method.
+   *
+   * @param className the name of the class named by the reference in internal format.
+   * @param name      the name of the field or method.
+   * @return the hash.
+   */
+  public static long hashMemberReference( final String className, final String name )
+  {
+    final byte[] encoded = IOUtil.encodeUtf( name );
+    return combineHashes( hashClassReference( className ), IOUtil.hash64( encoded, 0, encoded.length ) );
+  }
+
+  private static long combineHashes( final long classHash, final long nameHash )
+  {
+    return Long.rotateLeft( classHash, 21 ) ^ nameHash;
+  }
+
+  private long hashClassEntry( final int index )
+  {
+    checkType( index, ClassFileFormat.CONSTANT_Class );
+    return hashUtfEntry( IOUtil.readUnsignedShort( data, offsets[index] + 1 ) );
+  }
+
+  private long hashUtfEntry( final int index )
+  {
+    checkType( index, ClassFileFormat.CONSTANT_Utf8 );
+    final int offset = offsets[index] + 1;
+    return IOUtil.hash64( data, offset + 2, IOUtil.readUnsignedShort( data, offset ) );
   }
 
   /**
@@ -258,6 +794,25 @@ public final class ConstantPool
     }
   }
 
+  /**
+   * Throw an IllegalArgumentException if entry at index is not a dynamic or invoke dynamic entry.
+   *
+   * @param index the index to check.
+   */
+  private void checkIsDynamicType( final int index )
+  {
+    final byte entryType = getEntryType( index );
+    if( entryType != ClassFileFormat.CONSTANT_Dynamic &&
+        entryType != ClassFileFormat.CONSTANT_InvokeDynamic )
+    {
+      final String message =
+        "Unexpected type for constant pool element " +
+        index + ". Expected a dynamic type but got " + entryType +
+        " at position " + offsets[index];
+      throw new ClassFormatError( message );
+    }
+  }
+
   /**
    * Throw an IllegalArgumentException if entry at index is not specified type.
    *
@@ -278,18 +833,18 @@ public final class ConstantPool
 
   /**
    * Throw an IllegalArgumentException if index is out of range.
-   * i.e. (index &lt; 1 || index >= offsets.length).
+   * i.e. (index &lt; 1 || index >= size).
    *
    * @param index the index to check.
    */
   private void checkRange( final int index )
   {
-    if( index < 1 || index >= offsets.length )
+    if( index < 1 || index >= size )
     {
       final String message =
         "Can not access constant pool element " +
         index + " as it is not in the range [1-" +
-        offsets .length + ")";
+        size + ")";
       throw new ClassFormatError( message );
     }
   }
@@ -302,54 +857,188 @@ public final class ConstantPool
    */
   public static ConstantPool parseConstantPool( final byte[] data )
   {
-    final int constantCount = IOUtil.readUnsignedShort( data, 8 );
+    return parseConstantPool( data, 0, data.length );
+  }
+
+  /**
+   * Parse Constant Pool of class stored in a region of the data array.
+   * Offsets recorded in the pool are positions within the whole array.
+   *
+   * @param data   the data array.
+   * @param offset the offset at which the class data starts.
+   * @param length the length of the class data.
+   * @return the newly created ConstantPool.
+   */
+  public static ConstantPool parseConstantPool( final byte[] data,
+                                                final int offset,
+                                                final int length )
+  {
+    return parseConstantPool( data, offset, length, null );
+  }
+
+  /**
+   * Parse Constant Pool of class stored in a region of the data array.
+   * Offsets recorded in the pool are positions within the whole array.
+   *
+   * @param data        the data array.
+   * @param offset      the offset at which the class data starts.
+   * @param length      the length of the class data.
+   * @param symbolTable the table used to share decoded strings, or null.
+   * @return the newly created ConstantPool.
+   */
+  public static ConstantPool parseConstantPool( final byte[] data,
+                                                final int offset,
+                                                final int length,
+                                                final SymbolTable symbolTable )
+  {
+    return parseConstantPool( data, offset, length, symbolTable, false );
+  }
+
+  /**
+   * Parse Constant Pool of class stored in a region of the data array,
+   * optionally linking the entries of each tag so they can be enumerated
+   * with {@link #getFirstEntryIndex(int)} and {@link #getNextEntryIndex(int)}.
+   * The links are recorded in the same pass that finds the entries and cost
+   * an int for each entry, so they are worth building when only a few tags of
+   * a pool are read.
+   *
+   * @param data         the data array.
+   * @param offset       the offset at which the class data starts.
+   * @param length       the length of the class data.
+   * @param symbolTable  the table used to share decoded strings, or null.
+   * @param indexEntries true to index the entries of each tag.
+   * @return the newly created ConstantPool.
+   */
+  public static ConstantPool parseConstantPool( final byte[] data,
+                                                final int offset,
+                                                final int length,
+                                                final SymbolTable symbolTable,
+                                                final boolean indexEntries )
+  {
+    final int constantCount = IOUtil.readUnsignedShort( data, offset + 8 );
     final int[] elements = new int[constantCount];
+    final int[] tagCounts = new int[TAG_LIMIT];
+    final int[] nextEntries = indexEntries ? new int[constantCount + TAG_LIMIT] : null;
+    parseOffsets( data, offset, length, elements, tagCounts, nextEntries, constantCount );
+    return new ConstantPool( data, elements, tagCounts, nextEntries, symbolTable );
+  }
+
+  /**
+   * Return the size of a constant pool entry excluding the bytes of a CONSTANT_Utf8 string.
+   *
+   * @param tag the tag of the entry.
+   * @return the size in bytes including the tag, or -1 if the tag is invalid.
+   */
+  static int getEntryHeaderSize( final byte tag )
+  {
+    return ENTRY_SIZES[tag & 0xFF];
+  }
 
-    int index = 10;
+  /**
+   * Record the offset of each constant pool entry and count the entries of each tag.
+   * Every entry is at least three bytes so a single check that an entry starts three
+   * bytes before the limit covers its tag and the u2 that follows it. The u2 is
+   * always read and masked by tag so that skipping an entry does not branch on
+   * whether it is a CONSTANT_Utf8, which is poorly predicted as tags are mixed.
+   *
+   * @param data          the data array.
+   * @param offset        the offset at which the class data starts.
+   * @param length        the length of the class data.
+   * @param elements      the array in which to record offsets.
+   * @param tagCounts     the array in which to count the entries of each tag.
+   * @param nextEntries   the array in which to link the entries of each tag, or null.
+   * @param constantCount the constant count from the class data.
+   */
+  private static void parseOffsets( final byte[] data,
+                                    final int offset,
+                                    final int length,
+                                    final int[] elements,
+                                    final int[] tagCounts,
+                                    final int[] nextEntries,
+                                    final int constantCount )
+  {
+    //The last entry linked for each tag, starting with the slot of the tag that links to its first entry
+    final int[] lastEntries = null == nextEntries ? null : new int[TAG_LIMIT];
+    if( null != lastEntries )
+    {
+      for( int tag = 0; tag < TAG_LIMIT; tag++ )
+      {
+        lastEntries[tag] = constantCount + tag;
+      }
+    }
+    final int limit = offset + length;
+    final int entryLimit = limit - 3;
+    int index = offset + 10;
     for( int i = 1; i < constantCount; i++ )
     {
-      elements[i] = index;
-
-      if( index >= data.length )
+      if( index > entryLimit )
       {
+        if( index < limit && -1 == ENTRY_SIZES[data[index] & 0xFF] )
+        {
+          throw newBadTagError( data, index );
+        }
         final String message =
           "Class file truncated when parsing constant pool at position " + index;
         throw new ClassFormatError( message );
       }
-      switch( data[index] )
+      elements[i] = index;
+      final int tag = data[index] & 0xFF;
+      final int entrySize = ENTRY_SIZES[tag];
+      if( -1 == entrySize )
       {
-        case ClassFileFormat.CONSTANT_Utf8:
-          index += 3 + IOUtil.readUnsignedShort( data, index + 1 );
-          break;
-        case ClassFileFormat.CONSTANT_Integer:
-        case ClassFileFormat.CONSTANT_Float:
-        case ClassFileFormat.CONSTANT_Fieldref:
-        case ClassFileFormat.CONSTANT_Methodref:
-        case ClassFileFormat.CONSTANT_InterfaceMethodref:
-        case ClassFileFormat.CONSTANT_NameAndType:
-          index += 5;
-          break;
-        case ClassFileFormat.CONSTANT_Long:
-        case ClassFileFormat.CONSTANT_Double:
-          index += 9;
-          //For some crazy reason longs and doubles take up two cp entrys
-          i++;
-          break;
-
-        case ClassFileFormat.CONSTANT_Class:
-        case ClassFileFormat.CONSTANT_String:
-          index += 3;
-          break;
-        default:
-          final String message =
-            "Bad constant pool tag " + data[index] + " at position " + index;
-          throw new ClassFormatError( message );
+        throw newBadTagError( data, index );
+      }
+      tagCounts[tag]++;
+      if( null != lastEntries )
+      {
+        nextEntries[lastEntries[tag]] = i;
+        lastEntries[tag] = i;
+      }
+      index += entrySize + ( IOUtil.readUnsignedShort( data, index + 1 ) & UTF_LENGTH_MASKS[tag] );
+      if( ClassFileFormat.CONSTANT_Long == tag || ClassFileFormat.CONSTANT_Double == tag )
+      {
+        //For some crazy reason longs and doubles take up two cp entrys
+        i++;
+        if( i < constantCount )
+        {
+          //Clear any offset left in the unused entry by a reset pool
+          elements[i] = 0;
+        }
       }
     }
 
     //Setup the classheader offset at index 0
     elements[0] = index;
+  }
+
+  private static ClassFormatError newBadTagError( final byte[] data, final int index )
+  {
+    return new ClassFormatError( "Bad constant pool tag " + data[index] + " at position " + index );
+  }
 
-    return new ConstantPool( data, elements );
+  /**
+   * Count the entries of each tag in a pool created from offsets parsed elsewhere.
+   * Entries with invalid tags are not counted.
+   *
+   * @param data    the data array.
+   * @param offsets the offsets of the entries.
+   * @return the number of entries with each tag.
+   */
+  private static int[] countTags( final byte[] data, final int[] offsets )
+  {
+    final int[] tagCounts = new int[TAG_LIMIT];
+    for( int i = 1; i < offsets.length; i++ )
+    {
+      final int tag = data[offsets[i]] & 0xFF;
+      if( tag < TAG_LIMIT && -1 != ENTRY_SIZES[tag] )
+      {
+        tagCounts[tag]++;
+      }
+      if( ClassFileFormat.CONSTANT_Long == tag || ClassFileFormat.CONSTANT_Double == tag )
+      {
+        i++;
+      }
+    }
+    return tagCounts;
   }
 }
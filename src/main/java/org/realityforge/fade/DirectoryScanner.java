@@ -0,0 +1,463 @@
+package org.realityforge.fade;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Scanner that walks a directory tree and parses the class files in it on
+ * several threads. The walk itself is shared between the workers: each worker
+ * keeps a deque of directories and files still to be processed, takes work
+ * from the end it pushed to and steals from the other end of the deque of
+ * another worker when its own is empty. Listing a directory pushes its
+ * children, so the walk spreads across workers as the tree fans out. Each
+ * directory is listed once even if symbolic links reach it by several paths.
+ *
+ * <p>Each worker creates a parser from the supplied factory, reads files into
+ * a buffer it reuses and parses them with its own {@link ClassFileReader}, so
+ * parsers must not retain the ClassFile or data array beyond the callbacks.
+ * Classes are processed in no particular order. Files are read with a
+ * FileInputStream directly into the array rather than through a FileChannel,
+ * as a channel copies reads into an array through a temporary direct buffer
+ * and was measured to be slower.</p>
+ *
+ * <p>If a worker fails the remaining workers stop after their current file
+ * and the scan waits for them before rethrowing, so no parser is invoked
+ * once the scan has returned.</p>
+ */
+public final class DirectoryScanner
+{
+  private final int threadCount;
+  private final boolean parseFields;
+  private final boolean parseMethods;
+  private final boolean parseClassSection;
+  private final SymbolTable symbolTable;
+
+  /**
+   * Create a scanner.
+   *
+   * @param threadCount       the number of worker threads.
+   * @param parseFields       true to parse field section, false otherwise.
+   * @param parseMethods      true to parse method section, false otherwise.
+   * @param parseClassSection true to parse class section, false otherwise.
+   */
+  public DirectoryScanner( final int threadCount,
+                           final boolean parseFields,
+                           final boolean parseMethods,
+                           final boolean parseClassSection )
+  {
+    this( threadCount, parseFields, parseMethods, parseClassSection, null );
+  }
+
+  /**
+   * Create a scanner that shares decoded strings between classes.
+   *
+   * @param threadCount       the number of worker threads.
+   * @param parseFields       true to parse field section, false otherwise.
+   * @param parseMethods      true to parse method section, false otherwise.
+   * @param parseClassSection true to parse class section, false otherwise.
+   * @param symbolTable       the table used to share decoded strings, or null.
+   */
+  public DirectoryScanner( final int threadCount,
+                           final boolean parseFields,
+                           final boolean parseMethods,
+                           final boolean parseClassSection,
+                           final SymbolTable symbolTable )
+  {
+    if( threadCount < 1 )
+    {
+      throw new IllegalArgumentException( "threadCount must be positive but is " + threadCount );
+    }
+    this.threadCount = threadCount;
+    this.parseFields = parseFields;
+    this.parseMethods = parseMethods;
+    this.parseClassSection = parseClassSection;
+    this.symbolTable = symbolTable;
+  }
+
+  /**
+   * Scan all the class files in specified directory and its sub-directories.
+   *
+   * @param directory the directory.
+   * @param factory   the factory used to create a parser per worker.
+   * @return the number of classes processed.
+   * @throws IOException if an error occurs reading a file.
+   */
+  public int scan( final File directory, final ClassFileParserFactory factory )
+    throws IOException
+  {
+    if( !directory.isDirectory() )
+    {
+      throw new IOException( "Not a directory: " + directory );
+    }
+    final Scan scan = new Scan( directory, factory );
+    if( 1 == threadCount )
+    {
+      scan.workers[0].call();
+    }
+    else
+    {
+      runWorkers( scan );
+    }
+    return scan.classCount.get();
+  }
+
+  /**
+   * Run the scan on a pool of worker threads and propagate the first failure.
+   *
+   * @param scan the scan.
+   * @throws IOException if an error occurs reading a file.
+   */
+  private void runWorkers( final Scan scan )
+    throws IOException
+  {
+    final ExecutorService executor = Executors.newFixedThreadPool( threadCount );
+    try
+    {
+      final CompletionService<Object> completionService = new ExecutorCompletionService<Object>( executor );
+      for( final Worker worker : scan.workers )
+      {
+        completionService.submit( worker );
+      }
+      //Workers are awaited as they complete so the first failure is seen immediately
+      for( int i = 0; i < scan.workers.length; i++ )
+      {
+        try
+        {
+          completionService.take().get();
+        }
+        catch( final ExecutionException ee )
+        {
+          scan.abort();
+          JarScanner.awaitTermination( executor );
+          JarScanner.rethrow( ee.getCause() );
+        }
+      }
+    }
+    catch( final InterruptedException ie )
+    {
+      scan.abort();
+      JarScanner.awaitTermination( executor );
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException( "Interrupted while scanning directory " + scan.root );
+    }
+    finally
+    {
+      executor.shutdown();
+    }
+  }
+
+  /** State shared between workers for a single scan. */
+  private final class Scan
+  {
+    final File root;
+    final ClassFileParserFactory factory;
+    final Worker[] workers;
+
+    /** The walker that lists directories, shared so each directory is listed once. */
+    final DirectoryWalker walker = new DirectoryWalker();
+
+    /** The number of classes processed. */
+    final AtomicInteger classCount = new AtomicInteger();
+
+    /** The number of files and directories pushed but not yet processed. */
+    private final AtomicInteger outstanding = new AtomicInteger();
+
+    /** Monitor idle workers wait on. */
+    private final Object idle = new Object();
+
+    /** The number of workers waiting on the idle monitor. */
+    private final AtomicInteger idleCount = new AtomicInteger();
+
+    /** The number of pushes, used by idle workers to detect work pushed since they last looked. */
+    private final AtomicInteger pushCount = new AtomicInteger();
+
+    private volatile boolean aborted;
+
+    Scan( final File root, final ClassFileParserFactory factory )
+    {
+      this.root = root;
+      this.factory = factory;
+      workers = new Worker[threadCount];
+      for( int i = 0; i < threadCount; i++ )
+      {
+        workers[i] = new Worker( this, i );
+      }
+      push( workers[0], root );
+    }
+
+    /**
+     * Add a file or directory to the deque of specified worker.
+     *
+     * @param worker the worker.
+     * @param file   the file or directory.
+     */
+    void push( final Worker worker, final File file )
+    {
+      outstanding.incrementAndGet();
+      worker.deque.push( file );
+      //Either an idle worker sees the new count before waiting or it is counted here and notified
+      pushCount.incrementAndGet();
+      if( 0 != idleCount.get() )
+      {
+        synchronized( idle )
+        {
+          idle.notify();
+        }
+      }
+    }
+
+    /**
+     * Record that a file or directory has been processed.
+     */
+    void complete()
+    {
+      if( 0 == outstanding.decrementAndGet() )
+      {
+        synchronized( idle )
+        {
+          idle.notifyAll();
+        }
+      }
+    }
+
+    /**
+     * Return work for specified worker, stealing from other workers if its own deque is empty.
+     *
+     * @param worker the worker.
+     * @return the file or directory, or null if the scan is complete or aborted.
+     * @throws InterruptedIOException if the worker is interrupted while idle.
+     */
+    File next( final Worker worker )
+      throws InterruptedIOException
+    {
+      while( !aborted )
+      {
+        final int pushes = pushCount.get();
+        final File file = worker.deque.pop();
+        if( null != file )
+        {
+          return file;
+        }
+        for( int i = 1; i < workers.length; i++ )
+        {
+          final File stolen = workers[( worker.index + i ) % workers.length].deque.steal();
+          if( null != stolen )
+          {
+            return stolen;
+          }
+        }
+        if( 0 == outstanding.get() )
+        {
+          return null;
+        }
+        //Other workers are listing directories that may yield more work. The
+        //worker is counted as idle before checking for pushes since it looked,
+        //so a later push sees the count and notifies it under the monitor.
+        synchronized( idle )
+        {
+          idleCount.incrementAndGet();
+          try
+          {
+            if( !aborted && pushes == pushCount.get() && 0 != outstanding.get() )
+            {
+              idle.wait();
+            }
+          }
+          catch( final InterruptedException ie )
+          {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException( "Interrupted while scanning directory " + root );
+          }
+          finally
+          {
+            idleCount.decrementAndGet();
+          }
+        }
+      }
+      return null;
+    }
+
+    /** Stop workers taking further work and wake those that are idle. */
+    void abort()
+    {
+      aborted = true;
+      synchronized( idle )
+      {
+        idle.notifyAll();
+      }
+    }
+  }
+
+  /**
+   * Deque of files and directories. The owning worker pushes and pops at the
+   * tail so it walks depth first, while other workers steal from the head,
+   * where the entries nearest the root and most likely to yield more work are.
+   */
+  private static final class WorkDeque
+  {
+    private File[] elements = new File[64];
+    private int head;
+    private int size;
+
+    synchronized void push( final File file )
+    {
+      if( size == elements.length )
+      {
+        final File[] newElements = new File[elements.length * 2];
+        for( int i = 0; i < size; i++ )
+        {
+          newElements[i] = elements[( head + i ) % elements.length];
+        }
+        elements = newElements;
+        head = 0;
+      }
+      elements[( head + size ) % elements.length] = file;
+      size++;
+    }
+
+    synchronized File pop()
+    {
+      if( 0 == size )
+      {
+        return null;
+      }
+      size--;
+      final int index = ( head + size ) % elements.length;
+      final File file = elements[index];
+      elements[index] = null;
+      return file;
+    }
+
+    synchronized File steal()
+    {
+      if( 0 == size )
+      {
+        return null;
+      }
+      final File file = elements[head];
+      elements[head] = null;
+      head = ( head + 1 ) % elements.length;
+      size--;
+      return file;
+    }
+  }
+
+  /** Worker that lists directories and parses class files until the walk is complete. */
+  private final class Worker
+    implements Callable<Object>
+  {
+    private final Scan scan;
+    private final int index;
+    final WorkDeque deque = new WorkDeque();
+
+    /** The buffer files are read into. Reused between files. */
+    private byte[] buffer = new byte[8192];
+
+    /** The reader classes are parsed with. */
+    private final ClassFileReader reader;
+
+    Worker( final Scan scan, final int index )
+    {
+      this.scan = scan;
+      this.index = index;
+      this.reader = new ClassFileReader( symbolTable );
+    }
+
+    public Object call()
+      throws IOException
+    {
+      final ClassFileParser parser = scan.factory.newParser();
+      File file;
+      while( null != ( file = scan.next( this ) ) )
+      {
+        try
+        {
+          if( DirectoryWalker.isClassFile( file ) )
+          {
+            parse( file, parser );
+          }
+          else
+          {
+            list( file );
+          }
+        }
+        finally
+        {
+          scan.complete();
+        }
+      }
+      return null;
+    }
+
+    /**
+     * Push the sub-directories and class files of directory onto the deque.
+     *
+     * @param directory the directory.
+     * @throws IOException if the canonical path of directory can not be determined.
+     */
+    private void list( final File directory )
+      throws IOException
+    {
+      final File[] children = scan.walker.list( directory );
+      if( null == children )
+      {
+        return;
+      }
+      for( final File child : children )
+      {
+        scan.push( this, child );
+      }
+    }
+
+    /**
+     * Read and parse a class file and pass it to the parser.
+     * A directory with a name that ends in .class is listed instead.
+     *
+     * @param file   the class file.
+     * @param parser the parser.
+     * @throws IOException if an error occurs reading file.
+     */
+    private void parse( final File file, final ClassFileParser parser )
+      throws IOException
+    {
+      final int length;
+      try
+      {
+        buffer = IOUtil.ensureCapacity( buffer, file.length() );
+        length = IOUtil.readFile( file, buffer );
+      }
+      catch( final FileNotFoundException fnfe )
+      {
+        if( file.isDirectory() )
+        {
+          list( file );
+          return;
+        }
+        throw fnfe;
+      }
+      final ClassFile classFile;
+      try
+      {
+        classFile = reader.read( buffer, 0, length );
+      }
+      catch( final ClassFormatError cfe )
+      {
+        final ClassFormatError error =
+          new ClassFormatError( "Error parsing " + file + ": " + cfe.getMessage() );
+        error.initCause( cfe );
+        throw error;
+      }
+      classFile.processClass( parser, parseFields, parseMethods, parseClassSection );
+      scan.classCount.incrementAndGet();
+    }
+  }
+}
@@ -0,0 +1,70 @@
+package org.realityforge.fade;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Lists the directories of a class tree for the directory scanners. Each
+ * directory is listed at most once, identified by its canonical path, so a
+ * tree in which symbolic links form a cycle or reach a directory by several
+ * paths is walked once. A walker is used for a single walk and may be shared
+ * by several threads.
+ */
+final class DirectoryWalker
+{
+  /** Suffix of files that are scanned. */
+  static final String CLASS_SUFFIX = ".class";
+
+  /** The canonical paths of the directories already listed. */
+  private final ConcurrentHashMap<String, Boolean> visited = new ConcurrentHashMap<String, Boolean>();
+
+  /**
+   * Return true if specified file is named like a class file.
+   *
+   * @param file the file.
+   * @return true if specified file is named like a class file.
+   */
+  static boolean isClassFile( final File file )
+  {
+    return file.getName().endsWith( CLASS_SUFFIX );
+  }
+
+  /**
+   * Return the class files and sub-directories of directory. Class files are
+   * identified by name so that only other children need a stat, and so may
+   * include directories named like class files.
+   *
+   * @param directory the directory.
+   * @return the children, or null if the directory was already listed or can not be listed.
+   * @throws IOException if the canonical path of directory can not be determined.
+   */
+  File[] list( final File directory )
+    throws IOException
+  {
+    if( null != visited.putIfAbsent( directory.getCanonicalPath(), Boolean.TRUE ) )
+    {
+      return null;
+    }
+    final File[] children = directory.listFiles();
+    if( null == children )
+    {
+      return null;
+    }
+    int count = 0;
+    for( final File child : children )
+    {
+      if( isClassFile( child ) || child.isDirectory() )
+      {
+        children[count++] = child;
+      }
+    }
+    if( count == children.length )
+    {
+      return children;
+    }
+    final File[] result = new File[count];
+    System.arraycopy( children, 0, result, 0, count );
+    return result;
+  }
+}
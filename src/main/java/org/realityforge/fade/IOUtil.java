@@ -1,5 +1,10 @@
 package org.realityforge.fade;
 
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
 /** Utility class with helpers for doing IO on classfiles. */
 class IOUtil
 {
@@ -78,7 +83,29 @@ class IOUtil
   {
     if( data.length < offset + required )
     {
-      throwTruncatedException( data, offset, required );
+      throwTruncatedException( offset, required, data.length );
+    }
+  }
+
+  /**
+   * Throw an exception if there is not enough data left before the limit.
+   * The limit is a position in the array, which need not be the length of
+   * the class if the class is stored in a region of the array.
+   *
+   * @param start    the position of the first byte of the class data.
+   * @param limit    the position after the last byte of the class data.
+   * @param offset   the current offset.
+   * @param required the amount required.
+   */
+  static void checkLength( final int start, final int limit, final int offset, final long required )
+  {
+    if( limit < offset + required )
+    {
+      if( 0 == start )
+      {
+        throwTruncatedException( offset, required, limit );
+      }
+      throwRegionTruncatedException( offset, required, limit );
     }
   }
 
@@ -87,17 +114,30 @@ class IOUtil
    * Method extracted so above method will be inlined but exception
    * creation will not be and thus will not bloat code.
    *
-   * @param data     the data.
    * @param offset   the current offset.
    * @param required the amount required.
+   * @param length   the length of the class data.
    */
-  private static void throwTruncatedException( final byte[] data,
-                                               final int offset,
-                                               final long required )
+  private static void throwTruncatedException( final int offset, final long required, final int length )
   {
     final String message =
       "Class file is truncated. Require " + required + " bytes at position " +
-      offset + " when class file is only " + data.length + " bytes long.";
+      offset + " when class file is only " + length + " bytes long.";
+    throw new ClassFormatError( message );
+  }
+
+  /**
+   * Throw class file truncated exception for class data that ends at a limit.
+   *
+   * @param offset   the current offset.
+   * @param required the amount required.
+   * @param limit    the position after the last byte of the class data.
+   */
+  private static void throwRegionTruncatedException( final int offset, final long required, final int limit )
+  {
+    final String message =
+      "Class file is truncated. Require " + required + " bytes at position " +
+      offset + " when the class data ends at position " + limit + ".";
     throw new ClassFormatError( message );
   }
 
@@ -117,13 +157,24 @@ class IOUtil
                                 final int index,
                                 final int count )
   {
-    int offset = baseOffset;
+    final int end = count + baseOffset;
+    final int asciiEnd = skipAscii( data, baseOffset, end );
+    if( asciiEnd == end )
+    {
+      return newAsciiString( data, baseOffset, count );
+    }
+
+    int offset = asciiEnd;
     int size = 0;
 
     //We may over-allocate but this is probably faster
     final char[] chars = new char[count];
 
-    final int end = count + offset;
+    while( size < asciiEnd - baseOffset )
+    {
+      chars[size] = (char)data[baseOffset + size];
+      size++;
+    }
 
     while( offset < end )
     {
@@ -178,6 +229,288 @@ class IOUtil
     return new String( chars, 0, size );
   }
 
+  /**
+   * Return the position of the first byte that is not a single byte character.
+   * Single byte characters are in the range 0x01-0x7F and decode to the same
+   * char value. Bytes are tested eight at a time as ((b - 1) | b) is negative
+   * exactly when b is zero or has the high bit set.
+   *
+   * @param data   the data.
+   * @param offset the offset to start scanning from.
+   * @param end    the position after the last byte to scan.
+   * @return the position of first byte that is not a single byte character or end.
+   */
+  static int skipAscii( final byte[] data, final int offset, final int end )
+  {
+    int position = offset;
+    while( position + 8 <= end )
+    {
+      final int b0 = data[position];
+      final int b1 = data[position + 1];
+      final int b2 = data[position + 2];
+      final int b3 = data[position + 3];
+      final int b4 = data[position + 4];
+      final int b5 = data[position + 5];
+      final int b6 = data[position + 6];
+      final int b7 = data[position + 7];
+      if( ( ( b0 - 1 ) | b0 | ( b1 - 1 ) | b1 | ( b2 - 1 ) | b2 | ( b3 - 1 ) | b3 |
+            ( b4 - 1 ) | b4 | ( b5 - 1 ) | b5 | ( b6 - 1 ) | b6 | ( b7 - 1 ) | b7 ) < 0 )
+      {
+        break;
+      }
+      position += 8;
+    }
+    while( position < end && data[position] > 0 )
+    {
+      position++;
+    }
+    return position;
+  }
+
+  /**
+   * Create a string from bytes known to be in the range 0x01-0x7F.
+   * The hibyte constructor copies the bytes directly into a Latin-1 compact
+   * string on JVMs that support them, avoiding an intermediate char array.
+   *
+   * @param data   the data.
+   * @param offset the offset of first byte.
+   * @param count  the number of bytes.
+   * @return the string.
+   */
+  @SuppressWarnings( "deprecation" )
+  private static String newAsciiString( final byte[] data, final int offset, final int count )
+  {
+    return new String( data, 0, offset, count );
+  }
+
+  /**
+   * Compare modified-UTF8 data against the encoded form of a string without decoding.
+   *
+   * @param data   the data.
+   * @param offset the offset of first byte of utf data.
+   * @param length the number of bytes of utf data.
+   * @param value  the string to compare against.
+   * @param prefix true if value need only match the start of the data.
+   * @return true if the data matches value.
+   */
+  static boolean matchesUtf( final byte[] data,
+                             final int offset,
+                             final int length,
+                             final String value,
+                             final boolean prefix )
+  {
+    final int end = offset + length;
+    int position = offset;
+    final int count = value.length();
+    for( int i = 0; i < count; i++ )
+    {
+      final char ch = value.charAt( i );
+      if( ch >= 0x0001 && ch <= 0x007F )
+      {
+        if( position >= end || data[position] != ch )
+        {
+          return false;
+        }
+        position += 1;
+      }
+      else if( ch <= 0x07FF )
+      {
+        if( position + 1 >= end ||
+            data[position] != (byte)( 0xC0 | ( ch >> 6 ) ) ||
+            data[position + 1] != (byte)( 0x80 | ( ch & 0x3F ) ) )
+        {
+          return false;
+        }
+        position += 2;
+      }
+      else
+      {
+        if( position + 2 >= end ||
+            data[position] != (byte)( 0xE0 | ( ch >> 12 ) ) ||
+            data[position + 1] != (byte)( 0x80 | ( ( ch >> 6 ) & 0x3F ) ) ||
+            data[position + 2] != (byte)( 0x80 | ( ch & 0x3F ) ) )
+        {
+          return false;
+        }
+        position += 3;
+      }
+    }
+    return prefix || position == end;
+  }
+
+  /**
+   * Return true if the region of data is equal to the start of the other array.
+   *
+   * @param data   the data.
+   * @param offset the offset of first byte in data.
+   * @param other  the other array.
+   * @param length the number of bytes to compare.
+   * @return true if the regions are equal.
+   */
+  static boolean regionMatches( final byte[] data,
+                                final int offset,
+                                final byte[] other,
+                                final int length )
+  {
+    for( int i = 0; i < length; i++ )
+    {
+      if( data[offset + i] != other[i] )
+      {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Hash a region of bytes.
+   *
+   * @param data   the data.
+   * @param offset the offset of first byte.
+   * @param length the number of bytes.
+   * @return the hash.
+   */
+  static int hash( final byte[] data, final int offset, final int length )
+  {
+    int hash = 0;
+    final int end = offset + length;
+    for( int i = offset; i < end; i++ )
+    {
+      hash = 31 * hash + data[i];
+    }
+    return hash;
+  }
+
+  /**
+   * Compute a 64-bit fingerprint of a region of bytes, eight bytes at a time.
+   * The mixing follows MurmurHash64A. It is fast but not cryptographic.
+   *
+   * @param data   the data.
+   * @param offset the offset of first byte.
+   * @param length the number of bytes.
+   * @return the fingerprint.
+   */
+  static long hash64( final byte[] data, final int offset, final int length )
+  {
+    final long multiplier = 0xc6a4a7935bd1e995L;
+    long hash = 0x9747b28cL ^ ( length * multiplier );
+    final int end = offset + length;
+    int i = offset;
+    for( ; i + 8 <= end; i += 8 )
+    {
+      long value = readLong( data, i );
+      value *= multiplier;
+      value ^= value >>> 47;
+      value *= multiplier;
+      hash ^= value;
+      hash *= multiplier;
+    }
+    if( i < end )
+    {
+      long value = 0;
+      for( ; i < end; i++ )
+      {
+        value = ( value << 8 ) | ( data[i] & 0xff );
+      }
+      hash ^= value;
+      hash *= multiplier;
+    }
+    hash ^= hash >>> 47;
+    hash *= multiplier;
+    hash ^= hash >>> 47;
+    return hash;
+  }
+
+  /**
+   * Return a buffer that can hold specified number of bytes.
+   *
+   * @param buffer the current buffer.
+   * @param size   the number of bytes.
+   * @return the current buffer if large enough, otherwise a new buffer of specified size.
+   */
+  static byte[] ensureCapacity( final byte[] buffer, final long size )
+  {
+    if( buffer.length < size )
+    {
+      return new byte[(int)Math.min( Integer.MAX_VALUE, size )];
+    }
+    return buffer;
+  }
+
+  /**
+   * Read the contents of file into the buffer. The buffer should have been
+   * sized from the length of the file via {@link #ensureCapacity(byte[], long)}
+   * as at most buffer.length bytes are read, so bytes appended to the file
+   * while it is read may be ignored.
+   *
+   * @param file   the file.
+   * @param buffer the buffer.
+   * @return the number of bytes read.
+   * @throws IOException if an error occurs reading file.
+   */
+  static int readFile( final File file, final byte[] buffer )
+    throws IOException
+  {
+    final InputStream input = new FileInputStream( file );
+    try
+    {
+      int count = 0;
+      while( count < buffer.length )
+      {
+        final int read = input.read( buffer, count, buffer.length - count );
+        if( -1 == read )
+        {
+          break;
+        }
+        count += read;
+      }
+      return count;
+    }
+    finally
+    {
+      input.close();
+    }
+  }
+
+  /**
+   * Encode a string into the modified-UTF8 format used by class files.
+   *
+   * @param value the string.
+   * @return the encoded bytes.
+   */
+  static byte[] encodeUtf( final String value )
+  {
+    final int count = value.length();
+    int size = 0;
+    for( int i = 0; i < count; i++ )
+    {
+      final char ch = value.charAt( i );
+      size += ( ch >= 0x0001 && ch <= 0x007F ) ? 1 : ( ch <= 0x07FF ) ? 2 : 3;
+    }
+    final byte[] bytes = new byte[size];
+    int position = 0;
+    for( int i = 0; i < count; i++ )
+    {
+      final char ch = value.charAt( i );
+      if( ch >= 0x0001 && ch <= 0x007F )
+      {
+        bytes[position++] = (byte)ch;
+      }
+      else if( ch <= 0x07FF )
+      {
+        bytes[position++] = (byte)( 0xC0 | ( ch >> 6 ) );
+        bytes[position++] = (byte)( 0x80 | ( ch & 0x3F ) );
+      }
+      else
+      {
+        bytes[position++] = (byte)( 0xE0 | ( ch >> 12 ) );
+        bytes[position++] = (byte)( 0x80 | ( ( ch >> 6 ) & 0x3F ) );
+        bytes[position++] = (byte)( 0x80 | ( ch & 0x3F ) );
+      }
+    }
+    return bytes;
+  }
+
   /**
    * Create an ClassFormatError for invalid utf content.
    *
@@ -0,0 +1,300 @@
+package org.realityforge.fade;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Scanner that keeps a {@link PatchableIndex} up to date with the classes in
+ * a set of directories, such as build output directories, that are scanned
+ * repeatedly. The scanner records a fingerprint of each class file and on
+ * later scans only parses the files whose contents changed. Classes whose
+ * files changed or were deleted are removed from the index before the new
+ * versions are processed.
+ *
+ * <p>A file is only read if its length or modification time changed since the
+ * previous scan, or if it was modified so recently that a later change may not
+ * alter the modification time. Files that are read are hashed with a fast
+ * non-cryptographic hash and only parsed if the hash changed. Each directory
+ * is walked once even if symbolic links reach it by several paths.</p>
+ *
+ * <p>A scanner and its index are confined to a single thread.</p>
+ */
+public final class IncrementalScanner
+{
+  /**
+   * Files modified within this many milliseconds of a scan are hashed on the
+   * next scan as file systems may not record a further change within the interval.
+   */
+  private static final long RACY_INTERVAL = 2000;
+
+  private final PatchableIndex index;
+  private final boolean parseFields;
+  private final boolean parseMethods;
+  private final boolean parseClassSection;
+  private final ClassFileReader reader = new ClassFileReader();
+
+  /** The fingerprints of the files found by the last scan. */
+  private final HashMap<File, Fingerprint> fingerprints = new HashMap<File, Fingerprint>();
+
+  /** The parser classes are processed with. Created on first use. */
+  private ClassFileParser parser;
+
+  /** The buffer files are read into. */
+  private byte[] buffer = new byte[4096];
+
+  /**
+   * Create a scanner.
+   *
+   * @param index             the index to keep up to date.
+   * @param parseFields       true to parse field section, false otherwise.
+   * @param parseMethods      true to parse method section, false otherwise.
+   * @param parseClassSection true to parse class section, false otherwise.
+   */
+  public IncrementalScanner( final PatchableIndex index,
+                             final boolean parseFields,
+                             final boolean parseMethods,
+                             final boolean parseClassSection )
+  {
+    if( null == index )
+    {
+      throw new IllegalArgumentException( "Null index" );
+    }
+    this.index = index;
+    this.parseFields = parseFields;
+    this.parseMethods = parseMethods;
+    this.parseClassSection = parseClassSection;
+  }
+
+  /**
+   * Return the number of class files found by the last scan.
+   *
+   * @return the number of class files.
+   */
+  public int getFileCount()
+  {
+    return fingerprints.size();
+  }
+
+  /**
+   * Scan the class files in specified directories and update the index.
+   * Classes found by a previous scan that are not in the directories are
+   * removed from the index, so every directory must be passed to each scan.
+   *
+   * @param directories the directories.
+   * @return the number of classes that were processed.
+   * @throws IOException if an error occurs reading a file.
+   */
+  public int scan( final File... directories )
+    throws IOException
+  {
+    final long scanTime = System.currentTimeMillis();
+    final ArrayList<File> files = new ArrayList<File>();
+    final DirectoryWalker walker = new DirectoryWalker();
+    for( final File directory : directories )
+    {
+      collectClassFiles( walker, directory, files );
+    }
+
+    final HashSet<File> found = new HashSet<File>( files.size() * 2 );
+    final ArrayList<Change> changed = new ArrayList<Change>();
+    final HashSet<String> removed = new HashSet<String>();
+    for( final File file : files )
+    {
+      found.add( file );
+      final Fingerprint fingerprint = fingerprints.get( file );
+      if( null == fingerprint )
+      {
+        changed.add( new Change( file ) );
+        continue;
+      }
+      final long length = file.length();
+      final long lastModified = file.lastModified();
+      if( fingerprint.length == length && fingerprint.lastModified == lastModified && !fingerprint.racy )
+      {
+        continue;
+      }
+      final int count = read( file, length );
+      final long hash = IOUtil.hash64( buffer, 0, count );
+      if( fingerprint.length == count && fingerprint.hash == hash )
+      {
+        fingerprint.lastModified = lastModified;
+        fingerprint.racy = isRacy( lastModified, scanTime );
+      }
+      else
+      {
+        //Keep the bytes as the buffer is reused before the class is parsed
+        final byte[] data = new byte[count];
+        System.arraycopy( buffer, 0, data, 0, count );
+        changed.add( new Change( file, lastModified, data, hash ) );
+        removed.add( fingerprint.className );
+      }
+    }
+
+    final Iterator<Map.Entry<File, Fingerprint>> iterator = fingerprints.entrySet().iterator();
+    while( iterator.hasNext() )
+    {
+      final Map.Entry<File, Fingerprint> entry = iterator.next();
+      if( !found.contains( entry.getKey() ) )
+      {
+        removed.add( entry.getValue().className );
+        iterator.remove();
+      }
+    }
+    if( !removed.isEmpty() )
+    {
+      index.removeClasses( removed );
+    }
+
+    for( final Change change : changed )
+    {
+      final File file = change.file;
+      final long lastModified;
+      final byte[] data;
+      final int count;
+      final long hash;
+      if( null != change.data )
+      {
+        lastModified = change.lastModified;
+        data = change.data;
+        count = data.length;
+        hash = change.hash;
+      }
+      else
+      {
+        //Read the modification time first so a concurrent write is detected by the next scan
+        lastModified = file.lastModified();
+        count = read( file, file.length() );
+        data = buffer;
+        hash = IOUtil.hash64( buffer, 0, count );
+      }
+      final ClassFile classFile;
+      try
+      {
+        classFile = reader.read( data, 0, count );
+      }
+      catch( final ClassFormatError cfe )
+      {
+        fingerprints.remove( file );
+        final ClassFormatError error = new ClassFormatError( "Error parsing " + file + ": " + cfe.getMessage() );
+        error.initCause( cfe );
+        throw error;
+      }
+      if( null == parser )
+      {
+        parser = index.newParser();
+      }
+      classFile.processClass( parser, parseFields, parseMethods, parseClassSection );
+      fingerprints.put( file, new Fingerprint( count,
+                                               lastModified,
+                                               isRacy( lastModified, scanTime ),
+                                               hash,
+                                               classFile.getClassName() ) );
+    }
+    return changed.size();
+  }
+
+  private static boolean isRacy( final long lastModified, final long scanTime )
+  {
+    return lastModified > scanTime - RACY_INTERVAL;
+  }
+
+  /**
+   * Add the class files in directory and its sub-directories to the list.
+   *
+   * @param walker    the walker that lists directories.
+   * @param directory the directory.
+   * @param files     the list of files.
+   * @throws IOException if the canonical path of a directory can not be determined.
+   */
+  private static void collectClassFiles( final DirectoryWalker walker,
+                                         final File directory,
+                                         final ArrayList<File> files )
+    throws IOException
+  {
+    final File[] children = walker.list( directory );
+    if( null == children )
+    {
+      return;
+    }
+    for( final File child : children )
+    {
+      if( child.isDirectory() )
+      {
+        collectClassFiles( walker, child, files );
+      }
+      else
+      {
+        files.add( child );
+      }
+    }
+  }
+
+  /**
+   * Read the contents of file into the buffer, growing it to the length of the file.
+   *
+   * @param file   the file.
+   * @param length the length of the file.
+   * @return the number of bytes read.
+   * @throws IOException if an error occurs reading file.
+   */
+  private int read( final File file, final long length )
+    throws IOException
+  {
+    buffer = IOUtil.ensureCapacity( buffer, length );
+    return IOUtil.readFile( file, buffer );
+  }
+
+  /** The state of a class file when it was last read. */
+  private static final class Fingerprint
+  {
+    final long length;
+    final long hash;
+    final String className;
+    long lastModified;
+
+    /** True if the file may change without changing its modification time. */
+    boolean racy;
+
+    Fingerprint( final long length,
+                 final long lastModified,
+                 final boolean racy,
+                 final long hash,
+                 final String className )
+    {
+      this.length = length;
+      this.lastModified = lastModified;
+      this.racy = racy;
+      this.hash = hash;
+      this.className = className;
+    }
+  }
+
+  /** A class file that is new or whose contents changed since the previous scan. */
+  private static final class Change
+  {
+    final File file;
+    final long lastModified;
+
+    /** The contents of the file if read while checking the fingerprint, otherwise null. */
+    final byte[] data;
+    final long hash;
+
+    Change( final File file )
+    {
+      this( file, 0, null, 0 );
+    }
+
+    Change( final File file, final long lastModified, final byte[] data, final long hash )
+    {
+      this.file = file;
+      this.lastModified = lastModified;
+      this.data = data;
+      this.hash = hash;
+    }
+  }
+}
@@ -0,0 +1,128 @@
+package org.realityforge.fade;
+
+import java.util.ArrayList;
+import java.util.Set;
+
+/**
+ * Base class of the builders that collect an entry per class into an index.
+ * Each parser created by the builder records entries in its own list so
+ * workers of a scanner collect classes without contention, and the entries
+ * of all parsers are combined when the index is built.
+ *
+ * @param <E> the type of the entries recorded for each class.
+ */
+abstract class IndexBuilder<E>
+  implements PatchableIndex
+{
+  /** The collectors registered with the builder. Guarded by itself. */
+  private final ArrayList<EntryCollector<E>> collectors = new ArrayList<EntryCollector<E>>();
+
+  /**
+   * Create a parser that collects classes into this builder.
+   * Each parser must only be used from a single thread.
+   *
+   * @return the new parser.
+   */
+  public final ClassFileParser newParser()
+  {
+    return register( newCollector() );
+  }
+
+  public final void removeClasses( final Set<String> classNames )
+  {
+    synchronized( collectors )
+    {
+      for( final EntryCollector<E> collector : collectors )
+      {
+        collector.remove( classNames );
+      }
+    }
+  }
+
+  /**
+   * Create a collector for a new parser.
+   *
+   * @return the collector.
+   */
+  abstract EntryCollector<E> newCollector();
+
+  /**
+   * Register a collector so its entries are part of the index.
+   *
+   * @param collector the collector.
+   * @return the collector.
+   */
+  final <C extends EntryCollector<E>> C register( final C collector )
+  {
+    synchronized( collectors )
+    {
+      collectors.add( collector );
+    }
+    return collector;
+  }
+
+  /**
+   * Return the entries collected so far in the order the collectors were registered.
+   * Must not be invoked while parsers created by builder are in use.
+   *
+   * @return the entries.
+   */
+  final ArrayList<E> getEntries()
+  {
+    final ArrayList<E> entries = new ArrayList<E>();
+    synchronized( collectors )
+    {
+      for( final EntryCollector<E> collector : collectors )
+      {
+        entries.addAll( collector.entries );
+      }
+    }
+    return entries;
+  }
+
+  /**
+   * Parser that records entries for the classes it processes.
+   *
+   * @param <E> the type of the entries.
+   */
+  abstract static class EntryCollector<E>
+    extends ClassFileParser
+  {
+    final ArrayList<E> entries = new ArrayList<E>();
+
+    EntryCollector()
+    {
+    }
+
+    EntryCollector( final String[] attributeNames, final String[] annotationTypes )
+    {
+      super( attributeNames, annotationTypes );
+    }
+
+    /**
+     * Return the name of the class the entry was recorded for.
+     *
+     * @param entry the entry.
+     * @return the name of the class in internal format.
+     */
+    abstract String getClassName( E entry );
+
+    /**
+     * Remove the entries of the classes with the specified names.
+     *
+     * @param classNames the names of the classes in internal format.
+     */
+    final void remove( final Set<String> classNames )
+    {
+      int size = 0;
+      for( final E entry : entries )
+      {
+        if( !classNames.contains( getClassName( entry ) ) )
+        {
+          entries.set( size++, entry );
+        }
+      }
+      entries.subList( size, entries.size() ).clear();
+    }
+  }
+}
@@ -189,7 +189,10 @@ public class Instruction {
   public static final Instruction INVOKESPECIAL = new Instruction("INVOKESPECIAL", 183, 3);
   public static final Instruction INVOKESTATIC = new Instruction("INVOKESTATIC", 184, 3);
   public static final Instruction INVOKEINTERFACE = new Instruction("INVOKEINTERFACE", 185, 5);
-  public static final Instruction UNNUSED1 = new Instruction("UNNUSED1", 186, 0);
+  public static final Instruction INVOKEDYNAMIC = new Instruction("INVOKEDYNAMIC", 186, 5);
+  /** @deprecated opcode 186 is {@link #INVOKEDYNAMIC} since class file version 51. */
+  @Deprecated
+  public static final Instruction UNNUSED1 = INVOKEDYNAMIC;
   public static final Instruction NEW = new Instruction("NEW", 187, 3);
   public static final Instruction NEWARRAY = new Instruction("NEWARRAY", 188, 2);
   public static final Instruction ANEWARRAY = new Instruction("ANEWARRAY", 189, 3);
@@ -0,0 +1,456 @@
+package org.realityforge.fade;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Read-only view of a jimage container such as the lib/modules file of a JDK.
+ * The container is normally memory mapped and resources are located via the
+ * perfect hash index stored in the container rather than by decoding every
+ * entry. All reads use absolute positions so an image may be read from
+ * several threads.
+ *
+ * <p>The container starts with a header in the byte order of the platform that
+ * wrote it, followed by the index and then the resources.</p>
+ * <ul>
+ * <li>Redirect table: one int per slot used to resolve hash collisions.</li>
+ * <li>Offsets table: one int per slot giving the position of its location.</li>
+ * <li>Locations: each location is a sequence of attributes, each a byte holding
+ * the kind and length followed by a big-endian value, terminated by a zero byte.</li>
+ * <li>Strings: null terminated modified-UTF8 strings referenced by locations.</li>
+ * </ul>
+ *
+ * <p>Resources are named "/module/parent/base.extension". Resources compressed
+ * with the zip plugin are inflated when read.</p>
+ */
+public final class JImage
+{
+  /** Magic number at start of a container. */
+  static final int MAGIC = 0xCAFEDADA;
+
+  /** Major version of the container format. */
+  static final int MAJOR_VERSION = 1;
+
+  static final int HEADER_SIZE = 7 * 4;
+
+  /** Multiplier and default seed of the hash used to index resource names. */
+  static final int HASH_MULTIPLIER = 0x01000193;
+
+  static final int ATTRIBUTE_END = 0;
+  static final int ATTRIBUTE_MODULE = 1;
+  static final int ATTRIBUTE_PARENT = 2;
+  static final int ATTRIBUTE_BASE = 3;
+  static final int ATTRIBUTE_EXTENSION = 4;
+  static final int ATTRIBUTE_OFFSET = 5;
+  static final int ATTRIBUTE_COMPRESSED = 6;
+  static final int ATTRIBUTE_UNCOMPRESSED = 7;
+  static final int ATTRIBUTE_COUNT = 8;
+
+  /** Magic number at start of a compressed resource. */
+  static final int RESOURCE_MAGIC = 0xCAFEFAFA;
+
+  /** Size of the header of a compressed resource. */
+  static final int RESOURCE_HEADER_SIZE = 29;
+
+  /** Name of the only supported decompressor. */
+  private static final String ZIP_DECOMPRESSOR = "zip";
+
+  private static final byte[] CLASS_EXTENSION = IOUtil.encodeUtf( "class" );
+
+  private final ByteBuffer buffer;
+  private final int tableLength;
+  private final int redirectPosition;
+  private final int offsetsPosition;
+  private final int locationsPosition;
+  private final int locationsSize;
+  private final int stringsPosition;
+  private final int stringsSize;
+  private final int indexSize;
+
+  /**
+   * Create an image backed by specified buffer.
+   * The buffer is used from position 0 and must not be modified.
+   *
+   * @param buffer the buffer containing the image.
+   * @throws IOException if the buffer does not contain a valid image.
+   */
+  public JImage( final ByteBuffer buffer )
+    throws IOException
+  {
+    if( buffer.limit() < HEADER_SIZE )
+    {
+      throw new IOException( "JImage is truncated" );
+    }
+    //The duplicate is big-endian whatever the order of the supplied buffer
+    this.buffer = buffer.duplicate();
+    final int magic = this.buffer.getInt( 0 );
+    if( Integer.reverseBytes( magic ) == MAGIC )
+    {
+      this.buffer.order( ByteOrder.LITTLE_ENDIAN );
+    }
+    else if( MAGIC != magic )
+    {
+      throw new IOException( "Bad jimage magic number " + Integer.toHexString( magic ) );
+    }
+    final int version = this.buffer.getInt( 4 );
+    if( MAJOR_VERSION != version >>> 16 )
+    {
+      throw new IOException( "Unsupported jimage version " + ( version >>> 16 ) + "." + ( version & 0xFFFF ) );
+    }
+    tableLength = this.buffer.getInt( 16 );
+    locationsSize = this.buffer.getInt( 20 );
+    stringsSize = this.buffer.getInt( 24 );
+    redirectPosition = HEADER_SIZE;
+    offsetsPosition = redirectPosition + tableLength * 4;
+    locationsPosition = offsetsPosition + tableLength * 4;
+    stringsPosition = locationsPosition + locationsSize;
+    indexSize = stringsPosition + stringsSize;
+    if( tableLength < 0 || locationsSize < 0 || stringsSize < 0 ||
+        locationsPosition < offsetsPosition || indexSize < stringsPosition || indexSize > buffer.limit() )
+    {
+      throw new IOException( "JImage index is truncated" );
+    }
+  }
+
+  /**
+   * Map specified file into memory and create an image backed by it.
+   *
+   * @param file the jimage file.
+   * @return the image.
+   * @throws IOException if an error occurs mapping the file or it does not contain a valid image.
+   */
+  public static JImage map( final File file )
+    throws IOException
+  {
+    final RandomAccessFile input = new RandomAccessFile( file, "r" );
+    try
+    {
+      final FileChannel channel = input.getChannel();
+      return new JImage( channel.map( FileChannel.MapMode.READ_ONLY, 0, channel.size() ) );
+    }
+    finally
+    {
+      //The mapping remains valid after the channel is closed
+      input.close();
+    }
+  }
+
+  /**
+   * Return the number of locations in image.
+   * Locations are identified by an index from 0 to one less than the count.
+   *
+   * @return the number of locations.
+   */
+  public int getLocationCount()
+  {
+    return tableLength;
+  }
+
+  /**
+   * Return the location of the resource with specified name.
+   *
+   * @param name the name of the resource such as "/java.base/java/lang/Object.class".
+   * @return the location or -1 if not present.
+   */
+  public int findLocation( final String name )
+  {
+    if( 0 == tableLength )
+    {
+      return -1;
+    }
+    final byte[] bytes = IOUtil.encodeUtf( name );
+    final int redirect = buffer.getInt( redirectPosition + ( hash( bytes, HASH_MULTIPLIER ) % tableLength ) * 4 );
+    final int location;
+    if( redirect < 0 )
+    {
+      location = -1 - redirect;
+    }
+    else if( redirect > 0 )
+    {
+      location = hash( bytes, redirect ) % tableLength;
+    }
+    else
+    {
+      return -1;
+    }
+    //The hash is perfect for names in the image but any other name may collide
+    return location < tableLength && name.equals( getName( location ) ) ? location : -1;
+  }
+
+  /**
+   * Return the name of the resource at specified location.
+   *
+   * @param location the location.
+   * @return the name of the resource.
+   */
+  public String getName( final int location )
+  {
+    final long[] attributes = readAttributes( location );
+    final StringBuilder sb = new StringBuilder();
+    if( 0 != attributes[ATTRIBUTE_MODULE] )
+    {
+      sb.append( '/' ).append( getString( attributes[ATTRIBUTE_MODULE] ) ).append( '/' );
+    }
+    if( 0 != attributes[ATTRIBUTE_PARENT] )
+    {
+      sb.append( getString( attributes[ATTRIBUTE_PARENT] ) ).append( '/' );
+    }
+    sb.append( getString( attributes[ATTRIBUTE_BASE] ) );
+    if( 0 != attributes[ATTRIBUTE_EXTENSION] )
+    {
+      sb.append( '.' ).append( getString( attributes[ATTRIBUTE_EXTENSION] ) );
+    }
+    return sb.toString();
+  }
+
+  /**
+   * Return true if the resource at specified location is a class in a module.
+   * Only the extension is compared, the name is not decoded.
+   *
+   * @param location the location.
+   * @return true if the resource is a class.
+   */
+  public boolean isClass( final int location )
+  {
+    final long[] attributes = readAttributes( location );
+    return 0 != attributes[ATTRIBUTE_MODULE] && stringMatches( attributes[ATTRIBUTE_EXTENSION], CLASS_EXTENSION );
+  }
+
+  /**
+   * Return the uncompressed size of the resource at specified location.
+   *
+   * @param location the location.
+   * @return the size in bytes.
+   */
+  public int getSize( final int location )
+  {
+    return toInt( readAttributes( location )[ATTRIBUTE_UNCOMPRESSED] );
+  }
+
+  /**
+   * Read the resource with specified name.
+   *
+   * @param name the name of the resource.
+   * @return the contents of the resource or null if not present.
+   * @throws IOException if the resource can not be decompressed.
+   */
+  public byte[] getResource( final String name )
+    throws IOException
+  {
+    final int location = findLocation( name );
+    if( -1 == location )
+    {
+      return null;
+    }
+    final byte[] data = new byte[getSize( location )];
+    read( location, data );
+    return data;
+  }
+
+  /**
+   * Read the resource at specified location into the start of buffer.
+   * The buffer must be at least {@link #getSize} bytes long.
+   *
+   * @param location the location.
+   * @param data     the buffer.
+   * @return the number of bytes read.
+   * @throws IOException if the resource can not be decompressed.
+   */
+  public int read( final int location, final byte[] data )
+    throws IOException
+  {
+    final long[] attributes = readAttributes( location );
+    final int size = toInt( attributes[ATTRIBUTE_UNCOMPRESSED] );
+    final int compressedSize = toInt( attributes[ATTRIBUTE_COMPRESSED] );
+    final int position = toInt( indexSize + attributes[ATTRIBUTE_OFFSET] );
+    if( 0 == compressedSize )
+    {
+      copy( position, data, 0, size );
+      return size;
+    }
+    final byte[] compressed = new byte[compressedSize];
+    copy( position, compressed, 0, compressedSize );
+    final byte[] result = decompress( compressed );
+    if( result.length != size )
+    {
+      throw new IOException( "Resource " + getName( location ) + " decompressed to " + result.length +
+                             " bytes but expected " + size );
+    }
+    System.arraycopy( result, 0, data, 0, size );
+    return size;
+  }
+
+  /**
+   * Decompress a resource, which may have been compressed by several plugins in turn.
+   *
+   * @param data the compressed resource.
+   * @return the decompressed resource.
+   * @throws IOException if a plugin is unsupported or the data is corrupt.
+   */
+  private byte[] decompress( final byte[] data )
+    throws IOException
+  {
+    byte[] result = data;
+    while( result.length >= RESOURCE_HEADER_SIZE )
+    {
+      final ByteBuffer header = ByteBuffer.wrap( result ).order( buffer.order() );
+      if( RESOURCE_MAGIC != header.getInt( 0 ) )
+      {
+        break;
+      }
+      final int compressedSize = toInt( header.getLong( 4 ) );
+      final int size = toInt( header.getLong( 12 ) );
+      final String decompressor = getString( header.getInt( 20 ) & 0xFFFFFFFFL );
+      if( !ZIP_DECOMPRESSOR.equals( decompressor ) )
+      {
+        throw new IOException( "Unsupported jimage decompressor " + decompressor );
+      }
+      result = inflate( result, RESOURCE_HEADER_SIZE, compressedSize, size );
+    }
+    return result;
+  }
+
+  private static byte[] inflate( final byte[] data, final int offset, final int length, final int size )
+    throws IOException
+  {
+    final Inflater inflater = new Inflater();
+    try
+    {
+      inflater.setInput( data, offset, Math.min( length, data.length - offset ) );
+      final byte[] result = new byte[size];
+      int count = 0;
+      while( count < size && !inflater.finished() )
+      {
+        final int inflated = inflater.inflate( result, count, size - count );
+        if( 0 == inflated && ( inflater.needsInput() || inflater.needsDictionary() ) )
+        {
+          break;
+        }
+        count += inflated;
+      }
+      if( count != size )
+      {
+        throw new IOException( "Compressed jimage resource is truncated" );
+      }
+      return result;
+    }
+    catch( final DataFormatException dfe )
+    {
+      final IOException exception = new IOException( "Corrupt jimage resource: " + dfe.getMessage() );
+      exception.initCause( dfe );
+      throw exception;
+    }
+    finally
+    {
+      inflater.end();
+    }
+  }
+
+  /**
+   * Decode the attributes of specified location.
+   *
+   * @param location the location.
+   * @return the attribute values indexed by kind.
+   */
+  private long[] readAttributes( final int location )
+  {
+    if( location < 0 || location >= tableLength )
+    {
+      throw new IndexOutOfBoundsException( "Location " + location + " is not in the range [0," + tableLength + ")" );
+    }
+    final long[] attributes = new long[ATTRIBUTE_COUNT];
+    int position = locationsPosition + buffer.getInt( offsetsPosition + location * 4 );
+    final int end = locationsPosition + locationsSize;
+    while( position < end )
+    {
+      final int data = buffer.get( position++ ) & 0xFF;
+      final int kind = data >>> 3;
+      if( ATTRIBUTE_END == kind )
+      {
+        break;
+      }
+      if( kind >= ATTRIBUTE_COUNT )
+      {
+        throw new IllegalStateException( "Bad jimage location attribute " + kind + " at position " + position );
+      }
+      final int length = ( data & 0x7 ) + 1;
+      long value = 0;
+      for( int i = 0; i < length; i++ )
+      {
+        value = ( value << 8 ) | ( buffer.get( position++ ) & 0xFF );
+      }
+      attributes[kind] = value;
+    }
+    return attributes;
+  }
+
+  private String getString( final long offset )
+  {
+    final int start = stringsPosition + toInt( offset );
+    int end = start;
+    while( end < indexSize && 0 != buffer.get( end ) )
+    {
+      end++;
+    }
+    final byte[] bytes = new byte[end - start];
+    copy( start, bytes, 0, bytes.length );
+    return IOUtil.parseUtfString( bytes, 0, -1, bytes.length );
+  }
+
+  private boolean stringMatches( final long offset, final byte[] value )
+  {
+    final int start = stringsPosition + toInt( offset );
+    if( start + value.length >= indexSize )
+    {
+      return false;
+    }
+    for( int i = 0; i < value.length; i++ )
+    {
+      if( buffer.get( start + i ) != value[i] )
+      {
+        return false;
+      }
+    }
+    return 0 == buffer.get( start + value.length );
+  }
+
+  private void copy( final int position, final byte[] data, final int offset, final int length )
+  {
+    //Duplicate so that concurrent reads do not share a position
+    final ByteBuffer view = buffer.duplicate();
+    view.position( position );
+    view.get( data, offset, length );
+  }
+
+  private static int toInt( final long value )
+  {
+    if( value < 0 || value > Integer.MAX_VALUE )
+    {
+      throw new IllegalStateException( "JImage value " + value + " is out of range" );
+    }
+    return (int)value;
+  }
+
+  /**
+   * Return the hash of a resource name as used to index the image.
+   *
+   * @param bytes the name encoded as modified-UTF8.
+   * @param seed  the seed.
+   * @return the positive hash.
+   */
+  static int hash( final byte[] bytes, final int seed )
+  {
+    int hash = seed;
+    for( final byte b : bytes )
+    {
+      hash = ( hash * HASH_MULTIPLIER ) ^ ( b & 0xFF );
+    }
+    return hash & 0x7FFFFFFF;
+  }
+}
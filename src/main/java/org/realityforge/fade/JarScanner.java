@@ -0,0 +1,672 @@
+package org.realityforge.fade;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+
+/**
+ * Scanner that inflates and parses the classes in a jar, jmod or jimage on several threads.
+ * Each worker thread creates a parser from the supplied factory and every
+ * class it parses is passed to the parser via {@link ClassFile#processClass}.
+ *
+ * <p>When unordered, each class is processed on the worker that parsed it and
+ * the worker reuses its buffer and a {@link ClassFileReader} for the next
+ * entry, so parsers must not retain the ClassFile or data array beyond the
+ * callbacks. When ordered, classes are
+ * processed in the order they appear in the jar, one at a time, using the
+ * parser of whichever worker completes the next class in sequence. Workers
+ * claim at most {@link #ORDERED_WINDOW} entries beyond the next class so a
+ * slow entry does not leave every later class waiting in memory.</p>
+ *
+ * <p>If a worker fails the remaining workers stop after their current entry
+ * and the scan waits for them before rethrowing, so no parser is invoked
+ * once the scan has returned.</p>
+ */
+public final class JarScanner
+{
+  /** Suffix of entries that are scanned. */
+  private static final String CLASS_SUFFIX = ".class";
+
+  /** Magic number at start of a jmod file, which is followed by a zip archive. */
+  private static final int JMOD_MAGIC = 0x4A4D0100;
+
+  /** Prefix of the entries in a jmod that contain classes. */
+  private static final String JMOD_CLASSES_PREFIX = "classes/";
+
+  /** The number of entries that may be parsed ahead of the next class to be processed when ordered. */
+  static final int ORDERED_WINDOW = 64;
+
+  private final int threadCount;
+  private final boolean ordered;
+  private final boolean parseFields;
+  private final boolean parseMethods;
+  private final boolean parseClassSection;
+  private final SymbolTable symbolTable;
+
+  /**
+   * Create a scanner.
+   *
+   * @param threadCount       the number of worker threads.
+   * @param ordered           true to process classes in the order they appear in the jar.
+   * @param parseFields       true to parse field section, false otherwise.
+   * @param parseMethods      true to parse method section, false otherwise.
+   * @param parseClassSection true to parse class section, false otherwise.
+   */
+  public JarScanner( final int threadCount,
+                     final boolean ordered,
+                     final boolean parseFields,
+                     final boolean parseMethods,
+                     final boolean parseClassSection )
+  {
+    this( threadCount, ordered, parseFields, parseMethods, parseClassSection, null );
+  }
+
+  /**
+   * Create a scanner that shares decoded strings between classes.
+   *
+   * @param threadCount       the number of worker threads.
+   * @param ordered           true to process classes in the order they appear in the jar.
+   * @param parseFields       true to parse field section, false otherwise.
+   * @param parseMethods      true to parse method section, false otherwise.
+   * @param parseClassSection true to parse class section, false otherwise.
+   * @param symbolTable       the table used to share decoded strings, or null.
+   */
+  public JarScanner( final int threadCount,
+                     final boolean ordered,
+                     final boolean parseFields,
+                     final boolean parseMethods,
+                     final boolean parseClassSection,
+                     final SymbolTable symbolTable )
+  {
+    if( threadCount < 1 )
+    {
+      throw new IllegalArgumentException( "threadCount must be positive but is " + threadCount );
+    }
+    this.threadCount = threadCount;
+    this.ordered = ordered;
+    this.parseFields = parseFields;
+    this.parseMethods = parseMethods;
+    this.parseClassSection = parseClassSection;
+    this.symbolTable = symbolTable;
+  }
+
+  /**
+   * Scan all the classes in specified jar or jmod.
+   * Only the classes section of a jmod is scanned.
+   *
+   * @param file    the jar or jmod file.
+   * @param factory the factory used to create a parser per worker.
+   * @return the number of classes processed.
+   * @throws IOException if an error occurs reading the jar.
+   */
+  public int scan( final File file, final ClassFileParserFactory factory )
+    throws IOException
+  {
+    final String prefix = isJmod( file ) ? JMOD_CLASSES_PREFIX : "";
+    //The zip support skips the header of a jmod as it would a self-extracting prefix
+    final JarFile jarFile = new JarFile( file );
+    try
+    {
+      return scan( new JarArchive( jarFile, collectClassEntries( jarFile, prefix ) ), factory );
+    }
+    finally
+    {
+      jarFile.close();
+    }
+  }
+
+  /**
+   * Scan all the classes in specified jar.
+   *
+   * @param jarFile the jar file.
+   * @param factory the factory used to create a parser per worker.
+   * @return the number of classes processed.
+   * @throws IOException if an error occurs reading the jar.
+   */
+  public int scan( final JarFile jarFile, final ClassFileParserFactory factory )
+    throws IOException
+  {
+    return scan( new JarArchive( jarFile, collectClassEntries( jarFile, "" ) ), factory );
+  }
+
+  /**
+   * Scan all the classes in the modules of specified image.
+   * Classes are copied directly from the image, which is typically memory mapped.
+   *
+   * @param image   the image.
+   * @param factory the factory used to create a parser per worker.
+   * @return the number of classes processed.
+   * @throws IOException if an error occurs reading the image.
+   */
+  public int scan( final JImage image, final ClassFileParserFactory factory )
+    throws IOException
+  {
+    final int locationCount = image.getLocationCount();
+    final int[] locations = new int[locationCount];
+    int count = 0;
+    for( int i = 0; i < locationCount; i++ )
+    {
+      if( image.isClass( i ) )
+      {
+        locations[count++] = i;
+      }
+    }
+    final int[] classLocations = new int[count];
+    System.arraycopy( locations, 0, classLocations, 0, count );
+    return scan( new ImageArchive( image, classLocations ), factory );
+  }
+
+  private int scan( final Archive archive, final ClassFileParserFactory factory )
+    throws IOException
+  {
+    final Scan scan = new Scan( archive, factory );
+    final int workerCount = Math.min( threadCount, archive.getClassCount() );
+    if( workerCount <= 1 )
+    {
+      new Worker( scan ).call();
+    }
+    else
+    {
+      runWorkers( scan, workerCount );
+    }
+    return archive.getClassCount();
+  }
+
+  /**
+   * Return true if specified file starts with the jmod magic number.
+   *
+   * @param file the file.
+   * @return true if the file is a jmod.
+   * @throws IOException if an error occurs reading the file.
+   */
+  static boolean isJmod( final File file )
+    throws IOException
+  {
+    final FileInputStream input = new FileInputStream( file );
+    try
+    {
+      final byte[] header = new byte[4];
+      int count = 0;
+      int read;
+      while( count < header.length && -1 != ( read = input.read( header, count, header.length - count ) ) )
+      {
+        count += read;
+      }
+      return count == header.length && JMOD_MAGIC == IOUtil.readInteger( header, 0 );
+    }
+    finally
+    {
+      input.close();
+    }
+  }
+
+  /**
+   * Run the scan on a pool of worker threads and propagate the first failure.
+   *
+   * @param scan        the scan.
+   * @param workerCount the number of workers.
+   * @throws IOException if an error occurs reading the jar.
+   */
+  private void runWorkers( final Scan scan, final int workerCount )
+    throws IOException
+  {
+    final ExecutorService executor = Executors.newFixedThreadPool( workerCount );
+    try
+    {
+      final CompletionService<Object> completionService = new ExecutorCompletionService<Object>( executor );
+      for( int i = 0; i < workerCount; i++ )
+      {
+        completionService.submit( new Worker( scan ) );
+      }
+      //Workers are awaited as they complete so the first failure is seen immediately
+      for( int i = 0; i < workerCount; i++ )
+      {
+        try
+        {
+          completionService.take().get();
+        }
+        catch( final ExecutionException ee )
+        {
+          scan.abort();
+          awaitTermination( executor );
+          rethrow( ee.getCause() );
+        }
+      }
+    }
+    catch( final InterruptedException ie )
+    {
+      scan.abort();
+      awaitTermination( executor );
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException( "Interrupted while scanning " + scan.archive.getName() );
+    }
+    finally
+    {
+      executor.shutdown();
+    }
+  }
+
+  /**
+   * Shut down the executor and wait for its workers to finish, even if interrupted.
+   * The workers must have been told to stop, otherwise this waits for them to complete.
+   *
+   * @param executor the executor.
+   */
+  static void awaitTermination( final ExecutorService executor )
+  {
+    executor.shutdown();
+    boolean interrupted = false;
+    while( true )
+    {
+      try
+      {
+        if( executor.awaitTermination( Long.MAX_VALUE, TimeUnit.NANOSECONDS ) )
+        {
+          break;
+        }
+      }
+      catch( final InterruptedException ie )
+      {
+        interrupted = true;
+      }
+    }
+    if( interrupted )
+    {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * Return the entries in jar that represent classes.
+   *
+   * @param jarFile the jar file.
+   * @param prefix  the prefix of the entries to include.
+   * @return the class entries in the order they appear in the jar.
+   */
+  private static JarEntry[] collectClassEntries( final JarFile jarFile, final String prefix )
+  {
+    final ArrayList<JarEntry> entries = new ArrayList<JarEntry>();
+    final Enumeration<JarEntry> enumeration = jarFile.entries();
+    while( enumeration.hasMoreElements() )
+    {
+      final JarEntry entry = enumeration.nextElement();
+      final String name = entry.getName();
+      if( !entry.isDirectory() && name.startsWith( prefix ) && name.endsWith( CLASS_SUFFIX ) )
+      {
+        entries.add( entry );
+      }
+    }
+    return entries.toArray( new JarEntry[entries.size()] );
+  }
+
+  /**
+   * Rethrow the failure of a worker.
+   *
+   * @param throwable the failure.
+   * @throws IOException if the failure was an IOException.
+   */
+  static void rethrow( final Throwable throwable )
+    throws IOException
+  {
+    if( throwable instanceof IOException )
+    {
+      throw (IOException)throwable;
+    }
+    else if( throwable instanceof RuntimeException )
+    {
+      throw (RuntimeException)throwable;
+    }
+    else if( throwable instanceof Error )
+    {
+      throw (Error)throwable;
+    }
+    else
+    {
+      final IOException exception = new IOException( "Error scanning jar: " + throwable );
+      exception.initCause( throwable );
+      throw exception;
+    }
+  }
+
+  /** Archive containing the classes to be scanned. */
+  private abstract static class Archive
+  {
+    /**
+     * Return the name of the archive.
+     *
+     * @return the name.
+     */
+    abstract String getName();
+
+    /**
+     * Return the number of classes in the archive.
+     *
+     * @return the number of classes.
+     */
+    abstract int getClassCount();
+
+    /**
+     * Return the name of the entry holding specified class.
+     *
+     * @param index the index of the class.
+     * @return the name of the entry.
+     */
+    abstract String getEntryName( int index );
+
+    /**
+     * Read the data of specified class into the buffer of the worker.
+     *
+     * @param index  the index of the class.
+     * @param worker the worker.
+     * @return the number of bytes read.
+     * @throws IOException if an error occurs reading the class.
+     */
+    abstract int read( int index, Worker worker )
+      throws IOException;
+  }
+
+  /** Archive of the class entries in a jar. */
+  private static final class JarArchive
+    extends Archive
+  {
+    private final JarFile jarFile;
+    private final JarEntry[] entries;
+
+    JarArchive( final JarFile jarFile, final JarEntry[] entries )
+    {
+      this.jarFile = jarFile;
+      this.entries = entries;
+    }
+
+    String getName()
+    {
+      return "jar " + jarFile.getName();
+    }
+
+    int getClassCount()
+    {
+      return entries.length;
+    }
+
+    String getEntryName( final int index )
+    {
+      return entries[index].getName();
+    }
+
+    int read( final int index, final Worker worker )
+      throws IOException
+    {
+      final JarEntry entry = entries[index];
+      final int size = (int)entry.getSize();
+      byte[] buffer = worker.ensureCapacity( size < 0 ? 4096 : size );
+      final InputStream input = jarFile.getInputStream( entry );
+      try
+      {
+        int count = 0;
+        while( true )
+        {
+          if( count == buffer.length )
+          {
+            if( count == size )
+            {
+              break;
+            }
+            buffer = worker.ensureCapacity( buffer.length * 2 );
+          }
+          final int read = input.read( buffer, count, buffer.length - count );
+          if( -1 == read )
+          {
+            break;
+          }
+          count += read;
+        }
+        return count;
+      }
+      finally
+      {
+        input.close();
+      }
+    }
+  }
+
+  /** Archive of the classes in the modules of an image. */
+  private static final class ImageArchive
+    extends Archive
+  {
+    private final JImage image;
+    private final int[] locations;
+
+    ImageArchive( final JImage image, final int[] locations )
+    {
+      this.image = image;
+      this.locations = locations;
+    }
+
+    String getName()
+    {
+      return "image";
+    }
+
+    int getClassCount()
+    {
+      return locations.length;
+    }
+
+    String getEntryName( final int index )
+    {
+      return image.getName( locations[index] );
+    }
+
+    int read( final int index, final Worker worker )
+      throws IOException
+    {
+      final int location = locations[index];
+      return image.read( location, worker.ensureCapacity( image.getSize( location ) ) );
+    }
+  }
+
+  /** State shared between workers for a single scan. */
+  private final class Scan
+  {
+    final Archive archive;
+    final ClassFileParserFactory factory;
+
+    /** The index of the next entry to be claimed by a worker. */
+    private final AtomicInteger cursor = new AtomicInteger();
+
+    /**
+     * Parsed classes awaiting processing when ordered, with the class at index i
+     * in slot i % ORDERED_WINDOW. Guarded by itself, as are next and aborted.
+     */
+    private final ClassFile[] pending;
+
+    /** The index of the next class to be processed when ordered. */
+    private int next;
+
+    /** True once the scan has been aborted, when ordered. */
+    private boolean aborted;
+
+    Scan( final Archive archive, final ClassFileParserFactory factory )
+    {
+      this.archive = archive;
+      this.factory = factory;
+      this.pending = ordered ? new ClassFile[ORDERED_WINDOW] : null;
+    }
+
+    /**
+     * Claim the next entry to be parsed. When ordered, wait until the entry
+     * is within the window of entries after the next class to be processed.
+     * The entry at next has always been claimed by a worker that is not
+     * waiting, so the wait ends when that worker processes it.
+     *
+     * @return the index of the entry or -1 if no entries remain.
+     * @throws InterruptedIOException if interrupted while waiting.
+     */
+    int claim()
+      throws InterruptedIOException
+    {
+      final int index = cursor.getAndIncrement();
+      if( index >= archive.getClassCount() )
+      {
+        return -1;
+      }
+      if( ordered )
+      {
+        synchronized( pending )
+        {
+          while( !aborted && index >= next + pending.length )
+          {
+            try
+            {
+              pending.wait();
+            }
+            catch( final InterruptedException ie )
+            {
+              Thread.currentThread().interrupt();
+              throw new InterruptedIOException( "Interrupted while scanning " + archive.getName() );
+            }
+          }
+          if( aborted )
+          {
+            return -1;
+          }
+        }
+      }
+      return index;
+    }
+
+    /** Stop workers claiming further entries and release any waiting for the window. */
+    void abort()
+    {
+      cursor.set( archive.getClassCount() );
+      if( ordered )
+      {
+        synchronized( pending )
+        {
+          aborted = true;
+          pending.notifyAll();
+        }
+      }
+    }
+
+    /**
+     * Process a parsed class.
+     *
+     * @param index     the index of the entry.
+     * @param classFile the parsed class.
+     * @param parser    the parser of the current worker.
+     */
+    void process( final int index, final ClassFile classFile, final ClassFileParser parser )
+    {
+      if( !ordered )
+      {
+        classFile.processClass( parser, parseFields, parseMethods, parseClassSection );
+        return;
+      }
+      synchronized( pending )
+      {
+        pending[index % pending.length] = classFile;
+        final int classCount = archive.getClassCount();
+        final int start = next;
+        while( next < classCount && null != pending[next % pending.length] )
+        {
+          final int slot = next % pending.length;
+          final ClassFile ready = pending[slot];
+          pending[slot] = null;
+          next++;
+          ready.processClass( parser, parseFields, parseMethods, parseClassSection );
+        }
+        if( next != start )
+        {
+          pending.notifyAll();
+        }
+      }
+    }
+  }
+
+  /** Worker that claims, inflates and parses entries until none remain. */
+  private final class Worker
+    implements Callable<Object>
+  {
+    private final Scan scan;
+
+    /** The buffer entries are read into. Reused between entries when unordered. */
+    private byte[] buffer;
+
+    /** The reader classes are parsed with when unordered, otherwise null. */
+    private final ClassFileReader reader;
+
+    Worker( final Scan scan )
+    {
+      this.scan = scan;
+      this.reader = ordered ? null : new ClassFileReader( symbolTable );
+    }
+
+    public Object call()
+      throws IOException
+    {
+      final ClassFileParser parser = scan.factory.newParser();
+      int index;
+      while( -1 != ( index = scan.claim() ) )
+      {
+        final int length = scan.archive.read( index, this );
+        final ClassFile classFile;
+        try
+        {
+          classFile = null != reader ?
+                      reader.read( buffer, 0, length ) :
+                      ClassFile.parseClassFile( buffer, 0, length, symbolTable );
+        }
+        catch( final ClassFormatError cfe )
+        {
+          final ClassFormatError error =
+            new ClassFormatError( "Error parsing " + scan.archive.getEntryName( index ) + ": " + cfe.getMessage() );
+          error.initCause( cfe );
+          throw error;
+        }
+        if( ordered )
+        {
+          //The ClassFile may be retained until its turn so it owns the buffer
+          buffer = null;
+        }
+        scan.process( index, classFile, parser );
+      }
+      return null;
+    }
+
+    /**
+     * Return a buffer of at least specified size, preserving the contents of the current buffer.
+     *
+     * @param size the required size.
+     * @return the buffer.
+     */
+    byte[] ensureCapacity( final int size )
+    {
+      if( null == buffer )
+      {
+        buffer = new byte[size];
+      }
+      else if( buffer.length < size )
+      {
+        final byte[] newBuffer = new byte[size];
+        System.arraycopy( buffer, 0, newBuffer, 0, buffer.length );
+        buffer = newBuffer;
+      }
+      return buffer;
+    }
+  }
+}
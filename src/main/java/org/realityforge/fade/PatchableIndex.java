@@ -0,0 +1,25 @@
+package org.realityforge.fade;
+
+import java.util.Set;
+
+/**
+ * Factory of parsers that collect classes into an index from which
+ * classes can later be removed, so the index can be patched in place
+ * when classes change. An {@link IncrementalScanner} removes the classes
+ * whose files changed or were deleted and then processes the new versions
+ * with a parser created by the index, so an index that is kept up to date
+ * this way only ever reflects the latest version of each class.
+ */
+public interface PatchableIndex
+  extends ClassFileParserFactory
+{
+  /**
+   * Remove everything collected so far for the classes with the specified
+   * names, as if the parsers had never processed them. Names that were not
+   * collected are ignored. Must not be invoked while parsers created by the
+   * index are in use.
+   *
+   * @param classNames the names of the classes in internal format.
+   */
+  void removeClasses( Set<String> classNames );
+}
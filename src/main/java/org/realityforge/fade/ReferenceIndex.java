@@ -0,0 +1,164 @@
+package org.realityforge.fade;
+
+/**
+ * Immutable index of the classes and members referenced by the constant pool
+ * of each class, created by a {@link ReferenceIndexBuilder}. References are
+ * recorded as the 64-bit hashes collected by
+ * {@link ConstantPool#getReferenceHashes(long[])}, so building the index
+ * decodes no strings and a query only touches the classes that match.
+ *
+ * <p>The index is inverted: the distinct hashes are sorted and each hash maps
+ * to the sorted ids of the classes that contain it. A query is a binary search
+ * of the hashes. Two references collide only if their 64-bit hashes are equal,
+ * so a query may in principle return a class that does not contain the
+ * reference; callers that need certainty can confirm the match against the
+ * constant pool of the class.</p>
+ *
+ * <p>Only constant pool entries are indexed. A type that only appears in a
+ * descriptor, such as the type of a field that is never accessed, is not a
+ * reference, and an array type is referenced by its descriptor such as
+ * "[Ljava/lang/String;" rather than by its element type.</p>
+ */
+public final class ReferenceIndex
+{
+  private static final String[] EMPTY = new String[0];
+
+  private final String[] classNames;
+
+  /** The distinct hashes in sorted order. */
+  private final long[] hashes;
+
+  /** Classes that contain hashes[i] are classes[classStart[i], classStart[i + 1]). */
+  private final int[] classStart;
+  private final int[] classes;
+
+  /**
+   * Create an index.
+   *
+   * @param classNames the names of the classes in sorted order.
+   * @param hashes     the distinct hashes in sorted order.
+   * @param classStart the start of the classes containing each hash, with a final entry for the end.
+   * @param classes    the ids of the classes containing each hash, sorted within each hash.
+   */
+  ReferenceIndex( final String[] classNames, final long[] hashes, final int[] classStart, final int[] classes )
+  {
+    this.classNames = classNames;
+    this.hashes = hashes;
+    this.classStart = classStart;
+    this.classes = classes;
+  }
+
+  /**
+   * Return the number of classes in the index.
+   *
+   * @return the number of classes.
+   */
+  public int getClassCount()
+  {
+    return classNames.length;
+  }
+
+  /**
+   * Return the name of class with specified id.
+   *
+   * @param id the id of the class.
+   * @return the name of the class in internal format.
+   */
+  public String getClassName( final int id )
+  {
+    return classNames[id];
+  }
+
+  /**
+   * Return the number of distinct references in the index.
+   *
+   * @return the number of references.
+   */
+  public int getReferenceCount()
+  {
+    return hashes.length;
+  }
+
+  /**
+   * Return the classes whose constant pool references specified class.
+   * A class is not considered to reference itself.
+   *
+   * @param className the name of the class in internal format.
+   * @return the names of the referencing classes in sorted order.
+   */
+  public String[] getClassesReferencing( final String className )
+  {
+    return getClassNames( ConstantPool.hashClassReference( className ) );
+  }
+
+  /**
+   * Return the classes whose constant pool references a field or method.
+   * All fields and overloads of the method with the name are matched.
+   *
+   * @param className the name of the class named by the reference in internal format.
+   * @param name      the name of the field or method.
+   * @return the names of the referencing classes in sorted order.
+   */
+  public String[] getClassesReferencing( final String className, final String name )
+  {
+    return getClassNames( ConstantPool.hashMemberReference( className, name ) );
+  }
+
+  /**
+   * Return the ids of the classes containing a hash.
+   *
+   * @param hash the hash as collected by {@link ConstantPool#getReferenceHashes(long[])}.
+   * @return the ids of the classes in ascending order.
+   */
+  public int[] getClassIds( final long hash )
+  {
+    final int index = indexOf( hash );
+    if( -1 == index )
+    {
+      return new int[0];
+    }
+    final int[] result = new int[classStart[index + 1] - classStart[index]];
+    System.arraycopy( classes, classStart[index], result, 0, result.length );
+    return result;
+  }
+
+  private String[] getClassNames( final long hash )
+  {
+    final int index = indexOf( hash );
+    if( -1 == index )
+    {
+      return EMPTY;
+    }
+    final int start = classStart[index];
+    final String[] result = new String[classStart[index + 1] - start];
+    for( int i = 0; i < result.length; i++ )
+    {
+      result[i] = classNames[classes[start + i]];
+    }
+    return result;
+  }
+
+  private int indexOf( final long hash )
+  {
+    int low = 0;
+    int high = hashes.length - 1;
+    while( low <= high )
+    {
+      final int middle = ( low + high ) >>> 1;
+      final long value = hashes[middle];
+      if( value < hash )
+      {
+        low = middle + 1;
+      }
+      else if( value > hash )
+      {
+        high = middle - 1;
+      }
+      else
+      {
+        return middle;
+      }
+    }
+    return -1;
+  }
+}
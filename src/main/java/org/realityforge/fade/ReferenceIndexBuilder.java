@@ -0,0 +1,167 @@
+package org.realityforge.fade;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * Builder that records the hashes of the references in the constant pool of
+ * each class and creates a {@link ReferenceIndex}. Classes are collected in
+ * parallel by the parsers created by the builder, which only need the
+ * constant pool so a {@link JarScanner} need not parse any sections. Each
+ * class is reduced to a sorted array of hashes without decoding the strings
+ * of the pool. If several classes have the same name only one of them is
+ * used.
+ */
+public final class ReferenceIndexBuilder
+  extends IndexBuilder<ReferenceIndexBuilder.ClassEntry>
+{
+  /**
+   * Scan the classes in specified jar on several threads.
+   *
+   * @param jar         the jar file.
+   * @param threadCount the number of worker threads.
+   * @throws IOException if an error occurs reading the jar.
+   */
+  public void scan( final File jar, final int threadCount )
+    throws IOException
+  {
+    new JarScanner( threadCount, false, false, false, false ).scan( jar, this );
+  }
+
+  EntryCollector<ClassEntry> newCollector()
+  {
+    return new Collector();
+  }
+
+  /**
+   * Create an index from the classes collected so far.
+   * Must not be invoked while parsers created by builder are in use.
+   *
+   * @return the index.
+   */
+  public ReferenceIndex build()
+  {
+    final HashMap<String, long[]> declared = new HashMap<String, long[]>();
+    for( final ClassEntry entry : getEntries() )
+    {
+      if( !declared.containsKey( entry.name ) )
+      {
+        declared.put( entry.name, entry.hashes );
+      }
+    }
+
+    //Classes are sorted by name so ids do not depend on scan order
+    final String[] classNames = declared.keySet().toArray( new String[declared.size()] );
+    Arrays.sort( classNames );
+    final long[][] classHashes = new long[classNames.length][];
+    int total = 0;
+    for( int i = 0; i < classNames.length; i++ )
+    {
+      classHashes[i] = declared.get( classNames[i] );
+      total += classHashes[i].length;
+    }
+
+    final long[] all = new long[total];
+    int position = 0;
+    for( final long[] values : classHashes )
+    {
+      System.arraycopy( values, 0, all, position, values.length );
+      position += values.length;
+    }
+    Arrays.sort( all );
+    int count = 0;
+    for( int i = 0; i < total; i++ )
+    {
+      if( 0 == count || all[count - 1] != all[i] )
+      {
+        all[count++] = all[i];
+      }
+    }
+    final long[] hashes = new long[count];
+    System.arraycopy( all, 0, hashes, 0, count );
+
+    //Invert the class hashes, remembering where each hash was found to avoid searching twice
+    final int[] indexes = new int[total];
+    final int[] classStart = new int[count + 1];
+    position = 0;
+    for( final long[] values : classHashes )
+    {
+      for( final long value : values )
+      {
+        final int index = Arrays.binarySearch( hashes, value );
+        indexes[position++] = index;
+        classStart[index + 1]++;
+      }
+    }
+    for( int i = 0; i < count; i++ )
+    {
+      classStart[i + 1] += classStart[i];
+    }
+    final int[] classes = new int[total];
+    final int[] fill = classStart.clone();
+    position = 0;
+    for( int i = 0; i < classHashes.length; i++ )
+    {
+      for( int j = 0; j < classHashes[i].length; j++ )
+      {
+        classes[fill[indexes[position++]]++] = i;
+      }
+    }
+    return new ReferenceIndex( classNames, hashes, classStart, classes );
+  }
+
+  /** The name of a class and the sorted hashes of its references recorded by a collector. */
+  static final class ClassEntry
+  {
+    final String name;
+    final long[] hashes;
+
+    ClassEntry( final String name, final long[] hashes )
+    {
+      this.name = name;
+      this.hashes = hashes;
+    }
+  }
+
+  /**
+   * Parser that records the name of each class it processes and the sorted
+   * hashes of its references, excluding the reference to the class itself.
+   */
+  private static final class Collector
+    extends EntryCollector<ClassEntry>
+  {
+    private long[] buffer = new long[256];
+
+    protected void startClass( final ClassFile classFile )
+    {
+      final ConstantPool constantPool = classFile.getConstantPool();
+      final int constantCount = constantPool.getConstantCount();
+      if( buffer.length < constantCount )
+      {
+        buffer = new long[Math.max( constantCount, buffer.length * 2 )];
+      }
+      final int count = constantPool.getReferenceHashes( buffer );
+      final String name = classFile.getClassName();
+      final long selfHash = ConstantPool.hashClassReference( name );
+      int self = 0;
+      while( self < count && buffer[self] != selfHash )
+      {
+        self++;
+      }
+      final long[] values = new long[self == count ? count : count - 1];
+      System.arraycopy( buffer, 0, values, 0, self );
+      if( self < count )
+      {
+        System.arraycopy( buffer, self + 1, values, self, count - self - 1 );
+      }
+      entries.add( new ClassEntry( name, values ) );
+    }
+
+    String getClassName( final ClassEntry entry )
+    {
+      return entry.name;
+    }
+  }
+}
@@ -0,0 +1,230 @@
+package org.realityforge.fade;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Table used to share canonical Strings for CONSTANT_Utf8 entries between
+ * constant pools. Entries are looked up by hashing the raw modified-UTF8
+ * bytes so a hit avoids decoding and allocating a new String.
+ *
+ * <p>The table is a bounded, lock-free, set-associative cache that may be
+ * shared by any number of threads. Each symbol hashes to a set of
+ * {@link #WAYS} slots. When a set is full a new symbol replaces one of the
+ * existing symbols in the set, so the table never holds more than its
+ * capacity. Racing threads may both insert the same symbol into a set,
+ * in which case later lookups will return one of the equal Strings.</p>
+ */
+public final class SymbolTable
+{
+  /** The largest capacity, which is the largest power of two an int can hold. */
+  public static final int MAX_CAPACITY = 1 << 30;
+
+  /** The number of slots in each set. */
+  static final int WAYS = 4;
+
+  /** Number of counter stripes. Must be a power of two. */
+  private static final int STRIPES = 16;
+
+  /** Spacing between counters to keep stripes on separate cache lines. */
+  private static final int PAD = 8;
+
+  /** Offset of the miss counter within a stripe. */
+  private static final int MISS = 1;
+
+  /** The slots of the table, grouped into consecutive sets of {@link #WAYS}. */
+  private final AtomicReferenceArray<Symbol> symbols;
+
+  /** Mask used to select the first slot of a set from a hash. */
+  private final int setMask;
+
+  /** Hit and miss counters striped by thread. */
+  private final AtomicLongArray counters = new AtomicLongArray( STRIPES * PAD );
+
+  /**
+   * Create a table that holds at most specified number of symbols.
+   * The capacity is rounded up to a power of two and must not exceed {@link #MAX_CAPACITY}.
+   *
+   * @param capacity the maximum number of symbols.
+   */
+  public SymbolTable( final int capacity )
+  {
+    if( capacity < 1 )
+    {
+      throw new IllegalArgumentException( "capacity must be positive but is " + capacity );
+    }
+    if( capacity > MAX_CAPACITY )
+    {
+      throw new IllegalArgumentException( "capacity must not exceed " + MAX_CAPACITY + " but is " + capacity );
+    }
+    int size = WAYS;
+    while( size < capacity )
+    {
+      size <<= 1;
+    }
+    symbols = new AtomicReferenceArray<Symbol>( size );
+    setMask = ( size - 1 ) & ~( WAYS - 1 );
+  }
+
+  /**
+   * Return the maximum number of symbols in table.
+   *
+   * @return the maximum number of symbols in table.
+   */
+  public int getCapacity()
+  {
+    return symbols.length();
+  }
+
+  /**
+   * Return the number of symbols currently in table.
+   * This walks the table so is intended for diagnostics.
+   *
+   * @return the number of symbols currently in table.
+   */
+  public int size()
+  {
+    int size = 0;
+    for( int i = 0; i < symbols.length(); i++ )
+    {
+      if( null != symbols.get( i ) )
+      {
+        size++;
+      }
+    }
+    return size;
+  }
+
+  /**
+   * Return the number of lookups that returned an existing symbol.
+   *
+   * @return the number of hits.
+   */
+  public long getHitCount()
+  {
+    return sumCounters( 0 );
+  }
+
+  /**
+   * Return the number of lookups that decoded a new symbol.
+   *
+   * @return the number of misses.
+   */
+  public long getMissCount()
+  {
+    return sumCounters( MISS );
+  }
+
+  /**
+   * Return the fraction of lookups that were hits.
+   *
+   * @return the hit rate between 0 and 1, or 0 if no lookups occurred.
+   */
+  public double getHitRate()
+  {
+    final long hits = getHitCount();
+    final long total = hits + getMissCount();
+    return 0 == total ? 0 : (double)hits / total;
+  }
+
+  /**
+   * Return the canonical String for modified-UTF8 bytes, decoding them if not present.
+   *
+   * @param data   the data.
+   * @param offset the offset of the first byte of utf data.
+   * @param length the number of bytes of utf data.
+   * @param index  the constant pool entry. Used in reporting exception.
+   * @return the string.
+   */
+  String intern( final byte[] data, final int offset, final int length, final int index )
+  {
+    final int hash = IOUtil.hash( data, offset, length );
+    final int set = ( hash ^ ( hash >>> 16 ) ) & setMask;
+    int free = -1;
+    for( int i = set; i < set + WAYS; i++ )
+    {
+      final Symbol symbol = symbols.get( i );
+      if( null == symbol )
+      {
+        if( -1 == free )
+        {
+          free = i;
+        }
+      }
+      else if( symbol.matches( hash, data, offset, length ) )
+      {
+        count( 0 );
+        return symbol.value;
+      }
+    }
+    count( MISS );
+    final String value = IOUtil.parseUtfString( data, offset, index, length );
+    final byte[] bytes = new byte[length];
+    System.arraycopy( data, offset, bytes, 0, length );
+    final Symbol symbol = new Symbol( hash, bytes, value );
+    if( -1 == free || !symbols.compareAndSet( free, null, symbol ) )
+    {
+      //Evict a victim chosen by hash bits not used to select the set
+      symbols.set( set + ( ( hash >>> 28 ) & ( WAYS - 1 ) ), symbol );
+    }
+    return value;
+  }
+
+  /**
+   * Increment a counter in the stripe of the current thread.
+   *
+   * @param counter the counter offset within stripe.
+   */
+  private void count( final int counter )
+  {
+    final int stripe = (int)Thread.currentThread().getId() & ( STRIPES - 1 );
+    counters.incrementAndGet( stripe * PAD + counter );
+  }
+
+  /**
+   * Sum a counter across all stripes.
+   *
+   * @param counter the counter offset within stripe.
+   * @return the sum.
+   */
+  private long sumCounters( final int counter )
+  {
+    long sum = 0;
+    for( int i = 0; i < STRIPES; i++ )
+    {
+      sum += counters.get( i * PAD + counter );
+    }
+    return sum;
+  }
+
+  /** An immutable symbol in table. */
+  private static final class Symbol
+  {
+    final int hash;
+    final byte[] bytes;
+    final String value;
+
+    Symbol( final int hash, final byte[] bytes, final String value )
+    {
+      this.hash = hash;
+      this.bytes = bytes;
+      this.value = value;
+    }
+
+    /**
+     * Return true if the symbol was created from specified bytes.
+     *
+     * @param hash   the hash of the bytes.
+     * @param data   the data.
+     * @param offset the offset of first byte.
+     * @param length the number of bytes.
+     * @return true if the symbol matches.
+     */
+    boolean matches( final int hash, final byte[] data, final int offset, final int length )
+    {
+      return this.hash == hash &&
+             bytes.length == length &&
+             IOUtil.regionMatches( data, offset, bytes, length );
+    }
+  }
+}
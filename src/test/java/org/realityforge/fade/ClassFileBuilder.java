@@ -0,0 +1,392 @@
+package org.realityforge.fade;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+
+/**
+ * Builder used by tests to assemble small class files with specific
+ * constant pool entries, members and attributes.
+ */
+final class ClassFileBuilder
+{
+  private final ByteArrayOutputStream constants = new ByteArrayOutputStream();
+  private final DataOutputStream cp = new DataOutputStream( constants );
+  private final HashMap<String, Integer> entries = new HashMap<String, Integer>();
+  private int constantCount = 1;
+
+  private final ByteArrayOutputStream fieldBytes = new ByteArrayOutputStream();
+  private int fieldCount;
+  private final ByteArrayOutputStream methodBytes = new ByteArrayOutputStream();
+  private int methodCount;
+  private final ByteArrayOutputStream attributeBytes = new ByteArrayOutputStream();
+  private int attributeCount;
+
+  private final int majorVersion;
+  private final int accessFlags;
+  private final int classIndex;
+  private final int superClassIndex;
+  private final int[] interfaceIndexes;
+
+  ClassFileBuilder( final String className, final String superClassName, final String... interfaces )
+  {
+    this( ClassFileFormat.MAJOR_VERSION_5, ClassFileFormat.ACC_PUBLIC, className, superClassName, interfaces );
+  }
+
+  ClassFileBuilder( final int majorVersion,
+                    final int accessFlags,
+                    final String className,
+                    final String superClassName,
+                    final String... interfaces )
+  {
+    this.majorVersion = majorVersion;
+    this.accessFlags = accessFlags;
+    classIndex = classRef( className );
+    superClassIndex = null == superClassName ? 0 : classRef( superClassName );
+    interfaceIndexes = new int[interfaces.length];
+    for( int i = 0; i < interfaces.length; i++ )
+    {
+      interfaceIndexes[i] = classRef( interfaces[i] );
+    }
+  }
+
+  int utf( final String value )
+  {
+    final Integer index = entries.get( "Utf8:" + value );
+    if( null != index )
+    {
+      return index;
+    }
+    try
+    {
+      cp.writeByte( ClassFileFormat.CONSTANT_Utf8 );
+      cp.writeUTF( value );
+    }
+    catch( final IOException ioe )
+    {
+      throw new IllegalStateException( ioe );
+    }
+    return register( "Utf8:" + value, 1 );
+  }
+
+  int classRef( final String name )
+  {
+    return ref( ClassFileFormat.CONSTANT_Class, name, utf( name ) );
+  }
+
+  int string( final String value )
+  {
+    return ref( ClassFileFormat.CONSTANT_String, value, utf( value ) );
+  }
+
+  int integer( final int value )
+  {
+    final String key = "Integer:" + value;
+    final Integer index = entries.get( key );
+    if( null != index )
+    {
+      return index;
+    }
+    write( ClassFileFormat.CONSTANT_Integer, value );
+    return register( key, 1 );
+  }
+
+  int longConst( final long value )
+  {
+    final String key = "Long:" + value;
+    final Integer index = entries.get( key );
+    if( null != index )
+    {
+      return index;
+    }
+    write( ClassFileFormat.CONSTANT_Long, (int)( value >>> 32 ) );
+    writeRaw( (int)value );
+    return register( key, 2 );
+  }
+
+  int nameAndType( final String name, final String descriptor )
+  {
+    final int nameIndex = utf( name );
+    final int descriptorIndex = utf( descriptor );
+    return pair( ClassFileFormat.CONSTANT_NameAndType, name + ":" + descriptor, nameIndex, descriptorIndex );
+  }
+
+  int fieldRef( final String owner, final String name, final String descriptor )
+  {
+    return memberRef( ClassFileFormat.CONSTANT_Fieldref, owner, name, descriptor );
+  }
+
+  int methodRef( final String owner, final String name, final String descriptor )
+  {
+    return memberRef( ClassFileFormat.CONSTANT_Methodref, owner, name, descriptor );
+  }
+
+  int interfaceMethodRef( final String owner, final String name, final String descriptor )
+  {
+    return memberRef( ClassFileFormat.CONSTANT_InterfaceMethodref, owner, name, descriptor );
+  }
+
+  int methodHandle( final int kind, final int reference )
+  {
+    final String key = ClassFileFormat.CONSTANT_MethodHandle + ":" + kind + ":" + reference;
+    final Integer index = entries.get( key );
+    if( null != index )
+    {
+      return index;
+    }
+    try
+    {
+      cp.writeByte( ClassFileFormat.CONSTANT_MethodHandle );
+      cp.writeByte( kind );
+      cp.writeShort( reference );
+    }
+    catch( final IOException ioe )
+    {
+      throw new IllegalStateException( ioe );
+    }
+    return register( key, 1 );
+  }
+
+  int methodType( final String descriptor )
+  {
+    return ref( ClassFileFormat.CONSTANT_MethodType, descriptor, utf( descriptor ) );
+  }
+
+  int dynamic( final int bootstrapMethod, final String name, final String descriptor )
+  {
+    final int nameAndTypeIndex = nameAndType( name, descriptor );
+    return pair( ClassFileFormat.CONSTANT_Dynamic,
+                 bootstrapMethod + ":" + name + ":" + descriptor,
+                 bootstrapMethod,
+                 nameAndTypeIndex );
+  }
+
+  int invokeDynamic( final int bootstrapMethod, final String name, final String descriptor )
+  {
+    final int nameAndTypeIndex = nameAndType( name, descriptor );
+    return pair( ClassFileFormat.CONSTANT_InvokeDynamic,
+                 bootstrapMethod + ":" + name + ":" + descriptor,
+                 bootstrapMethod,
+                 nameAndTypeIndex );
+  }
+
+  int module( final String name )
+  {
+    return ref( ClassFileFormat.CONSTANT_Module, name, utf( name ) );
+  }
+
+  int packageRef( final String name )
+  {
+    return ref( ClassFileFormat.CONSTANT_Package, name, utf( name ) );
+  }
+
+  /**
+   * Encode an attribute to be passed to field, method or classAttribute.
+   *
+   * @param name the name of attribute.
+   * @param body the contents of attribute.
+   * @return the encoded attribute.
+   */
+  byte[] attribute( final String name, final byte[] body )
+  {
+    final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    final DataOutputStream out = new DataOutputStream( bytes );
+    try
+    {
+      out.writeShort( utf( name ) );
+      out.writeInt( body.length );
+      out.write( body );
+    }
+    catch( final IOException ioe )
+    {
+      throw new IllegalStateException( ioe );
+    }
+    return bytes.toByteArray();
+  }
+
+  /**
+   * Encode a Code attribute without exception handlers or nested attributes.
+   *
+   * @param code the bytecode.
+   * @return the encoded attribute.
+   */
+  byte[] code( final byte[] code )
+  {
+    final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    final DataOutputStream out = new DataOutputStream( bytes );
+    try
+    {
+      out.writeShort( 4 );
+      out.writeShort( 4 );
+      out.writeInt( code.length );
+      out.write( code );
+      out.writeShort( 0 );
+      out.writeShort( 0 );
+    }
+    catch( final IOException ioe )
+    {
+      throw new IllegalStateException( ioe );
+    }
+    return attribute( ClassFileFormat.ATTR_Code, bytes.toByteArray() );
+  }
+
+  ClassFileBuilder field( final int accessFlags, final String name, final String descriptor, final byte[]... attributes )
+  {
+    writeMember( fieldBytes, accessFlags, name, descriptor, attributes );
+    fieldCount++;
+    return this;
+  }
+
+  ClassFileBuilder method( final int accessFlags, final String name, final String descriptor, final byte[]... attributes )
+  {
+    writeMember( methodBytes, accessFlags, name, descriptor, attributes );
+    methodCount++;
+    return this;
+  }
+
+  ClassFileBuilder classAttribute( final byte[] attribute )
+  {
+    attributeBytes.write( attribute, 0, attribute.length );
+    attributeCount++;
+    return this;
+  }
+
+  byte[] build()
+  {
+    final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    final DataOutputStream out = new DataOutputStream( bytes );
+    try
+    {
+      out.writeInt( ClassFileFormat.MAGIC );
+      out.writeShort( 0 );
+      out.writeShort( majorVersion );
+      out.writeShort( constantCount );
+      constants.writeTo( out );
+      out.writeShort( accessFlags );
+      out.writeShort( classIndex );
+      out.writeShort( superClassIndex );
+      out.writeShort( interfaceIndexes.length );
+      for( final int interfaceIndex : interfaceIndexes )
+      {
+        out.writeShort( interfaceIndex );
+      }
+      out.writeShort( fieldCount );
+      fieldBytes.writeTo( out );
+      out.writeShort( methodCount );
+      methodBytes.writeTo( out );
+      out.writeShort( attributeCount );
+      attributeBytes.writeTo( out );
+    }
+    catch( final IOException ioe )
+    {
+      throw new IllegalStateException( ioe );
+    }
+    return bytes.toByteArray();
+  }
+
+  private void writeMember( final ByteArrayOutputStream bytes,
+                            final int accessFlags,
+                            final String name,
+                            final String descriptor,
+                            final byte[][] attributes )
+  {
+    final DataOutputStream out = new DataOutputStream( bytes );
+    try
+    {
+      out.writeShort( accessFlags );
+      out.writeShort( utf( name ) );
+      out.writeShort( utf( descriptor ) );
+      out.writeShort( attributes.length );
+      for( final byte[] attribute : attributes )
+      {
+        out.write( attribute );
+      }
+    }
+    catch( final IOException ioe )
+    {
+      throw new IllegalStateException( ioe );
+    }
+  }
+
+  private int memberRef( final int tag, final String owner, final String name, final String descriptor )
+  {
+    final int ownerIndex = classRef( owner );
+    final int nameAndTypeIndex = nameAndType( name, descriptor );
+    return pair( tag, owner + "." + name + ":" + descriptor, ownerIndex, nameAndTypeIndex );
+  }
+
+  private int ref( final int tag, final String value, final int index )
+  {
+    final String key = tag + ":" + value;
+    final Integer existing = entries.get( key );
+    if( null != existing )
+    {
+      return existing;
+    }
+    try
+    {
+      cp.writeByte( tag );
+      cp.writeShort( index );
+    }
+    catch( final IOException ioe )
+    {
+      throw new IllegalStateException( ioe );
+    }
+    return register( key, 1 );
+  }
+
+  private int pair( final int tag, final String value, final int first, final int second )
+  {
+    final String key = tag + ":" + value;
+    final Integer existing = entries.get( key );
+    if( null != existing )
+    {
+      return existing;
+    }
+    try
+    {
+      cp.writeByte( tag );
+      cp.writeShort( first );
+      cp.writeShort( second );
+    }
+    catch( final IOException ioe )
+    {
+      throw new IllegalStateException( ioe );
+    }
+    return register( key, 1 );
+  }
+
+  private void write( final int tag, final int value )
+  {
+    try
+    {
+      cp.writeByte( tag );
+      cp.writeInt( value );
+    }
+    catch( final IOException ioe )
+    {
+      throw new IllegalStateException( ioe );
+    }
+  }
+
+  private void writeRaw( final int value )
+  {
+    try
+    {
+      cp.writeInt( value );
+    }
+    catch( final IOException ioe )
+    {
+      throw new IllegalStateException( ioe );
+    }
+  }
+
+  private int register( final String key, final int slots )
+  {
+    final int index = constantCount;
+    entries.put( key, index );
+    constantCount += slots;
+    return index;
+  }
+}
@@ -0,0 +1,262 @@
+package org.realityforge.fade;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import junit.framework.TestCase;
+
+public class TestAnnotationIndex
+  extends TestCase
+{
+  private static final String COMPONENT = "Lcom/example/Component;";
+  private static final String INJECT = "Lcom/example/Inject;";
+  private static final String ROUTE = "Lcom/example/Route;";
+  private static final String INFO = "Lcom/example/Info;";
+
+  public void test_build()
+    throws Exception
+  {
+    final AnnotationIndex index = buildIndex( new AnnotationIndexBuilder() );
+
+    assertEquals( "getAnnotationCount()", 4, index.getAnnotationCount() );
+    assertEquals( "getAnnotationTypes()",
+                  Arrays.asList( COMPONENT, INJECT, ROUTE ),
+                  Arrays.asList( index.getAnnotationTypes().toArray() ) );
+    assertEquals( "getAnnotatedClasses(COMPONENT)",
+                  Arrays.asList( "com/example/Alpha", "com/example/Service" ),
+                  index.getAnnotatedClasses( COMPONENT ) );
+    assertEquals( "getAnnotatedClasses(ROUTE)", 0, index.getAnnotatedClasses( ROUTE ).size() );
+    assertEquals( "getAnnotatedClasses(unknown)", 0, index.getAnnotatedClasses( "LUnknown;" ).size() );
+    assertEquals( "getAnnotations(unknown)", 0, index.getAnnotations( "LUnknown;" ).size() );
+
+    final List<AnnotationInstance> components = index.getAnnotations( COMPONENT );
+    assertEquals( "components.size()", 2, components.size() );
+    final AnnotationInstance service = components.get( 1 );
+    assertEquals( "service.getTarget()",
+                  new AnnotationTarget( AnnotationTarget.CLASS, "com/example/Service", null, null ),
+                  service.getTarget() );
+    assertEquals( "service.value", "svc", service.getValue( "value" ).getValue() );
+    final AnnotationValue scopes = service.getValue( "scopes" );
+    assertEquals( "scopes.getTag()", ClassFileFormat.ANN_TAG_ARRAY, scopes.getTag() );
+    assertEquals( "scopes.getElementCount()", 2, scopes.getElementCount() );
+    assertEquals( "scopes[1]", "b", scopes.getElement( 1 ).getValue() );
+    assertNull( "scopes[1].getName()", scopes.getElement( 1 ).getName() );
+    assertNull( "service.missing", service.getValue( "missing" ) );
+
+    final AnnotationInstance inject = index.getAnnotations( INJECT ).get( 0 );
+    assertEquals( "inject.getTarget()",
+                  new AnnotationTarget( AnnotationTarget.FIELD, "com/example/Service", "name", "Ljava/lang/String;" ),
+                  inject.getTarget() );
+    assertEquals( "inject.getValueCount()", 0, inject.getValueCount() );
+
+    final AnnotationInstance route = index.getAnnotations( ROUTE ).get( 0 );
+    assertEquals( "route.getTarget()", "com/example/Service.run()V", route.getTarget().toString() );
+    assertRoute( route );
+  }
+
+  public void test_build_with_annotation_types()
+    throws Exception
+  {
+    final AnnotationIndex index = buildIndex( new AnnotationIndexBuilder( new String[]{ROUTE} ) );
+
+    assertEquals( "getAnnotationCount()", 1, index.getAnnotationCount() );
+    assertEquals( "getAnnotations(COMPONENT).size()", 0, index.getAnnotations( COMPONENT ).size() );
+    assertRoute( index.getAnnotations( ROUTE ).get( 0 ) );
+  }
+
+  public void test_removeClasses()
+    throws Exception
+  {
+    final AnnotationIndexBuilder builder = new AnnotationIndexBuilder();
+    buildIndex( builder );
+    builder.removeClasses( new HashSet<String>( Arrays.asList( "com/example/Service" ) ) );
+    final AnnotationIndex index = builder.build();
+    assertEquals( "getAnnotationCount()", 1, index.getAnnotationCount() );
+    assertEquals( "getAnnotatedClasses(COMPONENT)",
+                  Arrays.asList( "com/example/Alpha" ),
+                  index.getAnnotatedClasses( COMPONENT ) );
+  }
+
+  public void test_scan_jar()
+    throws Exception
+  {
+    final File jar = File.createTempFile( "fade", ".jar" );
+    try
+    {
+      final JarOutputStream output = new JarOutputStream( new FileOutputStream( jar ) );
+      output.putNextEntry( new JarEntry( "com/example/Service.class" ) );
+      output.write( buildService() );
+      output.putNextEntry( new JarEntry( "com/example/Alpha.class" ) );
+      output.write( buildAlpha() );
+      output.close();
+
+      final AnnotationIndexBuilder builder = new AnnotationIndexBuilder();
+      builder.scan( jar, 2 );
+      final AnnotationIndex index = builder.build();
+      assertEquals( "getAnnotationCount()", 4, index.getAnnotationCount() );
+      assertEquals( "getAnnotatedClasses(COMPONENT)",
+                    Arrays.asList( "com/example/Alpha", "com/example/Service" ),
+                    index.getAnnotatedClasses( COMPONENT ) );
+    }
+    finally
+    {
+      jar.delete();
+    }
+  }
+
+  public void test_write_and_read()
+    throws Exception
+  {
+    final AnnotationIndex index = buildIndex( new AnnotationIndexBuilder() );
+    final ByteArrayOutputStream output = new ByteArrayOutputStream();
+    index.write( output );
+
+    final AnnotationIndex copy = AnnotationIndex.read( new ByteArrayInputStream( output.toByteArray() ) );
+    assertEquals( "getAnnotationCount()", index.getAnnotationCount(), copy.getAnnotationCount() );
+    assertEquals( "getAnnotationTypes()", index.getAnnotationTypes(), copy.getAnnotationTypes() );
+    for( final String type : index.getAnnotationTypes() )
+    {
+      assertEquals( "getAnnotatedClasses(" + type + ")",
+                    index.getAnnotatedClasses( type ),
+                    copy.getAnnotatedClasses( type ) );
+      final List<AnnotationInstance> expected = index.getAnnotations( type );
+      final List<AnnotationInstance> actual = copy.getAnnotations( type );
+      assertEquals( "size", expected.size(), actual.size() );
+      for( int i = 0; i < expected.size(); i++ )
+      {
+        assertEquals( "annotation", expected.get( i ).toString(), actual.get( i ).toString() );
+        assertEquals( "target", expected.get( i ).getTarget(), actual.get( i ).getTarget() );
+      }
+    }
+    assertRoute( copy.getAnnotations( ROUTE ).get( 0 ) );
+  }
+
+  public void test_read_with_bad_magic()
+  {
+    try
+    {
+      AnnotationIndex.read( new ByteArrayInputStream( new byte[]{1, 2, 3, 4, 0, 1} ) );
+      fail( "Expected an exception" );
+    }
+    catch( final IOException ioe )
+    {
+      assertEquals( "getMessage()", "Bad annotation index magic number 1020304", ioe.getMessage() );
+    }
+  }
+
+  private void assertRoute( final AnnotationInstance route )
+  {
+    assertEquals( "route.getType()", ROUTE, route.getType() );
+    assertEquals( "route.getValueCount()", 6, route.getValueCount() );
+    assertEquals( "path", "/x", route.getValue( "path" ).getValue() );
+    assertEquals( "path tag", ClassFileFormat.ANN_TAG_UTF8, route.getValue( "path" ).getTag() );
+    assertEquals( "retries", Integer.valueOf( 3 ), route.getValue( "retries" ).getValue() );
+    assertEquals( "weight", Long.valueOf( 7 ), route.getValue( "weight" ).getValue() );
+    assertEquals( "type", "Ljava/lang/String;", route.getValue( "type" ).getValue() );
+    assertEquals( "type tag", ClassFileFormat.ANN_TAG_CLASS, route.getValue( "type" ).getTag() );
+    final AnnotationValue mode = route.getValue( "mode" );
+    assertEquals( "mode.getEnumType()", "Lcom/example/Mode;", mode.getEnumType() );
+    assertEquals( "mode", "FAST", mode.getValue() );
+    final AnnotationInstance info = (AnnotationInstance)route.getValue( "info" ).getValue();
+    assertEquals( "info.getType()", INFO, info.getType() );
+    assertNull( "info.getTarget()", info.getTarget() );
+    assertEquals( "info.enabled", Boolean.TRUE, info.getValue( "enabled" ).getValue() );
+  }
+
+  private AnnotationIndex buildIndex( final AnnotationIndexBuilder builder )
+    throws IOException
+  {
+    ClassFile.parseClassFile( buildService() ).processClass( builder.newParser(), true, true, true );
+    ClassFile.parseClassFile( buildAlpha() ).processClass( builder.newParser(), true, true, true );
+    return builder.build();
+  }
+
+  private static byte[] buildService()
+    throws IOException
+  {
+    final ClassFileBuilder builder = new ClassFileBuilder( "com/example/Service", "java/lang/Object" );
+
+    final ByteArrayOutputStream classAnnotations = new ByteArrayOutputStream();
+    final DataOutputStream c = new DataOutputStream( classAnnotations );
+    c.writeShort( 1 );
+    c.writeShort( builder.utf( COMPONENT ) );
+    c.writeShort( 2 );
+    c.writeShort( builder.utf( "value" ) );
+    c.writeByte( 's' );
+    c.writeShort( builder.utf( "svc" ) );
+    c.writeShort( builder.utf( "scopes" ) );
+    c.writeByte( '[' );
+    c.writeShort( 2 );
+    c.writeByte( 's' );
+    c.writeShort( builder.utf( "a" ) );
+    c.writeByte( 's' );
+    c.writeShort( builder.utf( "b" ) );
+
+    final ByteArrayOutputStream fieldAnnotations = new ByteArrayOutputStream();
+    final DataOutputStream f = new DataOutputStream( fieldAnnotations );
+    f.writeShort( 1 );
+    f.writeShort( builder.utf( INJECT ) );
+    f.writeShort( 0 );
+
+    final ByteArrayOutputStream methodAnnotations = new ByteArrayOutputStream();
+    final DataOutputStream m = new DataOutputStream( methodAnnotations );
+    m.writeShort( 1 );
+    m.writeShort( builder.utf( ROUTE ) );
+    m.writeShort( 6 );
+    m.writeShort( builder.utf( "path" ) );
+    m.writeByte( 's' );
+    m.writeShort( builder.utf( "/x" ) );
+    m.writeShort( builder.utf( "retries" ) );
+    m.writeByte( 'I' );
+    m.writeShort( builder.integer( 3 ) );
+    m.writeShort( builder.utf( "weight" ) );
+    m.writeByte( 'J' );
+    m.writeShort( builder.longConst( 7 ) );
+    m.writeShort( builder.utf( "type" ) );
+    m.writeByte( 'c' );
+    m.writeShort( builder.utf( "Ljava/lang/String;" ) );
+    m.writeShort( builder.utf( "mode" ) );
+    m.writeByte( 'e' );
+    m.writeShort( builder.utf( "Lcom/example/Mode;" ) );
+    m.writeShort( builder.utf( "FAST" ) );
+    m.writeShort( builder.utf( "info" ) );
+    m.writeByte( '@' );
+    m.writeShort( builder.utf( INFO ) );
+    m.writeShort( 1 );
+    m.writeShort( builder.utf( "enabled" ) );
+    m.writeByte( 'Z' );
+    m.writeShort( builder.integer( 1 ) );
+
+    final String name = ClassFileFormat.ATTR_RuntimeVisibleAnnotations;
+    builder.field( 0, "name", "Ljava/lang/String;", builder.attribute( name, fieldAnnotations.toByteArray() ) );
+    builder.field( 0, "plain", "I" );
+    builder.method( 0, "run", "()V", builder.attribute( name, methodAnnotations.toByteArray() ) );
+    builder.classAttribute( builder.attribute( name, classAnnotations.toByteArray() ) );
+    return builder.build();
+  }
+
+  private static byte[] buildAlpha()
+    throws IOException
+  {
+    final ClassFileBuilder builder = new ClassFileBuilder( "com/example/Alpha", "java/lang/Object" );
+    final ByteArrayOutputStream annotations = new ByteArrayOutputStream();
+    final DataOutputStream out = new DataOutputStream( annotations );
+    out.writeShort( 1 );
+    out.writeShort( builder.utf( COMPONENT ) );
+    out.writeShort( 1 );
+    out.writeShort( builder.utf( "value" ) );
+    out.writeByte( 's' );
+    out.writeShort( builder.utf( "alpha" ) );
+    final String name = ClassFileFormat.ATTR_RuntimeVisibleAnnotations;
+    builder.classAttribute( builder.attribute( name, annotations.toByteArray() ) );
+    return builder.build();
+  }
+}
@@ -0,0 +1,183 @@
+package org.realityforge.fade;
+
+import java.util.Arrays;
+import junit.framework.TestCase;
+
+public class TestCallGraph
+  extends TestCase
+{
+  private static final int INVOKEVIRTUAL = Instruction.INVOKEVIRTUAL.code;
+  private static final int INVOKESPECIAL = Instruction.INVOKESPECIAL.code;
+  private static final int INVOKESTATIC = Instruction.INVOKESTATIC.code;
+  private static final int INVOKEINTERFACE = Instruction.INVOKEINTERFACE.code;
+  private static final int RETURN = Instruction.RETURN.code;
+
+  public void test_build()
+    throws Exception
+  {
+    final CallGraphBuilder builder = new CallGraphBuilder();
+    final byte[] a = buildA();
+    process( builder.newParser(), a );
+    process( builder.newParser(), buildB() );
+    //A class scanned twice adds no calls
+    process( builder.newParser(), a );
+    final CallGraph graph = builder.build();
+
+    assertEquals( "getClassCount()", 4, graph.getClassCount() );
+    assertEquals( "getClassName(0)", "java/lang/Object", graph.getClassName( 0 ) );
+    assertEquals( "getClassName(1)", "java/lang/Runnable", graph.getClassName( 1 ) );
+    assertEquals( "getClassId(p/A)", 2, graph.getClassId( "p/A" ) );
+    assertEquals( "getClassId(p/C)", -1, graph.getClassId( "p/C" ) );
+
+    final int main = graph.findMethod( "p/A", "main", "([Ljava/lang/String;)V" );
+    final int helper = graph.findMethod( "p/A", "helper", "()V" );
+    final int run = graph.findMethod( "p/B", "run", "()V" );
+    final int unused = graph.findMethod( "p/B", "unused", "()V" );
+    final int init = graph.findMethod( "java/lang/Object", "<init>", "()V" );
+    final int runnable = graph.findMethod( "java/lang/Runnable", "run", "()V" );
+    assertEquals( "getMethodCount()", 6, graph.getMethodCount() );
+    assertEquals( "missing", -1, graph.findMethod( "p/A", "main", "()V" ) );
+    assertEquals( "getMethods(A)", Arrays.toString( new int[]{helper, main} ),
+                  Arrays.toString( graph.getMethods( graph.getClassId( "p/A" ) ) ) );
+    assertEquals( "getMethodClass(run)", graph.getClassId( "p/B" ), graph.getMethodClass( run ) );
+    assertEquals( "getMethodClass(init)", 0, graph.getMethodClass( init ) );
+    assertEquals( "getMethodName()", "main", graph.getMethodName( main ) );
+    assertEquals( "getMethodDescriptor()", "([Ljava/lang/String;)V", graph.getMethodDescriptor( main ) );
+    assertTrue( "isDeclared(main)", graph.isDeclared( main ) );
+    assertTrue( "isDeclared(unused)", graph.isDeclared( unused ) );
+    assertFalse( "isDeclared(init)", graph.isDeclared( init ) );
+
+    assertEquals( "getCallCount()", 4, graph.getCallCount() );
+    assertEquals( "getCallees(main)", Arrays.toString( new int[]{init, run, runnable} ),
+                  Arrays.toString( graph.getCallees( main ) ) );
+    assertEquals( "getCallOpcode(main,0)", INVOKESPECIAL, graph.getCallOpcode( main, 0 ) );
+    assertEquals( "getCallOpcode(main,1)", INVOKESTATIC, graph.getCallOpcode( main, 1 ) );
+    assertEquals( "getCallOpcode(main,2)", INVOKEINTERFACE, graph.getCallOpcode( main, 2 ) );
+    assertEquals( "getCallees(run)", Arrays.toString( new int[]{helper} ), Arrays.toString( graph.getCallees( run ) ) );
+    assertEquals( "getCallOpcode(run,0)", INVOKEVIRTUAL, graph.getCallOpcode( run, 0 ) );
+    assertEquals( "getCallees(unused)", 0, graph.getCallees( unused ).length );
+    assertEquals( "getCallers(helper)", Arrays.toString( new int[]{run} ), Arrays.toString( graph.getCallers( helper ) ) );
+    assertEquals( "getCallers(main)", 0, graph.getCallers( main ).length );
+
+    assertEquals( "reachableFrom(main)", Arrays.toString( new int[]{main, init, run, runnable, helper} ),
+                  Arrays.toString( graph.reachableFrom( main ) ) );
+    assertEquals( "reachableFrom(unused)", Arrays.toString( new int[]{unused} ),
+                  Arrays.toString( graph.reachableFrom( unused ) ) );
+  }
+
+  public void test_build_empty()
+  {
+    final CallGraph graph = new CallGraphBuilder().build();
+    assertEquals( "getClassCount()", 0, graph.getClassCount() );
+    assertEquals( "getMethodCount()", 0, graph.getMethodCount() );
+    assertEquals( "findMethod()", -1, graph.findMethod( "p/A", "main", "()V" ) );
+  }
+
+  public void test_build_with_call_to_last_constant()
+  {
+    final ClassFileBuilder builder = new ClassFileBuilder( "p/C", "java/lang/Object" );
+    //Register the method names first so the Methodref is the last constant
+    builder.utf( ClassFileFormat.ATTR_Code );
+    builder.utf( "main" );
+    builder.utf( "()V" );
+    //Pad the pool so the Methodref lies just beyond the initial size of the reference tables
+    int pad = 0;
+    while( builder.utf( "pad" + pad ) < 253 )
+    {
+      pad++;
+    }
+    final int helper = builder.methodRef( "p/C", "helper", "()V" );
+    assertEquals( "helper", 256, helper );
+    final byte[] code = new byte[]{(byte)INVOKESTATIC, (byte)( helper >> 8 ), (byte)helper, (byte)RETURN};
+    builder.method( ClassFileFormat.ACC_PUBLIC | ClassFileFormat.ACC_STATIC, "main", "()V", builder.code( code ) );
+    final byte[] data = builder.build();
+    assertEquals( "last constant", helper, ClassFile.parseClassFile( data ).getConstantPool().getConstantCount() );
+
+    final CallGraphBuilder graphBuilder = new CallGraphBuilder();
+    process( graphBuilder.newParser(), data );
+    final CallGraph graph = graphBuilder.build();
+    final int main = graph.findMethod( "p/C", "main", "()V" );
+    final int callee = graph.findMethod( "p/C", "helper", "()V" );
+    assertEquals( "getCallees(main)", Arrays.toString( new int[]{callee} ), Arrays.toString( graph.getCallees( main ) ) );
+  }
+
+  public void test_build_with_call_to_bad_constant()
+  {
+    assertBadConstant( 0 );
+    assertBadConstant( 0x7FFF );
+  }
+
+  private static void assertBadConstant( final int index )
+  {
+    final ClassFileBuilder builder = new ClassFileBuilder( "p/C", "java/lang/Object" );
+    final byte[] code = new byte[]{(byte)INVOKESTATIC, (byte)( index >> 8 ), (byte)index, (byte)RETURN};
+    builder.method( ClassFileFormat.ACC_PUBLIC | ClassFileFormat.ACC_STATIC, "main", "()V", builder.code( code ) );
+    final byte[] data = builder.build();
+    final int size = ClassFile.parseClassFile( data ).getConstantPool().getConstantCount() + 1;
+    try
+    {
+      process( new CallGraphBuilder().newParser(), data );
+      fail( "Expected an exception" );
+    }
+    catch( final ClassFormatError cfe )
+    {
+      final String message =
+        "Can not access constant pool element " + index + " as it is not in the range [1-" + size + ")";
+      assertEquals( "getMessage()", message, cfe.getMessage() );
+    }
+  }
+
+  public void test_getCallOpcode_with_bad_index()
+  {
+    final CallGraphBuilder builder = new CallGraphBuilder();
+    process( builder.newParser(), buildB() );
+    final CallGraph graph = builder.build();
+    final int run = graph.findMethod( "p/B", "run", "()V" );
+    try
+    {
+      graph.getCallOpcode( run, 1 );
+      fail( "Expected an exception" );
+    }
+    catch( final IndexOutOfBoundsException ioobe )
+    {
+      assertEquals( "getMessage()", "Callee index 1 out of range for method " + run, ioobe.getMessage() );
+    }
+  }
+
+  private static void process( final ClassFileParser parser, final byte[] data )
+  {
+    ClassFile.parseClassFile( data ).processClass( parser, false, true, false );
+  }
+
+  /** Class whose main calls Object.<init>, B.run twice and Runnable.run. */
+  private static byte[] buildA()
+  {
+    final ClassFileBuilder builder = new ClassFileBuilder( "p/A", "java/lang/Object" );
+    final int init = builder.methodRef( "java/lang/Object", "<init>", "()V" );
+    final int run = builder.methodRef( "p/B", "run", "()V" );
+    final int runnable = builder.interfaceMethodRef( "java/lang/Runnable", "run", "()V" );
+    final byte[] code = new byte[]{
+      (byte)INVOKESPECIAL, (byte)( init >> 8 ), (byte)init,
+      (byte)INVOKESTATIC, (byte)( run >> 8 ), (byte)run,
+      (byte)INVOKESTATIC, (byte)( run >> 8 ), (byte)run,
+      (byte)INVOKEINTERFACE, (byte)( runnable >> 8 ), (byte)runnable, 1, 0,
+      (byte)RETURN};
+    builder.method( ClassFileFormat.ACC_PUBLIC | ClassFileFormat.ACC_STATIC,
+                    "main",
+                    "([Ljava/lang/String;)V",
+                    builder.code( code ) );
+    builder.method( ClassFileFormat.ACC_PUBLIC, "helper", "()V", builder.code( new byte[]{(byte)RETURN} ) );
+    return builder.build();
+  }
+
+  /** Class whose run calls A.helper and with an abstract method. */
+  private static byte[] buildB()
+  {
+    final ClassFileBuilder builder = new ClassFileBuilder( "p/B", "java/lang/Object" );
+    final int helper = builder.methodRef( "p/A", "helper", "()V" );
+    final byte[] code = new byte[]{(byte)INVOKEVIRTUAL, (byte)( helper >> 8 ), (byte)helper, (byte)RETURN};
+    builder.method( ClassFileFormat.ACC_PUBLIC, "run", "()V", builder.code( code ) );
+    builder.method( ClassFileFormat.ACC_PUBLIC | ClassFileFormat.ACC_ABSTRACT, "unused", "()V" );
+    return builder.build();
+  }
+}
@@ -2,6 +2,7 @@ package org.realityforge.fade;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
 import junit.framework.TestCase;
 
 public class TestClassFile
@@ -45,6 +46,30 @@ public class TestClassFile
     }
   }
 
+  public void test_parseClassFile_with_latest_version()
+  {
+    final ClassFile classFile = ClassFile.parseClassFile( TestConstantPool.buildModernClass() );
+    assertEquals( "getMajorVersion", ClassFileFormat.MAJOR_VERSION_LATEST, classFile.getMajorVersion() );
+    assertEquals( "getClassName", "p/A", classFile.getClassName() );
+    assertEquals( "getSuperClassName", "java/lang/Object", classFile.getSuperClassName() );
+  }
+
+  public void test_parseClassFile_with_future_version()
+  {
+    final byte[] bytes = TestConstantPool.buildModernClass();
+    bytes[7] = (byte)( ClassFileFormat.MAJOR_VERSION_LATEST + 1 );
+    try
+    {
+      ClassFile.parseClassFile( bytes );
+      fail( "Expected an exception" );
+    }
+    catch( final ClassFormatError cfe )
+    {
+      final String message = "Bad class file version " + ( ClassFileFormat.MAJOR_VERSION_LATEST + 1 ) + ".0";
+      assertEquals( "getMessage()", message, cfe.getMessage() );
+    }
+  }
+
   public void test_parseClassFile_with_excess_data_on_EmptyClass()
     throws Exception
   {
@@ -99,6 +124,160 @@ public class TestClassFile
     assertEquals( "constantPool.getConstantCount()", 15, classFile.getConstantPool().getConstantCount() );
   }
 
+  public void test_parseClassFile_from_region_on_NonEmptyClass()
+    throws Exception
+  {
+    final byte[] bytes = loadTestData( "NonEmptyClass.class.dat" );
+    final byte[] region = new byte[bytes.length + 20];
+    System.arraycopy( bytes, 0, region, 7, bytes.length );
+    final ClassFile classFile = ClassFile.parseClassFile( region, 7, bytes.length );
+
+    assertEquals( "data", region, classFile.getData() );
+    assertEquals( "offset", 7, classFile.getOffset() );
+    assertEquals( "getMajorVersion", ClassFileFormat.MAJOR_VERSION_1, classFile.getMajorVersion() );
+    assertEquals( "getClassName", "org/realityforge/fade/data/NonEmptyClass", classFile.getClassName() );
+    assertEquals( "getFieldName", "ANSWER", classFile.getFieldName( 0 ) );
+    classFile.processClass( new NoopClassFileParser(), true, true, true );
+  }
+
+  public void test_parseClassFile_from_region_with_truncated_data_on_EmptyClass()
+    throws Exception
+  {
+    final byte[] bytes = loadTestData( "EmptyClass.class.dat" );
+    final byte[] region = new byte[bytes.length + 5];
+    System.arraycopy( bytes, 0, region, 5, bytes.length );
+    try
+    {
+      ClassFile.parseClassFile( region, 5, bytes.length - 1 );
+      fail( "Expected an exception" );
+    }
+    catch( final ClassFormatError cfe )
+    {
+      final String message =
+        "Class file is truncated. Require 2 bytes at position " +
+        "312 when the class data ends at position 313.";
+      assertEquals( "getMessage()", message, cfe.getMessage() );
+    }
+  }
+
+  public void test_parseClassFileLazily_on_NonEmptyClass()
+    throws Exception
+  {
+    final byte[] bytes = loadTestData( "NonEmptyClass.class.dat" );
+    final ClassFile expected = ClassFile.parseClassFile( bytes );
+    final ClassFile classFile = ClassFile.parseClassFileLazily( bytes );
+
+    assertEquals( "getClassName", expected.getClassName(), classFile.getClassName() );
+    assertEquals( "getSuperClassName", expected.getSuperClassName(), classFile.getSuperClassName() );
+    assertEquals( "getFieldName", expected.getFieldName( 0 ), classFile.getFieldName( 0 ) );
+    assertEquals( "getMethodName", expected.getMethodName( 1 ), classFile.getMethodName( 1 ) );
+    assertEquals( "getMethodOffsets().length",
+                  expected.getMethodOffsets().length,
+                  classFile.getMethodOffsets().length );
+    assertEquals( "getAttributeOffset", expected.getAttributeOffset(), classFile.getAttributeOffset() );
+    classFile.processClass( new NoopClassFileParser(), true, true, true );
+  }
+
+  public void test_parseClassFileLazily_defers_member_errors_on_EmptyClass()
+    throws Exception
+  {
+    final byte[] bytes = loadTestData( "EmptyClass.class.dat" );
+    final byte[] region = new byte[bytes.length + 5];
+    System.arraycopy( bytes, 0, region, 5, bytes.length );
+    final ClassFile classFile = ClassFile.parseClassFileLazily( region, 5, bytes.length - 1 );
+
+    assertEquals( "getClassName", "org/realityforge/fade/data/EmptyClass", classFile.getClassName() );
+    assertEquals( "getSuperClassName", "java/lang/Object", classFile.getSuperClassName() );
+    try
+    {
+      classFile.getMethodName( 0 );
+      fail( "Expected an exception" );
+    }
+    catch( final ClassFormatError cfe )
+    {
+      final String message =
+        "Class file is truncated. Require 2 bytes at position " +
+        "312 when the class data ends at position 313.";
+      assertEquals( "getMessage()", message, cfe.getMessage() );
+    }
+  }
+
+  public void test_parseClassFileLazily_with_truncated_header_on_EmptyClass()
+    throws Exception
+  {
+    final byte[] bytes = loadTestData( "EmptyClass.class.dat" );
+    try
+    {
+      ClassFile.parseClassFileLazily( bytes, 0, 230 );
+      fail( "Expected an exception" );
+    }
+    catch( final ClassFormatError cfe )
+    {
+      assertTrue( "getMessage()", cfe.getMessage().startsWith( "Class file is truncated." ) );
+    }
+  }
+
+  public void test_parseClassFile_from_bad_region()
+    throws Exception
+  {
+    try
+    {
+      ClassFile.parseClassFile( new byte[10], 5, 10 );
+      fail( "Expected an exception" );
+    }
+    catch( final IllegalArgumentException iae )
+    {
+      final String message = "Class data region 5+10 lies outside array of length 10";
+      assertEquals( "getMessage()", message, iae.getMessage() );
+    }
+  }
+
+  public void test_parseClassFile_from_region_whose_end_overflows()
+    throws Exception
+  {
+    try
+    {
+      ClassFile.parseClassFile( new byte[10], 5, Integer.MAX_VALUE );
+      fail( "Expected an exception" );
+    }
+    catch( final IllegalArgumentException iae )
+    {
+      final String message = "Class data region 5+" + Integer.MAX_VALUE + " lies outside array of length 10";
+      assertEquals( "getMessage()", message, iae.getMessage() );
+    }
+  }
+
+  public void test_parseClassFile_from_heap_buffer_on_EmptyClass()
+    throws Exception
+  {
+    final byte[] bytes = loadTestData( "EmptyClass.class.dat" );
+    final byte[] region = new byte[bytes.length + 3];
+    System.arraycopy( bytes, 0, region, 3, bytes.length );
+    final ByteBuffer buffer = ByteBuffer.wrap( region );
+    buffer.position( 3 );
+    final ClassFile classFile = ClassFile.parseClassFile( buffer.slice() );
+
+    assertEquals( "data", region, classFile.getData() );
+    assertEquals( "offset", 3, classFile.getOffset() );
+    assertEquals( "getClassName", "org/realityforge/fade/data/EmptyClass", classFile.getClassName() );
+    assertEquals( "getMethodName", "<init>", classFile.getMethodName( 0 ) );
+  }
+
+  public void test_parseClassFile_from_direct_buffer_on_NonEmptyClass()
+    throws Exception
+  {
+    final byte[] bytes = loadTestData( "NonEmptyClass.class.dat" );
+    final ByteBuffer buffer = ByteBuffer.allocateDirect( bytes.length );
+    buffer.put( bytes );
+    buffer.flip();
+    final ClassFile classFile = ClassFile.parseClassFile( buffer );
+
+    assertEquals( "buffer.position()", 0, buffer.position() );
+    assertEquals( "getClassName", "org/realityforge/fade/data/NonEmptyClass", classFile.getClassName() );
+    assertEquals( "getInterfaces()[0]", "org/realityforge/fade/data/MyInterface", classFile.getInterfaces()[0] );
+    classFile.processClass( new NoopClassFileParser(), true, true, true );
+  }
+
   public void test_getMinorVersion_on_EmptyClass()
     throws Exception
   {
@@ -105,6 +105,183 @@ public class TestClassFileParser
     parser.parseAnnotations( ClassFileFormat.ATTR_RuntimeVisibleAnnotations, data, 0, constantPool );
   }
 
+  public void test_parseAnnotations_with_multiple_annotations()
+  {
+    final byte[] cpData = new byte[]
+      {
+        //1b tag, Nb data
+        1, 0, 1, 'a',
+        1, 0, 1, 'b',
+        1, 0, 1, 'c',
+        1, 0, 1, 'd',
+      };
+    final int[] offsets = new int[]
+      {
+        0, //ignored
+        0,
+        4,
+        8,
+        12,
+      };
+    final ConstantPool constantPool = new ConstantPool( cpData, offsets );
+    final byte[] data = new byte[]
+      {
+        0, 2, // 2 annotations in group
+        0, 1, // annotation name index
+        0, 2, // number of element-value pairs in annotation
+           0, 2, // name index for pair
+           '@',  // Annotation tag
+           0, 3, // annotation name index
+           0, 1, // count of element-value pairs
+              0, 2, // name index for first in nested annotation
+              's', 0, 4, // value index of str value
+           0, 3, // name index for pair
+           's', 0, 4, // value index of str value
+        0, 3, // annotation name index
+        0, 0, // number of element-value pairs in annotation
+      };
+
+    final StringBuilder events = new StringBuilder();
+    final ConcreteParser parser = new ConcreteParser()
+    {
+      protected void handleAnnotationGroup( final String type )
+      {
+      }
+
+      protected void startAnnotation( final String type )
+      {
+        events.append( "start(" ).append( type ).append( ")" );
+      }
+
+      protected void endAnnotationValueAnnotation()
+      {
+      }
+
+      protected void startAnnotationValueAnnotation( final String name )
+      {
+        events.append( name ).append( "=" );
+      }
+
+      protected void endAnnotation()
+      {
+        events.append( "end" );
+      }
+
+      protected void handleAnnotationValue( final String name, final Object value )
+      {
+        events.append( name ).append( "=" ).append( value );
+      }
+    };
+
+    parser.parseAnnotations( ClassFileFormat.ATTR_RuntimeVisibleAnnotations, data, 0, constantPool );
+    assertEquals( "events", "start(a)b=start(c)b=dendc=dendstart(c)end", events.toString() );
+  }
+
+  public void test_parseAnnotations_with_annotation_type_filter()
+  {
+    final byte[] cpData = new byte[]
+      {
+        //1b tag, Nb data
+        1, 0, 1, 'a',
+        1, 0, 1, 'b',
+        1, 0, 1, 'c',
+      };
+    final int[] offsets = new int[]
+      {
+        0, //ignored
+        0,
+        4,
+        8,
+      };
+    final ConstantPool constantPool = new ConstantPool( cpData, offsets );
+    final byte[] data = new byte[]
+      {
+        0, 3, // 3 annotations in group
+        0, 1, // annotation name index
+        0, 3, // number of element-value pairs in annotation
+           0, 99, // invalid name index for pair
+           '@',  // Annotation tag
+           0, 99, // invalid annotation name index
+           0, 1, // count of element-value pairs
+              0, 99, // invalid name index for first in nested annotation
+              'e', 0, 99, 0, 99, // enum value
+           0, 99, // invalid name index for pair
+           '[', 0, 2, // array of size 2
+              'J', 0, 99, // invalid value index
+              'J', 0, 99, // invalid value index
+           0, 99, // invalid name index for pair
+           'c', 0, 99, // invalid class index
+        0, 3, // annotation name index
+        0, 1, // number of element-value pairs in annotation
+           0, 2, // name index for pair
+           's', 0, 1, // value index of str value
+        0, 2, // annotation name index
+        0, 0, // number of element-value pairs in annotation
+      };
+
+    final String[] annotationTypes = new String[]{ "c" };
+    final StringBuilder events = new StringBuilder();
+    final ClassFileParser parser = new ClassFileParser( null, annotationTypes )
+    {
+      protected void handleAnnotationGroup( final String type )
+      {
+      }
+
+      protected void startAnnotation( final String type )
+      {
+        assertSame( "type", annotationTypes[0], type );
+        events.append( "start(" ).append( type ).append( ")" );
+      }
+
+      protected void endAnnotation()
+      {
+        events.append( "end" );
+      }
+
+      protected void handleAnnotationValue( final String name, final Object value )
+      {
+        events.append( name ).append( "=" ).append( value );
+      }
+    };
+
+    parser.parseAnnotations( ClassFileFormat.ATTR_RuntimeVisibleAnnotations, data, 0, constantPool );
+    assertEquals( "events", "start(c)b=aend", events.toString() );
+  }
+
+  public void test_skipElementValue()
+  {
+    final byte[] data = new byte[]
+      {
+        'I', 0, 1,
+        'e', 0, 1, 0, 2,
+        '@', 0, 1, 0, 1,
+           0, 2,
+           '[', 0, 2,
+              'Z', 0, 1,
+              's', 0, 1,
+        '[', 0, 0,
+      };
+    assertEquals( "int", 3, ClassFileParser.skipElementValue( data, 0 ) );
+    assertEquals( "enum", 8, ClassFileParser.skipElementValue( data, 3 ) );
+    assertEquals( "annotation", 24, ClassFileParser.skipElementValue( data, 8 ) );
+    assertEquals( "empty array", data.length, ClassFileParser.skipElementValue( data, 24 ) );
+  }
+
+  public void test_skipElementValue_with_bad_tag()
+  {
+    final byte[] data = new byte[]{ 42, 0, 1 };
+    try
+    {
+      ClassFileParser.skipElementValue( data, 0 );
+      fail( "expected an exception" );
+    }
+    catch( final ClassFormatError cfe )
+    {
+      final String message = "Unknown attribute tag (" + (char) 42 + ") at position " + 1;
+      assertEquals( "cfe.getMessage()", message, cfe.getMessage() );
+    }
+  }
+
   public void test_parseElementValue_with_bad_array()
   {
     final ConstantPool constantPool = new ConstantPool( new byte[0], new int[0] );
@@ -665,6 +842,180 @@ public class TestClassFileParser
     assertEquals( "location", data.length, location );
   }
 
+  public void test_parseElementValue_with_typed_callbacks()
+  {
+    final byte[] cpData = new byte[]
+      {
+        //1b tag, Nb data
+        3, 0, 0, 0, 42, //int value
+        5, 0, 0, 0, 0, 0, 0, 0, 7, //long value
+        1, 0, 3, 'f', 'o', 'o', //string value
+      };
+    final int[] offsets = new int[]
+      {
+        0, //ignored
+        0, //int value
+        5, //long value
+        0, //long ignored
+        14, //string value
+      };
+    final ConstantPool constantPool = new ConstantPool( cpData, offsets );
+    final byte[] data = new byte[]
+      {
+        'I', 0, 1, //value index
+        'Z', 0, 1, //value index
+        'J', 0, 2, //value index
+        's', 0, 4, //value index
+        'c', 0, 4, //value index
+      };
+
+    final StringBuffer sb = new StringBuffer();
+    final ConcreteParser parser = new ConcreteParser()
+    {
+      protected void handleIntValue( final String name, final int value )
+      {
+        sb.append( name ).append( ":I" ).append( value ).append( ' ' );
+      }
+
+      protected void handleBooleanValue( final String name, final boolean value )
+      {
+        sb.append( name ).append( ":Z" ).append( value ).append( ' ' );
+      }
+
+      protected void handleLongValue( final String name, final long value )
+      {
+        sb.append( name ).append( ":J" ).append( value ).append( ' ' );
+      }
+
+      protected void handleStringValue( final String name, final String value )
+      {
+        sb.append( name ).append( ":s" ).append( value ).append( ' ' );
+      }
+
+      protected void handleClassValue( final String name, final String descriptor )
+      {
+        sb.append( name ).append( ":c" ).append( descriptor );
+      }
+
+      protected void handleAnnotationValue( final String name, final Object value )
+      {
+        fail( "Boxed value passed to handleAnnotationValue: " + value );
+      }
+    };
+
+    int location = 0;
+    location = parser.parseElementValue( "a", data, location, constantPool );
+    location = parser.parseElementValue( "b", data, location, constantPool );
+    location = parser.parseElementValue( "c", data, location, constantPool );
+    location = parser.parseElementValue( "d", data, location, constantPool );
+    location = parser.parseElementValue( "e", data, location, constantPool );
+    assertEquals( "location", data.length, location );
+    assertEquals( "events", "a:I42 b:Ztrue c:J7 d:sfoo e:cfoo", sb.toString() );
+  }
+
+  public void test_parseElementValue_streaming_primitive_array()
+  {
+    final byte[] cpData = new byte[]
+      {
+        //1b tag, Nb data
+        3, 0, 0, 0, 1, //value
+        3, 0, 0, 0, 2, //value
+      };
+    final int[] offsets = new int[]
+      {
+        0, //ignored
+        0, //value
+        5, //value
+      };
+    final ConstantPool constantPool = new ConstantPool( cpData, offsets );
+    final byte[] data = new byte[]
+      {
+        '[', 0, 2, //array of size 2
+          'I', 0, 1, //value index
+          'I', 0, 2, //value index
+      };
+
+    final StringBuffer sb = new StringBuffer();
+    final ConcreteParser parser = new ConcreteParser()
+    {
+      protected boolean streamAnnotationArrays()
+      {
+        return true;
+      }
+
+      protected void startAnnotationValueArray( final String name, final int length )
+      {
+        sb.append( "start:" ).append( name ).append( ':' ).append( length ).append( ' ' );
+      }
+
+      protected void handleIntValue( final String name, final int value )
+      {
+        sb.append( name ).append( ':' ).append( value ).append( ' ' );
+      }
+
+      protected void endAnnotationValueArray()
+      {
+        sb.append( "end" );
+      }
+
+      protected void handleAnnotationValue( final String name, final Object value )
+      {
+        fail( "Array passed to handleAnnotationValue: " + value );
+      }
+    };
+
+    final int location = parser.parseElementValue( "han", data, 0, constantPool );
+    assertEquals( "location", data.length, location );
+    assertEquals( "events", "start:han:2 null:1 null:2 end", sb.toString() );
+  }
+
+  public void test_parseElementValue_streaming_bad_array()
+  {
+    final byte[] cpData = new byte[]
+      {
+        //1b tag, Nb data
+        3, 0, 0, 0, 1, //value
+      };
+    final int[] offsets = new int[]
+      {
+        0, //ignored
+        0, //value
+      };
+    final ConstantPool constantPool = new ConstantPool( cpData, offsets );
+    final byte[] data = new byte[]
+      {
+        '[', 0, 2, //array of size 2
+          'I', 0, 1, //value index
+          'Z', 0, 1, //value index
+      };
+
+    final ConcreteParser parser = new ConcreteParser()
+    {
+      protected boolean streamAnnotationArrays()
+      {
+        return true;
+      }
+
+      protected void startAnnotationValueArray( final String name, final int length )
+      {
+      }
+
+      protected void handleAnnotationValue( final String name, final Object value )
+      {
+      }
+    };
+
+    try
+    {
+      parser.parseElementValue( "han", data, 0, constantPool );
+      fail( "Expected to fail due to mismatched array tags" );
+    }
+    catch( final ClassFormatError cfe )
+    {
+      //expected
+    }
+  }
+
   public void test_parseElementValue_expecting_Boolean()
   {
     final byte[] cpData = new byte[]
@@ -1891,6 +2242,55 @@ final int nameIndex = IOUtil.readUnsignedShort( data, location );
     verifyParseAttribute( ClassFileParser.AttributeType.CLASS );
   }
 
+  public void test_parseAttributes_with_attribute_filter()
+  {
+    final byte[] cpData = new byte[]
+      {
+        //1b tag, 2b length, Nb data
+        1, 0, 1, 'a', //name
+        1, 0, 1, 'b', //name
+      };
+    final int[] offsets = new int[]
+      {
+        0, //ignored
+        0, //name
+        4, //name
+      };
+    final ConstantPool constantPool = new ConstantPool( cpData, offsets );
+    final byte[] data = new byte[]
+      {
+        0, 2, //count of attributes
+        0, 1, //nameIndex
+        0, 0, 0, 1, //length
+        0, //attribute data
+        0, 2, //nameIndex
+        0, 0, 0, 0, //length
+      };
+    final String filteredName = new String( "b" );
+
+    final ClassFileParser parser = new ClassFileParser( new String[]{filteredName} )
+    {
+      int count;
+
+      protected void handleClassAttribute( final String name,
+                                           final byte[] p_data,
+                                           final int offset,
+                                           final long length,
+                                           final ConstantPool p_constantPool )
+      {
+        count++;
+        assertEquals( "count", 1, count );
+        assertTrue( "name", filteredName == name );
+        assertEquals( "offset", 15, offset );
+        assertEquals( "length", 0L, length );
+      }
+    };
+
+    parser.parseAttributes( ClassFileParser.AttributeType.CLASS, data, 0, constantPool );
+    assertNull( "strings[1]", constantPool.strings[1] );
+    assertNull( "strings[2]", constantPool.strings[2] );
+  }
+
   private void verifyParseAttribute( final ClassFileParser.AttributeType type )
   {
     final byte[] cpData = new byte[]
@@ -0,0 +1,155 @@
+package org.realityforge.fade;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import junit.framework.TestCase;
+
+public class TestClassFileReader
+  extends TestCase
+{
+  public void test_read_sequence_of_classes()
+    throws Exception
+  {
+    final ClassFileReader reader = new ClassFileReader();
+    final String[] resources =
+      new String[]{"NonEmptyClass.class.dat", "EmptyClass.class.dat", "MyInterface.class.dat", "NonEmptyClass.class.dat"};
+    ClassFile previous = null;
+    for( final String resource : resources )
+    {
+      final byte[] bytes = loadTestData( resource );
+      final ClassFile classFile = reader.read( bytes );
+      if( null != previous )
+      {
+        assertTrue( "ClassFile reused", previous == classFile );
+      }
+      assertClassMatches( ClassFile.parseClassFile( bytes ), classFile );
+      classFile.processClass( new TestClassFile.NoopClassFileParser(), true, true, true );
+      previous = classFile;
+    }
+  }
+
+  public void test_read_reuses_arrays()
+    throws Exception
+  {
+    final ClassFileReader reader = new ClassFileReader();
+    final ClassFile classFile = reader.read( loadTestData( "NonEmptyClass.class.dat" ) );
+    final ConstantPool constantPool = classFile.getConstantPool();
+    final int[] offsets = constantPool.offsets;
+    final String[] strings = constantPool.strings;
+    assertEquals( "getClassName", "org/realityforge/fade/data/NonEmptyClass", classFile.getClassName() );
+
+    final byte[] bytes = loadTestData( "EmptyClass.class.dat" );
+    assertTrue( "ClassFile reused", classFile == reader.read( bytes ) );
+    assertTrue( "ConstantPool reused", constantPool == classFile.getConstantPool() );
+    assertTrue( "offsets reused", offsets == constantPool.offsets );
+    assertTrue( "strings reused", strings == constantPool.strings );
+    assertEquals( "getConstantCount", 15, constantPool.getConstantCount() );
+    for( final String value : strings )
+    {
+      assertNull( "cached string", value );
+    }
+    assertEquals( "getClassName", "org/realityforge/fade/data/EmptyClass", classFile.getClassName() );
+  }
+
+  public void test_read_resets_entry_counts()
+    throws Exception
+  {
+    final ClassFileReader reader = new ClassFileReader();
+    reader.read( TestConstantPool.buildModernClass() );
+    final ClassFile classFile = reader.read( loadTestData( "EmptyClass.class.dat" ) );
+    assertEquals( "MethodHandle", 0, classFile.getConstantPool().getEntryCount( ClassFileFormat.CONSTANT_MethodHandle ) );
+    TestConstantPool.assertEntryCountsMatch( classFile.getConstantPool() );
+  }
+
+  public void test_read_range_checks_use_current_class()
+    throws Exception
+  {
+    final ClassFileReader reader = new ClassFileReader();
+    reader.read( loadTestData( "NonEmptyClass.class.dat" ) );
+    final ClassFile classFile = reader.read( loadTestData( "EmptyClass.class.dat" ) );
+    try
+    {
+      classFile.getMethodName( 1 );
+      fail( "Expected an exception" );
+    }
+    catch( final ClassFormatError cfe )
+    {
+      assertEquals( "getMessage()", "Requested invalid method index 1 when there is only 1 methods", cfe.getMessage() );
+    }
+    try
+    {
+      classFile.getConstantPool().getUtfEntry( 16 );
+      fail( "Expected an exception" );
+    }
+    catch( final ClassFormatError cfe )
+    {
+      assertEquals( "getMessage()",
+                    "Can not access constant pool element 16 as it is not in the range [1-16)",
+                    cfe.getMessage() );
+    }
+  }
+
+  public void test_read_after_bad_class()
+    throws Exception
+  {
+    final ClassFileReader reader = new ClassFileReader();
+    final byte[] bytes = loadTestData( "EmptyClass.class.dat" );
+    try
+    {
+      reader.read( bytes, 0, bytes.length - 1 );
+      fail( "Expected an exception" );
+    }
+    catch( final ClassFormatError cfe )
+    {
+      //expected
+    }
+    final ClassFile classFile = reader.read( bytes );
+    assertClassMatches( ClassFile.parseClassFile( bytes ), classFile );
+  }
+
+  public void test_read_with_symbolTable()
+    throws Exception
+  {
+    final SymbolTable table = new SymbolTable( 64 );
+    final ClassFileReader reader = new ClassFileReader( table );
+    final String superClass1 = reader.read( loadTestData( "EmptyClass.class.dat" ) ).getSuperClassName();
+    final String superClass2 = reader.read( loadTestData( "NonEmptyClass.class.dat" ) ).getSuperClassName();
+    assertEquals( "superClass1", "java/lang/Object", superClass1 );
+    assertTrue( "superClass1 == superClass2", superClass1 == superClass2 );
+  }
+
+  private void assertClassMatches( final ClassFile expected, final ClassFile actual )
+  {
+    assertEquals( "getClassName", expected.getClassName(), actual.getClassName() );
+    assertEquals( "getSuperClassName", expected.getSuperClassName(), actual.getSuperClassName() );
+    assertTrue( "getInterfaces", Arrays.equals( expected.getInterfaces(), actual.getInterfaces() ) );
+    assertTrue( "getFieldOffsets", Arrays.equals( expected.getFieldOffsets(), actual.getFieldOffsets() ) );
+    assertTrue( "getMethodOffsets", Arrays.equals( expected.getMethodOffsets(), actual.getMethodOffsets() ) );
+    assertEquals( "getAttributeOffset", expected.getAttributeOffset(), actual.getAttributeOffset() );
+    assertEquals( "getConstantCount",
+                  expected.getConstantPool().getConstantCount(),
+                  actual.getConstantPool().getConstantCount() );
+    for( int i = 0; i < expected.getMethodOffsets().length; i++ )
+    {
+      assertEquals( "getMethodName", expected.getMethodName( i ), actual.getMethodName( i ) );
+      assertEquals( "getMethodDescriptor", expected.getMethodDescriptor( i ), actual.getMethodDescriptor( i ) );
+    }
+    for( int i = 0; i < expected.getFieldOffsets().length; i++ )
+    {
+      assertEquals( "getFieldName", expected.getFieldName( i ), actual.getFieldName( i ) );
+    }
+  }
+
+  private byte[] loadTestData( final String resource )
+    throws IOException
+  {
+    final InputStream input = TestClassFileReader.class.getResourceAsStream( resource );
+    assertNotNull( "Seemingly missing test data: " + resource, input );
+    final int size = input.available();
+    final byte[] bytes = new byte[size];
+    final int count = input.read( bytes );
+    assertEquals( "Unable to fully read testdata for: " + resource, count, size );
+    return bytes;
+  }
+}
@@ -0,0 +1,223 @@
+package org.realityforge.fade;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import junit.framework.TestCase;
+
+public class TestClassFileStreamReader
+  extends TestCase
+{
+  private static final String[] RESOURCES =
+    new String[]{"NonEmptyClass.class.dat", "EmptyClass.class.dat", "MyInterface.class.dat"};
+
+  public void test_read_matches_array_parse()
+    throws Exception
+  {
+    final ClassFileStreamReader reader = new ClassFileStreamReader();
+    for( final String resource : RESOURCES )
+    {
+      final byte[] bytes = loadTestData( resource );
+      final String expected = record( bytes, new RecordingParser( null ), true, true, true );
+
+      final RecordingParser streamed = new RecordingParser( null );
+      assertEquals( "bytes", bytes.length, reader.read( new ByteArrayInputStream( bytes ), streamed, true, true, true ) );
+      assertEquals( resource, expected, streamed.toString() );
+
+      final RecordingParser channeled = new RecordingParser( null );
+      final long length =
+        reader.read( Channels.newChannel( new ByteArrayInputStream( bytes ) ), channeled, true, true, true );
+      assertEquals( "bytes", bytes.length, length );
+      assertEquals( resource, expected, channeled.toString() );
+    }
+  }
+
+  public void test_read_with_modern_entries()
+    throws Exception
+  {
+    final byte[] bytes = TestConstantPool.buildModernClass();
+    final String expected = record( bytes, new RecordingParser( null ), true, true, true );
+    final RecordingParser streamed = new RecordingParser( null );
+    new ClassFileStreamReader().read( new ByteArrayInputStream( bytes ), streamed, true, true, true );
+    assertEquals( "events", expected, streamed.toString() );
+  }
+
+  public void test_read_counts_entries()
+    throws Exception
+  {
+    final int[] classCount = new int[1];
+    final ClassFileParser parser = new ClassFileParser()
+    {
+      protected void startClass( final ClassFile classFile )
+      {
+        TestConstantPool.assertEntryCountsMatch( classFile.getConstantPool() );
+        classCount[0]++;
+      }
+    };
+    final ClassFileStreamReader reader = new ClassFileStreamReader();
+    reader.read( new ByteArrayInputStream( TestConstantPool.buildModernClass() ), parser, false, false, false );
+    reader.read( new ByteArrayInputStream( loadTestData( "EmptyClass.class.dat" ) ), parser, false, false, false );
+    assertEquals( "classCount", 2, classCount[0] );
+  }
+
+  public void test_read_with_filtered_attributes_and_sections()
+    throws Exception
+  {
+    final ClassFileStreamReader reader = new ClassFileStreamReader();
+    final byte[] bytes = loadTestData( "NonEmptyClass.class.dat" );
+    final String[] attributeNames = new String[]{"ConstantValue", "SourceFile"};
+    final String expected = record( bytes, new RecordingParser( attributeNames ), false, true, true );
+    final RecordingParser streamed = new RecordingParser( attributeNames );
+    reader.read( new ByteArrayInputStream( bytes ), streamed, false, true, true );
+    assertEquals( "events", expected, streamed.toString() );
+    assertTrue( "SourceFile recorded", expected.contains( "SourceFile" ) );
+    assertFalse( "Code skipped", expected.contains( "Code" ) );
+  }
+
+  public void test_read_sequence_of_classes_from_one_stream()
+    throws Exception
+  {
+    final ByteArrayOutputStream output = new ByteArrayOutputStream();
+    for( final String resource : RESOURCES )
+    {
+      output.write( loadTestData( resource ) );
+    }
+    final InputStream input = new ByteArrayInputStream( output.toByteArray() );
+    final ClassFileStreamReader reader = new ClassFileStreamReader();
+    for( final String resource : RESOURCES )
+    {
+      final byte[] bytes = loadTestData( resource );
+      final RecordingParser parser = new RecordingParser( null );
+      reader.read( input, parser, true, true, true );
+      assertEquals( resource, record( bytes, new RecordingParser( null ), true, true, true ), parser.toString() );
+    }
+    assertEquals( "available", 0, input.available() );
+  }
+
+  public void test_read_truncated_class()
+    throws Exception
+  {
+    final byte[] bytes = loadTestData( "NonEmptyClass.class.dat" );
+    final byte[] truncated = new byte[bytes.length - 3];
+    System.arraycopy( bytes, 0, truncated, 0, truncated.length );
+    try
+    {
+      new ClassFileStreamReader().read( new ByteArrayInputStream( truncated ), new RecordingParser( null ), true, true, true );
+      fail( "Expected an exception" );
+    }
+    catch( final EOFException eofe )
+    {
+      assertEquals( "getMessage()", "Class file truncated at position " + truncated.length, eofe.getMessage() );
+    }
+  }
+
+  public void test_read_bad_magic()
+    throws Exception
+  {
+    try
+    {
+      new ClassFileStreamReader().read( new ByteArrayInputStream( new byte[10] ), new RecordingParser( null ), true, true, true );
+      fail( "Expected an exception" );
+    }
+    catch( final ClassFormatError cfe )
+    {
+      assertEquals( "getMessage()", "Bad magic number 0", cfe.getMessage() );
+    }
+  }
+
+  private static String record( final byte[] bytes,
+                                final RecordingParser parser,
+                                final boolean parseFields,
+                                final boolean parseMethods,
+                                final boolean parseClassSection )
+  {
+    ClassFile.parseClassFile( bytes ).processClass( parser, parseFields, parseMethods, parseClassSection );
+    return parser.toString();
+  }
+
+  /** Parser that records the events it receives and the contents of attributes. */
+  static final class RecordingParser
+    extends ClassFileParser
+  {
+    private final StringBuilder events = new StringBuilder();
+
+    RecordingParser( final String[] attributeNames )
+    {
+      super( attributeNames );
+    }
+
+    protected void startClass( final ClassFile classFile )
+    {
+      events.append( "class " ).append( classFile.getClassName() ).append( ' ' );
+      events.append( classFile.getSuperClassName() ).append( '\n' );
+    }
+
+    protected void endClass()
+    {
+      events.append( "end\n" );
+    }
+
+    protected void handleField( final String name, final String descriptor, final int accessFlags )
+    {
+      events.append( "field " ).append( name ).append( descriptor ).append( ' ' ).append( accessFlags ).append( '\n' );
+    }
+
+    protected void handleMethod( final String name, final String descriptor, final int accessFlags )
+    {
+      events.append( "method " ).append( name ).append( descriptor ).append( ' ' ).append( accessFlags ).append( '\n' );
+    }
+
+    protected void handleFieldAttribute( final String name,
+                                         final byte[] data,
+                                         final int offset,
+                                         final long length,
+                                         final ConstantPool constantPool )
+    {
+      recordAttribute( name, data, offset, length );
+    }
+
+    protected void handleMethodAttribute( final String name,
+                                          final byte[] data,
+                                          final int offset,
+                                          final long length,
+                                          final ConstantPool constantPool )
+    {
+      recordAttribute( name, data, offset, length );
+    }
+
+    protected void handleClassAttribute( final String name,
+                                         final byte[] data,
+                                         final int offset,
+                                         final long length,
+                                         final ConstantPool constantPool )
+    {
+      recordAttribute( name, data, offset, length );
+    }
+
+    private void recordAttribute( final String name, final byte[] data, final int offset, final long length )
+    {
+      events.append( "attribute " ).append( name ).append( ' ' ).append( length ).append( ' ' );
+      events.append( IOUtil.hash64( data, offset, (int)length ) ).append( '\n' );
+    }
+
+    public String toString()
+    {
+      return events.toString();
+    }
+  }
+
+  private byte[] loadTestData( final String resource )
+    throws IOException
+  {
+    final InputStream input = TestClassFileStreamReader.class.getResourceAsStream( resource );
+    assertNotNull( "Seemingly missing test data: " + resource, input );
+    final int size = input.available();
+    final byte[] bytes = new byte[size];
+    final int count = input.read( bytes );
+    assertEquals( "Unable to fully read testdata for: " + resource, count, size );
+    return bytes;
+  }
+}
@@ -0,0 +1,185 @@
+package org.realityforge.fade;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.Arrays;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import junit.framework.TestCase;
+
+public class TestClassHierarchy
+  extends TestCase
+{
+  private static final String OBJECT = "java/lang/Object";
+
+  public void test_build()
+  {
+    final ClassHierarchy hierarchy = buildHierarchy();
+
+    assertEquals( "getDeclaredClassCount()", 7, hierarchy.getDeclaredClassCount() );
+    assertEquals( "getClassCount()", 8, hierarchy.getClassCount() );
+    assertEquals( "getId(missing)", -1, hierarchy.getId( "Missing" ) );
+    final int object = hierarchy.getId( OBJECT );
+    assertEquals( "getName()", OBJECT, hierarchy.getName( object ) );
+    assertFalse( "isDeclared(Object)", hierarchy.isDeclared( object ) );
+    assertEquals( "getSuperClass(Object)", -1, hierarchy.getSuperClass( object ) );
+
+    final int c = hierarchy.getId( "C" );
+    assertTrue( "isDeclared(C)", hierarchy.isDeclared( c ) );
+    assertEquals( "getSuperClass(C)", hierarchy.getId( "B" ), hierarchy.getSuperClass( c ) );
+    assertEquals( "getDirectSupertypes(C)", "[B, J]", names( hierarchy, hierarchy.getDirectSupertypes( c ) ) );
+    assertEquals( "getDirectSubtypes(I)",
+                  "[B, J]",
+                  names( hierarchy, hierarchy.getDirectSubtypes( hierarchy.getId( "I" ) ) ) );
+
+    assertTrue( "C -> C", hierarchy.isAssignable( "C", "C" ) );
+    assertTrue( "C -> B", hierarchy.isAssignable( "C", "B" ) );
+    assertTrue( "C -> A", hierarchy.isAssignable( "C", "A" ) );
+    assertTrue( "C -> I", hierarchy.isAssignable( "C", "I" ) );
+    assertTrue( "C -> J", hierarchy.isAssignable( "C", "J" ) );
+    assertTrue( "C -> Object", hierarchy.isAssignable( "C", OBJECT ) );
+    assertTrue( "J -> I", hierarchy.isAssignable( "J", "I" ) );
+    assertTrue( "J -> Object", hierarchy.isAssignable( "J", OBJECT ) );
+    assertTrue( "D -> J", hierarchy.isAssignable( "D", "J" ) );
+    assertFalse( "B -> C", hierarchy.isAssignable( "B", "C" ) );
+    assertFalse( "A -> I", hierarchy.isAssignable( "A", "I" ) );
+    assertFalse( "D -> A", hierarchy.isAssignable( "D", "A" ) );
+    assertFalse( "I -> J", hierarchy.isAssignable( "I", "J" ) );
+    assertFalse( "Object -> A", hierarchy.isAssignable( OBJECT, "A" ) );
+    assertFalse( "C -> Missing", hierarchy.isAssignable( "C", "Missing" ) );
+
+    assertEquals( "allSubtypes(I)", "[B, C, D, J]", sortedNames( hierarchy, "I", true ) );
+    assertEquals( "allSubtypes(A)", "[B, C]", sortedNames( hierarchy, "A", true ) );
+    assertEquals( "allSubtypes(C)", "[]", sortedNames( hierarchy, "C", true ) );
+    assertEquals( "allSubtypes(Object)", "[A, B, C, D, E, I, J]", sortedNames( hierarchy, OBJECT, true ) );
+    assertEquals( "allSupertypes(C)", "[A, B, I, J, java/lang/Object]", sortedNames( hierarchy, "C", false ) );
+    assertEquals( "allSupertypes(Object)", "[]", sortedNames( hierarchy, OBJECT, false ) );
+  }
+
+  public void test_isAssignable_matches_allSupertypes()
+  {
+    final ClassHierarchy hierarchy = buildHierarchy();
+    for( int i = 0; i < hierarchy.getClassCount(); i++ )
+    {
+      final int[] supertypes = hierarchy.allSupertypes( i );
+      for( int j = 0; j < hierarchy.getClassCount(); j++ )
+      {
+        final boolean expected = i == j || contains( supertypes, j );
+        assertEquals( hierarchy.getName( i ) + " -> " + hierarchy.getName( j ),
+                      expected,
+                      hierarchy.isAssignable( i, j ) );
+        assertEquals( hierarchy.getName( j ) + " subtypes contains " + hierarchy.getName( i ),
+                      expected && i != j,
+                      contains( hierarchy.allSubtypes( j ), i ) );
+      }
+    }
+  }
+
+  public void test_cyclic_hierarchy()
+  {
+    final ClassHierarchyBuilder builder = new ClassHierarchyBuilder();
+    builder.add( "X", "Y", null );
+    builder.add( "Y", "X", null );
+    builder.add( "Z", "X", null );
+    final ClassHierarchy hierarchy = builder.build();
+    assertEquals( "getClassCount()", 3, hierarchy.getClassCount() );
+    assertTrue( "Z -> X", hierarchy.isAssignable( "Z", "X" ) );
+    assertEquals( "allSupertypes(Z)", "[X, Y]", sortedNames( hierarchy, "Z", false ) );
+  }
+
+  public void test_duplicate_and_bad_classes()
+  {
+    final ClassHierarchyBuilder builder = new ClassHierarchyBuilder();
+    builder.add( "A", OBJECT, null );
+    builder.add( "A", "B", null );
+    final ClassHierarchy hierarchy = builder.build();
+    assertEquals( "getClassCount()", 2, hierarchy.getClassCount() );
+    try
+    {
+      builder.add( null, OBJECT, null );
+      fail( "Expected an exception" );
+    }
+    catch( final IllegalArgumentException iae )
+    {
+      assertEquals( "getMessage()", "Null class name", iae.getMessage() );
+    }
+  }
+
+  public void test_scan_jar()
+    throws Exception
+  {
+    final File jar = File.createTempFile( "fade", ".jar" );
+    try
+    {
+      final JarOutputStream output = new JarOutputStream( new FileOutputStream( jar ) );
+      output.putNextEntry( new JarEntry( "com/example/Service.class" ) );
+      output.write( new ClassFileBuilder( "com/example/Service", OBJECT, "java/lang/Runnable" ).build() );
+      output.putNextEntry( new JarEntry( "com/example/Impl.class" ) );
+      output.write( new ClassFileBuilder( "com/example/Impl", "com/example/Service" ).build() );
+      output.close();
+
+      final ClassHierarchyBuilder builder = new ClassHierarchyBuilder();
+      builder.scan( jar, 2 );
+      final ClassHierarchy hierarchy = builder.build();
+      assertEquals( "getDeclaredClassCount()", 2, hierarchy.getDeclaredClassCount() );
+      assertEquals( "getClassCount()", 4, hierarchy.getClassCount() );
+      assertTrue( "Impl -> Runnable", hierarchy.isAssignable( "com/example/Impl", "java/lang/Runnable" ) );
+    }
+    finally
+    {
+      jar.delete();
+    }
+  }
+
+  /**
+   * Build the hierarchy A, B extends A implements I, C extends B implements J,
+   * D implements J, E, and interfaces I and J extends I.
+   */
+  private static ClassHierarchy buildHierarchy()
+  {
+    final ClassHierarchyBuilder builder = new ClassHierarchyBuilder();
+    builder.add( "C", "B", new String[]{"J"} );
+    builder.add( "J", OBJECT, new String[]{"I"} );
+    builder.add( "A", OBJECT, null );
+    builder.add( "B", "A", new String[]{"I"} );
+    builder.add( "D", OBJECT, new String[]{"J"} );
+    builder.add( "I", OBJECT, null );
+    builder.add( "E", OBJECT, new String[0] );
+    return builder.build();
+  }
+
+  private static String sortedNames( final ClassHierarchy hierarchy, final String name, final boolean subtypes )
+  {
+    final int id = hierarchy.getId( name );
+    final int[] ids = subtypes ? hierarchy.allSubtypes( id ) : hierarchy.allSupertypes( id );
+    final String[] names = new String[ids.length];
+    for( int i = 0; i < ids.length; i++ )
+    {
+      names[i] = hierarchy.getName( ids[i] );
+    }
+    Arrays.sort( names );
+    return Arrays.asList( names ).toString();
+  }
+
+  private static String names( final ClassHierarchy hierarchy, final int[] ids )
+  {
+    final String[] names = new String[ids.length];
+    for( int i = 0; i < ids.length; i++ )
+    {
+      names[i] = hierarchy.getName( ids[i] );
+    }
+    return Arrays.asList( names ).toString();
+  }
+
+  private static boolean contains( final int[] values, final int value )
+  {
+    for( final int element : values )
+    {
+      if( element == value )
+      {
+        return true;
+      }
+    }
+    return false;
+  }
+}
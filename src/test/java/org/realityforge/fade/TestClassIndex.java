@@ -0,0 +1,190 @@
+package org.realityforge.fade;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import junit.framework.TestCase;
+
+public class TestClassIndex
+  extends TestCase
+{
+  private static final String COMPONENT = "Lcom/example/Component;";
+  private static final String INJECT = "Lcom/example/Inject;";
+
+  public void test_write_and_map()
+    throws Exception
+  {
+    final ClassIndexBuilder builder = new ClassIndexBuilder();
+    process( builder, loadTestData( "NonEmptyClass.class.dat" ) );
+    process( builder, loadTestData( "MyInterface.class.dat" ) );
+    process( builder, buildAnnotated( "com/example/Service" ) );
+    process( builder, buildAnnotated( "com/example/Alpha" ) );
+    //Duplicates are ignored
+    process( builder, buildAnnotated( "com/example/Alpha" ) );
+
+    final File file = File.createTempFile( "fade", ".idx" );
+    try
+    {
+      builder.write( file );
+      final ClassIndex index = ClassIndex.map( file );
+
+      assertEquals( "getClassCount()", 4, index.getClassCount() );
+      assertEquals( "findClass(missing)", -1, index.findClass( "com/example/Missing" ) );
+      assertEquals( "findClass(unknown string)", -1, index.findClass( "Lcom/example/Component;" ) );
+      for( int i = 1; i < index.getClassCount(); i++ )
+      {
+        assertTrue( "sorted", index.getClassName( i - 1 ).compareTo( index.getClassName( i ) ) < 0 );
+      }
+
+      final int nonEmpty = index.findClass( "org/realityforge/fade/data/NonEmptyClass" );
+      assertEquals( "getClassName()", "org/realityforge/fade/data/NonEmptyClass", index.getClassName( nonEmpty ) );
+      assertEquals( "getSuperClassName()", "java/lang/Object", index.getSuperClassName( nonEmpty ) );
+      assertEquals( "getAccessFlags()",
+                    ClassFileFormat.ACC_PUBLIC | ClassFileFormat.ACC_ABSTRACT | ClassFileFormat.ACC_SUPER,
+                    index.getAccessFlags( nonEmpty ) );
+      assertEquals( "getInterfaceCount()", 1, index.getInterfaceCount( nonEmpty ) );
+      assertEquals( "getInterface()", "org/realityforge/fade/data/MyInterface", index.getInterface( nonEmpty, 0 ) );
+      final ClassFile classFile = ClassFile.parseClassFile( loadTestData( "NonEmptyClass.class.dat" ) );
+      assertEquals( "getMemberCount()",
+                    classFile.getFieldOffsets().length + classFile.getMethodOffsets().length,
+                    index.getMemberCount( nonEmpty ) );
+      assertEquals( "getMemberKind(0)", ClassIndex.FIELD, index.getMemberKind( nonEmpty, 0 ) );
+      assertEquals( "getMemberName(0)", classFile.getFieldName( 0 ), index.getMemberName( nonEmpty, 0 ) );
+      assertEquals( "getMemberDescriptor(0)",
+                    classFile.getFieldDescriptor( 0 ),
+                    index.getMemberDescriptor( nonEmpty, 0 ) );
+      final int firstMethod = classFile.getFieldOffsets().length;
+      assertEquals( "getMemberKind(method)", ClassIndex.METHOD, index.getMemberKind( nonEmpty, firstMethod ) );
+      assertEquals( "getMemberName(method)",
+                    classFile.getMethodName( 0 ),
+                    index.getMemberName( nonEmpty, firstMethod ) );
+      assertEquals( "getMemberAccessFlags(method)",
+                    classFile.getMethodAccessFlags( 0 ),
+                    index.getMemberAccessFlags( nonEmpty, firstMethod ) );
+      assertEquals( "getClassAnnotationCount()", 0, index.getClassAnnotationCount( nonEmpty ) );
+
+      final int myInterface = index.findClass( "org/realityforge/fade/data/MyInterface" );
+      assertEquals( "getInterfaceCount(MyInterface)", 0, index.getInterfaceCount( myInterface ) );
+
+      final int service = index.findClass( "com/example/Service" );
+      assertEquals( "getClassAnnotationCount()", 1, index.getClassAnnotationCount( service ) );
+      assertEquals( "getClassAnnotation()", COMPONENT, index.getClassAnnotation( service, 0 ) );
+      assertEquals( "getMemberName(0)", "name", index.getMemberName( service, 0 ) );
+      assertEquals( "getMemberAnnotationCount(0)", 1, index.getMemberAnnotationCount( service, 0 ) );
+      assertEquals( "getMemberAnnotation(0)", INJECT, index.getMemberAnnotation( service, 0, 0 ) );
+      assertEquals( "getMemberAnnotationCount(1)", 0, index.getMemberAnnotationCount( service, 1 ) );
+
+      final int alpha = index.findClass( "com/example/Alpha" );
+      final int[] annotated = index.getAnnotatedClasses( COMPONENT );
+      assertEquals( "annotated.length", 2, annotated.length );
+      assertEquals( "annotated[0]", alpha, annotated[0] );
+      assertEquals( "annotated[1]", service, annotated[1] );
+      assertEquals( "getAnnotatedClasses(INJECT).length", 0, index.getAnnotatedClasses( INJECT ).length );
+      assertEquals( "getAnnotatedClasses(missing).length", 0, index.getAnnotatedClasses( "LMissing;" ).length );
+
+      try
+      {
+        index.getInterface( nonEmpty, 1 );
+        fail( "Expected an exception" );
+      }
+      catch( final IndexOutOfBoundsException ioobe )
+      {
+        assertEquals( "getMessage()", "Index 1 is not in range [0,1)", ioobe.getMessage() );
+      }
+    }
+    finally
+    {
+      file.delete();
+    }
+  }
+
+  public void test_empty_index()
+    throws Exception
+  {
+    final ByteArrayOutputStream output = new ByteArrayOutputStream();
+    new ClassIndexBuilder().write( output );
+    final ClassIndex index = new ClassIndex( ByteBuffer.wrap( output.toByteArray() ) );
+    assertEquals( "getClassCount()", 0, index.getClassCount() );
+    assertEquals( "findClass()", -1, index.findClass( "java/lang/Object" ) );
+  }
+
+  public void test_bad_magic()
+  {
+    final ByteBuffer buffer = ByteBuffer.allocate( ClassIndex.HEADER_SIZE * 4 );
+    buffer.putInt( 0, 0xCAFEBABE );
+    try
+    {
+      new ClassIndex( buffer );
+      fail( "Expected an exception" );
+    }
+    catch( final IOException ioe )
+    {
+      assertEquals( "getMessage()", "Bad class index magic number cafebabe", ioe.getMessage() );
+    }
+  }
+
+  public void test_truncated()
+    throws Exception
+  {
+    final ClassIndexBuilder builder = new ClassIndexBuilder();
+    process( builder, loadTestData( "NonEmptyClass.class.dat" ) );
+    final ByteArrayOutputStream output = new ByteArrayOutputStream();
+    builder.write( output );
+    final ByteBuffer buffer = ByteBuffer.wrap( output.toByteArray(), 0, ClassIndex.HEADER_SIZE * 4 + 8 ).slice();
+    try
+    {
+      new ClassIndex( buffer );
+      fail( "Expected an exception" );
+    }
+    catch( final IOException ioe )
+    {
+      assertEquals( "getMessage()", "Class index is truncated", ioe.getMessage() );
+    }
+  }
+
+  private static void process( final ClassIndexBuilder builder, final byte[] data )
+  {
+    ClassFile.parseClassFile( data ).processClass( builder.newParser(), true, true, true );
+  }
+
+  private static byte[] buildAnnotated( final String className )
+    throws IOException
+  {
+    final ClassFileBuilder builder = new ClassFileBuilder( className, "java/lang/Object" );
+    final String name = ClassFileFormat.ATTR_RuntimeVisibleAnnotations;
+    builder.field( 0, "name", "Ljava/lang/String;", builder.attribute( name, annotations( builder, INJECT ) ) );
+    builder.method( ClassFileFormat.ACC_PUBLIC, "run", "()V" );
+    builder.classAttribute( builder.attribute( name, annotations( builder, COMPONENT ) ) );
+    return builder.build();
+  }
+
+  /** Return the body of an annotations attribute with an annotation with an int value. */
+  private static byte[] annotations( final ClassFileBuilder builder, final String type )
+    throws IOException
+  {
+    final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    final DataOutputStream out = new DataOutputStream( bytes );
+    out.writeShort( 1 );
+    out.writeShort( builder.utf( type ) );
+    out.writeShort( 1 );
+    out.writeShort( builder.utf( "value" ) );
+    out.writeByte( 'I' );
+    out.writeShort( builder.integer( 42 ) );
+    return bytes.toByteArray();
+  }
+
+  private byte[] loadTestData( final String resource )
+    throws IOException
+  {
+    final InputStream input = TestClassIndex.class.getResourceAsStream( resource );
+    assertNotNull( "Seemingly missing test data: " + resource, input );
+    final int size = input.available();
+    final byte[] bytes = new byte[size];
+    final int count = input.read( bytes );
+    assertEquals( "Unable to fully read testdata for: " + resource, count, size );
+    return bytes;
+  }
+}
@@ -0,0 +1,291 @@
+package org.realityforge.fade;
+
+import java.io.IOException;
+import java.io.InputStream;
+import junit.framework.TestCase;
+
+public class TestCodeCursor
+  extends TestCase
+{
+  public void test_fixed_length_instructions()
+  {
+    final byte[] code = new byte[]{
+      0, //nop
+      16, -5, //bipush -5
+      17, (byte)0xFF, (byte)0x9C, //sipush -100
+      18, (byte)200, //ldc 200
+      19, 1, 2, //ldc_w 258
+      21, 7, //iload 7
+      (byte)132, 3, -1, //iinc 3 -1
+      (byte)153, (byte)0xFF, (byte)0xF1, //ifeq -15
+      (byte)185, 0, 9, 2, 0, //invokeinterface 9 2
+      (byte)188, 10, //newarray int
+      (byte)197, 0, 4, 3, //multianewarray 4 3
+      (byte)200, 0, 0, 0, 2, //goto_w +2
+      (byte)186, 0, 12, 0, 0, //invokedynamic 12
+      (byte)177 //return
+    };
+    final CodeCursor cursor = new CodeCursor();
+    final byte[] data = new byte[code.length + 3];
+    System.arraycopy( code, 0, data, 3, code.length );
+    cursor.reset( data, 3, code.length );
+
+    assertNext( cursor, Instruction.NOP.code, 0, 1 );
+    assertNext( cursor, Instruction.BIPUSH.code, 1, 2 );
+    assertEquals( "getImmediate", -5, cursor.getImmediate() );
+    assertNext( cursor, Instruction.SIPUSH.code, 3, 3 );
+    assertEquals( "getImmediate", -100, cursor.getImmediate() );
+    assertNext( cursor, Instruction.LDC.code, 6, 2 );
+    assertEquals( "getConstantIndex", 200, cursor.getConstantIndex() );
+    assertNext( cursor, Instruction.LDC_W.code, 8, 3 );
+    assertEquals( "getConstantIndex", 258, cursor.getConstantIndex() );
+    assertNext( cursor, Instruction.ILOAD.code, 11, 2 );
+    assertEquals( "getLocalIndex", 7, cursor.getLocalIndex() );
+    assertFalse( "isWide", cursor.isWide() );
+    assertNext( cursor, Instruction.IINC.code, 13, 3 );
+    assertEquals( "getLocalIndex", 3, cursor.getLocalIndex() );
+    assertEquals( "getIncrement", -1, cursor.getIncrement() );
+    assertNext( cursor, Instruction.IFEQ.code, 16, 3 );
+    assertEquals( "getBranchTarget", 1, cursor.getBranchTarget() );
+    assertNext( cursor, Instruction.INVOKEINTERFACE.code, 19, 5 );
+    assertEquals( "getConstantIndex", 9, cursor.getConstantIndex() );
+    assertNext( cursor, Instruction.NEWARRAY.code, 24, 2 );
+    assertEquals( "getImmediate", 10, cursor.getImmediate() );
+    assertNext( cursor, Instruction.MULTIANEWARRAY.code, 26, 4 );
+    assertEquals( "getConstantIndex", 4, cursor.getConstantIndex() );
+    assertEquals( "getImmediate", 3, cursor.getImmediate() );
+    assertNext( cursor, Instruction.GOTO_W.code, 30, 5 );
+    assertEquals( "getBranchTarget", 32, cursor.getBranchTarget() );
+    assertNext( cursor, 186, 35, 5 );
+    assertEquals( "getConstantIndex", 12, cursor.getConstantIndex() );
+    assertNext( cursor, Instruction.RETURN.code, 40, 1 );
+    assertFalse( "next()", cursor.next() );
+    assertFalse( "next() again", cursor.next() );
+  }
+
+  public void test_wide_instructions()
+  {
+    final byte[] code = new byte[]{
+      (byte)196, 25, 1, 44, //wide aload 300
+      (byte)196, (byte)132, 0, 5, (byte)0xFF, 0, //wide iinc 5 -256
+      (byte)196, (byte)169, 0, 1 //wide ret 1
+    };
+    final CodeCursor cursor = new CodeCursor();
+    cursor.reset( code, 0, code.length );
+    assertNext( cursor, Instruction.ALOAD.code, 0, 4 );
+    assertTrue( "isWide", cursor.isWide() );
+    assertEquals( "getLocalIndex", 300, cursor.getLocalIndex() );
+    assertNext( cursor, Instruction.IINC.code, 4, 6 );
+    assertTrue( "isWide", cursor.isWide() );
+    assertEquals( "getLocalIndex", 5, cursor.getLocalIndex() );
+    assertEquals( "getIncrement", -256, cursor.getIncrement() );
+    assertNext( cursor, Instruction.RET.code, 10, 4 );
+    assertEquals( "getLocalIndex", 1, cursor.getLocalIndex() );
+    assertFalse( "next()", cursor.next() );
+  }
+
+  public void test_tableswitch_with_padding()
+  {
+    final byte[] code = new byte[]{
+      0, //nop
+      (byte)170, 0, 0, //tableswitch + 2 bytes padding
+      0, 0, 0, 20, //default
+      0, 0, 0, 5, //low
+      0, 0, 0, 7, //high
+      0, 0, 0, 30,
+      0, 0, 0, 31,
+      (byte)0xFF, (byte)0xFF, (byte)0xFF, (byte)0xFF,
+      (byte)177 //return
+    };
+    final CodeCursor cursor = new CodeCursor();
+    cursor.reset( code, 0, code.length );
+    assertNext( cursor, Instruction.NOP.code, 0, 1 );
+    assertNext( cursor, Instruction.TABLESWITCH.code, 1, 27 );
+    assertEquals( "getDefaultTarget", 21, cursor.getDefaultTarget() );
+    assertEquals( "getSwitchCaseCount", 3, cursor.getSwitchCaseCount() );
+    assertEquals( "getSwitchKey( 0 )", 5, cursor.getSwitchKey( 0 ) );
+    assertEquals( "getSwitchKey( 2 )", 7, cursor.getSwitchKey( 2 ) );
+    assertEquals( "getSwitchTarget( 0 )", 31, cursor.getSwitchTarget( 0 ) );
+    assertEquals( "getSwitchTarget( 1 )", 32, cursor.getSwitchTarget( 1 ) );
+    assertEquals( "getSwitchTarget( 2 )", 0, cursor.getSwitchTarget( 2 ) );
+    assertNext( cursor, Instruction.RETURN.code, 28, 1 );
+    assertFalse( "next()", cursor.next() );
+  }
+
+  public void test_lookupswitch_padding_is_relative_to_code_start()
+  {
+    final byte[] code = new byte[]{
+      (byte)171, 0, 0, 0, //lookupswitch + 3 bytes padding
+      0, 0, 0, 9, //default
+      0, 0, 0, 2, //npairs
+      (byte)0xFF, (byte)0xFF, (byte)0xFF, (byte)0xF6, 0, 0, 0, 4, //-10 -> 4
+      0, 0, 0, 100, 0, 0, 0, 8, //100 -> 8
+      (byte)177 //return
+    };
+    //Place the code at an unaligned position within the data
+    final byte[] data = new byte[code.length + 1];
+    System.arraycopy( code, 0, data, 1, code.length );
+    final CodeCursor cursor = new CodeCursor();
+    cursor.reset( data, 1, code.length );
+    assertNext( cursor, Instruction.LOOKUPSWITCH.code, 0, 28 );
+    assertEquals( "getDefaultTarget", 9, cursor.getDefaultTarget() );
+    assertEquals( "getSwitchCaseCount", 2, cursor.getSwitchCaseCount() );
+    assertEquals( "getSwitchKey( 0 )", -10, cursor.getSwitchKey( 0 ) );
+    assertEquals( "getSwitchTarget( 0 )", 4, cursor.getSwitchTarget( 0 ) );
+    assertEquals( "getSwitchKey( 1 )", 100, cursor.getSwitchKey( 1 ) );
+    assertEquals( "getSwitchTarget( 1 )", 8, cursor.getSwitchTarget( 1 ) );
+    assertNext( cursor, Instruction.RETURN.code, 28, 1 );
+    assertFalse( "next()", cursor.next() );
+  }
+
+  public void test_truncated_instruction()
+  {
+    assertBadCode( new byte[]{0, 17, 1}, "Instruction at pc 1 extends beyond end of code" );
+  }
+
+  public void test_truncated_switch()
+  {
+    assertBadCode( new byte[]{(byte)170, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 1},
+                   "Instruction at pc 0 extends beyond end of code" );
+  }
+
+  public void test_tableswitch_with_table_length_overflow()
+  {
+    //4 * ( high - low + 1 ) wraps to 0 when computed as an int
+    assertBadCode( new byte[]{(byte)170, 0, 0, 0, 0, 0, 0, 0, (byte)0xC0, 0, 0, 0, 0x3F, (byte)0xFF, (byte)0xFF, (byte)0xFF},
+                   "Instruction at pc 0 extends beyond end of code" );
+  }
+
+  public void test_lookupswitch_with_table_length_overflow()
+  {
+    //8 * count wraps to 0 when computed as an int
+    assertBadCode( new byte[]{(byte)171, 0, 0, 0, 0, 0, 0, 0, 0x20, 0, 0, 0},
+                   "Instruction at pc 0 extends beyond end of code" );
+  }
+
+  public void test_bad_tableswitch_range()
+  {
+    assertBadCode( new byte[]{(byte)170, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 2, 0, 0, 0, 1},
+                   "Invalid tableswitch range 2-1 at pc 0" );
+  }
+
+  public void test_bad_opcode()
+  {
+    assertBadCode( new byte[]{0, (byte)0xFE}, "Invalid opcode 254 at pc 1" );
+  }
+
+  public void test_bad_wide_opcode()
+  {
+    assertBadCode( new byte[]{(byte)196, 0, 0, 0}, "Invalid wide opcode 0 at pc 0" );
+  }
+
+  public void test_reset_with_code_beyond_data()
+  {
+    try
+    {
+      new CodeCursor().reset( new byte[4], 2, 3 );
+      fail( "Expected an exception" );
+    }
+    catch( final ClassFormatError cfe )
+    {
+      //expected
+    }
+  }
+
+  public void test_walk_methods_of_NonEmptyClass()
+    throws Exception
+  {
+    final CodeCursor cursor = new CodeCursor();
+    final int[] counts = new int[2];
+    final TestClassFile.NoopClassFileParser parser = new TestClassFile.NoopClassFileParser()
+    {
+      protected void handleMethodAttribute( final String name,
+                                            final byte[] data,
+                                            final int offset,
+                                            final long length,
+                                            final ConstantPool constantPool )
+      {
+        if( ClassFileFormat.ATTR_Code.equals( name ) )
+        {
+          parseCode( data, offset, constantPool );
+        }
+      }
+
+      protected void startCode( final int maxStack,
+                                final int maxLocals,
+                                final byte[] data,
+                                final int offset,
+                                final long codeLength,
+                                final ConstantPool constantPool )
+      {
+        cursor.reset( data, offset, codeLength );
+        int pc = 0;
+        while( cursor.next() )
+        {
+          assertEquals( "getPC", pc, cursor.getPC() );
+          pc += cursor.getLength();
+          counts[0]++;
+          final int opcode = cursor.getOpcode();
+          if( opcode >= Instruction.GETSTATIC.code && opcode <= Instruction.INVOKEINTERFACE.code )
+          {
+            assertNotNull( "ref name", constantPool.getNameFromRef( cursor.getConstantIndex() ) );
+            counts[1]++;
+          }
+        }
+        assertEquals( "codeLength", codeLength, pc );
+      }
+
+      protected void handleExceptionHandler( final int startPC,
+                                             final int endPC,
+                                             final int handlerPC,
+                                             final String catchType )
+      {
+      }
+
+      protected void endCode()
+      {
+      }
+    };
+    final byte[] bytes = loadTestData( "NonEmptyClass.class.dat" );
+    ClassFile.parseClassFile( bytes ).processClass( parser, false, true, false );
+    assertTrue( "instructions", counts[0] > 0 );
+    assertTrue( "refs", counts[1] > 0 );
+  }
+
+  private void assertNext( final CodeCursor cursor, final int opcode, final int pc, final int length )
+  {
+    assertTrue( "next()", cursor.next() );
+    assertEquals( "getOpcode", opcode, cursor.getOpcode() );
+    assertEquals( "getPC", pc, cursor.getPC() );
+    assertEquals( "getLength", length, cursor.getLength() );
+  }
+
+  private void assertBadCode( final byte[] code, final String message )
+  {
+    final CodeCursor cursor = new CodeCursor();
+    cursor.reset( code, 0, code.length );
+    try
+    {
+      while( cursor.next() )
+      {
+      }
+      fail( "Expected an exception" );
+    }
+    catch( final ClassFormatError cfe )
+    {
+      assertEquals( "getMessage()", message, cfe.getMessage() );
+    }
+  }
+
+  private byte[] loadTestData( final String resource )
+    throws IOException
+  {
+    final InputStream input = TestCodeCursor.class.getResourceAsStream( resource );
+    assertNotNull( "Seemingly missing test data: " + resource, input );
+    final int size = input.available();
+    final byte[] bytes = new byte[size];
+    final int count = input.read( bytes );
+    assertEquals( "Unable to fully read testdata for: " + resource, count, size );
+    return bytes;
+  }
+}
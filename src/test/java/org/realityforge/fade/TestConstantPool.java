@@ -2,6 +2,7 @@ package org.realityforge.fade;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.Arrays;
 import junit.framework.TestCase;
 
 public class TestConstantPool
@@ -313,6 +314,357 @@ public class TestConstantPool
     }
   }
 
+  public void test_isUtfEntryEqual_EmptyClass()
+    throws Exception
+  {
+    final ConstantPool constantPool = getEmptyClassData();
+    assertTrue( "isUtfEntryEqual( 6, \"Code\" )", constantPool.isUtfEntryEqual( 6, "Code" ) );
+    assertFalse( "isUtfEntryEqual( 6, \"Cod\" )", constantPool.isUtfEntryEqual( 6, "Cod" ) );
+    assertFalse( "isUtfEntryEqual( 6, \"Codex\" )", constantPool.isUtfEntryEqual( 6, "Codex" ) );
+    assertFalse( "isUtfEntryEqual( 6, \"Cod\u00e9\" )", constantPool.isUtfEntryEqual( 6, "Cod\u00e9" ) );
+    assertTrue( "isUtfEntryEqual( 6, encoded )",
+                constantPool.isUtfEntryEqual( 6, ConstantPool.encodeUtf( "Code" ) ) );
+    assertFalse( "isUtfEntryEqual( 6, encoded )",
+                 constantPool.isUtfEntryEqual( 6, ConstantPool.encodeUtf( "Codf" ) ) );
+    assertNull( "strings[6]", constantPool.strings[6] );
+  }
+
+  public void test_utfEntryStartsWith_EmptyClass()
+    throws Exception
+  {
+    final ConstantPool constantPool = getEmptyClassData();
+    assertTrue( "utfEntryStartsWith( 4, \"<in\" )", constantPool.utfEntryStartsWith( 4, "<in" ) );
+    assertTrue( "utfEntryStartsWith( 4, \"\" )", constantPool.utfEntryStartsWith( 4, "" ) );
+    assertTrue( "utfEntryStartsWith( 4, \"<init>\" )", constantPool.utfEntryStartsWith( 4, "<init>" ) );
+    assertFalse( "utfEntryStartsWith( 4, \"<init>x\" )", constantPool.utfEntryStartsWith( 4, "<init>x" ) );
+    assertFalse( "utfEntryStartsWith( 4, \"in\" )", constantPool.utfEntryStartsWith( 4, "in" ) );
+    assertTrue( "utfEntryStartsWith( 4, encoded )",
+                constantPool.utfEntryStartsWith( 4, ConstantPool.encodeUtf( "<i" ) ) );
+    assertFalse( "utfEntryStartsWith( 4, encoded )",
+                 constantPool.utfEntryStartsWith( 4, ConstantPool.encodeUtf( "<init>x" ) ) );
+  }
+
+  public void test_getUtfEntryHash_EmptyClass()
+    throws Exception
+  {
+    final ConstantPool constantPool = getEmptyClassData();
+    assertEquals( "getUtfEntryHash( 5 )",
+                  ConstantPool.hashUtf( ConstantPool.encodeUtf( "()V" ) ),
+                  constantPool.getUtfEntryHash( 5 ) );
+    assertEquals( "getUtfEntryHash( 5 )", "()V".hashCode(), constantPool.getUtfEntryHash( 5 ) );
+  }
+
+  public void test_getReferenceHashes()
+  {
+    final ClassFileBuilder builder = new ClassFileBuilder( "p/A", "java/lang/Object" );
+    builder.longConst( 42 );
+    builder.fieldRef( "p/B", "x", "I" );
+    builder.methodRef( "p/B", "run", "()V" );
+    builder.methodRef( "p/B", "run", "(I)V" );
+    builder.interfaceMethodRef( "java/lang/Runnable", "run", "()V" );
+    final ConstantPool constantPool = ConstantPool.parseConstantPool( builder.build() );
+
+    final long[] expected = new long[]{
+      ConstantPool.hashClassReference( "p/A" ),
+      ConstantPool.hashClassReference( "java/lang/Object" ),
+      ConstantPool.hashClassReference( "p/B" ),
+      ConstantPool.hashClassReference( "java/lang/Runnable" ),
+      ConstantPool.hashMemberReference( "p/B", "x" ),
+      ConstantPool.hashMemberReference( "p/B", "run" ),
+      ConstantPool.hashMemberReference( "java/lang/Runnable", "run" )};
+    Arrays.sort( expected );
+    final long[] hashes = new long[constantPool.getConstantCount()];
+    final int count = constantPool.getReferenceHashes( hashes );
+    assertEquals( "count", expected.length, count );
+    for( int i = 0; i < count; i++ )
+    {
+      assertEquals( "hashes[" + i + "]", expected[i], hashes[i] );
+    }
+    for( int i = 0; i < constantPool.strings.length; i++ )
+    {
+      assertNull( "strings[" + i + "]", constantPool.strings[i] );
+    }
+  }
+
+  public void test_modern_entries()
+  {
+    final ConstantPool constantPool = ConstantPool.parseConstantPool( buildModernClass() );
+    final int handle = modernIndexes[0];
+    assertEquals( "getEntryType( handle )", ClassFileFormat.CONSTANT_MethodHandle, constantPool.getEntryType( handle ) );
+    assertEquals( "getMethodHandleKind()", ClassFileFormat.REF_invokeStatic, constantPool.getMethodHandleKind( handle ) );
+    final int reference = constantPool.getMethodHandleReference( handle );
+    assertEquals( "getClassFromRef()", "p/Factory", constantPool.getClassFromRef( reference ) );
+    assertEquals( "getNameFromRef()", "bootstrap", constantPool.getNameFromRef( reference ) );
+
+    final int methodType = modernIndexes[1];
+    assertEquals( "getEntryType( methodType )", ClassFileFormat.CONSTANT_MethodType, constantPool.getEntryType( methodType ) );
+    assertEquals( "getMethodTypeEntry()", "(I)V", constantPool.getMethodTypeEntry( methodType ) );
+
+    final int dynamic = modernIndexes[2];
+    assertEquals( "getEntryType( dynamic )", ClassFileFormat.CONSTANT_Dynamic, constantPool.getEntryType( dynamic ) );
+    assertEquals( "getBootstrapMethodIndex( dynamic )", 0, constantPool.getBootstrapMethodIndex( dynamic ) );
+    assertEquals( "getNameFromDynamic( dynamic )", "answer", constantPool.getNameFromDynamic( dynamic ) );
+    assertEquals( "getTypeFromDynamic( dynamic )", "I", constantPool.getTypeFromDynamic( dynamic ) );
+
+    final int indy = modernIndexes[3];
+    assertEquals( "getEntryType( indy )", ClassFileFormat.CONSTANT_InvokeDynamic, constantPool.getEntryType( indy ) );
+    assertEquals( "getBootstrapMethodIndex( indy )", 1, constantPool.getBootstrapMethodIndex( indy ) );
+    assertEquals( "getNameFromDynamic( indy )", "run", constantPool.getNameFromDynamic( indy ) );
+    assertEquals( "getTypeFromDynamic( indy )", "()Ljava/lang/Runnable;", constantPool.getTypeFromDynamic( indy ) );
+
+    assertEquals( "getModuleEntry()", "java.base", constantPool.getModuleEntry( modernIndexes[4] ) );
+    assertEquals( "getPackageEntry()", "java/lang", constantPool.getPackageEntry( modernIndexes[5] ) );
+    //Entries after the new tags are found at the right offsets
+    assertEquals( "getLongEntry()", 42L, constantPool.getLongEntry( modernIndexes[6] ) );
+    assertEquals( "getIntegerEntry()", 7, constantPool.getIntegerEntry( modernIndexes[7] ) );
+  }
+
+  public void test_getEntryCount()
+  {
+    final ConstantPool constantPool = ConstantPool.parseConstantPool( buildModernClass() );
+    assertEquals( "MethodHandle", 1, constantPool.getEntryCount( ClassFileFormat.CONSTANT_MethodHandle ) );
+    assertEquals( "MethodType", 1, constantPool.getEntryCount( ClassFileFormat.CONSTANT_MethodType ) );
+    assertEquals( "Dynamic", 1, constantPool.getEntryCount( ClassFileFormat.CONSTANT_Dynamic ) );
+    assertEquals( "InvokeDynamic", 1, constantPool.getEntryCount( ClassFileFormat.CONSTANT_InvokeDynamic ) );
+    assertEquals( "Module", 1, constantPool.getEntryCount( ClassFileFormat.CONSTANT_Module ) );
+    assertEquals( "Package", 1, constantPool.getEntryCount( ClassFileFormat.CONSTANT_Package ) );
+    assertEquals( "Long", 1, constantPool.getEntryCount( ClassFileFormat.CONSTANT_Long ) );
+    assertEquals( "Integer", 1, constantPool.getEntryCount( ClassFileFormat.CONSTANT_Integer ) );
+    assertEquals( "Double", 0, constantPool.getEntryCount( ClassFileFormat.CONSTANT_Double ) );
+    assertEquals( "Class", 3, constantPool.getEntryCount( ClassFileFormat.CONSTANT_Class ) );
+    assertEquals( "unused tag", 0, constantPool.getEntryCount( 2 ) );
+    assertEquals( "invalid tag", 0, constantPool.getEntryCount( 42 ) );
+    assertEquals( "negative tag", 0, constantPool.getEntryCount( -1 ) );
+    assertEntryCountsMatch( constantPool );
+  }
+
+  public void test_getEntryCount_EmptyClass()
+    throws Exception
+  {
+    assertEntryCountsMatch( getEmptyClassData() );
+  }
+
+  public void test_getFirstEntryIndex()
+    throws Exception
+  {
+    final byte[] bytes = buildModernClass();
+    final ConstantPool constantPool = ConstantPool.parseConstantPool( bytes, 0, bytes.length, null, true );
+    assertTrue( "hasEntryIndexes()", constantPool.hasEntryIndexes() );
+    assertEquals( "getFirstEntryIndex( MethodHandle )",
+                  modernIndexes[0],
+                  constantPool.getFirstEntryIndex( ClassFileFormat.CONSTANT_MethodHandle ) );
+    assertEquals( "getNextEntryIndex( MethodHandle )", 0, constantPool.getNextEntryIndex( modernIndexes[0] ) );
+    assertEquals( "getFirstEntryIndex( Long )",
+                  modernIndexes[6],
+                  constantPool.getFirstEntryIndex( ClassFileFormat.CONSTANT_Long ) );
+    assertEquals( "getFirstEntryIndex( Double )", 0, constantPool.getFirstEntryIndex( ClassFileFormat.CONSTANT_Double ) );
+    assertEquals( "getFirstEntryIndex( invalid )", 0, constantPool.getFirstEntryIndex( 42 ) );
+    assertEntryIndexesMatch( constantPool );
+
+    final byte[] empty = loadTestData( "EmptyClass.class.dat" );
+    assertEntryIndexesMatch( ConstantPool.parseConstantPool( empty, 0, empty.length, null, true ) );
+    final byte[] nonEmpty = loadTestData( "NonEmptyClass.class.dat" );
+    assertEntryIndexesMatch( ConstantPool.parseConstantPool( nonEmpty, 0, nonEmpty.length, null, true ) );
+  }
+
+  public void test_getFirstEntryIndex_without_entry_indexes()
+    throws Exception
+  {
+    final ConstantPool constantPool = getEmptyClassData();
+    assertFalse( "hasEntryIndexes()", constantPool.hasEntryIndexes() );
+    try
+    {
+      constantPool.getFirstEntryIndex( ClassFileFormat.CONSTANT_Class );
+      fail( "Expected exception" );
+    }
+    catch( final IllegalStateException ise )
+    {
+      assertEquals( "getMessage()", "Constant pool was not parsed with entry indexes", ise.getMessage() );
+    }
+  }
+
+  public void test_getNextEntryIndex_tooHigh()
+  {
+    final byte[] bytes = buildModernClass();
+    final ConstantPool constantPool = ConstantPool.parseConstantPool( bytes, 0, bytes.length, null, true );
+    final int size = constantPool.getConstantCount() + 1;
+    try
+    {
+      constantPool.getNextEntryIndex( size );
+      fail( "Expected exception" );
+    }
+    catch( final ClassFormatError cfe )
+    {
+      final String message =
+        "Can not access constant pool element " + size + " as it is not in the range [1-" + size + ")";
+      assertEquals( "getMessage()", message, cfe.getMessage() );
+    }
+  }
+
+  /**
+   * Assert the entries enumerated for each tag of an indexed pool are the entries with the tag.
+   *
+   * @param constantPool the pool.
+   */
+  private static void assertEntryIndexesMatch( final ConstantPool constantPool )
+  {
+    for( int tag = 1; tag <= ClassFileFormat.CONSTANT_Package; tag++ )
+    {
+      int expected = 0;
+      int actual = constantPool.getFirstEntryIndex( tag );
+      for( int i = 1; i <= constantPool.getConstantCount(); i++ )
+      {
+        final byte type = constantPool.getEntryType( i );
+        if( tag == type )
+        {
+          assertEquals( "entry " + expected + " with tag " + tag, i, actual );
+          actual = constantPool.getNextEntryIndex( actual );
+          expected++;
+        }
+        if( ClassFileFormat.CONSTANT_Long == type || ClassFileFormat.CONSTANT_Double == type )
+        {
+          i++;
+        }
+      }
+      assertEquals( "end of entries with tag " + tag, 0, actual );
+      assertEquals( "getEntryCount( " + tag + " )", expected, constantPool.getEntryCount( tag ) );
+    }
+  }
+
+  /**
+   * Assert the entry counts of a pool match the tags of its entries.
+   *
+   * @param constantPool the pool.
+   */
+  static void assertEntryCountsMatch( final ConstantPool constantPool )
+  {
+    final int[] expected = new int[ClassFileFormat.CONSTANT_Package + 1];
+    for( int i = 1; i <= constantPool.getConstantCount(); i++ )
+    {
+      final byte tag = constantPool.getEntryType( i );
+      expected[tag]++;
+      if( ClassFileFormat.CONSTANT_Long == tag || ClassFileFormat.CONSTANT_Double == tag )
+      {
+        i++;
+      }
+    }
+    for( int tag = 0; tag < expected.length; tag++ )
+    {
+      assertEquals( "getEntryCount( " + tag + " )", expected[tag], constantPool.getEntryCount( tag ) );
+    }
+  }
+
+  public void test_getBootstrapMethodIndex_with_bad_type()
+  {
+    final ConstantPool constantPool = ConstantPool.parseConstantPool( buildModernClass() );
+    final int handle = modernIndexes[0];
+    try
+    {
+      constantPool.getBootstrapMethodIndex( handle );
+      fail( "Expected exception" );
+    }
+    catch( final ClassFormatError cfe )
+    {
+      final String message =
+        "Unexpected type for constant pool element " + handle + ". Expected a dynamic type but got 15 at position ";
+      assertTrue( "getMessage() = " + cfe.getMessage(), cfe.getMessage().startsWith( message ) );
+    }
+  }
+
+  /** Indexes of the entries added by the last invocation of {@link #buildModernClass()}. */
+  private static int[] modernIndexes;
+
+  /**
+   * Build a class with an entry of each tag added since Java 5 followed by a
+   * long and an integer whose offsets depend on the size of the new entries.
+   */
+  static byte[] buildModernClass()
+  {
+    final ClassFileBuilder builder =
+      new ClassFileBuilder( ClassFileFormat.MAJOR_VERSION_LATEST, ClassFileFormat.ACC_PUBLIC, "p/A", "java/lang/Object" );
+    final int reference = builder.methodRef( "p/Factory", "bootstrap", "()V" );
+    modernIndexes = new int[]
+      {
+        builder.methodHandle( ClassFileFormat.REF_invokeStatic, reference ),
+        builder.methodType( "(I)V" ),
+        builder.dynamic( 0, "answer", "I" ),
+        builder.invokeDynamic( 1, "run", "()Ljava/lang/Runnable;" ),
+        builder.module( "java.base" ),
+        builder.packageRef( "java/lang" ),
+        builder.longConst( 42 ),
+        builder.integer( 7 )
+      };
+    return builder.build();
+  }
+
+  public void test_isUtfEntryEqual_with_bad_type_EmptyClass()
+    throws Exception
+  {
+    try
+    {
+      getEmptyClassData().isUtfEntryEqual( 13, "Code" );
+      fail( "Expected exception" );
+    }
+    catch( final ClassFormatError cfe )
+    {
+      final String message =
+        "Unexpected type for constant pool element 13. Expected: 1 Actual: 12 at position 162";
+      assertEquals( "getMessage()", message, cfe.getMessage() );
+    }
+  }
+
+  public void test_getUtfEntry_shared_between_threads_NonEmptyClass()
+    throws Exception
+  {
+    final ConstantPool expected = getNonEmptyClassData();
+    final ConstantPool constantPool = getNonEmptyClassData();
+    final Throwable[] failure = new Throwable[1];
+    final Thread[] threads = new Thread[4];
+    for( int i = 0; i < threads.length; i++ )
+    {
+      threads[i] = new Thread()
+      {
+        public void run()
+        {
+          try
+          {
+            for( int j = 1; j <= constantPool.getConstantCount(); j++ )
+            {
+              final byte type = constantPool.getEntryType( j );
+              if( ClassFileFormat.CONSTANT_Utf8 == type )
+              {
+                assertEquals( "getUtfEntry( " + j + " )", expected.getUtfEntry( j ), constantPool.getUtfEntry( j ) );
+              }
+              else if( ClassFileFormat.CONSTANT_Class == type )
+              {
+                assertEquals( "getClassEntry( " + j + " )", expected.getClassEntry( j ), constantPool.getClassEntry( j ) );
+              }
+            }
+          }
+          catch( final Throwable t )
+          {
+            synchronized( failure )
+            {
+              failure[0] = t;
+            }
+          }
+        }
+      };
+    }
+    for( final Thread thread : threads )
+    {
+      thread.start();
+    }
+    for( final Thread thread : threads )
+    {
+      thread.join();
+    }
+    synchronized( failure )
+    {
+      assertNull( "failure", failure[0] );
+    }
+  }
+
   private ConstantPool getEmptyClassData()
     throws Exception
   {
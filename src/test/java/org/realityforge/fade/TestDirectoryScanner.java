@@ -0,0 +1,245 @@
+package org.realityforge.fade;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import junit.framework.TestCase;
+
+public class TestDirectoryScanner
+  extends TestCase
+{
+  private static final String[] RESOURCES =
+    new String[]{"EmptyClass.class.dat", "NonEmptyClass.class.dat", "MyInterface.class.dat"};
+  private static final String[] NAMES =
+    new String[]{"org/realityforge/fade/data/EmptyClass",
+                 "org/realityforge/fade/data/NonEmptyClass",
+                 "org/realityforge/fade/data/MyInterface"};
+
+  private File directory;
+
+  protected void setUp()
+    throws Exception
+  {
+    directory = File.createTempFile( "fade", "dir" );
+    directory.delete();
+    //Nest directories so that workers steal from one another
+    for( int i = 0; i < 10; i++ )
+    {
+      for( int j = 0; j < 2; j++ )
+      {
+        for( int k = 0; k < RESOURCES.length; k++ )
+        {
+          write( i + "/" + j + "/" + NAMES[k] + ".class", loadTestData( RESOURCES[k] ) );
+        }
+      }
+    }
+    write( "notes.txt", new byte[]{'h', 'i'} );
+    //A directory that looks like a class file is walked
+    write( "odd.class/Empty.class", loadTestData( RESOURCES[0] ) );
+  }
+
+  protected void tearDown()
+    throws Exception
+  {
+    delete( directory );
+  }
+
+  public void test_scan()
+    throws Exception
+  {
+    for( final int threadCount : new int[]{1, 4} )
+    {
+      final List<String> names = Collections.synchronizedList( new ArrayList<String>() );
+      final TestJarScanner.RecordingFactory factory = new TestJarScanner.RecordingFactory( names );
+      final int count = new DirectoryScanner( threadCount, true, true, true ).scan( directory, factory );
+
+      assertEquals( "count", 61, count );
+      assertEquals( "names.size()", 61, names.size() );
+      assertEquals( "distinct names", new HashSet<String>( Arrays.asList( NAMES ) ), new HashSet<String>( names ) );
+      assertTrue( "parsers created", factory.parsers.size() <= threadCount );
+    }
+  }
+
+  public void test_scan_with_symbolic_links()
+    throws Exception
+  {
+    //A cycle back to the root and a second path to a sub-directory
+    if( !symlink( directory, new File( directory, "0/loop" ) ) ||
+        !symlink( new File( directory, "1" ), new File( directory, "alias" ) ) )
+    {
+      return;
+    }
+    for( final int threadCount : new int[]{1, 4} )
+    {
+      final List<String> names = Collections.synchronizedList( new ArrayList<String>() );
+      final int count =
+        new DirectoryScanner( threadCount, true, true, true ).scan( directory, new TestJarScanner.RecordingFactory( names ) );
+
+      assertEquals( "count", 61, count );
+      assertEquals( "names.size()", 61, names.size() );
+    }
+  }
+
+  public void test_scan_reports_file_with_bad_class()
+    throws Exception
+  {
+    final File file = write( "5/Bad.class", new byte[]{0, 0, 0, 0, 0, 0, 0, 0, 0, 0} );
+    try
+    {
+      new DirectoryScanner( 2, true, true, true ).scan( directory, new TestJarScanner.RecordingFactory( new ArrayList<String>() ) );
+      fail( "Expected an exception" );
+    }
+    catch( final ClassFormatError cfe )
+    {
+      assertEquals( "getMessage()", "Error parsing " + file + ": Bad magic number 0", cfe.getMessage() );
+    }
+  }
+
+  public void test_scan_waits_for_workers_after_failure()
+    throws Exception
+  {
+    final AtomicInteger started = new AtomicInteger();
+    final AtomicInteger active = new AtomicInteger();
+    final ClassFileParserFactory factory = new ClassFileParserFactory()
+    {
+      public ClassFileParser newParser()
+      {
+        return new TestClassFile.NoopClassFileParser()
+        {
+          protected void startClass( final ClassFile classFile )
+          {
+            active.incrementAndGet();
+            try
+            {
+              if( 5 == started.incrementAndGet() )
+              {
+                throw new IllegalStateException( "Failed" );
+              }
+              Thread.sleep( 5 );
+            }
+            catch( final InterruptedException ie )
+            {
+              Thread.currentThread().interrupt();
+            }
+            finally
+            {
+              active.decrementAndGet();
+            }
+          }
+        };
+      }
+    };
+    try
+    {
+      new DirectoryScanner( 4, false, false, false ).scan( directory, factory );
+      fail( "Expected an exception" );
+    }
+    catch( final IllegalStateException ise )
+    {
+      assertEquals( "getMessage()", "Failed", ise.getMessage() );
+    }
+    assertEquals( "active parsers", 0, active.get() );
+    final int count = started.get();
+    assertTrue( "scan stopped early", count < 61 );
+    Thread.sleep( 20 );
+    assertEquals( "classes started after scan", count, started.get() );
+  }
+
+  public void test_scan_with_missing_directory()
+    throws Exception
+  {
+    final File missing = new File( directory, "missing" );
+    try
+    {
+      new DirectoryScanner( 2, true, true, true ).scan( missing, new TestJarScanner.RecordingFactory( new ArrayList<String>() ) );
+      fail( "Expected an exception" );
+    }
+    catch( final IOException ioe )
+    {
+      assertEquals( "getMessage()", "Not a directory: " + missing, ioe.getMessage() );
+    }
+  }
+
+  public void test_constructor_with_bad_threadCount()
+  {
+    try
+    {
+      new DirectoryScanner( 0, true, true, true );
+      fail( "Expected an exception" );
+    }
+    catch( final IllegalArgumentException iae )
+    {
+      assertEquals( "getMessage()", "threadCount must be positive but is 0", iae.getMessage() );
+    }
+  }
+
+  private File write( final String path, final byte[] data )
+    throws IOException
+  {
+    final File file = new File( directory, path );
+    file.getParentFile().mkdirs();
+    final FileOutputStream output = new FileOutputStream( file );
+    try
+    {
+      output.write( data );
+    }
+    finally
+    {
+      output.close();
+    }
+    return file;
+  }
+
+  /** Create a symbolic link, returning false if the platform does not support them. */
+  static boolean symlink( final File target, final File link )
+    throws Exception
+  {
+    try
+    {
+      final Process process =
+        Runtime.getRuntime().exec( new String[]{"ln", "-s", target.getAbsolutePath(), link.getAbsolutePath()} );
+      return 0 == process.waitFor();
+    }
+    catch( final IOException ioe )
+    {
+      return false;
+    }
+  }
+
+  /** Delete a file or directory tree without following symbolic links. */
+  static void delete( final File file )
+    throws IOException
+  {
+    final File[] children = file.listFiles();
+    final File parent = file.getParentFile();
+    final boolean link =
+      null != parent && !file.getCanonicalFile().equals( new File( parent.getCanonicalFile(), file.getName() ) );
+    if( null != children && !link )
+    {
+      for( final File child : children )
+      {
+        delete( child );
+      }
+    }
+    file.delete();
+  }
+
+  private byte[] loadTestData( final String resource )
+    throws IOException
+  {
+    final InputStream input = TestDirectoryScanner.class.getResourceAsStream( resource );
+    assertNotNull( "Seemingly missing test data: " + resource, input );
+    final int size = input.available();
+    final byte[] bytes = new byte[size];
+    final int count = input.read( bytes );
+    assertEquals( "Unable to fully read testdata for: " + resource, count, size );
+    return bytes;
+  }
+}
@@ -1,5 +1,7 @@
 package org.realityforge.fade;
 
+import java.io.File;
+import java.io.FileOutputStream;
 import junit.framework.TestCase;
 
 public class TestIOUtil
@@ -68,6 +70,33 @@ public class TestIOUtil
     }
   }
 
+  public void test_readFile()
+    throws Exception
+  {
+    final File file = File.createTempFile( "fade", ".class" );
+    try
+    {
+      final FileOutputStream output = new FileOutputStream( file );
+      output.write( new byte[]{1, 2, 3, 4, 5} );
+      output.close();
+
+      final byte[] small = new byte[2];
+      final byte[] buffer = IOUtil.ensureCapacity( small, file.length() );
+      assertEquals( "buffer.length", 5, buffer.length );
+      assertSame( "ensureCapacity when large enough", buffer, IOUtil.ensureCapacity( buffer, 3 ) );
+      assertEquals( "readFile", 5, IOUtil.readFile( file, buffer ) );
+      assertEquals( "buffer[4]", 5, buffer[4] );
+
+      final byte[] large = new byte[10];
+      assertEquals( "readFile into larger buffer", 5, IOUtil.readFile( file, large ) );
+      assertEquals( "readFile into smaller buffer", 2, IOUtil.readFile( file, small ) );
+    }
+    finally
+    {
+      file.delete();
+    }
+  }
+
   public void test_parseUtfString()
     throws Exception
   {
@@ -180,4 +209,95 @@ public class TestIOUtil
       assertEquals( "getMessage()", message, cfe.getMessage() );
     }
   }
+
+  public void test_encodeUtf()
+    throws Exception
+  {
+    final String value = "a\u0000\u03CF\uF3C0";
+    final byte[] data = IOUtil.encodeUtf( value );
+    final byte[] expected =
+      new byte[]{'a', (byte)0xC0, (byte)0x80, (byte)0xCF, (byte)0x8F, (byte)0xEF, (byte)0x8F, (byte)0x80};
+    assertEquals( "data.length", expected.length, data.length );
+    assertTrue( "data", IOUtil.regionMatches( data, 0, expected, expected.length ) );
+  }
+
+  public void test_matchesUtf()
+    throws Exception
+  {
+    final byte[] data = new byte[]{'x', 'a', (byte)0xCF, (byte)0x8F, (byte)0xEF, (byte)0x8F, (byte)0x80};
+    final String value = IOUtil.parseUtfString( data, 1, 0, 6 );
+    assertTrue( "equal", IOUtil.matchesUtf( data, 1, 6, value, false ) );
+    assertTrue( "prefix", IOUtil.matchesUtf( data, 1, 6, value.substring( 0, 2 ), true ) );
+    assertFalse( "prefix as equal", IOUtil.matchesUtf( data, 1, 6, value.substring( 0, 2 ), false ) );
+    assertFalse( "longer", IOUtil.matchesUtf( data, 1, 6, value + "a", true ) );
+    assertFalse( "truncated multibyte", IOUtil.matchesUtf( data, 1, 5, value, true ) );
+    assertFalse( "different", IOUtil.matchesUtf( data, 1, 6, "a\u03CE", true ) );
+  }
+
+  public void test_hash()
+    throws Exception
+  {
+    final byte[] data = new byte[]{'x', 'C', 'o', 'd', 'e'};
+    assertEquals( "hash", "Code".hashCode(), IOUtil.hash( data, 1, 4 ) );
+  }
+
+  public void test_hash64()
+  {
+    final byte[] data = new byte[]{'x', 1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 'x'};
+    final long hash = IOUtil.hash64( data, 1, 11 );
+    assertEquals( "same region", hash, IOUtil.hash64( data.clone(), 1, 11 ) );
+    assertFalse( "shorter region", hash == IOUtil.hash64( data, 1, 10 ) );
+    assertFalse( "shifted region", hash == IOUtil.hash64( data, 2, 11 ) );
+    data[11] = 12;
+    assertFalse( "changed byte in tail", hash == IOUtil.hash64( data, 1, 11 ) );
+    data[11] = 11;
+    data[3] = 0;
+    assertFalse( "changed byte in body", hash == IOUtil.hash64( data, 1, 11 ) );
+    assertFalse( "empty", IOUtil.hash64( data, 0, 0 ) == IOUtil.hash64( new byte[1], 0, 1 ) );
+  }
+
+  public void test_parseUtfString_ascii()
+    throws Exception
+  {
+    final byte[] data = "xjava/lang/Object".getBytes( "US-ASCII" );
+    assertEquals( "value", "java/lang/Object", IOUtil.parseUtfString( data, 1, 0, 16 ) );
+    assertEquals( "value", "java/lang", IOUtil.parseUtfString( data, 1, 0, 9 ) );
+    assertEquals( "value", "", IOUtil.parseUtfString( data, 1, 0, 0 ) );
+  }
+
+  public void test_parseUtfString_multibyte_after_ascii_block()
+    throws Exception
+  {
+    final byte[] data = new byte[]{'a', 'b', 'c', 'd', 'e', 'f', 'g', 'h', 'i', (byte)0xCF, (byte)0x8F, 'j'};
+    final String value = IOUtil.parseUtfString( data, 0, 0, data.length );
+    assertEquals( "value", "abcdefghi\u03CFj", value );
+  }
+
+  public void test_parseUtfString_invalid_zero_in_ascii_block()
+    throws Exception
+  {
+    final byte[] data = new byte[]{'a', 'b', 'c', 'd', 'e', 0, 'g', 'h', 'i'};
+    try
+    {
+      IOUtil.parseUtfString( data, 0, 0, data.length );
+      fail( "Expected exception" );
+    }
+    catch( final ClassFormatError cfe )
+    {
+      final String message =
+        "Constant pool entry 0 has invalid utf8 at 5";
+      assertEquals( "getMessage()", message, cfe.getMessage() );
+    }
+  }
+
+  public void test_skipAscii()
+    throws Exception
+  {
+    final byte[] data = new byte[]{'a', 'b', 'c', 'd', 'e', 'f', 'g', 'h', 'i', 'j', (byte)0x80, 'k'};
+    assertEquals( "skipAscii", 10, IOUtil.skipAscii( data, 0, data.length ) );
+    assertEquals( "skipAscii", 10, IOUtil.skipAscii( data, 1, data.length ) );
+    assertEquals( "skipAscii", 9, IOUtil.skipAscii( data, 1, 9 ) );
+    assertEquals( "skipAscii", 10, IOUtil.skipAscii( data, 10, data.length ) );
+    assertEquals( "skipAscii", 12, IOUtil.skipAscii( data, 11, data.length ) );
+  }
 }
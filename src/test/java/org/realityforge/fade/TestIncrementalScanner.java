@@ -0,0 +1,152 @@
+package org.realityforge.fade;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import junit.framework.TestCase;
+
+public class TestIncrementalScanner
+  extends TestCase
+{
+  private File directory;
+
+  protected void setUp()
+    throws Exception
+  {
+    directory = File.createTempFile( "fade", "dir" );
+    assertTrue( directory.delete() );
+    assertTrue( directory.mkdir() );
+  }
+
+  protected void tearDown()
+    throws Exception
+  {
+    TestDirectoryScanner.delete( directory );
+  }
+
+  public void test_scan()
+    throws Exception
+  {
+    final File base = write( "com/example/Base.class", new ClassFileBuilder( "com/example/Base", "java/lang/Object" ) );
+    final File impl = write( "com/example/impl/Impl.class", new ClassFileBuilder( "com/example/impl/Impl", "com/example/Base" ) );
+    write( "com/example/readme.txt", null );
+
+    final ClassHierarchyBuilder builder = new ClassHierarchyBuilder();
+    final IncrementalScanner scanner = new IncrementalScanner( builder, false, false, false );
+    assertEquals( "initial scan", 2, scanner.scan( directory ) );
+    assertEquals( "getFileCount()", 2, scanner.getFileCount() );
+    assertTrue( "Impl -> Base", builder.build().isAssignable( "com/example/impl/Impl", "com/example/Base" ) );
+
+    assertEquals( "unchanged scan", 0, scanner.scan( directory ) );
+
+    //Touching a file without changing its contents does not reprocess it
+    assertTrue( base.setLastModified( base.lastModified() - 10000 ) );
+    assertEquals( "touched scan", 0, scanner.scan( directory ) );
+
+    write( "com/example/impl/Impl.class",
+           new ClassFileBuilder( "com/example/impl/Impl", "java/lang/Object", "java/lang/Runnable" ) );
+    assertEquals( "changed scan", 1, scanner.scan( directory ) );
+    ClassHierarchy hierarchy = builder.build();
+    assertEquals( "getDeclaredClassCount()", 2, hierarchy.getDeclaredClassCount() );
+    assertFalse( "Impl -> Base", hierarchy.isAssignable( "com/example/impl/Impl", "com/example/Base" ) );
+    assertTrue( "Impl -> Runnable", hierarchy.isAssignable( "com/example/impl/Impl", "java/lang/Runnable" ) );
+
+    assertTrue( impl.delete() );
+    write( "com/example/Other.class", new ClassFileBuilder( "com/example/Other", "com/example/Base" ) );
+    assertEquals( "added scan", 1, scanner.scan( directory ) );
+    hierarchy = builder.build();
+    assertEquals( "getDeclaredClassCount()", 2, hierarchy.getDeclaredClassCount() );
+    assertEquals( "getId(Impl)", -1, hierarchy.getId( "com/example/impl/Impl" ) );
+    assertTrue( "Other -> Base", hierarchy.isAssignable( "com/example/Other", "com/example/Base" ) );
+  }
+
+  public void test_scan_with_symbolic_links()
+    throws Exception
+  {
+    final File base = write( "com/example/Base.class", new ClassFileBuilder( "com/example/Base", "java/lang/Object" ) );
+    //A cycle back to the root and a second path to a sub-directory
+    if( !TestDirectoryScanner.symlink( directory, new File( directory, "com/loop" ) ) ||
+        !TestDirectoryScanner.symlink( new File( directory, "com/example" ), new File( directory, "alias" ) ) )
+    {
+      return;
+    }
+
+    final ClassHierarchyBuilder builder = new ClassHierarchyBuilder();
+    final IncrementalScanner scanner = new IncrementalScanner( builder, false, false, false );
+    assertEquals( "initial scan", 1, scanner.scan( directory ) );
+    assertEquals( "getFileCount()", 1, scanner.getFileCount() );
+    assertEquals( "unchanged scan", 0, scanner.scan( directory ) );
+
+    assertTrue( base.delete() );
+    assertEquals( "removed scan", 0, scanner.scan( directory ) );
+    assertEquals( "getId(Base)", -1, builder.build().getId( "com/example/Base" ) );
+    write( "com/example/Base.class", new ClassFileBuilder( "com/example/Base", "java/lang/Object" ) );
+    assertEquals( "added scan", 1, scanner.scan( directory ) );
+    assertEquals( "getDeclaredClassCount()", 1, builder.build().getDeclaredClassCount() );
+  }
+
+  public void test_scan_patches_class_index()
+    throws Exception
+  {
+    write( "A.class", new ClassFileBuilder( "A", "java/lang/Object" ) );
+    final ClassIndexBuilder builder = new ClassIndexBuilder();
+    final IncrementalScanner scanner = new IncrementalScanner( builder, true, true, true );
+    assertEquals( "initial scan", 1, scanner.scan( directory ) );
+
+    write( "A.class", new ClassFileBuilder( "A", "B" ) );
+    assertEquals( "changed scan", 1, scanner.scan( directory ) );
+    final File file = new File( directory, "index.idx" );
+    builder.write( file );
+    final ClassIndex index = ClassIndex.map( file );
+    assertEquals( "getClassCount()", 1, index.getClassCount() );
+    assertEquals( "getSuperClassName()", "B", index.getSuperClassName( 0 ) );
+  }
+
+  public void test_scan_with_bad_class()
+    throws Exception
+  {
+    write( "Bad.class", null );
+    final IncrementalScanner scanner = new IncrementalScanner( new ClassHierarchyBuilder(), false, false, false );
+    try
+    {
+      scanner.scan( directory );
+      fail( "Expected an exception" );
+    }
+    catch( final ClassFormatError cfe )
+    {
+      assertTrue( "getMessage()", cfe.getMessage().startsWith( "Error parsing " ) );
+    }
+    assertEquals( "getFileCount()", 0, scanner.getFileCount() );
+  }
+
+  public void test_null_index()
+  {
+    try
+    {
+      new IncrementalScanner( null, false, false, false );
+      fail( "Expected an exception" );
+    }
+    catch( final IllegalArgumentException iae )
+    {
+      assertEquals( "getMessage()", "Null index", iae.getMessage() );
+    }
+  }
+
+  /** Write the class built by builder, or a few bytes if builder is null, to the path. */
+  private File write( final String path, final ClassFileBuilder builder )
+    throws IOException
+  {
+    final File file = new File( directory, path );
+    file.getParentFile().mkdirs();
+    final FileOutputStream output = new FileOutputStream( file );
+    try
+    {
+      output.write( null == builder ? new byte[]{1, 2, 3} : builder.build() );
+    }
+    finally
+    {
+      output.close();
+    }
+    return file;
+  }
+}
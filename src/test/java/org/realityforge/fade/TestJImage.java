@@ -0,0 +1,320 @@
+package org.realityforge.fade;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.zip.Deflater;
+import junit.framework.TestCase;
+
+public class TestJImage
+  extends TestCase
+{
+  private static final String[] RESOURCES =
+    new String[]{"EmptyClass.class.dat", "NonEmptyClass.class.dat", "MyInterface.class.dat"};
+  private static final String[] NAMES =
+    new String[]{"/m.one/org/realityforge/fade/data/EmptyClass.class",
+                 "/m.one/org/realityforge/fade/data/NonEmptyClass.class",
+                 "/m.two/org/realityforge/fade/data/MyInterface.class",
+                 "/m.two/META-INF/notes.txt",
+                 "/m.two/META-INF/MANIFEST.MF"};
+
+  public void test_find_and_read()
+    throws Exception
+  {
+    for( final ByteOrder order : new ByteOrder[]{ByteOrder.BIG_ENDIAN, ByteOrder.LITTLE_ENDIAN} )
+    {
+      final byte[][] contents = loadContents();
+      final JImage image = new JImage( writeImage( NAMES, contents, false, order ) );
+      assertEquals( "getLocationCount()", NAMES.length, image.getLocationCount() );
+      for( int i = 0; i < NAMES.length; i++ )
+      {
+        final int location = image.findLocation( NAMES[i] );
+        assertTrue( NAMES[i], -1 != location );
+        assertEquals( "getName()", NAMES[i], image.getName( location ) );
+        assertEquals( "isClass()", NAMES[i].endsWith( ".class" ), image.isClass( location ) );
+        assertEquals( "getSize()", contents[i].length, image.getSize( location ) );
+        assertTrue( NAMES[i], Arrays.equals( contents[i], image.getResource( NAMES[i] ) ) );
+      }
+      assertEquals( "missing", -1, image.findLocation( "/m.one/Missing.class" ) );
+      assertNull( "missing", image.getResource( "/m.one/Missing.class" ) );
+    }
+  }
+
+  public void test_read_zip_compressed_resource()
+    throws Exception
+  {
+    final byte[][] contents = loadContents();
+    final JImage image = new JImage( writeImage( NAMES, contents, true, ByteOrder.LITTLE_ENDIAN ) );
+    for( int i = 0; i < NAMES.length; i++ )
+    {
+      assertTrue( NAMES[i], Arrays.equals( contents[i], image.getResource( NAMES[i] ) ) );
+    }
+  }
+
+  public void test_bad_magic()
+  {
+    try
+    {
+      new JImage( ByteBuffer.allocate( 64 ) );
+      fail( "Expected an exception" );
+    }
+    catch( final IOException ioe )
+    {
+      assertEquals( "getMessage()", "Bad jimage magic number 0", ioe.getMessage() );
+    }
+  }
+
+  public void test_scan_image()
+    throws Exception
+  {
+    final JImage image = new JImage( writeImage( NAMES, loadContents(), false, ByteOrder.LITTLE_ENDIAN ) );
+    final List<String> names = Collections.synchronizedList( new ArrayList<String>() );
+    final int count = new JarScanner( 2, false, true, true, true ).scan( image, new TestJarScanner.RecordingFactory( names ) );
+    assertEquals( "count", 3, count );
+    assertEquals( "names",
+                  new HashSet<String>( Arrays.asList( "org/realityforge/fade/data/EmptyClass",
+                                                      "org/realityforge/fade/data/NonEmptyClass",
+                                                      "org/realityforge/fade/data/MyInterface" ) ),
+                  new HashSet<String>( names ) );
+  }
+
+  /** Read a class from the image of the running JDK, if it has one. */
+  public void test_read_platform_image()
+    throws Exception
+  {
+    final File modules = new File( System.getProperty( "java.home" ), "lib" + File.separator + "modules" );
+    if( !modules.exists() )
+    {
+      return;
+    }
+    final JImage image = JImage.map( modules );
+    final byte[] data = image.getResource( "/java.base/java/lang/Object.class" );
+    assertNotNull( "Object", data );
+    final InputStream input = Object.class.getResourceAsStream( "Object.class" );
+    final ByteArrayOutputStream expected = new ByteArrayOutputStream();
+    final byte[] buffer = new byte[4096];
+    int count;
+    while( -1 != ( count = input.read( buffer ) ) )
+    {
+      expected.write( buffer, 0, count );
+    }
+    input.close();
+    assertTrue( "Object", Arrays.equals( expected.toByteArray(), data ) );
+  }
+
+  /**
+   * Write an image containing specified resources, with a perfect hash built
+   * in the same way as the JDK so that lookups exercise redirects.
+   */
+  private static ByteBuffer writeImage( final String[] names,
+                                        final byte[][] contents,
+                                        final boolean compress,
+                                        final ByteOrder order )
+    throws IOException
+  {
+    final int count = names.length;
+    final ByteArrayOutputStream strings = new ByteArrayOutputStream();
+    strings.write( 0 );
+    final ByteArrayOutputStream resources = new ByteArrayOutputStream();
+    final byte[][] locations = new byte[count][];
+    for( int i = 0; i < count; i++ )
+    {
+      final String name = names[i];
+      final int moduleEnd = name.indexOf( '/', 1 );
+      final int parentEnd = name.lastIndexOf( '/' );
+      final int extensionStart = name.lastIndexOf( '.' );
+      byte[] data = contents[i];
+      final int size = data.length;
+      int compressedSize = 0;
+      if( compress )
+      {
+        final int decompressor = addString( strings, "zip" );
+        data = compress( data, decompressor, order );
+        compressedSize = data.length;
+      }
+      final ByteArrayOutputStream location = new ByteArrayOutputStream();
+      writeAttribute( location, JImage.ATTRIBUTE_MODULE, addString( strings, name.substring( 1, moduleEnd ) ) );
+      writeAttribute( location, JImage.ATTRIBUTE_PARENT, addString( strings, name.substring( moduleEnd + 1, parentEnd ) ) );
+      writeAttribute( location, JImage.ATTRIBUTE_BASE, addString( strings, name.substring( parentEnd + 1, extensionStart ) ) );
+      writeAttribute( location, JImage.ATTRIBUTE_EXTENSION, addString( strings, name.substring( extensionStart + 1 ) ) );
+      writeAttribute( location, JImage.ATTRIBUTE_OFFSET, resources.size() );
+      writeAttribute( location, JImage.ATTRIBUTE_COMPRESSED, compressedSize );
+      writeAttribute( location, JImage.ATTRIBUTE_UNCOMPRESSED, size );
+      location.write( 0 );
+      locations[i] = location.toByteArray();
+      resources.write( data );
+    }
+
+    //Place each name in a slot using either the direct hash or a seeded hash for collisions
+    final int[] redirect = new int[count];
+    final int[] slots = new int[count];
+    Arrays.fill( slots, -1 );
+    final List<List<Integer>> buckets = new ArrayList<List<Integer>>();
+    for( int i = 0; i < count; i++ )
+    {
+      buckets.add( new ArrayList<Integer>() );
+    }
+    for( int i = 0; i < count; i++ )
+    {
+      buckets.get( JImage.hash( IOUtil.encodeUtf( names[i] ), JImage.HASH_MULTIPLIER ) % count ).add( i );
+    }
+    for( int b = 0; b < count; b++ )
+    {
+      final List<Integer> bucket = buckets.get( b );
+      if( bucket.size() > 1 )
+      {
+        for( int seed = 1; ; seed++ )
+        {
+          assertTrue( "No seed found for bucket " + b, seed < 100000 );
+          final int[] candidate = new int[bucket.size()];
+          boolean free = true;
+          for( int i = 0; i < bucket.size() && free; i++ )
+          {
+            candidate[i] = JImage.hash( IOUtil.encodeUtf( names[bucket.get( i )] ), seed ) % count;
+            free = -1 == slots[candidate[i]];
+            for( int j = 0; j < i && free; j++ )
+            {
+              free = candidate[j] != candidate[i];
+            }
+          }
+          if( free )
+          {
+            for( int i = 0; i < bucket.size(); i++ )
+            {
+              slots[candidate[i]] = bucket.get( i );
+            }
+            redirect[b] = seed;
+            break;
+          }
+        }
+      }
+    }
+    for( int b = 0; b < count; b++ )
+    {
+      final List<Integer> bucket = buckets.get( b );
+      if( 1 == bucket.size() )
+      {
+        int slot = 0;
+        while( -1 != slots[slot] )
+        {
+          slot++;
+        }
+        slots[slot] = bucket.get( 0 );
+        redirect[b] = -1 - slot;
+      }
+    }
+
+    final ByteArrayOutputStream locationData = new ByteArrayOutputStream();
+    final int[] offsets = new int[count];
+    for( int slot = 0; slot < count; slot++ )
+    {
+      offsets[slot] = locationData.size();
+      locationData.write( locations[slots[slot]] );
+    }
+    final int indexSize = JImage.HEADER_SIZE + count * 8 + locationData.size() + strings.size();
+    final ByteBuffer buffer = ByteBuffer.allocate( indexSize + resources.size() ).order( order );
+    buffer.putInt( JImage.MAGIC );
+    buffer.putInt( JImage.MAJOR_VERSION << 16 );
+    buffer.putInt( 0 );
+    buffer.putInt( count );
+    buffer.putInt( count );
+    buffer.putInt( locationData.size() );
+    buffer.putInt( strings.size() );
+    for( final int value : redirect )
+    {
+      buffer.putInt( value );
+    }
+    for( final int value : offsets )
+    {
+      buffer.putInt( value );
+    }
+    buffer.put( locationData.toByteArray() );
+    buffer.put( strings.toByteArray() );
+    buffer.put( resources.toByteArray() );
+    buffer.flip();
+    return buffer;
+  }
+
+  private static int addString( final ByteArrayOutputStream strings, final String value )
+    throws IOException
+  {
+    if( 0 == value.length() )
+    {
+      return 0;
+    }
+    final int offset = strings.size();
+    strings.write( IOUtil.encodeUtf( value ) );
+    strings.write( 0 );
+    return offset;
+  }
+
+  private static void writeAttribute( final ByteArrayOutputStream output, final int kind, final long value )
+  {
+    if( 0 == value )
+    {
+      return;
+    }
+    int length = 1;
+    while( length < 8 && 0 != ( value >>> ( length * 8 ) ) )
+    {
+      length++;
+    }
+    output.write( ( kind << 3 ) | ( length - 1 ) );
+    for( int i = length - 1; i >= 0; i-- )
+    {
+      output.write( (int)( value >>> ( i * 8 ) ) );
+    }
+  }
+
+  private static byte[] compress( final byte[] data, final int decompressor, final ByteOrder order )
+  {
+    final Deflater deflater = new Deflater();
+    deflater.setInput( data );
+    deflater.finish();
+    final byte[] compressed = new byte[data.length * 2 + 64];
+    final int length = deflater.deflate( compressed );
+    deflater.end();
+    final ByteBuffer buffer = ByteBuffer.allocate( JImage.RESOURCE_HEADER_SIZE + length ).order( order );
+    buffer.putInt( JImage.RESOURCE_MAGIC );
+    buffer.putLong( length );
+    buffer.putLong( data.length );
+    buffer.putInt( decompressor );
+    buffer.putInt( 0 );
+    buffer.put( (byte)1 );
+    buffer.put( compressed, 0, length );
+    return buffer.array();
+  }
+
+  private byte[][] loadContents()
+    throws IOException
+  {
+    final byte[][] contents = new byte[NAMES.length][];
+    for( int i = 0; i < RESOURCES.length; i++ )
+    {
+      contents[i] = loadTestData( RESOURCES[i] );
+    }
+    contents[RESOURCES.length] = new byte[]{'h', 'i'};
+    contents[RESOURCES.length + 1] = new byte[0];
+    return contents;
+  }
+
+  private byte[] loadTestData( final String resource )
+    throws IOException
+  {
+    final InputStream input = TestJImage.class.getResourceAsStream( resource );
+    assertNotNull( "Seemingly missing test data: " + resource, input );
+    final int size = input.available();
+    final byte[] bytes = new byte[size];
+    final int count = input.read( bytes );
+    assertEquals( "Unable to fully read testdata for: " + resource, count, size );
+    return bytes;
+  }
+}
@@ -0,0 +1,252 @@
+package org.realityforge.fade;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import junit.framework.TestCase;
+
+public class TestJarScanner
+  extends TestCase
+{
+  private static final String[] RESOURCES =
+    new String[]{"EmptyClass.class.dat", "NonEmptyClass.class.dat", "MyInterface.class.dat"};
+  private static final String[] NAMES =
+    new String[]{"org/realityforge/fade/data/EmptyClass",
+                 "org/realityforge/fade/data/NonEmptyClass",
+                 "org/realityforge/fade/data/MyInterface"};
+
+  private File jar;
+
+  protected void setUp()
+    throws Exception
+  {
+    jar = File.createTempFile( "fade", ".jar" );
+    final JarOutputStream output = new JarOutputStream( new FileOutputStream( jar ) );
+    output.putNextEntry( new JarEntry( "META-INF/notes.txt" ) );
+    output.write( new byte[]{'h', 'i'} );
+    //Repeat classes so that workers contend for entries
+    for( int i = 0; i < 20; i++ )
+    {
+      for( int j = 0; j < RESOURCES.length; j++ )
+      {
+        output.putNextEntry( new JarEntry( i + "/" + NAMES[j] + ".class" ) );
+        output.write( loadTestData( RESOURCES[j] ) );
+      }
+    }
+    output.close();
+  }
+
+  protected void tearDown()
+    throws Exception
+  {
+    jar.delete();
+  }
+
+  public void test_scan_unordered()
+    throws Exception
+  {
+    final List<String> names = Collections.synchronizedList( new ArrayList<String>() );
+    final RecordingFactory factory = new RecordingFactory( names );
+    final int count = new JarScanner( 4, false, true, true, true ).scan( jar, factory );
+
+    assertEquals( "count", 60, count );
+    assertEquals( "names.size()", 60, names.size() );
+    assertEquals( "distinct names", new HashSet<String>( Arrays.asList( NAMES ) ), new HashSet<String>( names ) );
+    assertTrue( "parsers created", factory.parsers.size() <= 4 );
+  }
+
+  public void test_scan_ordered()
+    throws Exception
+  {
+    final List<String> names = Collections.synchronizedList( new ArrayList<String>() );
+    final int count = new JarScanner( 3, true, true, true, true ).scan( jar, new RecordingFactory( names ) );
+
+    assertEquals( "count", 60, count );
+    assertEquals( "names.size()", 60, names.size() );
+    for( int i = 0; i < names.size(); i++ )
+    {
+      assertEquals( "names.get(" + i + ")", NAMES[i % NAMES.length], names.get( i ) );
+    }
+  }
+
+  public void test_scan_ordered_beyond_window()
+    throws Exception
+  {
+    final int classCount = JarScanner.ORDERED_WINDOW * 3 + 1;
+    final JarOutputStream output = new JarOutputStream( new FileOutputStream( jar ) );
+    for( int i = 0; i < classCount; i++ )
+    {
+      output.putNextEntry( new JarEntry( i + "/" + NAMES[i % NAMES.length] + ".class" ) );
+      output.write( loadTestData( RESOURCES[i % NAMES.length] ) );
+    }
+    output.close();
+
+    final List<String> names = Collections.synchronizedList( new ArrayList<String>() );
+    final int count = new JarScanner( 4, true, false, false, false ).scan( jar, new RecordingFactory( names ) );
+
+    assertEquals( "count", classCount, count );
+    assertEquals( "names.size()", classCount, names.size() );
+    for( int i = 0; i < names.size(); i++ )
+    {
+      assertEquals( "names.get(" + i + ")", NAMES[i % NAMES.length], names.get( i ) );
+    }
+  }
+
+  public void test_scan_waits_for_workers_after_failure()
+    throws Exception
+  {
+    final AtomicInteger started = new AtomicInteger();
+    final AtomicInteger active = new AtomicInteger();
+    final ClassFileParserFactory factory = new ClassFileParserFactory()
+    {
+      public ClassFileParser newParser()
+      {
+        return new TestClassFile.NoopClassFileParser()
+        {
+          protected void startClass( final ClassFile classFile )
+          {
+            active.incrementAndGet();
+            try
+            {
+              if( 5 == started.incrementAndGet() )
+              {
+                throw new IllegalStateException( "Failed" );
+              }
+              Thread.sleep( 5 );
+            }
+            catch( final InterruptedException ie )
+            {
+              Thread.currentThread().interrupt();
+            }
+            finally
+            {
+              active.decrementAndGet();
+            }
+          }
+        };
+      }
+    };
+    try
+    {
+      new JarScanner( 4, false, false, false, false ).scan( jar, factory );
+      fail( "Expected an exception" );
+    }
+    catch( final IllegalStateException ise )
+    {
+      assertEquals( "getMessage()", "Failed", ise.getMessage() );
+    }
+    assertEquals( "active parsers", 0, active.get() );
+    final int count = started.get();
+    assertTrue( "scan stopped early", count < 60 );
+    Thread.sleep( 20 );
+    assertEquals( "classes started after scan", count, started.get() );
+  }
+
+  public void test_scan_single_thread()
+    throws Exception
+  {
+    final List<String> names = new ArrayList<String>();
+    final int count = new JarScanner( 1, false, false, false, false ).scan( jar, new RecordingFactory( names ) );
+
+    assertEquals( "count", 60, count );
+    assertEquals( "names.get(1)", NAMES[1], names.get( 1 ) );
+  }
+
+  public void test_scan_reports_entry_with_bad_class()
+    throws Exception
+  {
+    final JarOutputStream output = new JarOutputStream( new FileOutputStream( jar ) );
+    output.putNextEntry( new JarEntry( "Bad.class" ) );
+    output.write( new byte[]{0, 0, 0, 0, 0, 0, 0, 0, 0, 0} );
+    output.close();
+    try
+    {
+      new JarScanner( 2, false, true, true, true ).scan( jar, new RecordingFactory( new ArrayList<String>() ) );
+      fail( "Expected an exception" );
+    }
+    catch( final ClassFormatError cfe )
+    {
+      assertEquals( "getMessage()", "Error parsing Bad.class: Bad magic number 0", cfe.getMessage() );
+    }
+  }
+
+  public void test_scan_jmod()
+    throws Exception
+  {
+    final FileOutputStream file = new FileOutputStream( jar );
+    file.write( new byte[]{'J', 'M', 1, 0} );
+    final JarOutputStream output = new JarOutputStream( file );
+    output.putNextEntry( new JarEntry( "classes/" + NAMES[1] + ".class" ) );
+    output.write( loadTestData( RESOURCES[1] ) );
+    //Only the classes section is scanned
+    output.putNextEntry( new JarEntry( "lib/Bad.class" ) );
+    output.write( new byte[]{0, 0, 0, 0, 0, 0, 0, 0, 0, 0} );
+    output.close();
+
+    assertTrue( "isJmod", JarScanner.isJmod( jar ) );
+    final List<String> names = new ArrayList<String>();
+    final int count = new JarScanner( 2, false, true, true, true ).scan( jar, new RecordingFactory( names ) );
+    assertEquals( "count", 1, count );
+    assertEquals( "names", Arrays.asList( NAMES[1] ), names );
+  }
+
+  public void test_constructor_with_bad_threadCount()
+  {
+    try
+    {
+      new JarScanner( 0, false, true, true, true );
+      fail( "Expected an exception" );
+    }
+    catch( final IllegalArgumentException iae )
+    {
+      assertEquals( "getMessage()", "threadCount must be positive but is 0", iae.getMessage() );
+    }
+  }
+
+  static class RecordingFactory
+    implements ClassFileParserFactory
+  {
+    final Set<ClassFileParser> parsers = Collections.synchronizedSet( new HashSet<ClassFileParser>() );
+    final List<String> names;
+
+    RecordingFactory( final List<String> names )
+    {
+      this.names = names;
+    }
+
+    public ClassFileParser newParser()
+    {
+      final ClassFileParser parser = new TestClassFile.NoopClassFileParser()
+      {
+        protected void startClass( final ClassFile classFile )
+        {
+          names.add( classFile.getClassName() );
+        }
+      };
+      parsers.add( parser );
+      return parser;
+    }
+  }
+
+  private byte[] loadTestData( final String resource )
+    throws IOException
+  {
+    final InputStream input = TestJarScanner.class.getResourceAsStream( resource );
+    assertNotNull( "Seemingly missing test data: " + resource, input );
+    final int size = input.available();
+    final byte[] bytes = new byte[size];
+    final int count = input.read( bytes );
+    assertEquals( "Unable to fully read testdata for: " + resource, count, size );
+    return bytes;
+  }
+}
@@ -0,0 +1,78 @@
+package org.realityforge.fade;
+
+import java.util.Arrays;
+import java.util.Collections;
+import junit.framework.TestCase;
+
+public class TestReferenceIndex
+  extends TestCase
+{
+  public void test_build()
+  {
+    final ReferenceIndexBuilder builder = new ReferenceIndexBuilder();
+    process( builder.newParser(), buildA() );
+    process( builder.newParser(), buildB() );
+    //A class scanned twice is only indexed once
+    process( builder.newParser(), buildB() );
+    final ReferenceIndex index = builder.build();
+
+    assertEquals( "getClassCount()", 2, index.getClassCount() );
+    assertEquals( "getClassName(0)", "p/A", index.getClassName( 0 ) );
+    assertEquals( "getClassName(1)", "p/B", index.getClassName( 1 ) );
+    //Object, Driver, Runnable, p/A, Driver.connect and A.helper
+    assertEquals( "getReferenceCount()", 6, index.getReferenceCount() );
+
+    assertEquals( "Object", "[p/A, p/B]", Arrays.toString( index.getClassesReferencing( "java/lang/Object" ) ) );
+    assertEquals( "Driver", "[p/A]", Arrays.toString( index.getClassesReferencing( "java/sql/Driver" ) ) );
+    assertEquals( "p/A", "[p/B]", Arrays.toString( index.getClassesReferencing( "p/A" ) ) );
+    assertEquals( "p/B", "[]", Arrays.toString( index.getClassesReferencing( "p/B" ) ) );
+    assertEquals( "Driver.connect", "[p/A]",
+                  Arrays.toString( index.getClassesReferencing( "java/sql/Driver", "connect" ) ) );
+    assertEquals( "A.helper", "[p/B]", Arrays.toString( index.getClassesReferencing( "p/A", "helper" ) ) );
+    assertEquals( "A.missing", "[]", Arrays.toString( index.getClassesReferencing( "p/A", "missing" ) ) );
+    assertEquals( "getClassIds()", "[0, 1]",
+                  Arrays.toString( index.getClassIds( ConstantPool.hashClassReference( "java/lang/Object" ) ) ) );
+  }
+
+  public void test_removeClasses()
+  {
+    final ReferenceIndexBuilder builder = new ReferenceIndexBuilder();
+    process( builder.newParser(), buildA() );
+    process( builder.newParser(), buildB() );
+    builder.removeClasses( Collections.singleton( "p/A" ) );
+    final ReferenceIndex index = builder.build();
+    assertEquals( "getClassCount()", 1, index.getClassCount() );
+    assertEquals( "Driver", 0, index.getClassesReferencing( "java/sql/Driver" ).length );
+    assertEquals( "p/A", "[p/B]", Arrays.toString( index.getClassesReferencing( "p/A" ) ) );
+  }
+
+  public void test_build_empty()
+  {
+    final ReferenceIndex index = new ReferenceIndexBuilder().build();
+    assertEquals( "getClassCount()", 0, index.getClassCount() );
+    assertEquals( "getReferenceCount()", 0, index.getReferenceCount() );
+    assertEquals( "Object", 0, index.getClassesReferencing( "java/lang/Object" ).length );
+  }
+
+  private static void process( final ClassFileParser parser, final byte[] data )
+  {
+    ClassFile.parseClassFile( data ).processClass( parser, false, false, false );
+  }
+
+  /** Class that implements Runnable and calls Driver.connect. */
+  private static byte[] buildA()
+  {
+    final ClassFileBuilder builder = new ClassFileBuilder( "p/A", "java/lang/Object", "java/lang/Runnable" );
+    builder.interfaceMethodRef( "java/sql/Driver", "connect", "(Ljava/lang/String;Ljava/util/Properties;)V" );
+    builder.longConst( 7 );
+    return builder.build();
+  }
+
+  /** Class that calls A.helper. */
+  private static byte[] buildB()
+  {
+    final ClassFileBuilder builder = new ClassFileBuilder( "p/B", "java/lang/Object" );
+    builder.methodRef( "p/A", "helper", "()V" );
+    return builder.build();
+  }
+}
@@ -0,0 +1,128 @@
+package org.realityforge.fade;
+
+import java.io.IOException;
+import java.io.InputStream;
+import junit.framework.TestCase;
+
+public class TestSymbolTable
+  extends TestCase
+{
+  public void test_intern_returns_canonical_string()
+  {
+    final SymbolTable table = new SymbolTable( 16 );
+    final byte[] data1 = new byte[]{'x', 'C', 'o', 'd', 'e'};
+    final byte[] data2 = new byte[]{'C', 'o', 'd', 'e', 'y', 'y'};
+
+    final String value1 = table.intern( data1, 1, 4, 3 );
+    final String value2 = table.intern( data2, 0, 4, 7 );
+    assertEquals( "value1", "Code", value1 );
+    assertTrue( "value1 == value2", value1 == value2 );
+    assertEquals( "getHitCount()", 1, table.getHitCount() );
+    assertEquals( "getMissCount()", 1, table.getMissCount() );
+    assertEquals( "getHitRate()", 0.5, table.getHitRate(), 0.0 );
+    assertEquals( "size()", 1, table.size() );
+  }
+
+  public void test_intern_distinguishes_different_bytes()
+  {
+    final SymbolTable table = new SymbolTable( 16 );
+    final byte[] data = new byte[]{'a', 'b', 'b', 'a'};
+
+    assertEquals( "ab", "ab", table.intern( data, 0, 2, 1 ) );
+    assertEquals( "ba", "ba", table.intern( data, 2, 2, 1 ) );
+    assertEquals( "a", "a", table.intern( data, 0, 1, 1 ) );
+    assertEquals( "getMissCount()", 3, table.getMissCount() );
+    assertEquals( "getHitCount()", 0, table.getHitCount() );
+  }
+
+  public void test_intern_reports_bad_utf()
+  {
+    final SymbolTable table = new SymbolTable( 16 );
+    try
+    {
+      table.intern( new byte[]{'a', 0}, 0, 2, 5 );
+      fail( "Expected exception" );
+    }
+    catch( final ClassFormatError cfe )
+    {
+      assertEquals( "getMessage()", "Constant pool entry 5 has invalid utf8 at 1", cfe.getMessage() );
+    }
+    assertEquals( "size()", 0, table.size() );
+  }
+
+  public void test_size_is_bounded_by_capacity()
+  {
+    final SymbolTable table = new SymbolTable( 5 );
+    assertEquals( "getCapacity()", 8, table.getCapacity() );
+    final byte[] data = new byte[2];
+    for( int i = 0; i < 100; i++ )
+    {
+      data[0] = (byte)( 'a' + i % 26 );
+      data[1] = (byte)( 'a' + i / 26 );
+      final String value = table.intern( data, 0, 2, 1 );
+      assertEquals( "value", new String( new char[]{(char)data[0], (char)data[1]} ), value );
+    }
+    assertTrue( "size()", table.size() <= 8 );
+  }
+
+  public void test_constructor_with_bad_capacity()
+  {
+    try
+    {
+      new SymbolTable( 0 );
+      fail( "Expected an exception" );
+    }
+    catch( final IllegalArgumentException iae )
+    {
+      assertEquals( "getMessage()", "capacity must be positive but is 0", iae.getMessage() );
+    }
+  }
+
+  public void test_constructor_with_capacity_too_large()
+  {
+    try
+    {
+      new SymbolTable( Integer.MAX_VALUE );
+      fail( "Expected an exception" );
+    }
+    catch( final IllegalArgumentException iae )
+    {
+      assertEquals( "getMessage()",
+                    "capacity must not exceed " + ( 1 << 30 ) + " but is " + Integer.MAX_VALUE,
+                    iae.getMessage() );
+    }
+  }
+
+  public void test_getHitRate_with_no_lookups()
+  {
+    assertEquals( "getHitRate()", 0.0, new SymbolTable( 4 ).getHitRate(), 0.0 );
+  }
+
+  public void test_strings_shared_between_classes()
+    throws Exception
+  {
+    final SymbolTable table = new SymbolTable( 1024 );
+    final byte[] bytes1 = loadTestData( "EmptyClass.class.dat" );
+    final ClassFile emptyClass = ClassFile.parseClassFile( bytes1, 0, bytes1.length, table );
+    final byte[] bytes2 = loadTestData( "NonEmptyClass.class.dat" );
+    final ClassFile nonEmptyClass = ClassFile.parseClassFile( bytes2, 0, bytes2.length, table );
+
+    final String superClass1 = emptyClass.getSuperClassName();
+    final String superClass2 = nonEmptyClass.getSuperClassName();
+    assertEquals( "superClass1", "java/lang/Object", superClass1 );
+    assertTrue( "superClass1 == superClass2", superClass1 == superClass2 );
+    assertEquals( "getHitCount()", 1, table.getHitCount() );
+  }
+
+  private byte[] loadTestData( final String resource )
+    throws IOException
+  {
+    final InputStream input = TestSymbolTable.class.getResourceAsStream( resource );
+    assertNotNull( "Seemingly missing test data: " + resource, input );
+    final int size = input.available();
+    final byte[] bytes = new byte[size];
+    final int count = input.read( bytes );
+    assertEquals( "Unable to fully read testdata for: " + resource, count, size );
+    return bytes;
+  }
+}